@@ -0,0 +1,96 @@
+// ArchiveFormat.java
+
+package net.sf.gogui.archive;
+
+/** Constants of the GoGui game archive format.
+    An archive file consists of the magic bytes, the data of the games, the
+    index of the games and a trailer.
+    <p>
+    The data of a game (optionally compressed with java.util.zip.Deflater)
+    contains the board size, the string table and the number of nodes,
+    followed by the nodes in pre-order. The string table contains the
+    number of strings and for each string its length and UTF-8 bytes.
+    Each node starts with a header
+    <code>(moveCode + 1) &lt;&lt; 3 | children &lt;&lt; 1 | hasExtra</code>,
+    with moveCode + 1 = 0 for nodes without a move, and children = 0 for
+    no children, 1 for one child and 2 for more children, in which case the
+    number of children follows. If hasExtra is set, a mask with the EXTRA
+    flags follows, and then the information for each flag in the order of
+    the flags.
+    <p>
+    The index contains the number of games and for each game the offset of
+    its data in the file, the length of the stored data and the length of
+    the uncompressed data or 0, if the data is not compressed.
+    The trailer contains the offset of the index as an 8-byte long and the
+    magic bytes again.
+    <p>
+    Unsigned integers are stored as variable length integers with 7 bits
+    per byte (least significant first, high bit set if more bytes follow),
+    floating point numbers with the bits of their IEEE 754 representation.
+    Fixed length numbers are stored least significant byte first.
+    Strings are stored as index + 1 into the string table, 0 for null.
+    Point lists are stored as the number of points followed by the point
+    indexes (see GoPoint.getIndex()). */
+final class ArchiveFormat
+{
+    /** Magic bytes at the start and end of an archive. */
+    public static final byte[] MAGIC =
+        { 'G', 'o', 'G', 'u', 'i', 'G', 'A', '1' };
+
+    /** Length of the trailer. */
+    public static final int TRAILER_SIZE = 8 + MAGIC.length;
+
+    public static final int CHILDREN_NONE = 0;
+
+    public static final int CHILDREN_ONE = 1;
+
+    public static final int CHILDREN_MORE = 2;
+
+    /** Comment (string). */
+    public static final int EXTRA_COMMENT = 1;
+
+    /** Setup stones (point lists for black, white and empty). */
+    public static final int EXTRA_SETUP = 1 << 1;
+
+    /** Player to move (0 for black, 1 for white). */
+    public static final int EXTRA_PLAYER = 1 << 2;
+
+    /** Markup (number of mark types, then for each type the ordinal of
+        MarkType and a point list). */
+    public static final int EXTRA_MARKED = 1 << 3;
+
+    /** Labels (number of labels, then point index and string). */
+    public static final int EXTRA_LABELS = 1 << 4;
+
+    /** Node value (float). */
+    public static final int EXTRA_VALUE = 1 << 5;
+
+    /** Time left (double for black and white, NaN if not set). */
+    public static final int EXTRA_TIME_LEFT = 1 << 6;
+
+    /** Moves left (number + 1 for black and white, 0 if not set). */
+    public static final int EXTRA_MOVES_LEFT = 1 << 7;
+
+    /** Unknown SGF properties (number of properties, then the name, the
+        number of values and the values). */
+    public static final int EXTRA_SGF_PROPERTIES = 1 << 8;
+
+    /** Game information (handicap, komi, time settings, the strings for
+        all StringInfo and the strings for all StringInfoColor for black
+        and white). The komi is stored as a byte 0, if not set, or 1
+        followed by the komi. The time settings are stored as one of the
+        TIME_SETTINGS constants followed by the base time, and the byoyomi
+        time and moves, if byoyomi is used (times in milliseconds). */
+    public static final int EXTRA_GAME_INFO = 1 << 9;
+
+    public static final int TIME_SETTINGS_NONE = 0;
+
+    public static final int TIME_SETTINGS_TOTAL = 1;
+
+    public static final int TIME_SETTINGS_BYOYOMI = 2;
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private ArchiveFormat()
+    {
+    }
+}
@@ -0,0 +1,497 @@
+// ArchiveReader.java
+
+package net.sf.gogui.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import static net.sf.gogui.archive.ArchiveFormat.CHILDREN_MORE;
+import static net.sf.gogui.archive.ArchiveFormat.CHILDREN_NONE;
+import static net.sf.gogui.archive.ArchiveFormat.CHILDREN_ONE;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_COMMENT;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_GAME_INFO;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_LABELS;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_MARKED;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_MOVES_LEFT;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_PLAYER;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_SETUP;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_SGF_PROPERTIES;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_TIME_LEFT;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_VALUE;
+import static net.sf.gogui.archive.ArchiveFormat.MAGIC;
+import static net.sf.gogui.archive.ArchiveFormat.TIME_SETTINGS_BYOYOMI;
+import static net.sf.gogui.archive.ArchiveFormat.TIME_SETTINGS_NONE;
+import static net.sf.gogui.archive.ArchiveFormat.TIME_SETTINGS_TOTAL;
+import static net.sf.gogui.archive.ArchiveFormat.TRAILER_SIZE;
+import net.sf.gogui.game.GameInfo;
+import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.MarkType;
+import net.sf.gogui.game.Node;
+import net.sf.gogui.game.StringInfo;
+import net.sf.gogui.game.StringInfoColor;
+import net.sf.gogui.game.TimeSettings;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.go.Move;
+import net.sf.gogui.util.ErrorMessage;
+
+/** Read games from an archive.
+    The file is memory-mapped and only the index is read by the
+    constructor, so that single games can be read quickly from large
+    archives. See ArchiveFormat for a description of the format.
+    Instances are not thread-safe. */
+public class ArchiveReader
+{
+    /** Open an archive and read the index of the games.
+        @param file The archive file.
+        @throws ErrorMessage If the file cannot be read or is not a valid
+        archive. */
+    public ArchiveReader(File file) throws ErrorMessage
+    {
+        m_file = file;
+        try
+        {
+            m_buffer = map(file);
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage(file + ": " + e.getMessage());
+        }
+        try
+        {
+            int size = m_buffer.limit();
+            if (size < MAGIC.length + TRAILER_SIZE
+                || ! hasMagic(0) || ! hasMagic(size - MAGIC.length))
+                throw invalid();
+            ByteBuffer buffer = m_buffer.duplicate();
+            buffer.position(size - TRAILER_SIZE);
+            long indexOffset = readFixedLong(buffer);
+            if (indexOffset < MAGIC.length
+                || indexOffset > size - TRAILER_SIZE)
+                throw invalid();
+            buffer.position((int)indexOffset);
+            int numberGames = readInt(buffer);
+            m_offset = new int[numberGames];
+            m_length = new int[numberGames];
+            m_rawLength = new int[numberGames];
+            for (int i = 0; i < numberGames; ++i)
+            {
+                long offset = readLong(buffer);
+                m_length[i] = readInt(buffer);
+                m_rawLength[i] = readInt(buffer);
+                if (offset < MAGIC.length
+                    || offset + m_length[i] > indexOffset)
+                    throw invalid();
+                m_offset[i] = (int)offset;
+            }
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw invalid();
+        }
+    }
+
+    /** Check if a file starts with the magic bytes of an archive.
+        @return false, if the file cannot be read or does not start with
+        the magic bytes. */
+    public static boolean isArchive(File file)
+    {
+        byte[] buffer = new byte[MAGIC.length];
+        try
+        {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try
+            {
+                in.readFully(buffer);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        return Arrays.equals(buffer, MAGIC);
+    }
+
+    public int getNumberGames()
+    {
+        return m_offset.length;
+    }
+
+    /** Read a game.
+        @param index The index of the game in
+        <code>[0..getNumberGames() - 1]</code>.
+        @return The game tree.
+        @throws ErrorMessage If the data of the game is invalid. */
+    public GameTree read(int index) throws ErrorMessage
+    {
+        ByteBuffer buffer = m_buffer.duplicate();
+        buffer.position(m_offset[index]);
+        buffer.limit(m_offset[index] + m_length[index]);
+        if (m_rawLength[index] > 0)
+        {
+            byte[] input = new byte[m_length[index]];
+            buffer.get(input);
+            byte[] output = new byte[m_rawLength[index]];
+            Inflater inflater = new Inflater();
+            try
+            {
+                inflater.setInput(input);
+                if (inflater.inflate(output) != output.length)
+                    throw invalid();
+            }
+            catch (DataFormatException e)
+            {
+                throw invalid();
+            }
+            finally
+            {
+                inflater.end();
+            }
+            buffer = ByteBuffer.wrap(output);
+        }
+        try
+        {
+            return readGame(buffer);
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw invalid();
+        }
+    }
+
+    private final int[] m_offset;
+
+    private final int[] m_length;
+
+    private final int[] m_rawLength;
+
+    private final File m_file;
+
+    private final ByteBuffer m_buffer;
+
+    /** Board size of the game currently read. */
+    private int m_size;
+
+    /** String table of the game currently read. */
+    private String[] m_strings;
+
+    private boolean hasMagic(int offset)
+    {
+        for (int i = 0; i < MAGIC.length; ++i)
+            if (m_buffer.get(offset + i) != MAGIC[i])
+                return false;
+        return true;
+    }
+
+    private ErrorMessage invalid()
+    {
+        return new ErrorMessage(m_file + ": Invalid game archive");
+    }
+
+    /** Memory-map a file for reading. */
+    private static ByteBuffer map(File file) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File too large");
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    private GoColor readColor(ByteBuffer buffer) throws ErrorMessage
+    {
+        int i = readInt(buffer);
+        if (i > 1)
+            throw invalid();
+        return (i == 0 ? BLACK : WHITE);
+    }
+
+    private static double readDouble(ByteBuffer buffer)
+    {
+        return Double.longBitsToDouble(readFixedLong(buffer));
+    }
+
+    private static long readFixedLong(ByteBuffer buffer)
+    {
+        long l = 0;
+        for (int i = 0; i < 8; ++i)
+            l |= (buffer.get() & 0xffL) << (8 * i);
+        return l;
+    }
+
+    private static float readFloat(ByteBuffer buffer)
+    {
+        int bits = 0;
+        for (int i = 0; i < 4; ++i)
+            bits |= (buffer.get() & 0xff) << (8 * i);
+        return Float.intBitsToFloat(bits);
+    }
+
+    private GameTree readGame(ByteBuffer buffer) throws ErrorMessage
+    {
+        int size = readInt(buffer);
+        if (size < 1 || size > GoPoint.MAX_SIZE)
+            throw invalid();
+        m_size = size;
+        int numberStrings = readInt(buffer);
+        m_strings = new String[numberStrings];
+        for (int i = 0; i < numberStrings; ++i)
+        {
+            byte[] bytes = new byte[readInt(buffer)];
+            buffer.get(bytes);
+            try
+            {
+                m_strings[i] = new String(bytes, "UTF-8");
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                m_strings[i] = new String(bytes);
+            }
+        }
+        int numberNodes = readInt(buffer);
+        Node root = null;
+        // Contains each node once for each child that was not read yet
+        ArrayList<Node> fathers = new ArrayList<Node>();
+        for (int i = 0; i < numberNodes; ++i)
+        {
+            if (i > 0 && fathers.isEmpty())
+                throw invalid();
+            int header = readInt(buffer);
+            int code = (header >>> 3) - 1;
+            Node node;
+            if (code < 0)
+                node = new Node();
+            else
+            {
+                int pointIndex = code & (Move.CODE_WHITE - 1);
+                if (code >= Move.NUMBER_CODES
+                    || pointIndex > GoPoint.NUMBER_INDEXES)
+                    throw invalid();
+                Move move = Move.fromCode((short)code);
+                GoPoint p = move.getPoint();
+                if (p != null && ! p.isOnBoard(size))
+                    throw invalid();
+                node = new Node(move);
+            }
+            if (i == 0)
+                root = node;
+            else
+                fathers.remove(fathers.size() - 1).append(node);
+            int numberChildren;
+            switch ((header >>> 1) & 3)
+            {
+            case CHILDREN_NONE:
+                numberChildren = 0;
+                break;
+            case CHILDREN_ONE:
+                numberChildren = 1;
+                break;
+            case CHILDREN_MORE:
+                numberChildren = readInt(buffer);
+                break;
+            default:
+                throw invalid();
+            }
+            if (numberChildren > numberNodes)
+                throw invalid();
+            for (int j = 0; j < numberChildren; ++j)
+                fathers.add(node);
+            if ((header & 1) != 0)
+                readExtra(buffer, node);
+        }
+        if (root == null || ! fathers.isEmpty())
+            throw invalid();
+        m_strings = null;
+        return new GameTree(size, root);
+    }
+
+    private void readExtra(ByteBuffer buffer, Node node) throws ErrorMessage
+    {
+        int mask = readInt(buffer);
+        if ((mask & EXTRA_COMMENT) != 0)
+            node.setComment(readString(buffer));
+        if ((mask & EXTRA_SETUP) != 0)
+        {
+            readSetup(buffer, node, BLACK);
+            readSetup(buffer, node, WHITE);
+            readSetup(buffer, node, EMPTY);
+        }
+        if ((mask & EXTRA_PLAYER) != 0)
+            node.setPlayer(readColor(buffer));
+        if ((mask & EXTRA_MARKED) != 0)
+        {
+            MarkType[] types = MarkType.values();
+            int numberTypes = readInt(buffer);
+            for (int i = 0; i < numberTypes; ++i)
+            {
+                int ordinal = readInt(buffer);
+                if (ordinal >= types.length)
+                    throw invalid();
+                int n = readInt(buffer);
+                for (int j = 0; j < n; ++j)
+                    node.addMarked(readPoint(buffer), types[ordinal]);
+            }
+        }
+        if ((mask & EXTRA_LABELS) != 0)
+        {
+            int n = readInt(buffer);
+            for (int i = 0; i < n; ++i)
+            {
+                GoPoint p = readPoint(buffer);
+                node.setLabel(p, readString(buffer));
+            }
+        }
+        if ((mask & EXTRA_VALUE) != 0)
+            node.setValue(readFloat(buffer));
+        if ((mask & EXTRA_TIME_LEFT) != 0)
+        {
+            double timeLeftBlack = readDouble(buffer);
+            double timeLeftWhite = readDouble(buffer);
+            if (! Double.isNaN(timeLeftBlack))
+                node.setTimeLeft(BLACK, timeLeftBlack);
+            if (! Double.isNaN(timeLeftWhite))
+                node.setTimeLeft(WHITE, timeLeftWhite);
+        }
+        if ((mask & EXTRA_MOVES_LEFT) != 0)
+        {
+            int movesLeftBlack = readInt(buffer) - 1;
+            int movesLeftWhite = readInt(buffer) - 1;
+            if (movesLeftBlack >= 0)
+                node.setMovesLeft(BLACK, movesLeftBlack);
+            if (movesLeftWhite >= 0)
+                node.setMovesLeft(WHITE, movesLeftWhite);
+        }
+        if ((mask & EXTRA_SGF_PROPERTIES) != 0)
+        {
+            int n = readInt(buffer);
+            for (int i = 0; i < n; ++i)
+            {
+                String key = readString(buffer);
+                int numberValues = readInt(buffer);
+                ArrayList<String> values = new ArrayList<String>();
+                for (int j = 0; j < numberValues; ++j)
+                    values.add(readString(buffer));
+                if (key == null || values.contains(null))
+                    throw invalid();
+                node.addSgfProperty(key, values);
+            }
+        }
+        if ((mask & EXTRA_GAME_INFO) != 0)
+            readGameInfo(buffer, node.createGameInfo());
+    }
+
+    private void readGameInfo(ByteBuffer buffer, GameInfo info)
+        throws ErrorMessage
+    {
+        info.setHandicap(readInt(buffer));
+        int hasKomi = buffer.get();
+        if (hasKomi == 1)
+            info.setKomi(new Komi(readDouble(buffer)));
+        else if (hasKomi != 0)
+            throw invalid();
+        int timeSettings = readInt(buffer);
+        if (timeSettings == TIME_SETTINGS_TOTAL)
+        {
+            long preByoyomi = readLong(buffer);
+            if (preByoyomi == 0)
+                throw invalid();
+            info.setTimeSettings(new TimeSettings(preByoyomi));
+        }
+        else if (timeSettings == TIME_SETTINGS_BYOYOMI)
+        {
+            long preByoyomi = readLong(buffer);
+            long byoyomi = readLong(buffer);
+            int byoyomiMoves = readInt(buffer);
+            if (byoyomi == 0 || byoyomiMoves == 0)
+                throw invalid();
+            info.setTimeSettings(new TimeSettings(preByoyomi, byoyomi,
+                                                  byoyomiMoves));
+        }
+        else if (timeSettings != TIME_SETTINGS_NONE)
+            throw invalid();
+        for (StringInfo type : StringInfo.values())
+            info.set(type, readString(buffer));
+        for (StringInfoColor type : StringInfoColor.values())
+        {
+            info.set(type, BLACK, readString(buffer));
+            info.set(type, WHITE, readString(buffer));
+        }
+    }
+
+    /** Read a non-negative integer stored as variable length integer. */
+    private int readInt(ByteBuffer buffer) throws ErrorMessage
+    {
+        long l = readLong(buffer);
+        if (l > Integer.MAX_VALUE)
+            throw invalid();
+        return (int)l;
+    }
+
+    /** Read a non-negative long stored as variable length integer. */
+    private long readLong(ByteBuffer buffer) throws ErrorMessage
+    {
+        long l = 0;
+        for (int shift = 0; shift < 63; shift += 7)
+        {
+            int b = buffer.get();
+            l |= (long)(b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return l;
+        }
+        throw invalid();
+    }
+
+    private GoPoint readPoint(ByteBuffer buffer) throws ErrorMessage
+    {
+        int index = readInt(buffer);
+        if (index >= GoPoint.NUMBER_INDEXES)
+            throw invalid();
+        GoPoint p = GoPoint.fromIndex(index);
+        if (! p.isOnBoard(m_size))
+            throw invalid();
+        return p;
+    }
+
+    private void readSetup(ByteBuffer buffer, Node node, GoColor c)
+        throws ErrorMessage
+    {
+        int n = readInt(buffer);
+        for (int i = 0; i < n; ++i)
+            node.addStone(c, readPoint(buffer));
+    }
+
+    private String readString(ByteBuffer buffer) throws ErrorMessage
+    {
+        int index = readInt(buffer);
+        if (index > m_strings.length)
+            throw invalid();
+        if (index == 0)
+            return null;
+        return m_strings[index - 1];
+    }
+}
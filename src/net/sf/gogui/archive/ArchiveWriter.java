@@ -0,0 +1,418 @@
+// ArchiveWriter.java
+
+package net.sf.gogui.archive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import static net.sf.gogui.archive.ArchiveFormat.CHILDREN_MORE;
+import static net.sf.gogui.archive.ArchiveFormat.CHILDREN_ONE;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_COMMENT;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_GAME_INFO;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_LABELS;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_MARKED;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_MOVES_LEFT;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_PLAYER;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_SETUP;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_SGF_PROPERTIES;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_TIME_LEFT;
+import static net.sf.gogui.archive.ArchiveFormat.EXTRA_VALUE;
+import static net.sf.gogui.archive.ArchiveFormat.MAGIC;
+import static net.sf.gogui.archive.ArchiveFormat.TIME_SETTINGS_BYOYOMI;
+import static net.sf.gogui.archive.ArchiveFormat.TIME_SETTINGS_NONE;
+import static net.sf.gogui.archive.ArchiveFormat.TIME_SETTINGS_TOTAL;
+import net.sf.gogui.game.ConstGameInfo;
+import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.ConstSgfProperties;
+import net.sf.gogui.game.MarkType;
+import net.sf.gogui.game.StringInfo;
+import net.sf.gogui.game.StringInfoColor;
+import net.sf.gogui.game.TimeSettings;
+import net.sf.gogui.go.ConstPointList;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
+/** Write games to an archive.
+    See ArchiveFormat for a description of the format. */
+public class ArchiveWriter
+{
+    /** Construct writer and write the header of the archive.
+        @param out The stream to write to. It is closed by close().
+        @param compress Compress the games. Games are stored uncompressed,
+        if compression does not make them smaller. */
+    public ArchiveWriter(OutputStream out, boolean compress)
+        throws IOException
+    {
+        m_out = out;
+        if (compress)
+            m_deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        else
+            m_deflater = null;
+        write(MAGIC, MAGIC.length);
+    }
+
+    /** Append a game to the archive. */
+    public void add(ConstGameTree tree) throws IOException
+    {
+        m_strings.clear();
+        m_stringList.clear();
+        m_nodes.clear();
+        int numberNodes = 0;
+        // Not recursive, games can be long
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        stack.add(tree.getRootConst());
+        while (! stack.isEmpty())
+        {
+            ConstNode node = stack.remove(stack.size() - 1);
+            writeNode(node);
+            ++numberNodes;
+            for (int i = node.getNumberChildren() - 1; i >= 0; --i)
+                stack.add(node.getChildConst(i));
+        }
+        m_data.clear();
+        m_data.writeInt(tree.getBoardSize());
+        m_data.writeInt(m_stringList.size());
+        for (byte[] bytes : m_stringList)
+        {
+            m_data.writeInt(bytes.length);
+            m_data.write(bytes, bytes.length);
+        }
+        m_data.writeInt(numberNodes);
+        m_data.write(m_nodes.m_bytes, m_nodes.m_size);
+        long offset = m_offset;
+        int rawLength = 0;
+        if (m_deflater != null)
+        {
+            m_deflater.reset();
+            m_deflater.setInput(m_data.m_bytes, 0, m_data.m_size);
+            m_deflater.finish();
+            m_compressed.clear();
+            while (! m_deflater.finished())
+            {
+                m_compressed.ensureCapacity(m_compressed.m_size + 4096);
+                m_compressed.m_size +=
+                    m_deflater.deflate(m_compressed.m_bytes,
+                                       m_compressed.m_size, 4096);
+            }
+            if (m_compressed.m_size < m_data.m_size)
+                rawLength = m_data.m_size;
+        }
+        if (rawLength > 0)
+            write(m_compressed.m_bytes, m_compressed.m_size);
+        else
+            write(m_data.m_bytes, m_data.m_size);
+        m_index.writeLong(offset);
+        m_index.writeInt((int)(m_offset - offset));
+        m_index.writeInt(rawLength);
+        ++m_numberGames;
+    }
+
+    /** Write the index of the games and close the stream. */
+    public void close() throws IOException
+    {
+        long offset = m_offset;
+        m_data.clear();
+        m_data.writeInt(m_numberGames);
+        m_data.write(m_index.m_bytes, m_index.m_size);
+        for (int i = 0; i < 8; ++i)
+            m_data.writeByte((int)(offset >>> (8 * i)));
+        m_data.write(MAGIC, MAGIC.length);
+        write(m_data.m_bytes, m_data.m_size);
+        m_out.close();
+        if (m_deflater != null)
+            m_deflater.end();
+    }
+
+    /** Growable byte array with methods for writing the archive format. */
+    private static final class Buffer
+    {
+        public byte[] m_bytes = new byte[4096];
+
+        public int m_size;
+
+        public void clear()
+        {
+            m_size = 0;
+        }
+
+        public void ensureCapacity(int capacity)
+        {
+            if (capacity <= m_bytes.length)
+                return;
+            byte[] bytes = new byte[Math.max(capacity, 2 * m_bytes.length)];
+            System.arraycopy(m_bytes, 0, bytes, 0, m_size);
+            m_bytes = bytes;
+        }
+
+        public void write(byte[] bytes, int length)
+        {
+            ensureCapacity(m_size + length);
+            System.arraycopy(bytes, 0, m_bytes, m_size, length);
+            m_size += length;
+        }
+
+        public void writeByte(int b)
+        {
+            ensureCapacity(m_size + 1);
+            m_bytes[m_size++] = (byte)b;
+        }
+
+        public void writeDouble(double d)
+        {
+            long bits = Double.doubleToLongBits(d);
+            for (int i = 0; i < 8; ++i)
+                writeByte((int)(bits >>> (8 * i)));
+        }
+
+        public void writeFloat(float f)
+        {
+            int bits = Float.floatToIntBits(f);
+            for (int i = 0; i < 4; ++i)
+                writeByte(bits >>> (8 * i));
+        }
+
+        /** Write a non-negative integer as a variable length integer. */
+        public void writeInt(int i)
+        {
+            assert i >= 0;
+            writeLong(i);
+        }
+
+        /** Write a non-negative long as a variable length integer. */
+        public void writeLong(long l)
+        {
+            assert l >= 0;
+            while (l >= 0x80)
+            {
+                writeByte((int)(l & 0x7f) | 0x80);
+                l >>>= 7;
+            }
+            writeByte((int)l);
+        }
+
+        public void writePointList(ConstPointList list)
+        {
+            writeInt(list.size());
+            for (GoPoint p : list)
+                writeInt(p.getIndex());
+        }
+    }
+
+    private int m_numberGames;
+
+    private long m_offset;
+
+    private final OutputStream m_out;
+
+    private final Deflater m_deflater;
+
+    /** Data of the current game. */
+    private final Buffer m_data = new Buffer();
+
+    private final Buffer m_compressed = new Buffer();
+
+    private final Buffer m_index = new Buffer();
+
+    private final Buffer m_nodes = new Buffer();
+
+    /** String table of the current game. */
+    private final Map<String,Integer> m_strings =
+        new HashMap<String,Integer>();
+
+    private final ArrayList<byte[]> m_stringList = new ArrayList<byte[]>();
+
+    private int getExtraMask(ConstNode node)
+    {
+        int mask = 0;
+        if (node.getComment() != null)
+            mask |= EXTRA_COMMENT;
+        if (! node.getSetup(BLACK).isEmpty()
+            || ! node.getSetup(WHITE).isEmpty()
+            || ! node.getSetup(EMPTY).isEmpty())
+            mask |= EXTRA_SETUP;
+        if (node.getPlayer() != null)
+            mask |= EXTRA_PLAYER;
+        for (MarkType type : MarkType.values())
+        {
+            ConstPointList list = node.getMarkedConst(type);
+            if (list != null && ! list.isEmpty())
+                mask |= EXTRA_MARKED;
+        }
+        Map<GoPoint,String> labels = node.getLabelsUnmodifiable();
+        if (labels != null && ! labels.isEmpty())
+            mask |= EXTRA_LABELS;
+        if (! Float.isNaN(node.getValue()))
+            mask |= EXTRA_VALUE;
+        if (! Double.isNaN(node.getTimeLeft(BLACK))
+            || ! Double.isNaN(node.getTimeLeft(WHITE)))
+            mask |= EXTRA_TIME_LEFT;
+        if (node.getMovesLeft(BLACK) >= 0 || node.getMovesLeft(WHITE) >= 0)
+            mask |= EXTRA_MOVES_LEFT;
+        ConstSgfProperties sgfProperties = node.getSgfPropertiesConst();
+        if (sgfProperties != null && ! sgfProperties.isEmpty())
+            mask |= EXTRA_SGF_PROPERTIES;
+        if (node.getGameInfoConst() != null)
+            mask |= EXTRA_GAME_INFO;
+        return mask;
+    }
+
+    private void write(byte[] bytes, int length) throws IOException
+    {
+        m_out.write(bytes, 0, length);
+        m_offset += length;
+    }
+
+    private void writeGameInfo(ConstGameInfo info)
+    {
+        m_nodes.writeInt(info.getHandicap());
+        if (info.getKomi() == null)
+            m_nodes.writeByte(0);
+        else
+        {
+            m_nodes.writeByte(1);
+            m_nodes.writeDouble(info.getKomi().toDouble());
+        }
+        TimeSettings timeSettings = info.getTimeSettings();
+        if (timeSettings == null)
+            m_nodes.writeInt(TIME_SETTINGS_NONE);
+        else if (! timeSettings.getUseByoyomi())
+        {
+            m_nodes.writeInt(TIME_SETTINGS_TOTAL);
+            m_nodes.writeLong(timeSettings.getPreByoyomi());
+        }
+        else
+        {
+            m_nodes.writeInt(TIME_SETTINGS_BYOYOMI);
+            m_nodes.writeLong(timeSettings.getPreByoyomi());
+            m_nodes.writeLong(timeSettings.getByoyomi());
+            m_nodes.writeInt(timeSettings.getByoyomiMoves());
+        }
+        for (StringInfo type : StringInfo.values())
+            writeString(info.get(type));
+        for (StringInfoColor type : StringInfoColor.values())
+        {
+            writeString(info.get(type, BLACK));
+            writeString(info.get(type, WHITE));
+        }
+    }
+
+    private void writeNode(ConstNode node)
+    {
+        Move move = node.getMove();
+        int header = (move == null ? 0 : move.getCode() + 1) << 3;
+        int numberChildren = node.getNumberChildren();
+        if (numberChildren == 1)
+            header |= CHILDREN_ONE << 1;
+        else if (numberChildren > 1)
+            header |= CHILDREN_MORE << 1;
+        int mask = getExtraMask(node);
+        if (mask != 0)
+            header |= 1;
+        m_nodes.writeInt(header);
+        if (numberChildren > 1)
+            m_nodes.writeInt(numberChildren);
+        if (mask == 0)
+            return;
+        m_nodes.writeInt(mask);
+        if ((mask & EXTRA_COMMENT) != 0)
+            writeString(node.getComment());
+        if ((mask & EXTRA_SETUP) != 0)
+        {
+            m_nodes.writePointList(node.getSetup(BLACK));
+            m_nodes.writePointList(node.getSetup(WHITE));
+            m_nodes.writePointList(node.getSetup(EMPTY));
+        }
+        if ((mask & EXTRA_PLAYER) != 0)
+            m_nodes.writeInt(node.getPlayer() == BLACK ? 0 : 1);
+        if ((mask & EXTRA_MARKED) != 0)
+        {
+            int numberTypes = 0;
+            for (MarkType type : MarkType.values())
+            {
+                ConstPointList list = node.getMarkedConst(type);
+                if (list != null && ! list.isEmpty())
+                    ++numberTypes;
+            }
+            m_nodes.writeInt(numberTypes);
+            for (MarkType type : MarkType.values())
+            {
+                ConstPointList list = node.getMarkedConst(type);
+                if (list != null && ! list.isEmpty())
+                {
+                    m_nodes.writeInt(type.ordinal());
+                    m_nodes.writePointList(list);
+                }
+            }
+        }
+        if ((mask & EXTRA_LABELS) != 0)
+        {
+            Map<GoPoint,String> labels = node.getLabelsUnmodifiable();
+            m_nodes.writeInt(labels.size());
+            for (Map.Entry<GoPoint,String> entry : labels.entrySet())
+            {
+                m_nodes.writeInt(entry.getKey().getIndex());
+                writeString(entry.getValue());
+            }
+        }
+        if ((mask & EXTRA_VALUE) != 0)
+            m_nodes.writeFloat(node.getValue());
+        if ((mask & EXTRA_TIME_LEFT) != 0)
+        {
+            m_nodes.writeDouble(node.getTimeLeft(BLACK));
+            m_nodes.writeDouble(node.getTimeLeft(WHITE));
+        }
+        if ((mask & EXTRA_MOVES_LEFT) != 0)
+        {
+            m_nodes.writeInt(node.getMovesLeft(BLACK) + 1);
+            m_nodes.writeInt(node.getMovesLeft(WHITE) + 1);
+        }
+        if ((mask & EXTRA_SGF_PROPERTIES) != 0)
+        {
+            ConstSgfProperties sgfProperties = node.getSgfPropertiesConst();
+            ArrayList<String> keys = sgfProperties.getKeys();
+            m_nodes.writeInt(keys.size());
+            for (String key : keys)
+            {
+                writeString(key);
+                int numberValues = sgfProperties.getNumberValues(key);
+                m_nodes.writeInt(numberValues);
+                for (int i = 0; i < numberValues; ++i)
+                    writeString(sgfProperties.getValue(key, i));
+            }
+        }
+        if ((mask & EXTRA_GAME_INFO) != 0)
+            writeGameInfo(node.getGameInfoConst());
+    }
+
+    private void writeString(String s)
+    {
+        if (s == null)
+        {
+            m_nodes.writeInt(0);
+            return;
+        }
+        Integer index = m_strings.get(s);
+        if (index == null)
+        {
+            index = Integer.valueOf(m_stringList.size());
+            m_strings.put(s, index);
+            try
+            {
+                m_stringList.add(s.getBytes("UTF-8"));
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                m_stringList.add(s.getBytes());
+            }
+        }
+        m_nodes.writeInt(index.intValue() + 1);
+    }
+}
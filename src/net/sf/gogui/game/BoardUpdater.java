@@ -13,7 +13,16 @@ import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.go.PointList;
 
-/** Updates a go.Board to a node in a GameTree. */
+/** Updates a go.Board to a node in a GameTree.
+    The updater remembers the path to the node of the last update. If the
+    next update uses the same tree and board, the board was not changed
+    in between and the new node shares a part of the path, the moves after
+    the common ancestor are undone and only the remaining nodes are played
+    forward, so navigating in the tree needs time proportional to the
+    distance between the nodes instead of the depth of the new node.
+    This is only possible back to the last node that contains setup stones,
+    because setting up a position clears the move history of the board;
+    otherwise the position is computed from the root as before. */
 public class BoardUpdater
 {
     public BoardUpdater()
@@ -23,16 +32,33 @@ public class BoardUpdater
 
     public void update(ConstGameTree tree, ConstNode currentNode, Board board)
     {
-        board.init(tree.getBoardSize());
         int handicap = tree.getGameInfoConst(currentNode).getHandicap();
         NodeUtil.getPathToRoot(currentNode, m_nodes);
-        int nuMoves = 0;
-        boolean isFirstPlacement = true;
-        boolean isHandicapSetupDone = false;
-        boolean isInInitialBlackMoveSequence = true;
-        for (int i = m_nodes.size() - 1; i >= 0; --i)
+        int pathLength = m_nodes.size();
+        int start = getReusableLength(tree, board, handicap);
+        State state;
+        if (start == 0)
         {
-            ConstNode node = m_nodes.get(i);
+            board.init(tree.getBoardSize());
+            m_lastSetupIndex = -1;
+            state = null;
+        }
+        else
+        {
+            state = m_states.get(start - 1);
+            board.undo(board.getNumberMoves() - state.m_numberBoardMoves);
+            board.setToMove(state.m_toMove);
+        }
+        int nuMoves = (state == null ? 0 : state.m_nuMoves);
+        boolean isFirstPlacement =
+            (state == null ? true : state.m_isFirstPlacement);
+        boolean isHandicapSetupDone =
+            (state == null ? false : state.m_isHandicapSetupDone);
+        boolean isInInitialBlackMoveSequence =
+            (state == null ? true : state.m_isInInitialBlackMoveSequence);
+        for (int i = start; i < pathLength; ++i)
+        {
+            ConstNode node = m_nodes.get(pathLength - i - 1);
             GoColor player = node.getPlayer();
             if (node.hasSetup())
             {
@@ -50,6 +76,7 @@ public class BoardUpdater
                     newSetup(board, setupBlack, setupWhite, setupEmpty, player);
                 isFirstPlacement = false;
                 isInInitialBlackMoveSequence = false;
+                m_lastSetupIndex = i;
             }
             else if (player != null)
                 board.setToMove(player);
@@ -68,15 +95,119 @@ public class BoardUpdater
                 {
                     setupMovesAsHandicap(board);
                     isHandicapSetupDone = true;
+                    m_lastSetupIndex = i;
                 }
             }
+            if (i == m_states.size())
+                m_states.add(new State());
+            state = m_states.get(i);
+            state.m_node = node;
+            state.m_moveCode = getMoveCode(move);
+            state.m_player = player;
+            state.m_hasSetup = node.hasSetup();
+            state.m_numberBoardMoves = board.getNumberMoves();
+            state.m_toMove = board.getToMove();
+            state.m_nuMoves = nuMoves;
+            state.m_isFirstPlacement = isFirstPlacement;
+            state.m_isHandicapSetupDone = isHandicapSetupDone;
+            state.m_isInInitialBlackMoveSequence =
+                isInInitialBlackMoveSequence;
         }
+        m_pathLength = pathLength;
+        m_tree = tree;
+        m_board = board;
+        m_handicap = handicap;
+        m_boardHash = board.getHash();
+        m_numberBoardMoves = board.getNumberMoves();
+    }
+
+    /** State after updating the board to a node on the current path. */
+    private static class State
+    {
+        public ConstNode m_node;
+
+        public short m_moveCode;
+
+        public GoColor m_player;
+
+        public boolean m_hasSetup;
+
+        public int m_numberBoardMoves;
+
+        public GoColor m_toMove;
+
+        public int m_nuMoves;
+
+        public boolean m_isFirstPlacement;
+
+        public boolean m_isHandicapSetupDone;
+
+        public boolean m_isInInitialBlackMoveSequence;
     }
 
     /** Local variable used in update.
         Member variable for avoiding frequent new memory allocations. */
     private final ArrayList<ConstNode> m_nodes;
 
+    /** States after each node of the path of the last update.
+        Entries above m_pathLength are unused and kept for reuse. */
+    private final ArrayList<State> m_states = new ArrayList<State>(400);
+
+    private int m_pathLength;
+
+    /** Index of the last node in the path of the last update that cleared
+        the move history of the board; -1 if none. */
+    private int m_lastSetupIndex = -1;
+
+    private ConstGameTree m_tree;
+
+    private Board m_board;
+
+    private int m_handicap;
+
+    private long m_boardHash;
+
+    private int m_numberBoardMoves;
+
+    private static short getMoveCode(Move move)
+    {
+        return (move == null ? Move.NO_MOVE_CODE : move.getCode());
+    }
+
+    /** Get the number of nodes at the beginning of the new path, for which
+        the state from the last update can be reused.
+        Expects the new path in m_nodes. The last node of the new path is
+        never reused, because its properties could have been changed since
+        the last update. */
+    private int getReusableLength(ConstGameTree tree, Board board,
+                                  int handicap)
+    {
+        if (tree != m_tree || board != m_board || handicap != m_handicap
+            || board.getSize() != tree.getBoardSize()
+            || board.getNumberMoves() != m_numberBoardMoves
+            || board.getHash() != m_boardHash)
+            return 0;
+        int pathLength = m_nodes.size();
+        int maxLength = Math.min(m_pathLength, pathLength - 1);
+        int length = 0;
+        while (length < maxLength)
+        {
+            ConstNode node = m_nodes.get(pathLength - length - 1);
+            State state = m_states.get(length);
+            if (state.m_node != node
+                || state.m_moveCode != getMoveCode(node.getMove())
+                || state.m_player != node.getPlayer()
+                || state.m_hasSetup != node.hasSetup())
+                break;
+            ++length;
+        }
+        // The position after nodes before the last setup cannot be
+        // restored by undoing moves
+        if (length <= m_lastSetupIndex)
+            return 0;
+        return length;
+    }
+
     /** Initialize board with new setup from merging the current position
         with the setup properties from a node. */
     private void newSetup(Board board, ConstPointList setupBlack,
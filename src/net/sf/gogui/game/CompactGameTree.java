@@ -0,0 +1,718 @@
+// CompactGameTree.java
+
+package net.sf.gogui.game;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Map;
+import net.sf.gogui.go.ConstPointList;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK_WHITE;
+import static net.sf.gogui.go.GoColor.BLACK_WHITE_EMPTY;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+import net.sf.gogui.go.PointList;
+
+/** Read-only game tree stored in parallel primitive arrays.
+    Intended for loading very large trees (e.g. search traces or game
+    databases), which would need several objects per node with Node.
+    Nodes are numbered in pre-order; each node stores a move code, the
+    indexes of its father, first child and next sibling, and the offset of
+    its comment in a shared byte pool (UTF-8). All other information (setup,
+    markup, labels, game info, time left, value, other SGF properties) is
+    rare in large trees and kept in a sparse table of Node objects that
+    contain only this information.
+    The ConstNode objects returned by this class are created on demand and
+    are unique per node, so they can be compared by reference.
+    A compact tree can be copied from another tree or created node by node
+    with a Builder, which SgfReader uses for reading SGF files directly into
+    a compact tree.
+    Use toGameTree() to get an editable copy. */
+public final class CompactGameTree
+    implements ConstGameTree
+{
+    /** Builds a compact tree node by node.
+        Allows creating a compact tree while reading a file (see
+        SgfReader), without creating the linked Node objects of a GameTree
+        for all nodes first. */
+    public static final class Builder
+    {
+        public Builder()
+        {
+            int capacity = 16;
+            m_move = new short[capacity];
+            m_father = new int[capacity];
+            m_firstChild = new int[capacity];
+            m_nextSibling = new int[capacity];
+            m_comment = new int[capacity];
+            m_extra = new int[capacity];
+            m_lastChild = new int[capacity];
+            m_pool = new byte[256];
+        }
+
+        /** Add a node.
+            Nodes must be added in pre-order, starting with the root.
+            The move and comment of the node are stored in the arrays of the
+            compact tree. If the node contains other information, the
+            builder keeps a reference to the node for this information,
+            otherwise the node can be garbage collected.
+            @param father The index of the father as returned by addNode()
+            or -1 for the root.
+            @param node The node. Its father and children are ignored.
+            @return The index of the node. */
+        public int addNode(int father, Node node)
+        {
+            return add(father, node.getMove(), node.getComment(),
+                       hasExtraInfo(node) ? node : null);
+        }
+
+        /** Create the tree.
+            The builder cannot be used anymore afterwards.
+            @param boardSize The board size.
+            @return The tree. */
+        public CompactGameTree finish(int boardSize)
+        {
+            assert m_numberNodes > 0;
+            return new CompactGameTree(this, boardSize);
+        }
+
+        private int m_numberNodes;
+
+        private int m_poolSize;
+
+        private short[] m_move;
+
+        private int[] m_father;
+
+        private int[] m_firstChild;
+
+        private int[] m_nextSibling;
+
+        private int[] m_comment;
+
+        private int[] m_extra;
+
+        private int[] m_lastChild;
+
+        private byte[] m_pool;
+
+        private final ArrayList<Node> m_extraInfo = new ArrayList<Node>();
+
+        private int add(int father, Move move, String comment, Node extra)
+        {
+            assert (father == NONE) == (m_numberNodes == 0);
+            int index = m_numberNodes;
+            if (index == m_move.length)
+            {
+                int capacity = 2 * m_move.length;
+                m_move = grow(m_move, capacity);
+                m_father = grow(m_father, capacity);
+                m_firstChild = grow(m_firstChild, capacity);
+                m_nextSibling = grow(m_nextSibling, capacity);
+                m_comment = grow(m_comment, capacity);
+                m_extra = grow(m_extra, capacity);
+                m_lastChild = grow(m_lastChild, capacity);
+            }
+            ++m_numberNodes;
+            m_move[index] = getMoveCode(move);
+            m_father[index] = father;
+            m_firstChild[index] = NONE;
+            m_nextSibling[index] = NONE;
+            m_lastChild[index] = NONE;
+            if (father != NONE)
+            {
+                if (m_lastChild[father] == NONE)
+                    m_firstChild[father] = index;
+                else
+                    m_nextSibling[m_lastChild[father]] = index;
+                m_lastChild[father] = index;
+            }
+            m_comment[index] = addComment(comment);
+            if (extra != null)
+            {
+                m_extra[index] = m_extraInfo.size();
+                m_extraInfo.add(extra);
+            }
+            else
+                m_extra[index] = NONE;
+            return index;
+        }
+
+        private int addComment(String comment)
+        {
+            if (comment == null)
+                return NONE;
+            byte[] bytes;
+            try
+            {
+                bytes = comment.getBytes("UTF-8");
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                bytes = comment.getBytes();
+            }
+            if (m_poolSize + bytes.length + 5 > m_pool.length)
+            {
+                int size = Math.max(2 * m_pool.length,
+                                    m_poolSize + bytes.length + 5);
+                byte[] pool = new byte[size];
+                System.arraycopy(m_pool, 0, pool, 0, m_poolSize);
+                m_pool = pool;
+            }
+            int offset = m_poolSize;
+            int length = bytes.length;
+            while (length >= 0x80)
+            {
+                m_pool[m_poolSize++] = (byte)((length & 0x7f) | 0x80);
+                length >>>= 7;
+            }
+            m_pool[m_poolSize++] = (byte)length;
+            System.arraycopy(bytes, 0, m_pool, m_poolSize, bytes.length);
+            m_poolSize += bytes.length;
+            return offset;
+        }
+    }
+
+    /** Construct a compact copy of a game tree.
+        @param tree The tree to copy. */
+    public CompactGameTree(ConstGameTree tree)
+    {
+        this(copy(tree), tree.getBoardSize());
+    }
+
+    public int getBoardSize()
+    {
+        return m_boardSize;
+    }
+
+    public ConstGameInfo getGameInfoConst(ConstNode node)
+    {
+        int index = getIndex(node);
+        while (index != NONE)
+        {
+            ConstGameInfo info = getNodeView(index).getGameInfoConst();
+            if (info != null)
+                return info;
+            index = m_father[index];
+        }
+        return null;
+    }
+
+    /** Get the pre-order index of a node of this tree.
+        @param node A node returned by this tree.
+        @return The index in <code>[0..getNumberNodes() - 1]</code>, the
+        root has index 0. */
+    public int getIndex(ConstNode node)
+    {
+        assert ((CompactNode)node).getTree() == this;
+        return ((CompactNode)node).m_index;
+    }
+
+    /** Find the node in an editable copy that corresponds to a node of this
+        tree.
+        @param tree A tree returned by toGameTree().
+        @param node A node of this tree.
+        @return The corresponding node of the copy. */
+    public Node getNode(GameTree tree, ConstNode node)
+    {
+        int index = getIndex(node);
+        int depth = 0;
+        for (int i = index; m_father[i] != NONE; i = m_father[i])
+            ++depth;
+        int[] childIndex = new int[depth];
+        for (int i = index; m_father[i] != NONE; i = m_father[i])
+        {
+            int n = 0;
+            for (int j = m_firstChild[m_father[i]]; j != i;
+                 j = m_nextSibling[j])
+                ++n;
+            childIndex[--depth] = n;
+        }
+        Node result = tree.getRoot();
+        for (int i = 0; i < childIndex.length; ++i)
+            result = result.getChild(childIndex[i]);
+        return result;
+    }
+
+    /** Get node by pre-order index.
+        @param index The index in <code>[0..getNumberNodes() - 1]</code>.
+        @return The node. */
+    public ConstNode getNodeConst(int index)
+    {
+        return getNodeView(index);
+    }
+
+    public int getNumberNodes()
+    {
+        return m_numberNodes;
+    }
+
+    public ConstNode getRootConst()
+    {
+        return getNodeView(0);
+    }
+
+    public boolean hasVariations()
+    {
+        for (int i = 0; i != NONE; i = m_firstChild[i])
+            if (m_firstChild[i] != NONE
+                && m_nextSibling[m_firstChild[i]] != NONE)
+                return true;
+        return false;
+    }
+
+    /** Create an editable copy of this tree.
+        @return A new game tree that contains all nodes of this tree. */
+    public GameTree toGameTree()
+    {
+        Node[] nodes = new Node[m_numberNodes];
+        for (int i = 0; i < m_numberNodes; ++i)
+        {
+            Node node = new Node(getMove(i));
+            node.setComment(getComment(i));
+            if (m_extra[i] != NONE)
+                copyExtraInfo(m_extraInfo.get(m_extra[i]), node);
+            if (m_father[i] != NONE)
+                nodes[m_father[i]].append(node);
+            nodes[i] = node;
+        }
+        return new GameTree(m_boardSize, nodes[0]);
+    }
+
+    private CompactGameTree(Builder builder, int boardSize)
+    {
+        m_boardSize = boardSize;
+        m_numberNodes = builder.m_numberNodes;
+        m_move = grow(builder.m_move, m_numberNodes);
+        m_father = grow(builder.m_father, m_numberNodes);
+        m_firstChild = grow(builder.m_firstChild, m_numberNodes);
+        m_nextSibling = grow(builder.m_nextSibling, m_numberNodes);
+        m_comment = grow(builder.m_comment, m_numberNodes);
+        m_extra = grow(builder.m_extra, m_numberNodes);
+        m_pool = new byte[builder.m_poolSize];
+        System.arraycopy(builder.m_pool, 0, m_pool, 0, builder.m_poolSize);
+        m_extraInfo = builder.m_extraInfo;
+        m_extraInfo.trimToSize();
+        m_view = new CompactNode[m_numberNodes];
+    }
+
+    /** View on a node of the compact tree. */
+    private final class CompactNode
+        implements ConstNode
+    {
+        public CompactNode(int index)
+        {
+            m_index = index;
+        }
+
+        public String getComment()
+        {
+            return CompactGameTree.this.getComment(m_index);
+        }
+
+        public ConstNode getFatherConst()
+        {
+            int father = m_father[m_index];
+            if (father == NONE)
+                return null;
+            return getNodeView(father);
+        }
+
+        public ConstNode getChildConst()
+        {
+            int child = m_firstChild[m_index];
+            if (child == NONE)
+                return null;
+            return getNodeView(child);
+        }
+
+        public ConstNode getChildConst(int i)
+        {
+            int child = m_firstChild[m_index];
+            for (int n = 0; n < i; ++n)
+                child = m_nextSibling[child];
+            return getNodeView(child);
+        }
+
+        public int getChildIndex(ConstNode node)
+        {
+            int n = 0;
+            for (int child = m_firstChild[m_index]; child != NONE;
+                 child = m_nextSibling[child], ++n)
+                if (m_view[child] == node)
+                    return n;
+            return -1;
+        }
+
+        public ConstGameInfo getGameInfoConst()
+        {
+            Node extra = getExtra();
+            if (extra == null)
+                return null;
+            return extra.getGameInfoConst();
+        }
+
+        public String getLabel(GoPoint point)
+        {
+            Node extra = getExtra();
+            if (extra == null)
+                return null;
+            return extra.getLabel(point);
+        }
+
+        public Map<GoPoint,String> getLabelsUnmodifiable()
+        {
+            Node extra = getExtra();
+            if (extra == null)
+                return null;
+            return extra.getLabelsUnmodifiable();
+        }
+
+        public ConstPointList getMarkedConst(MarkType type)
+        {
+            Node extra = getExtra();
+            if (extra == null)
+                return null;
+            return extra.getMarkedConst(type);
+        }
+
+        public Move getMove()
+        {
+            return CompactGameTree.this.getMove(m_index);
+        }
+
+        public int getMovesLeft(GoColor c)
+        {
+            assert c.isBlackWhite();
+            Node extra = getExtra();
+            if (extra == null)
+                return -1;
+            return extra.getMovesLeft(c);
+        }
+
+        public int getNumberChildren()
+        {
+            int n = 0;
+            for (int child = m_firstChild[m_index]; child != NONE;
+                 child = m_nextSibling[child])
+                ++n;
+            return n;
+        }
+
+        public GoColor getPlayer()
+        {
+            Node extra = getExtra();
+            if (extra == null)
+                return null;
+            return extra.getPlayer();
+        }
+
+        public ConstPointList getSetup(GoColor c)
+        {
+            Node extra = getExtra();
+            if (extra == null)
+                return PointList.getEmptyList();
+            return extra.getSetup(c);
+        }
+
+        public ConstSgfProperties getSgfPropertiesConst()
+        {
+            Node extra = getExtra();
+            if (extra == null)
+                return null;
+            return extra.getSgfPropertiesConst();
+        }
+
+        public double getTimeLeft(GoColor c)
+        {
+            assert c.isBlackWhite();
+            Node extra = getExtra();
+            if (extra == null)
+                return Double.NaN;
+            return extra.getTimeLeft(c);
+        }
+
+        public GoColor getToMove()
+        {
+            GoColor player = getPlayer();
+            if (player != null)
+                return player;
+            Move move = getMove();
+            if (move != null)
+                return move.getColor().otherColor();
+            return null;
+        }
+
+        public float getValue()
+        {
+            Node extra = getExtra();
+            if (extra == null)
+                return Float.NaN;
+            return extra.getValue();
+        }
+
+        public boolean hasChildren()
+        {
+            return (m_firstChild[m_index] != NONE);
+        }
+
+        public boolean hasComment()
+        {
+            return (m_comment[m_index] != NONE);
+        }
+
+        public boolean hasFather()
+        {
+            return (m_father[m_index] != NONE);
+        }
+
+        public boolean hasSetup()
+        {
+            Node extra = getExtra();
+            return (extra != null && extra.hasSetup());
+        }
+
+        public boolean isEmpty()
+        {
+            return (m_move[m_index] == Move.NO_MOVE_CODE
+                    && m_comment[m_index] == NONE
+                    && m_extra[m_index] == NONE);
+        }
+
+        public ConstNode variationAfter(ConstNode child)
+        {
+            int index = getIndex(child);
+            assert m_father[index] == m_index;
+            int next = m_nextSibling[index];
+            if (next == NONE)
+                return null;
+            return getNodeView(next);
+        }
+
+        public ConstNode variationBefore(ConstNode child)
+        {
+            int index = getIndex(child);
+            assert m_father[index] == m_index;
+            int first = m_firstChild[m_index];
+            if (first == index)
+                return null;
+            int previous = first;
+            while (m_nextSibling[previous] != index)
+                previous = m_nextSibling[previous];
+            return getNodeView(previous);
+        }
+
+        private final int m_index;
+
+        private Node getExtra()
+        {
+            int extra = m_extra[m_index];
+            if (extra == NONE)
+                return null;
+            return m_extraInfo.get(extra);
+        }
+
+        private CompactGameTree getTree()
+        {
+            return CompactGameTree.this;
+        }
+    }
+
+    private static final int NONE = -1;
+
+    private final int m_boardSize;
+
+    private final int m_numberNodes;
+
+    /** Move code of node or Move.NO_MOVE_CODE.
+        @see Move#getCode */
+    private final short[] m_move;
+
+    private final int[] m_father;
+
+    private final int[] m_firstChild;
+
+    private final int[] m_nextSibling;
+
+    /** Offset of comment in m_pool or NONE.
+        A comment is stored as its length in bytes (variable length encoding,
+        7 bits per byte) followed by the UTF-8 bytes. */
+    private final int[] m_comment;
+
+    /** Index into m_extraInfo or NONE. */
+    private final int[] m_extra;
+
+    private final byte[] m_pool;
+
+    /** Nodes containing the information other than move and comment. */
+    private final ArrayList<Node> m_extraInfo;
+
+    /** Node views, created on demand. */
+    private final CompactNode[] m_view;
+
+    /** Add the nodes of a tree to a builder.
+        The information other than move and comment is copied, because the
+        nodes can be modified later. */
+    private static Builder copy(ConstGameTree tree)
+    {
+        Builder builder = new Builder();
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        ArrayList<Integer> fatherStack = new ArrayList<Integer>();
+        stack.add(tree.getRootConst());
+        fatherStack.add(NONE);
+        while (! stack.isEmpty())
+        {
+            ConstNode node = stack.remove(stack.size() - 1);
+            int father = fatherStack.remove(fatherStack.size() - 1);
+            Node extra = null;
+            if (hasExtraInfo(node))
+            {
+                extra = new Node();
+                copyExtraInfo(node, extra);
+            }
+            int index =
+                builder.add(father, node.getMove(), node.getComment(), extra);
+            for (int i = node.getNumberChildren() - 1; i >= 0; --i)
+            {
+                stack.add(node.getChildConst(i));
+                fatherStack.add(index);
+            }
+        }
+        return builder;
+    }
+
+    private static void copyExtraInfo(ConstNode from, Node to)
+    {
+        GoColor player = from.getPlayer();
+        if (player != null)
+            to.setPlayer(player);
+        for (GoColor c : BLACK_WHITE_EMPTY)
+        {
+            ConstPointList setup = from.getSetup(c);
+            if (setup.size() > 0)
+                to.addStones(c, setup);
+        }
+        for (MarkType type : MarkType.values())
+        {
+            ConstPointList marked = from.getMarkedConst(type);
+            if (marked == null)
+                continue;
+            // Don't use an iterator for efficiency
+            for (int i = 0; i < marked.size(); ++i)
+                to.addMarked(marked.get(i), type);
+        }
+        Map<GoPoint,String> labels = from.getLabelsUnmodifiable();
+        if (labels != null)
+            for (Map.Entry<GoPoint,String> entry : labels.entrySet())
+                to.setLabel(entry.getKey(), entry.getValue());
+        ConstGameInfo info = from.getGameInfoConst();
+        if (info != null)
+            to.createGameInfo().copyFrom(info);
+        ConstSgfProperties props = from.getSgfPropertiesConst();
+        if (props != null)
+            for (String key : props.getKeys())
+            {
+                ArrayList<String> values = new ArrayList<String>();
+                for (int i = 0; i < props.getNumberValues(key); ++i)
+                    values.add(props.getValue(key, i));
+                to.addSgfProperty(key, values);
+            }
+        for (GoColor c : BLACK_WHITE)
+        {
+            if (from.getMovesLeft(c) != -1)
+                to.setMovesLeft(c, from.getMovesLeft(c));
+            if (! Double.isNaN(from.getTimeLeft(c)))
+                to.setTimeLeft(c, from.getTimeLeft(c));
+        }
+        if (! Float.isNaN(from.getValue()))
+            to.setValue(from.getValue());
+    }
+
+    private String getComment(int index)
+    {
+        int offset = m_comment[index];
+        if (offset == NONE)
+            return null;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = m_pool[offset++];
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        try
+        {
+            return new String(m_pool, offset, length, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return new String(m_pool, offset, length);
+        }
+    }
+
+    private Move getMove(int index)
+    {
+        short code = m_move[index];
+        if (code == Move.NO_MOVE_CODE)
+            return null;
+        return Move.fromCode(code);
+    }
+
+    private static short getMoveCode(Move move)
+    {
+        return (move == null ? Move.NO_MOVE_CODE : move.getCode());
+    }
+
+    private CompactNode getNodeView(int index)
+    {
+        CompactNode node = m_view[index];
+        if (node == null)
+        {
+            node = new CompactNode(index);
+            m_view[index] = node;
+        }
+        return node;
+    }
+
+    private static short[] grow(short[] array, int size)
+    {
+        short[] result = new short[size];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, size));
+        return result;
+    }
+
+    private static int[] grow(int[] array, int size)
+    {
+        int[] result = new int[size];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, size));
+        return result;
+    }
+
+    private static boolean hasExtraInfo(ConstNode node)
+    {
+        if (node.getPlayer() != null || node.hasSetup()
+            || node.getGameInfoConst() != null
+            || ! Float.isNaN(node.getValue()))
+            return true;
+        Map<GoPoint,String> labels = node.getLabelsUnmodifiable();
+        if (labels != null && labels.size() > 0)
+            return true;
+        ConstSgfProperties props = node.getSgfPropertiesConst();
+        if (props != null && ! props.isEmpty())
+            return true;
+        for (MarkType type : MarkType.values())
+        {
+            ConstPointList marked = node.getMarkedConst(type);
+            if (marked != null && marked.size() > 0)
+                return true;
+        }
+        for (GoColor c : BLACK_WHITE)
+            if (node.getMovesLeft(c) != -1
+                || ! Double.isNaN(node.getTimeLeft(c)))
+                return true;
+        return false;
+    }
+}
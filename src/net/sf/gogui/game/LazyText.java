@@ -0,0 +1,17 @@
+// LazyText.java
+
+package net.sf.gogui.game;
+
+/** Text that is decoded only when it is accessed.
+    Allows game readers to store comments and unknown SGF properties in
+    their encoded form, so that the cost of decoding them into strings is
+    only paid for values that are actually used.
+    Implementations must be immutable, because instances can be shared
+    between copies of nodes or properties. */
+public interface LazyText
+{
+    /** Decode the text.
+        Can be called multiple times; the result is not cached.
+        @return The decoded text. */
+    String decode();
+}
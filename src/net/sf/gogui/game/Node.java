@@ -184,6 +184,15 @@ public final class Node
         createSgfProperties().add(label, value);
     }
 
+    /** Add other unspecified SGF property with values decoded on demand.
+        @param label The name of the property
+        @param values The values of the property
+        @see #addSgfProperty(String,ArrayList) */
+    public void addSgfProperty(String label, LazyText[] values)
+    {
+        createSgfProperties().add(label, values);
+    }
+
     /** Add or remove a setup stone.
         It is not checked, if this stone is already in the list of added
         or removed stones.
@@ -267,13 +276,16 @@ public final class Node
     {
         if (m_comment == null)
             return null;
+        if (m_comment instanceof LazyText)
+            return ((LazyText)m_comment).decode();
+        byte[] comment = (byte[])m_comment;
         try
         {
-            return new String(m_comment, "UTF-8");
+            return new String(comment, "UTF-8");
         }
         catch (UnsupportedEncodingException e)
         {
-            return new String(m_comment);
+            return new String(comment);
         }
     }
 
@@ -592,6 +604,17 @@ public final class Node
         }
     }
 
+    /** Store comment that is decoded on demand.
+        Unlike #setComment(String), the comment is not checked for being
+        empty, because that would require decoding it. The caller is
+        responsible for not setting comments that decode to an empty string
+        or to whitespaces only.
+        @param comment The comment or null for deleting the comment. */
+    public void setComment(LazyText comment)
+    {
+        m_comment = comment;
+    }
+
     /** Set father of this node.
         @param father The new father. */
     public void setFather(Node father)
@@ -703,10 +726,11 @@ public final class Node
         return getChildConst(i - 1);
     }
 
-    /** Comment stored as bytes.
+    /** Comment stored as bytes or LazyText.
         Store comments in UTF-8, because that saves up to a factor of 2 in
-        size compared to a string. */
-    private byte[] m_comment;
+        size compared to a string. Comments set by readers can be a
+        LazyText in the encoding of the file. */
+    private Object m_comment;
 
     private ExtraInfo m_extraInfo;
 
@@ -15,6 +15,7 @@ import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.Move;
+import net.sf.gogui.go.MoveCodeList;
 import net.sf.gogui.go.PointList;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.util.StringUtil;
@@ -100,6 +101,33 @@ public final class NodeUtil
         return node;
     }
 
+    /** Find the node reached by a sequence of moves.
+        Follows the children containing the moves. Children without a move
+        (e.g. nodes containing only comments) are skipped if they have
+        exactly one child.
+        @param node The start node.
+        @param moves The move codes.
+        @param numberMoves The number of move codes to use.
+        @return The node containing the last move, the start node if
+        numberMoves is zero, or <code>null</code>, if the sequence does not
+        exist in the tree. */
+    public static ConstNode findByMoveSequence(ConstNode node, short[] moves,
+                                               int numberMoves)
+    {
+        for (int i = 0; i < numberMoves && node != null; ++i)
+        {
+            ConstNode child = getChildWithMove(node, moves[i]);
+            while (child == null && node.getNumberChildren() == 1
+                   && node.getChildConst().getMove() == null)
+            {
+                node = node.getChildConst();
+                child = getChildWithMove(node, moves[i]);
+            }
+            node = child;
+        }
+        return node;
+    }
+
     /** Get first node of a given variation.
         Searches the node that can be reached from the root node by taking the
         children defined by the integers in the variation string for nodes
@@ -237,6 +265,20 @@ public final class NodeUtil
         return null;
     }
 
+    /** Get child node containing a move given as move code.
+        @return null if no such child exists. */
+    public static ConstNode getChildWithMove(ConstNode node, short code)
+    {
+        for (int i = 0; i < node.getNumberChildren(); ++i)
+        {
+            ConstNode child = node.getChildConst(i);
+            Move childMove = child.getMove();
+            if (childMove != null && childMove.getCode() == code)
+                return child;
+        }
+        return null;
+    }
+
     /** Get comment, but no more than a maximum number of characters.
         @return Start of comment, with ellipses appended if trunceted;
         null, if node has no comment. */
@@ -370,6 +412,23 @@ public final class NodeUtil
         return nodesLeft;
     }
 
+    /** Get the moves in the path from the root node to a given node.
+        @param node The node
+        @param result The move codes in the order they were played. Passed
+        as an argument to allow reusing the list. It will be cleared before
+        it is used. */
+    public static void getMoveSequence(ConstNode node, MoveCodeList result)
+    {
+        result.clear();
+        for ( ; node != null; node = node.getFatherConst())
+        {
+            Move move = node.getMove();
+            if (move != null)
+                result.add(move.getCode());
+        }
+        result.reverse();
+    }
+
     /** Get nodes in path from a given node to the root node.
         @param node The node
         @param result The resulting path. Passed as an argument to allow
@@ -9,6 +9,8 @@ import java.util.TreeMap;
 /** Unknown SGF properties.
     Non-type-checked SGF properties for preserving unknown properties.
     Should only be used for unknown properties.
+    Values can be stored as LazyText, which is decoded when the value is
+    requested with getValue().
     @todo Iteration is inefficient, reimplement (but without sacrificing
     const-correctness) */
 public final class SgfProperties
@@ -16,7 +18,7 @@ public final class SgfProperties
 {
     public SgfProperties()
     {
-        m_properties = new TreeMap<String,ArrayList<String>>();
+        m_properties = new TreeMap<String,ArrayList<Object>>();
     }
 
     public SgfProperties(ConstSgfProperties props)
@@ -24,23 +26,36 @@ public final class SgfProperties
         this();
         if (props == null)
             return;
-        for (Map.Entry<String,ArrayList<String>> entry :
+        // Values are String or immutable LazyText and can be shared
+        for (Map.Entry<String,ArrayList<Object>> entry :
                  ((SgfProperties)props).m_properties.entrySet())
-            add(entry.getKey(), entry.getValue());
+            m_properties.put(entry.getKey(),
+                             new ArrayList<Object>(entry.getValue()));
     }
 
     public void add(String key, ArrayList<String> values)
     {
-        m_properties.put(key, new ArrayList<String>(values));
+        m_properties.put(key, new ArrayList<Object>(values));
     }
 
     public void add(String key, String value)
     {
-        ArrayList<String> values = new ArrayList<String>();
+        ArrayList<Object> values = new ArrayList<Object>(1);
         values.add(value);
         m_properties.put(key, values);
     }
 
+    /** Add values that are decoded on demand.
+        @param key The property key.
+        @param values The values. */
+    public void add(String key, LazyText[] values)
+    {
+        ArrayList<Object> list = new ArrayList<Object>(values.length);
+        for (LazyText value : values)
+            list.add(value);
+        m_properties.put(key, list);
+    }
+
     /** Get a list of all keys.
         This list is a copy of the keys at the time of the function call. */
     public ArrayList<String> getKeys()
@@ -52,7 +67,7 @@ public final class SgfProperties
         @return Number of values or -1, if key does not exist. */
     public int getNumberValues(String key)
     {
-        ArrayList<String> values = m_properties.get(key);
+        ArrayList<Object> values = m_properties.get(key);
         if (values == null)
             return -1;
         return values.size();
@@ -60,7 +75,10 @@ public final class SgfProperties
 
     public String getValue(String key, int index)
     {
-        return m_properties.get(key).get(index);
+        Object value = m_properties.get(key).get(index);
+        if (value instanceof LazyText)
+            return ((LazyText)value).decode();
+        return (String)value;
     }
 
     public boolean hasKey(String key)
@@ -78,5 +96,6 @@ public final class SgfProperties
         m_properties.remove(key);
     }
 
-    private Map<String,ArrayList<String>> m_properties;
+    /** Values are String or LazyText. */
+    private Map<String,ArrayList<Object>> m_properties;
 }
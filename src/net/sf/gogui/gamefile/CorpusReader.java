@@ -0,0 +1,235 @@
+// CorpusReader.java
+
+package net.sf.gogui.gamefile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import net.sf.gogui.game.GameTree;
+import net.sf.gogui.util.ErrorMessage;
+
+/** Read a list of game files in parallel.
+    The files are read by a pool of threads with GameReader, but the
+    results are returned in the order of the list. Only a limited number of
+    files is read ahead of the file returned last, so the memory used does
+    not depend on the number of files. Errors while reading a file do not
+    abort the reading of the other files; they are returned in the result
+    of the file.
+    Usage:
+    <pre>
+    CorpusReader reader = new CorpusReader(files);
+    try
+    {
+        while (reader.hasNext())
+        {
+            CorpusReader.Result result = reader.next();
+            ...
+        }
+    }
+    finally
+    {
+        reader.close();
+    }
+    </pre> */
+public final class CorpusReader
+{
+    /** Result of reading a file. */
+    public static final class Result
+    {
+        /** Get the error that occurred while reading the file.
+            @return The error or null, if the file was read successfully. */
+        public ErrorMessage getError()
+        {
+            return m_error;
+        }
+
+        public File getFile()
+        {
+            return m_file;
+        }
+
+        /** Get the index of the file in the list. */
+        public int getIndex()
+        {
+            return m_index;
+        }
+
+        /** Get the game tree.
+            @return The game tree or null, if an error occurred. */
+        public GameTree getTree()
+        {
+            return m_tree;
+        }
+
+        /** Get the warnings of the reader.
+            @return The warnings or null, if there were no warnings or an
+            error occurred. */
+        public String getWarnings()
+        {
+            return m_warnings;
+        }
+
+        private final int m_index;
+
+        private final File m_file;
+
+        private GameTree m_tree;
+
+        private String m_warnings;
+
+        private ErrorMessage m_error;
+
+        private Result(int index, File file)
+        {
+            m_index = index;
+            m_file = file;
+        }
+    }
+
+    /** Construct reader using all available processors.
+        At most twice the number of threads files are read ahead.
+        @param files The files to read. */
+    public CorpusReader(List<File> files)
+    {
+        this(files, Runtime.getRuntime().availableProcessors(),
+             2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Construct reader.
+        @param files The files to read.
+        @param numberThreads The number of threads.
+        @param maxPending The maximum number of files that are read or
+        kept in memory ahead of the file returned last by next(). */
+    public CorpusReader(List<File> files, int numberThreads, int maxPending)
+    {
+        assert numberThreads > 0;
+        assert maxPending > 0;
+        m_files = new ArrayList<File>(files);
+        m_maxPending = maxPending;
+        m_executor =
+            Executors.newFixedThreadPool(numberThreads, new ThreadFactory() {
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread =
+                            new Thread(runnable, "CorpusReader");
+                        // Don't prevent exit, if close() is not called
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        submitTasks();
+    }
+
+    /** Stop reading files.
+        Files that are currently read are still completed by the threads,
+        but no more results are returned. */
+    public void close()
+    {
+        m_executor.shutdownNow();
+        m_pending.clear();
+        m_nextSubmit = m_files.size();
+    }
+
+    /** Get the files that could not be read.
+        Contains the results with errors returned by next() so far. */
+    public ArrayList<Result> getErrors()
+    {
+        return m_errors;
+    }
+
+    public boolean hasNext()
+    {
+        return ! m_pending.isEmpty();
+    }
+
+    /** Get the result of the next file.
+        Waits until the file is read.
+        @throws ErrorMessage If the current thread was interrupted while
+        waiting. The interrupted status of the thread is set again and the
+        reader is closed. */
+    public Result next() throws ErrorMessage
+    {
+        if (m_pending.isEmpty())
+            throw new IllegalStateException();
+        Result result;
+        try
+        {
+            result = m_pending.getFirst().get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            close();
+            throw new ErrorMessage("Interrupted");
+        }
+        catch (ExecutionException e)
+        {
+            // Unexpected exception in GameReader; errors in files are
+            // returned in the result
+            Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+        m_pending.removeFirst();
+        if (result.m_error != null)
+            m_errors.add(result);
+        submitTasks();
+        if (m_pending.isEmpty())
+            m_executor.shutdown();
+        return result;
+    }
+
+    private int m_nextSubmit;
+
+    private final int m_maxPending;
+
+    private final ArrayList<File> m_files;
+
+    private final ArrayList<Result> m_errors = new ArrayList<Result>();
+
+    private final ExecutorService m_executor;
+
+    /** Results of the submitted files in the order of the list. */
+    private final LinkedList<Future<Result>> m_pending =
+        new LinkedList<Future<Result>>();
+
+    private static Result read(int index, File file)
+    {
+        Result result = new Result(index, file);
+        try
+        {
+            GameReader reader = new GameReader(file);
+            result.m_tree = reader.getTree();
+            result.m_warnings = reader.getWarnings();
+        }
+        catch (ErrorMessage e)
+        {
+            result.m_error = e;
+        }
+        return result;
+    }
+
+    private void submitTasks()
+    {
+        while (m_pending.size() < m_maxPending
+               && m_nextSubmit < m_files.size())
+        {
+            final int index = m_nextSubmit++;
+            final File file = m_files.get(index);
+            m_pending.add(m_executor.submit(new Callable<Result>() {
+                    public Result call()
+                    {
+                        return read(index, file);
+                    }
+                }));
+        }
+    }
+}
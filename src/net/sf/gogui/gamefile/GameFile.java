@@ -10,7 +10,10 @@ public class GameFile
     {
         SGF,
 
-        XML
+        XML,
+
+        /** Binary game archive (see net.sf.gogui.archive). */
+        ARCHIVE
     }
 
     public File m_file;
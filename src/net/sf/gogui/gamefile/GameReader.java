@@ -9,6 +9,9 @@ import java.io.FileReader;
 import java.io.InputStream;
 import java.io.IOException;
 import java.util.Locale;
+import net.sf.gogui.archive.ArchiveReader;
+import net.sf.gogui.game.CompactGameTree;
+import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.GameTree;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.FileUtil;
@@ -16,30 +19,49 @@ import net.sf.gogui.util.ProgressShow;
 import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.xml.XmlReader;
 
-/** Read a game and detect automatically if it is SGF or XML. */
+/** Read a game and detect automatically if it is SGF, XML or a game
+    archive.
+    Only the first game of an archive is read. */
 public class GameReader
 {
     /** Construct reader and read a game.
         @param progressShow Callback to show progress, can be null */
     public GameReader(File file, ProgressShow progressShow) throws ErrorMessage
+    {
+        this(file, progressShow, false);
+    }
+
+    /** Construct reader and read a game for read-only use.
+        @param progressShow Callback to show progress, can be null
+        @param compact Read SGF files into a CompactGameTree, which needs
+        much less memory for very large trees. The tree can only be
+        retrieved with getConstTree() in this case. */
+    public GameReader(File file, ProgressShow progressShow, boolean compact)
+        throws ErrorMessage
     {
         m_gameFile = new GameFile();
         GameFile.Format format = detectFormat(file);
         m_gameFile.m_file = file;
         m_gameFile.m_format = format;
-        InputStream in;
-        try
+        if (format == GameFile.Format.ARCHIVE)
         {
-            in = new FileInputStream(file);
-        }
-        catch (FileNotFoundException e)
-        {
-            throw new ErrorMessage("File \"" + file + "\" not found");
+            readArchive(file);
+            return;
         }
         switch (format)
         {
         case XML:
             {
+                InputStream in;
+                try
+                {
+                    in = new FileInputStream(file);
+                }
+                catch (FileNotFoundException e)
+                {
+                    throw new ErrorMessage("File \"" + file
+                                           + "\" not found");
+                }
                 XmlReader reader = new XmlReader(in, progressShow,
                                                  file.length());
                 m_tree = reader.getTree();
@@ -48,9 +70,13 @@ public class GameReader
             break;
         case SGF:
             {
+                if (! file.exists())
+                    throw new ErrorMessage("File \"" + file + "\" not found");
+                // Memory-map the file instead of copying it into memory
                 SgfReader reader =
-                    new SgfReader(in, file, progressShow, file.length());
+                    new SgfReader(file, progressShow, compact);
                 m_tree = reader.getTree();
+                m_compactTree = reader.getCompactTree();
                 m_warnings = reader.getWarnings();
             }
             break;
@@ -67,6 +93,19 @@ public class GameReader
         return m_gameFile;
     }
 
+    /** Get the game tree for read-only use.
+        @return The compact tree, if an SGF file was read with compact set
+        to true, otherwise the same as getTree(). */
+    public ConstGameTree getConstTree()
+    {
+        if (m_compactTree != null)
+            return m_compactTree;
+        return m_tree;
+    }
+
+    /** Get the game tree.
+        @return The game tree or null, if an SGF file was read with compact
+        set to true. */
     public GameTree getTree()
     {
         return m_tree;
@@ -83,6 +122,8 @@ public class GameReader
 
     private GameTree m_tree;
 
+    private CompactGameTree m_compactTree;
+
     private static GameFile.Format detectFormat(File file)
     {
         String extension = FileUtil.getExtension(file);
@@ -93,7 +134,11 @@ public class GameReader
                 return GameFile.Format.SGF;
             if (extension.equals("xml"))
                 return GameFile.Format.XML;
+            if (extension.equals("gga"))
+                return GameFile.Format.ARCHIVE;
         }
+        if (ArchiveReader.isArchive(file))
+            return GameFile.Format.ARCHIVE;
         FileReader reader = null;
         try
         {
@@ -119,4 +164,17 @@ public class GameReader
         }
         return GameFile.Format.SGF;
     }
+
+    private void readArchive(File file) throws ErrorMessage
+    {
+        ArchiveReader reader = new ArchiveReader(file);
+        int numberGames = reader.getNumberGames();
+        if (numberGames == 0)
+            throw new ErrorMessage("Archive \"" + file
+                                   + "\" contains no games");
+        m_tree = reader.read(0);
+        if (numberGames > 1)
+            m_warnings = "Archive contains " + numberGames
+                + " games, only the first game was read\n";
+    }
 }
@@ -2,9 +2,13 @@
 
 package net.sf.gogui.gamefile;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import net.sf.gogui.archive.ArchiveReader;
+import net.sf.gogui.archive.ArchiveWriter;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.sgf.SgfWriter;
 import net.sf.gogui.util.ErrorMessage;
@@ -12,9 +16,14 @@ import net.sf.gogui.xml.XmlWriter;
 
 public class GameWriter
 {
+    /** Write a game.
+        Refuses to overwrite a game archive containing more than one game,
+        because the file would be replaced by a file containing only this
+        game (GameReader reads only the first game of an archive). */
     public GameWriter(GameFile gameFile, ConstGameTree tree,
                       String application, String version) throws ErrorMessage
     {
+        checkArchive(gameFile.m_file);
         OutputStream out;
         try
         {
@@ -35,6 +44,40 @@ public class GameWriter
                 xmlApplication = xmlApplication + ":" + version;
             new XmlWriter(out, tree, xmlApplication);
             break;
+        case ARCHIVE:
+            try
+            {
+                ArchiveWriter writer = new ArchiveWriter(out, true);
+                writer.add(tree);
+                writer.close();
+            }
+            catch (IOException e)
+            {
+                throw new ErrorMessage(e.getMessage());
+            }
+            break;
+        }
+    }
+
+    private static void checkArchive(File file) throws ErrorMessage
+    {
+        if (! ArchiveReader.isArchive(file))
+            return;
+        int numberGames;
+        try
+        {
+            numberGames = new ArchiveReader(file).getNumberGames();
+        }
+        catch (ErrorMessage e)
+        {
+            // Invalid archive, nothing to lose
+            return;
         }
+        if (numberGames > 1)
+            throw new ErrorMessage("\"" + file + "\" is a game archive"
+                                   + " containing " + numberGames
+                                   + " games and cannot be replaced by a"
+                                   + " single game. Save the game in a"
+                                   + " different file.");
     }
 }
@@ -9,7 +9,12 @@ import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import static net.sf.gogui.go.GoColor.BLACK_WHITE;
 
-/** Go board. */
+/** Go board.
+    The board keeps track of the blocks (connected stones of the same color)
+    incrementally. Each block has a list of its stones and a count of its
+    pseudo-liberties (the number of pairs of a stone and an adjacent empty
+    point; zero if and only if the block has no liberties), such that
+    captures and suicide checks do not need to search the board. */
 public final class Board
     implements ConstBoard
 {
@@ -69,12 +74,54 @@ public final class Board
         return m_constants.getAdjacent(point);
     }
 
+    /** Get all stones in atari.
+        Computes the liberties of all blocks in one pass over the board.
+        @param atari The set to add the stones of all blocks with exactly
+        one liberty to. The set is not cleared before. */
+    public void getAtari(PointSet atari)
+    {
+        getLiberties(m_liberties);
+        ConstPointList points = m_constants.getPoints();
+        int nuPoints = points.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuPoints; ++i)
+        {
+            int index = points.get(i).getIndex();
+            if (m_liberties[index] == 1)
+                atari.add(index);
+        }
+    }
+
+    /** Get the blocks of all points.
+        @param block Array indexed by GoPoint.getIndex() of length
+        GoPoint.NUMBER_INDEXES. Receives for each stone on the board the
+        index of a stone that identifies its block (all stones of a block
+        get the same value), and -1 for empty points. Entries for points
+        not on the board are not changed. */
+    public void getBlocks(int[] block)
+    {
+        ConstPointList points = m_constants.getPoints();
+        int nuPoints = points.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuPoints; ++i)
+        {
+            int index = points.get(i).getIndex();
+            block[index] = m_block[index];
+        }
+    }
+
     /** Get number of captured stones.
         @return The total number of stones of the given color captured by
         opponent moves or by suicide. */
     public int getCaptured(GoColor c)
     {
-        return m_captured.get(c);
+        if (c == BLACK)
+            return m_capturedBlack;
+        else
+        {
+            assert c == WHITE;
+            return m_capturedWhite;
+        }
     }
 
     /** Get state of a point on the board.
@@ -95,9 +142,43 @@ public final class Board
         return BoardConstants.get(size).getHandicapStones(n);
     }
 
+    /** Get a hash value for the current position.
+        The hash value is updated incrementally on each change of the
+        board and is equal to <code>Zobrist.compute(this)</code>.
+        @return Zobrist hash of the stones, the board size, the color to
+        move and the ko point.
+        @see Zobrist */
+    public long getHash()
+    {
+        return (m_hash ^ Zobrist.getSizeKey(m_size)
+                ^ Zobrist.getToMoveKey(m_toMove)
+                ^ Zobrist.getKoKey(m_koPoint));
+    }
+
+    /** Get an immutable snapshot of the current position.
+        Snapshots share unchanged data with the previous snapshot of this
+        board, so taking a snapshot after each move needs only time and
+        memory proportional to the rows changed by the move.
+        @return The snapshot. */
+    public BoardSnapshot getSnapshot()
+    {
+        boolean shareMoves = (m_snapshot != null
+                              && m_snapshotMinNumberMoves
+                                 >= m_snapshot.getNumberMoves());
+        m_snapshot = new BoardSnapshot(this, m_snapshot, m_snapshotChangedRows,
+                                       shareMoves, ! m_isSnapshotSetupChanged,
+                                       m_koPoint);
+        m_snapshotChangedRows = 0;
+        m_snapshotMinNumberMoves = m_numberMoves;
+        m_isSnapshotSetupChanged = false;
+        return m_snapshot;
+    }
+
     /** Opponent stones captured in last move.
         Does not include player stones killed by suicide.
         Requires that there is a last move (or setup stone).
+        The returned list is reused by the board and only valid until the
+        next move is played or undone.
         @return List of opponent stones (go.Point) captured in last move;
         empty if none were killed or there is no last move.
         @see #getSuicide() */
@@ -118,12 +199,78 @@ public final class Board
         return m_stack.get(n - 1).m_move;
     }
 
+    /** Get the legal moves of a color at all points.
+        A move is legal, if the point is empty, it is not a suicide, and
+        it is not the ko point if the color is the color to move.
+        Computing the legality of all points needs one pass over the board.
+        @param c The color.
+        @param legal Array indexed by GoPoint.getIndex() of length
+        GoPoint.NUMBER_INDEXES. Entries for points not on the board are not
+        changed. */
+    public void getLegalMoves(GoColor c, boolean[] legal)
+    {
+        assert c.isBlackWhite();
+        ConstPointList points = m_constants.getPoints();
+        int nuPoints = points.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuPoints; ++i)
+        {
+            GoPoint p = points.get(i);
+            legal[p.getIndex()] =
+                (m_color[p.getIndex()] == EMPTY
+                 && ! (p == m_koPoint && c == m_toMove)
+                 && ! isSuicide(c, p));
+        }
+    }
+
+    /** Get the number of liberties of the blocks of all stones.
+        Computes the liberties of all blocks in one pass over the empty
+        points of the board.
+        @param liberties Array indexed by GoPoint.getIndex() of length
+        GoPoint.NUMBER_INDEXES. Receives for each stone the number of
+        liberties of its block, and 0 for empty points. Entries for points
+        not on the board are not changed. */
+    public void getLiberties(int[] liberties)
+    {
+        ConstPointList points = m_constants.getPoints();
+        int nuPoints = points.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuPoints; ++i)
+            liberties[points.get(i).getIndex()] = 0;
+        for (int i = 0; i < nuPoints; ++i)
+        {
+            int index = points.get(i).getIndex();
+            if (m_block[index] != NO_BLOCK)
+                continue;
+            ConstPointList adjacent = m_constants.getAdjacent(index);
+            int nuAdjacent = adjacent.size();
+            for (int j = 0; j < nuAdjacent; ++j)
+            {
+                int block = m_block[adjacent.get(j).getIndex()];
+                if (block == NO_BLOCK)
+                    continue;
+                boolean isCounted = false;
+                for (int k = 0; k < j && ! isCounted; ++k)
+                    isCounted = (m_block[adjacent.get(k).getIndex()] == block);
+                if (! isCounted)
+                    ++liberties[block];
+            }
+        }
+        for (int i = 0; i < nuPoints; ++i)
+        {
+            int index = points.get(i).getIndex();
+            int block = m_block[index];
+            if (block != NO_BLOCK)
+                liberties[index] = liberties[block];
+        }
+    }
+
     /** Get the number of moves played so far.
         @return The number of moves.
         @see #getMove */
     public int getNumberMoves()
     {
-        return m_stack.size();
+        return m_numberMoves;
     }
 
     /** Get a move from the sequence of moves played so far.
@@ -161,17 +308,38 @@ public final class Board
         return m_size;
     }
 
-    /** Get stones of a block. */
+    /** Get stones of a block.
+        If the color is EMPTY, the connected region of empty points
+        containing the point is returned.
+        @param p A point of the block.
+        @param color The color of the block; nothing is added to the list
+        if the point has a different color.
+        @param stones The list to add the stones to. */
     public void getStones(GoPoint p, GoColor color, PointList stones)
     {
-        assert m_mark.isCleared();
-        findStones(p, color, stones);
-        m_mark.clear(stones);
-        //assert m_mark.isCleared();
+        if (color == EMPTY)
+        {
+            assert m_mark.isCleared();
+            findStones(p, color, stones);
+            m_mark.clear(stones);
+            return;
+        }
+        if (getColor(p) != color)
+            return;
+        int index = p.getIndex();
+        int stone = index;
+        do
+        {
+            stones.add(GoPoint.fromIndex(stone));
+            stone = m_nextStone[stone];
+        }
+        while (stone != index);
     }
 
     /** Player stones killed by suicide in last move.
         Requires that there is a last move (or setup stone).
+        The returned list is reused by the board and only valid until the
+        next move is played or undone.
         @return List of stones (go.Point) killed by suicide in last move,
         including the stone played; empty if no stones were killed by suicide
         or if there is no last move.
@@ -198,6 +366,7 @@ public final class Board
     public void init(int size)
     {
         m_size = size;
+        m_snapshot = null;
         m_mark = new Marker(m_size);
         m_constants = BoardConstants.get(size);
         clear();
@@ -212,10 +381,7 @@ public final class Board
     {
         if (getColor(p) != EMPTY)
             return false;
-        play(c, p);
-        boolean result = (getKilled().size() > 0 || getSuicide().size() > 0);
-        undo();
-        return result;
+        return (isCapture(c, p) || isSuicide(c, p));
     }
 
     /** Check if a point is a handicap point.
@@ -240,7 +406,7 @@ public final class Board
     /** Check if any moves were played or setup stones placed on the board. */
     public boolean isModified()
     {
-        return (! m_stack.isEmpty()
+        return (m_numberMoves > 0
                 || m_setup.get(BLACK).size() > 0
                 || m_setup.get(WHITE).size() > 0
                 || m_toMove != BLACK);
@@ -262,12 +428,23 @@ public final class Board
         would be a suicide move. */
     public boolean isSuicide(GoColor c, GoPoint p)
     {
+        assert c.isBlackWhite();
         if (getColor(p) != EMPTY)
             return false;
-        play(c, p);
-        boolean result = (getSuicide().size() > 0);
-        undo();
-        return result;
+        ConstPointList adjacent = getAdjacent(p);
+        int nuAdjacent = adjacent.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            GoPoint adj = adjacent.get(i);
+            GoColor adjColor = getColor(adj);
+            if (adjColor == EMPTY)
+                return false;
+            boolean hasOtherLiberty = hasOtherLiberty(adj, p);
+            if (adjColor == c ? hasOtherLiberty : ! hasOtherLiberty)
+                return false;
+        }
+        return true;
     }
 
     public Iterator<GoPoint> iterator()
@@ -279,18 +456,27 @@ public final class Board
         Takes back the effects of any moves or setup stones on the board. */
     public void clear()
     {
+        // Only the points of the current board size are reset, points
+        // outside the board can still contain stones and blocks of a
+        // previous board size
         for (GoPoint p : this)
+        {
             setColor(p, EMPTY);
-        m_stack.clear();
+            m_block[p.getIndex()] = NO_BLOCK;
+        }
+        // The keys of these stones are still contained in the hash
+        m_hash = 0;
+        m_numberMoves = 0;
         for (GoColor c : BLACK_WHITE)
-        {
             m_setup.get(c).clear();
-            m_captured.set(c, 0);
-        }
+        m_capturedBlack = 0;
+        m_capturedWhite = 0;
         m_toMove = BLACK;
         m_koPoint = null;
         m_isSetupHandicap = false;
         m_setupPlayer = null;
+        m_snapshotMinNumberMoves = 0;
+        m_isSnapshotSetupChanged = true;
     }
 
     /** Play a move.
@@ -309,12 +495,22 @@ public final class Board
         A move will place a stone of the given color, capture all dead
         blocks adjacent to the stone, capture the block the stone is part of
         if it was a suicide move and switches the color to move.
+        The entries of the move stack are reused after an undo, such that
+        playing and undoing moves does not allocate memory once the stack
+        has reached its maximum size.
         @param move The move (location and player) */
     public void play(Move move)
     {
-        StackEntry entry = new StackEntry(move);
-        entry.execute(this);
-        m_stack.add(entry);
+        StackEntry entry;
+        if (m_numberMoves < m_stack.size())
+            entry = m_stack.get(m_numberMoves);
+        else
+        {
+            entry = new StackEntry();
+            m_stack.add(entry);
+        }
+        entry.execute(this, move);
+        ++m_numberMoves;
     }
 
     /** Change the color to move.
@@ -349,6 +545,8 @@ public final class Board
                 m_setup.set(c, new PointList(stones));
             }
         }
+        // Setup stones can form blocks without liberties
+        updateBlocks(m_constants.getPoints());
     }
 
     /** Setup initial handicap stones.
@@ -370,7 +568,9 @@ public final class Board
         int index = getNumberMoves() - 1;
         assert index >= 0;
         m_stack.get(index).undo(this);
-        m_stack.remove(index);
+        m_numberMoves = index;
+        if (index < m_snapshotMinNumberMoves)
+            m_snapshotMinNumberMoves = index;
     }
 
     /** Undo a number of moves.
@@ -387,7 +587,7 @@ public final class Board
 
     private static class StackEntry
     {
-        public final Move m_move;
+        public Move m_move;
 
         public GoPoint m_oldKoPoint;
 
@@ -395,47 +595,43 @@ public final class Board
 
         public GoColor m_oldToMove;
 
-        public PointList m_killed;
+        public final IntPointList m_killed = new IntPointList();
 
-        public PointList m_suicide;
+        public final IntPointList m_suicide = new IntPointList();
 
-        public StackEntry(Move move)
+        public void execute(Board board, Move move)
         {
             m_move = move;
-        }
-
-        public void execute(Board board)
-        {
             GoPoint p = m_move.getPoint();
             GoColor c = m_move.getColor();
             GoColor otherColor = c.otherColor();
-            m_killed = new PointList();
-            m_suicide = new PointList();
+            m_killed.clear();
+            m_suicide.clear();
             m_oldKoPoint = board.m_koPoint;
             board.m_koPoint = null;
             if (p != null)
             {
                 m_oldColor = board.getColor(p);
-                board.setColor(p, c);
                 assert c != EMPTY;
-                for (GoPoint adj : board.getAdjacent(p))
+                board.addStone(p, c);
+                ConstPointList adjacent = board.getAdjacent(p);
+                int nuAdjacent = adjacent.size();
+                // Don't use an iterator for efficiency
+                for (int i = 0; i < nuAdjacent; ++i)
                 {
+                    GoPoint adj = adjacent.get(i);
                     int killedSize = m_killed.size();
                     if (board.getColor(adj) == otherColor)
-                        board.checkKill(adj, m_killed);
+                        board.removeIfDead(adj, m_killed);
                     if (m_killed.size() == killedSize + 1)
                         board.m_koPoint = m_killed.get(killedSize);
                 }
-                board.checkKill(p, m_suicide);
+                board.removeIfDead(p, m_suicide);
                 if (board.m_koPoint != null
                     && ! board.isSingleStoneSingleLib(p, c))
                     board.m_koPoint = null;
-                board.m_captured.set(c,
-                                     board.m_captured.get(c)
-                                     + m_suicide.size());
-                board.m_captured.set(otherColor,
-                                     board.m_captured.get(otherColor)
-                                     + m_killed.size());
+                board.addCaptured(c, m_suicide.size());
+                board.addCaptured(otherColor, m_killed.size());
             }
             m_oldToMove = board.m_toMove;
             board.m_toMove = otherColor;
@@ -448,41 +644,71 @@ public final class Board
             {
                 GoColor c = m_move.getColor();
                 GoColor otherColor = c.otherColor();
-                for (GoPoint stone : m_suicide)
-                    board.setColor(stone, c);
+                int nuSuicide = m_suicide.size();
+                int nuKilled = m_killed.size();
+                // Don't use an iterator for efficiency
+                for (int i = 0; i < nuSuicide; ++i)
+                    board.setColor(m_suicide.get(i), c);
                 board.setColor(p, m_oldColor);
-                for (GoPoint stone : m_killed)
-                    board.setColor(stone, otherColor);
-                board.m_captured.set(c,
-                                     board.m_captured.get(c)
-                                     - m_suicide.size());
-                board.m_captured.set(otherColor,
-                                     board.m_captured.get(otherColor)
-                                     - m_killed.size());
+                for (int i = 0; i < nuKilled; ++i)
+                    board.setColor(m_killed.get(i), otherColor);
+                board.updateBlocks(p, m_killed, m_suicide);
+                board.addCaptured(c, -nuSuicide);
+                board.addCaptured(otherColor, -nuKilled);
             }
             board.m_toMove = m_oldToMove;
             board.m_koPoint = m_oldKoPoint;
         }
     }
 
+    /** Value of m_block for points that contain no stone. */
+    private static final int NO_BLOCK = -1;
+
     private Marker m_mark;
 
     private int m_size;
 
-    private final BlackWhiteSet<Integer> m_captured
-        = new BlackWhiteSet<Integer>(0, 0);
+    private int m_capturedBlack;
+
+    private int m_capturedWhite;
+
+    /** Number of moves played.
+        Entries in m_stack above this number are unused and kept for
+        reuse. */
+    private int m_numberMoves;
 
     private final ArrayList<StackEntry> m_stack
         = new ArrayList<StackEntry>(361);
 
     /** Temporary variable reused for efficiency. */
-    private final PointList m_checkKillStones = new PointList();
+    private final IntPointList m_updateStones = new IntPointList();
+
+    /** Temporary variable reused for efficiency. */
+    private final IntPointList m_updateStack = new IntPointList();
 
     /** Temporary variable reused for efficiency. */
-    private final PointList m_checkKillStack = new PointList();
+    private final int[] m_liberties = new int[GoPoint.NUMBER_INDEXES];
 
     private GoColor[] m_color = new GoColor[GoPoint.NUMBER_INDEXES];
 
+    /** Exclusive-or of the Zobrist keys of all stones on the board. */
+    private long m_hash;
+
+    /** Block of each stone, identified by the index of its anchor stone.
+        NO_BLOCK for empty points. */
+    private final int[] m_block = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Next stone in the circular list of stones of the block. */
+    private final int[] m_nextStone = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Number of stones of a block, indexed by the anchor stone. */
+    private final int[] m_blockSize = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Number of pseudo-liberties of a block, indexed by the anchor stone.
+        A liberty adjacent to several stones of the block is counted
+        multiple times. */
+    private final int[] m_blockLiberties = new int[GoPoint.NUMBER_INDEXES];
+
     private GoColor m_toMove;
 
     private GoColor m_setupPlayer;
@@ -496,14 +722,31 @@ public final class Board
 
     private boolean m_isSetupHandicap;
 
+    /** Last snapshot returned by getSnapshot() or null. */
+    private BoardSnapshot m_snapshot;
+
+    /** Rows changed since the last snapshot.
+        Bit y is set if a color in row y was changed. */
+    private long m_snapshotChangedRows;
+
+    /** Minimum number of moves since the last snapshot.
+        If it is not smaller than the number of moves of the last snapshot,
+        the next snapshot can share the move history. */
+    private int m_snapshotMinNumberMoves;
+
+    private boolean m_isSnapshotSetupChanged;
+
     private boolean isSingleStoneSingleLib(GoPoint point, GoColor color)
     {
         if (getColor(point) != color)
             return false;
         int lib = 0;
-        for (GoPoint adj : getAdjacent(point))
+        ConstPointList adjacent = getAdjacent(point);
+        int nuAdjacent = adjacent.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuAdjacent; ++i)
         {
-            GoColor adjColor = getColor(adj);
+            GoColor adjColor = getColor(adjacent.get(i));
             if (adjColor == EMPTY)
             {
                 ++lib;
@@ -516,51 +759,65 @@ public final class Board
         return true;
     }
 
-    private void checkKill(GoPoint point, PointList killed)
+    private void addCaptured(GoColor c, int n)
     {
-        assert m_mark.isCleared();
-        GoColor color = getColor(point);
-        assert color != EMPTY;
-        m_checkKillStack.clear();
-        m_checkKillStack.add(point);
-        m_mark.set(point);
-        m_checkKillStones.clear();
-        boolean isDead = true;
-        // Recursion is unrolled using a stack for efficiency
-        while (isDead && ! m_checkKillStack.isEmpty())
+        if (c == BLACK)
+            m_capturedBlack += n;
+        else
         {
-            GoPoint p = m_checkKillStack.pop();
-            assert getColor(p) == color;
-            m_checkKillStones.add(p);
-            ConstPointList adjacent = getAdjacent(p);
-            int nuAdjacent = adjacent.size();
-            // Don't use an iterator for efficiency
-            for (int i = 0; i < nuAdjacent; ++i)
-            {
-                GoPoint adj = adjacent.get(i);
-                GoColor c = getColor(adj);
-                if (c == EMPTY)
-                {
-                    isDead = false;
-                    break;
-                }
-                if (m_mark.get(adj) || ! c.equals(color))
-                    continue;
-                m_checkKillStack.add(adj);
-                m_mark.set(adj);
-            }
+            assert c == WHITE;
+            m_capturedWhite += n;
         }
-        if (isDead)
+    }
+
+    /** Place a stone and update the blocks.
+        Does not remove any blocks without liberties. */
+    private void addStone(GoPoint p, GoColor c)
+    {
+        if (getColor(p) != EMPTY)
         {
-            killed.addAll(m_checkKillStones);
-            int nuKillStones = m_checkKillStones.size();
-            // Don't use an iterator for efficiency
-            for (int i = 0; i < nuKillStones; ++i)
-                setColor(m_checkKillStones.get(i), EMPTY);
+            // Play on occupied point; only happens for illegal moves
+            setColor(p, c);
+            updateBlocks(m_constants.getPoints());
+            return;
+        }
+        int index = p.getIndex();
+        setColor(p, c);
+        m_block[index] = index;
+        m_nextStone[index] = index;
+        m_blockSize[index] = 1;
+        m_blockLiberties[index] = 0;
+        ConstPointList adjacent = getAdjacent(p);
+        int nuAdjacent = adjacent.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            int adj = adjacent.get(i).getIndex();
+            int block = m_block[adj];
+            if (block == NO_BLOCK)
+                ++m_blockLiberties[index];
+            else
+                --m_blockLiberties[block];
         }
-        m_mark.clear(m_checkKillStack);
-        m_mark.clear(m_checkKillStones);
-        //assert m_mark.isCleared();
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            GoPoint adj = adjacent.get(i);
+            if (getColor(adj) == c)
+                mergeBlocks(m_block[index], m_block[adj.getIndex()]);
+        }
+    }
+
+    /** Count the stones of the block of a stone adjacent to a point. */
+    private int countAdjacentStones(int block, GoPoint p)
+    {
+        int n = 0;
+        ConstPointList adjacent = getAdjacent(p);
+        int nuAdjacent = adjacent.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuAdjacent; ++i)
+            if (m_block[adjacent.get(i).getIndex()] == block)
+                ++n;
+        return n;
     }
 
     private void findStones(GoPoint p, GoColor color, PointList stones)
@@ -575,9 +832,183 @@ public final class Board
             findStones(adj, color, stones);
     }
 
+    /** Check if the block of a stone has a liberty other than a given
+        point. */
+    private boolean hasOtherLiberty(GoPoint stone, GoPoint liberty)
+    {
+        int block = m_block[stone.getIndex()];
+        assert block != NO_BLOCK;
+        return (m_blockLiberties[block] > countAdjacentStones(block, liberty));
+    }
+
+    /** Check if a move would capture opponent stones. */
+    private boolean isCapture(GoColor c, GoPoint p)
+    {
+        GoColor otherColor = c.otherColor();
+        ConstPointList adjacent = getAdjacent(p);
+        int nuAdjacent = adjacent.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            GoPoint adj = adjacent.get(i);
+            if (getColor(adj) == otherColor && ! hasOtherLiberty(adj, p))
+                return true;
+        }
+        return false;
+    }
+
+    /** Merge two blocks.
+        The stones of the smaller block are relabeled. */
+    private void mergeBlocks(int block1, int block2)
+    {
+        if (block1 == block2)
+            return;
+        if (m_blockSize[block1] < m_blockSize[block2])
+        {
+            int tmp = block1;
+            block1 = block2;
+            block2 = tmp;
+        }
+        int stone = block2;
+        do
+        {
+            m_block[stone] = block1;
+            stone = m_nextStone[stone];
+        }
+        while (stone != block2);
+        int next = m_nextStone[block1];
+        m_nextStone[block1] = m_nextStone[block2];
+        m_nextStone[block2] = next;
+        m_blockSize[block1] += m_blockSize[block2];
+        m_blockLiberties[block1] += m_blockLiberties[block2];
+    }
+
+    /** Remove the block of a stone if it has no liberties.
+        @param p The stone.
+        @param killed List to add the removed stones to. */
+    private void removeIfDead(GoPoint p, IntPointList killed)
+    {
+        int block = m_block[p.getIndex()];
+        assert block != NO_BLOCK;
+        if (m_blockLiberties[block] > 0)
+            return;
+        int start = killed.size();
+        int stone = block;
+        do
+        {
+            killed.add(stone);
+            setColor(GoPoint.fromIndex(stone), EMPTY);
+            m_block[stone] = NO_BLOCK;
+            stone = m_nextStone[stone];
+        }
+        while (stone != block);
+        int end = killed.size();
+        // Don't use an iterator for efficiency
+        for (int i = start; i < end; ++i)
+        {
+            ConstPointList adjacent =
+                m_constants.getAdjacent(killed.getIndex(i));
+            int nuAdjacent = adjacent.size();
+            for (int j = 0; j < nuAdjacent; ++j)
+            {
+                int adjBlock = m_block[adjacent.get(j).getIndex()];
+                if (adjBlock != NO_BLOCK)
+                    ++m_blockLiberties[adjBlock];
+            }
+        }
+    }
+
     private void setColor(GoPoint p, GoColor c)
     {
         assert p != null;
-        m_color[p.getIndex()] = c;
+        int index = p.getIndex();
+        GoColor oldColor = m_color[index];
+        if (oldColor != null && oldColor != EMPTY)
+            m_hash ^= Zobrist.getKey(oldColor, p);
+        if (c != EMPTY)
+            m_hash ^= Zobrist.getKey(c, p);
+        m_color[index] = c;
+        m_snapshotChangedRows |= (1L << p.getY());
+    }
+
+    /** Recompute the blocks after undoing a move.
+        @param p The location of the undone move.
+        @param killed The stones captured by the move.
+        @param suicide The stones removed by suicide. */
+    private void updateBlocks(GoPoint p, ConstPointList killed,
+                              ConstPointList suicide)
+    {
+        m_updateStones.clear();
+        m_updateStones.add(p);
+        m_updateStones.addAll(killed);
+        m_updateStones.addAll(suicide);
+        int nuStones = m_updateStones.size();
+        for (int i = 0; i < nuStones; ++i)
+        {
+            ConstPointList adjacent =
+                m_constants.getAdjacent(m_updateStones.getIndex(i));
+            int nuAdjacent = adjacent.size();
+            for (int j = 0; j < nuAdjacent; ++j)
+                m_updateStones.add(adjacent.get(j));
+        }
+        m_block[p.getIndex()] = NO_BLOCK;
+        updateBlocks(m_updateStones);
+    }
+
+    /** Recompute the blocks containing given points.
+        Finds the blocks with a flood fill and recomputes their stone lists
+        and liberties. Used where the blocks cannot be updated
+        incrementally, for example after undoing a move or a setup.
+        @param points The points; empty points are skipped. */
+    private void updateBlocks(ConstPointList points)
+    {
+        assert m_mark.isCleared();
+        int nuPoints = points.size();
+        for (int i = 0; i < nuPoints; ++i)
+        {
+            GoPoint p = points.get(i);
+            GoColor c = getColor(p);
+            if (c == EMPTY)
+            {
+                m_block[p.getIndex()] = NO_BLOCK;
+                continue;
+            }
+            if (m_mark.get(p))
+                continue;
+            int block = p.getIndex();
+            int last = block;
+            int size = 0;
+            int liberties = 0;
+            m_updateStack.clear();
+            m_updateStack.add(block);
+            m_mark.set(p);
+            // Recursion is unrolled using a stack for efficiency
+            while (! m_updateStack.isEmpty())
+            {
+                int index = m_updateStack.pop();
+                m_block[index] = block;
+                m_nextStone[last] = index;
+                last = index;
+                ++size;
+                ConstPointList adjacent = m_constants.getAdjacent(index);
+                int nuAdjacent = adjacent.size();
+                for (int j = 0; j < nuAdjacent; ++j)
+                {
+                    GoPoint adj = adjacent.get(j);
+                    GoColor adjColor = getColor(adj);
+                    if (adjColor == EMPTY)
+                        ++liberties;
+                    else if (adjColor == c && ! m_mark.get(adj))
+                    {
+                        m_updateStack.add(adj.getIndex());
+                        m_mark.set(adj);
+                    }
+                }
+            }
+            m_nextStone[last] = block;
+            m_blockSize[block] = size;
+            m_blockLiberties[block] = liberties;
+        }
+        m_mark.clear();
     }
 }
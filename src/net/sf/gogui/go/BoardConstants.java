@@ -28,6 +28,14 @@ public final class BoardConstants
         return m_adjacent[p.getIndex()];
     }
 
+    /** Get points adjacent to a point given by its index.
+        @param index The point index as returned by GoPoint.getIndex().
+        @return List of points adjacent. */
+    public ConstPointList getAdjacent(int index)
+    {
+        return m_adjacent[index];
+    }
+
     /** Get location of handicap stones.
         The handicap stone locations are defined as in the GTP version 2
         specification (section 4.1.1 Fixed Handicap Placement).
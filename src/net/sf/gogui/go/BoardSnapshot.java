@@ -0,0 +1,476 @@
+// BoardSnapshot.java
+
+package net.sf.gogui.go;
+
+import java.util.Iterator;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+/** Immutable copy of the state of a board.
+    Snapshots are created with Board.getSnapshot() and can be passed to
+    other threads, which can read them without synchronization while the
+    board is modified.
+    Taking a snapshot is cheap, because it shares data with the previous
+    snapshot of the same board: the colors are stored in one array per
+    row and only the rows changed since the previous snapshot are copied;
+    the move history is stored in an array that is only appended to as long
+    as no moves older than the previous snapshot were undone.
+    Unlike Board, the snapshot does not keep track of blocks, so functions
+    that need blocks search the board.
+    @see Board#getSnapshot */
+public final class BoardSnapshot
+    implements ConstBoard
+{
+    /** Create a snapshot of a board.
+        Only to be called by Board.getSnapshot().
+        @param board The board.
+        @param previous The previous snapshot of the board or null.
+        @param changedRows Bit mask of the rows changed since the previous
+        snapshot.
+        @param shareMoves The move history of the board before the number
+        of moves of the previous snapshot was not changed.
+        @param shareSetup The setup of the board was not changed since the
+        previous snapshot.
+        @param koPoint The ko point of the board or null. */
+    BoardSnapshot(ConstBoard board, BoardSnapshot previous, long changedRows,
+                  boolean shareMoves, boolean shareSetup, GoPoint koPoint)
+    {
+        m_size = board.getSize();
+        m_constants = BoardConstants.get(m_size);
+        if (previous != null && previous.m_size != m_size)
+            previous = null;
+        m_rows = new GoColor[m_size][];
+        for (int y = 0; y < m_size; ++y)
+        {
+            if (previous != null && (changedRows & (1L << y)) == 0)
+                m_rows[y] = previous.m_rows[y];
+            else
+            {
+                GoColor[] row = new GoColor[m_size];
+                for (int x = 0; x < m_size; ++x)
+                    row[x] = board.getColor(GoPoint.get(x, y));
+                m_rows[y] = row;
+            }
+        }
+        m_numberMoves = board.getNumberMoves();
+        int start = 0;
+        if (previous != null && shareMoves)
+        {
+            start = previous.m_numberMoves;
+            if (m_numberMoves <= previous.m_moves.length)
+                m_moves = previous.m_moves;
+            else
+            {
+                m_moves = new Move[Math.max(2 * previous.m_moves.length,
+                                            m_numberMoves)];
+                System.arraycopy(previous.m_moves, 0, m_moves, 0, start);
+            }
+        }
+        else
+            m_moves = new Move[Math.max(m_numberMoves, 16)];
+        for (int i = start; i < m_numberMoves; ++i)
+            m_moves[i] = board.getMove(i);
+        if (m_numberMoves > 0)
+        {
+            m_killed = new PointList(board.getKilled());
+            m_suicide = new PointList(board.getSuicide());
+        }
+        else
+        {
+            m_killed = PointList.getEmptyList();
+            m_suicide = PointList.getEmptyList();
+        }
+        if (previous != null && shareSetup)
+        {
+            m_setupBlack = previous.m_setupBlack;
+            m_setupWhite = previous.m_setupWhite;
+        }
+        else
+        {
+            m_setupBlack = new PointList(board.getSetup(BLACK));
+            m_setupWhite = new PointList(board.getSetup(WHITE));
+        }
+        m_setupPlayer = board.getSetupPlayer();
+        m_isSetupHandicap = board.isSetupHandicap();
+        m_toMove = board.getToMove();
+        m_koPoint = koPoint;
+        m_capturedBlack = board.getCaptured(BLACK);
+        m_capturedWhite = board.getCaptured(WHITE);
+        m_hash = board.getHash();
+    }
+
+    public boolean bothPassed()
+    {
+        int n = m_numberMoves;
+        return (n >= 2 && m_moves[n - 1].getPoint() == null
+                && m_moves[n - 2].getPoint() == null);
+    }
+
+    public boolean contains(GoPoint point)
+    {
+        return point.isOnBoard(m_size);
+    }
+
+    public ConstPointList getAdjacent(GoPoint point)
+    {
+        return m_constants.getAdjacent(point);
+    }
+
+    public void getAtari(PointSet atari)
+    {
+        int[] liberties = new int[GoPoint.NUMBER_INDEXES];
+        getBlocksAndLiberties(null, liberties);
+        ConstPointList points = m_constants.getPoints();
+        int nuPoints = points.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuPoints; ++i)
+        {
+            int index = points.get(i).getIndex();
+            if (liberties[index] == 1)
+                atari.add(index);
+        }
+    }
+
+    public void getBlocks(int[] block)
+    {
+        getBlocksAndLiberties(block, null);
+    }
+
+    public int getCaptured(GoColor c)
+    {
+        if (c == BLACK)
+            return m_capturedBlack;
+        else
+        {
+            assert c == WHITE;
+            return m_capturedWhite;
+        }
+    }
+
+    public GoColor getColor(GoPoint p)
+    {
+        return m_rows[p.getY()][p.getX()];
+    }
+
+    public long getHash()
+    {
+        return m_hash;
+    }
+
+    public ConstPointList getKilled()
+    {
+        assert m_numberMoves > 0;
+        return m_killed;
+    }
+
+    public Move getLastMove()
+    {
+        if (m_numberMoves == 0)
+            return null;
+        return m_moves[m_numberMoves - 1];
+    }
+
+    public void getLegalMoves(GoColor c, boolean[] legal)
+    {
+        assert c.isBlackWhite();
+        int[] liberties = new int[GoPoint.NUMBER_INDEXES];
+        getBlocksAndLiberties(null, liberties);
+        ConstPointList points = m_constants.getPoints();
+        int nuPoints = points.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuPoints; ++i)
+        {
+            GoPoint p = points.get(i);
+            boolean isLegal = false;
+            if (getColor(p) == EMPTY && ! (p == m_koPoint && c == m_toMove))
+            {
+                ConstPointList adjacent = getAdjacent(p);
+                int nuAdjacent = adjacent.size();
+                for (int j = 0; j < nuAdjacent && ! isLegal; ++j)
+                {
+                    GoPoint adj = adjacent.get(j);
+                    GoColor adjColor = getColor(adj);
+                    int adjLiberties = liberties[adj.getIndex()];
+                    if (adjColor == EMPTY
+                        || (adjColor == c ? adjLiberties > 1
+                            : adjLiberties <= 1))
+                        isLegal = true;
+                }
+            }
+            legal[p.getIndex()] = isLegal;
+        }
+    }
+
+    public void getLiberties(int[] liberties)
+    {
+        getBlocksAndLiberties(null, liberties);
+    }
+
+    public Move getMove(int i)
+    {
+        if (i >= m_numberMoves)
+            throw new IndexOutOfBoundsException();
+        return m_moves[i];
+    }
+
+    public int getNumberMoves()
+    {
+        return m_numberMoves;
+    }
+
+    public ConstPointList getSetup(GoColor c)
+    {
+        if (c == BLACK)
+            return m_setupBlack;
+        else
+        {
+            assert c == WHITE;
+            return m_setupWhite;
+        }
+    }
+
+    public GoColor getSetupPlayer()
+    {
+        return m_setupPlayer;
+    }
+
+    public int getSize()
+    {
+        return m_size;
+    }
+
+    public void getStones(GoPoint p, GoColor color, PointList stones)
+    {
+        if (getColor(p) != color)
+            return;
+        boolean[] mark = new boolean[GoPoint.NUMBER_INDEXES];
+        IntPointList stack = new IntPointList();
+        stack.add(p);
+        mark[p.getIndex()] = true;
+        while (! stack.isEmpty())
+        {
+            GoPoint stone = GoPoint.fromIndex(stack.pop());
+            stones.add(stone);
+            ConstPointList adjacent = getAdjacent(stone);
+            int nuAdjacent = adjacent.size();
+            // Don't use an iterator for efficiency
+            for (int i = 0; i < nuAdjacent; ++i)
+            {
+                GoPoint adj = adjacent.get(i);
+                if (! mark[adj.getIndex()] && getColor(adj) == color)
+                {
+                    mark[adj.getIndex()] = true;
+                    stack.add(adj);
+                }
+            }
+        }
+    }
+
+    public ConstPointList getSuicide()
+    {
+        assert m_numberMoves > 0;
+        return m_suicide;
+    }
+
+    public GoColor getToMove()
+    {
+        return m_toMove;
+    }
+
+    public boolean isCaptureOrSuicide(GoColor c, GoPoint p)
+    {
+        if (getColor(p) != EMPTY)
+            return false;
+        GoColor otherColor = c.otherColor();
+        for (GoPoint adj : getAdjacent(p))
+            if (getColor(adj) == otherColor && ! hasOtherLiberty(adj, p))
+                return true;
+        return isSuicide(c, p);
+    }
+
+    public boolean isHandicap(GoPoint point)
+    {
+        return m_constants.isHandicap(point);
+    }
+
+    public boolean isKo(GoPoint point)
+    {
+        return point == m_koPoint;
+    }
+
+    public boolean isModified()
+    {
+        return (m_numberMoves > 0 || m_setupBlack.size() > 0
+                || m_setupWhite.size() > 0 || m_toMove != BLACK);
+    }
+
+    public boolean isSetupHandicap()
+    {
+        return m_isSetupHandicap;
+    }
+
+    public boolean isSuicide(GoColor c, GoPoint p)
+    {
+        assert c.isBlackWhite();
+        if (getColor(p) != EMPTY)
+            return false;
+        for (GoPoint adj : getAdjacent(p))
+        {
+            GoColor adjColor = getColor(adj);
+            if (adjColor == EMPTY)
+                return false;
+            boolean hasOtherLiberty = hasOtherLiberty(adj, p);
+            if (adjColor == c ? hasOtherLiberty : ! hasOtherLiberty)
+                return false;
+        }
+        return true;
+    }
+
+    public Iterator<GoPoint> iterator()
+    {
+        final Iterator<GoPoint> iterator = m_constants.getPoints().iterator();
+        return new Iterator<GoPoint>() {
+                public boolean hasNext()
+                {
+                    return iterator.hasNext();
+                }
+
+                public GoPoint next()
+                {
+                    return iterator.next();
+                }
+
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+            };
+    }
+
+    private final boolean m_isSetupHandicap;
+
+    private final int m_size;
+
+    private final int m_numberMoves;
+
+    private final int m_capturedBlack;
+
+    private final int m_capturedWhite;
+
+    private final long m_hash;
+
+    /** Colors indexed by row and column.
+        Rows are shared between snapshots. */
+    private final GoColor[][] m_rows;
+
+    /** Move history.
+        Shared between snapshots, only the first m_numberMoves entries
+        belong to this snapshot. */
+    private final Move[] m_moves;
+
+    private final ConstPointList m_killed;
+
+    private final ConstPointList m_suicide;
+
+    private final ConstPointList m_setupBlack;
+
+    private final ConstPointList m_setupWhite;
+
+    private final GoColor m_setupPlayer;
+
+    private final GoColor m_toMove;
+
+    private final GoPoint m_koPoint;
+
+    private final BoardConstants m_constants;
+
+    /** Compute the blocks and the number of liberties of all stones.
+        @param block Receives the block of each stone (the index of the
+        first stone of the block found) and -1 for empty points; may be
+        null.
+        @param liberties Receives the number of liberties of the block of
+        each stone and 0 for empty points; may be null. */
+    private void getBlocksAndLiberties(int[] block, int[] liberties)
+    {
+        boolean[] mark = new boolean[GoPoint.NUMBER_INDEXES];
+        boolean[] isLiberty = new boolean[GoPoint.NUMBER_INDEXES];
+        IntPointList stones = new IntPointList();
+        IntPointList blockLiberties = new IntPointList();
+        ConstPointList points = m_constants.getPoints();
+        int nuPoints = points.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuPoints; ++i)
+        {
+            GoPoint p = points.get(i);
+            int index = p.getIndex();
+            GoColor c = getColor(p);
+            if (c == EMPTY)
+            {
+                if (block != null)
+                    block[index] = -1;
+                if (liberties != null)
+                    liberties[index] = 0;
+                continue;
+            }
+            if (mark[index])
+                continue;
+            stones.clear();
+            blockLiberties.clear();
+            stones.add(index);
+            mark[index] = true;
+            for (int j = 0; j < stones.size(); ++j)
+            {
+                ConstPointList adjacent =
+                    m_constants.getAdjacent(stones.getIndex(j));
+                int nuAdjacent = adjacent.size();
+                for (int k = 0; k < nuAdjacent; ++k)
+                {
+                    GoPoint adj = adjacent.get(k);
+                    int adjIndex = adj.getIndex();
+                    GoColor adjColor = getColor(adj);
+                    if (adjColor == c && ! mark[adjIndex])
+                    {
+                        mark[adjIndex] = true;
+                        stones.add(adjIndex);
+                    }
+                    else if (adjColor == EMPTY && ! isLiberty[adjIndex])
+                    {
+                        isLiberty[adjIndex] = true;
+                        blockLiberties.add(adjIndex);
+                    }
+                }
+            }
+            for (int j = 0; j < blockLiberties.size(); ++j)
+                isLiberty[blockLiberties.getIndex(j)] = false;
+            for (int j = 0; j < stones.size(); ++j)
+            {
+                if (block != null)
+                    block[stones.getIndex(j)] = index;
+                if (liberties != null)
+                    liberties[stones.getIndex(j)] = blockLiberties.size();
+            }
+        }
+    }
+
+    /** Check if the block of a stone has a liberty other than a given
+        point. */
+    private boolean hasOtherLiberty(GoPoint stone, GoPoint liberty)
+    {
+        PointList stones = new PointList();
+        getStones(stone, getColor(stone), stones);
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < stones.size(); ++i)
+        {
+            ConstPointList adjacent = getAdjacent(stones.get(i));
+            int nuAdjacent = adjacent.size();
+            for (int j = 0; j < nuAdjacent; ++j)
+            {
+                GoPoint adj = adjacent.get(j);
+                if (adj != liberty && getColor(adj) == EMPTY)
+                    return true;
+            }
+        }
+        return false;
+    }
+}
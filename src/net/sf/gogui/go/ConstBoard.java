@@ -15,14 +15,32 @@ public interface ConstBoard
 
     ConstPointList getAdjacent(GoPoint point);
 
+    /** @see Board#getAtari */
+    void getAtari(PointSet atari);
+
+    /** @see Board#getBlocks */
+    void getBlocks(int[] block);
+
     int getCaptured(GoColor c);
 
     GoColor getColor(GoPoint p);
 
+    /** Get a hash value for the current position.
+        Includes the stones, the board size, the color to move and the ko
+        point, but not the move history.
+        @see Zobrist */
+    long getHash();
+
     ConstPointList getKilled();
 
     Move getLastMove();
 
+    /** @see Board#getLegalMoves */
+    void getLegalMoves(GoColor c, boolean[] legal);
+
+    /** @see Board#getLiberties */
+    void getLiberties(int[] liberties);
+
     Move getMove(int i);
 
     int getNumberMoves();
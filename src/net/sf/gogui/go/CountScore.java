@@ -16,7 +16,10 @@ import static net.sf.gogui.go.Score.ScoringMethod.TERRITORY;
     Go engines return a list of dead stones on the final_status GTP command.
     It could happen that the program returns nonsense (e.g. a contiguous block
     of stones with only some stones dead) and this class should not crash
-    if that happens (even if the score will be no longer meaningful). */
+    if that happens (even if the score will be no longer meaningful).
+    Regions are computed on bit sets of points (see PointSet#dilate).
+    After changing the status of some stones, compute() only recomputes the
+    regions adjacent to the changed stones. */
 public class CountScore
 {
     /** Begin counting a score.
@@ -26,13 +29,11 @@ public class CountScore
     {
         m_board = board;
         int size = board.getSize();
-        m_dead = new Marker(size);
+        m_dead = new PointSet();
         m_score = new GoColor[size][size];
-        for (GoPoint p : m_board)
-            m_dead.clear(p);
         if (deadStones != null)
-            for (GoPoint p : deadStones)
-                m_dead.set(p);
+            m_dead.addAll(deadStones);
+        m_isValid = false;
         compute();
     }
 
@@ -61,42 +62,18 @@ public class CountScore
         return stones;
     }
 
-    /** Update score after changing the life-death status of stones. */
+    /** Update score after changing the life-death status of stones.
+        If the score was computed before for the same position, only the
+        regions adjacent to stones with changed status are recomputed. */
     public void compute()
     {
-        Marker mark = new Marker(m_board.getSize());
-        boolean allEmpty = true;
-        for (GoPoint p : m_board)
-        {
-            GoColor c = m_board.getColor(p);
-            setScore(p, EMPTY);
-            if (c != EMPTY)
-            {
-                allEmpty = false;
-                if (! m_dead.get(p))
-                    setScore(p, c);
-            }
-        }
-        if (allEmpty)
-            return;
-        PointList territory = new PointList();
-        for (GoPoint p : m_board)
-        {
-            if (! mark.get(p))
-            {
-                territory.clear();
-                if (isTerritory(mark, p, territory, BLACK))
-                    setScore(territory, BLACK);
-                else
-                {
-                    mark.clear(territory);
-                    if (isTerritory(mark, p, territory, WHITE))
-                        setScore(territory, WHITE);
-                    else
-                        mark.clear(territory);
-                }
-            }
-        }
+        if (m_isValid && m_hash == m_board.getHash())
+            computeChanged();
+        else
+            computeAll();
+        m_changed.clear();
+        m_hash = m_board.getHash();
+        m_isValid = true;
     }
 
     /** Get the owner of a point.
@@ -113,7 +90,7 @@ public class CountScore
         @return true, if stone is dead, false if stone is alive. */
     public boolean isDead(GoPoint p)
     {
-        return m_dead.get(p);
+        return m_dead.contains(p);
     }
 
     /** Get the score.
@@ -195,15 +172,145 @@ public class CountScore
         @param value true, if stone is dead, false if stone is alive. */
     public void setDead(GoPoint p, boolean value)
     {
-        m_dead.set(p, value);
+        if (m_dead.contains(p) != value)
+        {
+            m_dead.set(p, value);
+            m_changed.add(p);
+        }
     }
 
-    private Marker m_dead;
+    /** Score was computed and m_score, m_alive and m_free are valid. */
+    private boolean m_isValid;
+
+    /** Board hash at the time of the last computation. */
+    private long m_hash;
+
+    private PointSet m_dead;
+
+    /** Stones with changed status since the last computation. */
+    private final PointSet m_changed = new PointSet();
+
+    /** Alive stones of each color. */
+    private final BlackWhiteSet<PointSet> m_alive
+        = new BlackWhiteSet<PointSet>(new PointSet(), new PointSet());
+
+    /** Points that are empty or contain dead stones. */
+    private final PointSet m_free = new PointSet();
+
+    /** Temporary variable reused for efficiency. */
+    private final PointSet m_region = new PointSet();
+
+    /** Temporary variable reused for efficiency. */
+    private final PointSet m_remaining = new PointSet();
+
+    /** Temporary variable reused for efficiency. */
+    private final PointSet m_border = new PointSet();
 
     private GoColor m_score[][];
 
     private ConstBoard m_board;
 
+    /** Assign territory to a region of free points.
+        A region is Black territory, if it is not adjacent to alive White
+        stones, White territory, if it is not adjacent to alive Black
+        stones, and neutral otherwise. */
+    private void assignRegion(PointSet region)
+    {
+        PointSet border = m_border;
+        border.clear();
+        border.addAll(region);
+        border.dilate(m_board.getSize(), null);
+        GoColor c;
+        if (! border.intersects(m_alive.get(WHITE)))
+            c = BLACK;
+        else if (! border.intersects(m_alive.get(BLACK)))
+            c = WHITE;
+        else
+            c = EMPTY;
+        for (int i = region.nextIndex(0); i >= 0; i = region.nextIndex(i + 1))
+            setScore(GoPoint.fromIndex(i), c);
+    }
+
+    /** Find and assign all regions of free points containing given points.
+        @param points The points; the set is cleared by this function. */
+    private void assignRegions(PointSet points)
+    {
+        int size = m_board.getSize();
+        int index = points.nextIndex(0);
+        while (index >= 0)
+        {
+            m_region.clear();
+            m_region.add(index);
+            while (m_region.dilate(size, m_free))
+                ;
+            assignRegion(m_region);
+            points.removeAll(m_region);
+            index = points.nextIndex(index + 1);
+        }
+    }
+
+    /** Compute score of all points. */
+    private void computeAll()
+    {
+        int size = m_board.getSize();
+        PointSet black = m_alive.get(BLACK);
+        PointSet white = m_alive.get(WHITE);
+        black.clear();
+        white.clear();
+        boolean allEmpty = true;
+        for (GoPoint p : m_board)
+        {
+            GoColor c = m_board.getColor(p);
+            setScore(p, EMPTY);
+            if (c != EMPTY)
+            {
+                allEmpty = false;
+                if (! m_dead.contains(p))
+                {
+                    setScore(p, c);
+                    m_alive.get(c).add(p);
+                }
+            }
+        }
+        m_free.clear();
+        if (allEmpty)
+            return;
+        m_free.addAll(PointSet.getAllPoints(size));
+        m_free.removeAll(black);
+        m_free.removeAll(white);
+        m_remaining.clear();
+        m_remaining.addAll(m_free);
+        assignRegions(m_remaining);
+    }
+
+    /** Recompute the regions adjacent to stones with changed status. */
+    private void computeChanged()
+    {
+        if (m_changed.isEmpty())
+            return;
+        boolean allEmpty = true;
+        for (int i = m_changed.nextIndex(0); i >= 0;
+             i = m_changed.nextIndex(i + 1))
+        {
+            GoPoint p = GoPoint.fromIndex(i);
+            GoColor c = m_board.getColor(p);
+            if (c == EMPTY)
+                continue;
+            allEmpty = false;
+            boolean isDead = m_dead.contains(p);
+            m_alive.get(c).set(p, ! isDead);
+            m_free.set(p, isDead);
+            setScore(p, isDead ? EMPTY : c);
+        }
+        if (allEmpty)
+            return;
+        m_remaining.clear();
+        m_remaining.addAll(m_changed);
+        m_remaining.dilate(m_board.getSize(), null);
+        m_remaining.retainAll(m_free);
+        assignRegions(m_remaining);
+    }
+
     private boolean findRegion(GoPoint p, GoColor color, Marker marker,
                                PointList stones)
     {
@@ -221,33 +328,9 @@ public class CountScore
         return true;
     }
 
-    private boolean isTerritory(Marker mark, GoPoint p,
-                                PointList territory, GoColor color)
-    {
-        GoColor c = getColor(p);
-        if (c == color.otherColor() && ! m_dead.get(p))
-            return false;
-        if (c.equals(color))
-            return (! m_dead.get(p));
-        if (mark.get(p))
-            return true;
-        mark.set(p);
-        territory.add(p);
-        for (GoPoint adj : m_board.getAdjacent(p))
-            if (! isTerritory(mark, adj, territory, color))
-                return false;
-        return true;
-    }
-
     private void setScore(GoPoint p, GoColor c)
     {
         assert c != null;
         m_score[p.getX()][p.getY()] = c;
     }
-
-    private void setScore(ConstPointList points, GoColor c)
-    {
-        for (GoPoint p : points)
-            setScore(p, c);
-    }
 }
@@ -83,6 +83,16 @@ public final class GoPoint
         return y * MAX_SIZE + x;
     }
 
+    /** Get point from a one-dimensional point index.
+        @param index The index as returned by getIndex().
+        @return Unique reference to the point with this index. */
+    public static GoPoint fromIndex(int index)
+    {
+        assert index >= 0;
+        assert index < NUMBER_INDEXES;
+        return get(index % MAX_SIZE, index / MAX_SIZE);
+    }
+
     public int hashCode()
     {
         return m_index;
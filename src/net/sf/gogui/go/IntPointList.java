@@ -0,0 +1,196 @@
+// IntPointList.java
+
+package net.sf.gogui.go;
+
+import java.util.Iterator;
+
+/** List of points stored as primitive point indexes.
+    Avoids the object overhead of PointList for temporary lists that are
+    reused many times. Implements ConstPointList, so it can be passed to
+    functions that expect a point list without copying.
+    @see GoPoint#getIndex */
+public final class IntPointList
+    implements ConstPointList
+{
+    public class ConstIterator
+        implements Iterator<GoPoint>
+    {
+        public boolean hasNext()
+        {
+            return (m_index < m_size);
+        }
+
+        public GoPoint next()
+        {
+            return get(m_index++);
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        private int m_index;
+    }
+
+    /** Construct empty point list. */
+    public IntPointList()
+    {
+        this(16);
+    }
+
+    /** Construct empty point list with initial capacity.
+        @param initialCapacity The number of points to reserve memory for. */
+    public IntPointList(int initialCapacity)
+    {
+        m_indexes = new int[Math.max(initialCapacity, 1)];
+    }
+
+    /** Construct point list as a copy of another point list.
+        @param list The list to copy the points from. */
+    public IntPointList(ConstPointList list)
+    {
+        this(list.size());
+        addAll(list);
+    }
+
+    /** Add a point at the end of the list.
+        @param p The point. */
+    public void add(GoPoint p)
+    {
+        add(p.getIndex());
+    }
+
+    /** Add a point index at the end of the list.
+        @param index The point index as returned by GoPoint.getIndex(). */
+    public void add(int index)
+    {
+        if (m_size == m_indexes.length)
+        {
+            int[] indexes = new int[2 * m_indexes.length];
+            System.arraycopy(m_indexes, 0, indexes, 0, m_size);
+            m_indexes = indexes;
+        }
+        m_indexes[m_size++] = index;
+    }
+
+    /** Add points of another list at the end of this list. */
+    public void addAll(ConstPointList list)
+    {
+        int size = list.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < size; ++i)
+            add(list.get(i));
+    }
+
+    /** Remove all points. */
+    public void clear()
+    {
+        m_size = 0;
+    }
+
+    public boolean contains(Object elem)
+    {
+        if (! (elem instanceof GoPoint))
+            return false;
+        return containsIndex(((GoPoint)elem).getIndex());
+    }
+
+    /** Check if the list contains a point index.
+        @param index The point index.
+        @return true, if the list contains the index. */
+    public boolean containsIndex(int index)
+    {
+        for (int i = 0; i < m_size; ++i)
+            if (m_indexes[i] == index)
+                return true;
+        return false;
+    }
+
+    /** Compare with another point list.
+        A PointList is never equal to an IntPointList, because PointList
+        uses the equals() of ArrayList, so an IntPointList is only compared
+        with other instances of IntPointList to keep equals() symmetric.
+        @return true, if the object is an IntPointList containing the same
+        points in the same order. */
+    public boolean equals(Object object)
+    {
+        if (! (object instanceof IntPointList))
+            return false;
+        IntPointList list = (IntPointList)object;
+        if (list.m_size != m_size)
+            return false;
+        for (int i = 0; i < m_size; ++i)
+            if (list.m_indexes[i] != m_indexes[i])
+                return false;
+        return true;
+    }
+
+    public GoPoint get(int i)
+    {
+        return GoPoint.fromIndex(getIndex(i));
+    }
+
+    /** Get a point index.
+        @param i The position in the list.
+        @return The point index at this position. */
+    public int getIndex(int i)
+    {
+        if (i >= m_size)
+            throw new IndexOutOfBoundsException();
+        return m_indexes[i];
+    }
+
+    /** Hash code compatible with PointList.hashCode(). */
+    public int hashCode()
+    {
+        int hashCode = 1;
+        for (int i = 0; i < m_size; ++i)
+            hashCode = 31 * hashCode + m_indexes[i];
+        return hashCode;
+    }
+
+    public boolean isEmpty()
+    {
+        return (m_size == 0);
+    }
+
+    /** Returns an iterator over the points in this list.
+        The iterator does not support Iterator.remove(). */
+    public Iterator<GoPoint> iterator()
+    {
+        return new ConstIterator();
+    }
+
+    /** Remove and return last point index.
+        Requires that list is not empty. */
+    public int pop()
+    {
+        assert m_size > 0;
+        return m_indexes[--m_size];
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    /** Convert to a point list.
+        @return A new point list containing the same points. */
+    public PointList toPointList()
+    {
+        PointList list = new PointList(m_size);
+        for (int i = 0; i < m_size; ++i)
+            list.add(get(i));
+        return list;
+    }
+
+    public String toString()
+    {
+        return GoPoint.toString(this);
+    }
+
+    private int m_size;
+
+    private int[] m_indexes;
+}
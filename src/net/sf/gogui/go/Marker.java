@@ -2,30 +2,29 @@
 
 package net.sf.gogui.go;
 
-/** Mark points on a Go board. */
+/** Mark points on a Go board.
+    The marked points are stored in a PointSet, so clearing all marks and
+    checking if no point is marked does not depend on the board size. */
 public class Marker
 {
     /** Constructor.
         @param size Size of the board. */
     public Marker(int size)
     {
-        m_size = size;
-        m_mark = new boolean[GoPoint.NUMBER_INDEXES];
+        assert size > 0 && size <= GoPoint.MAX_SIZE;
     }
 
     /** Clear all marked points. */
     public void clear()
     {
-        for (int x = 0; x < m_size; ++x)
-            for (int y = 0; y < m_size; ++y)
-                m_mark[GoPoint.getIndex(x, y)] = false;
+        m_mark.clear();
     }
 
     /** Clear a marked point.
         @param p The point to clear. */
     public void clear(GoPoint p)
     {
-        m_mark[p.getIndex()] = false;
+        m_mark.remove(p);
     }
 
     /** Clear all points from a list.
@@ -35,7 +34,7 @@ public class Marker
         int nuPoints = points.size();
         // Don't use an iterator for efficiency
         for (int i = 0; i < nuPoints; ++i)
-            m_mark[points.get(i).getIndex()] = false;
+            m_mark.remove(points.get(i));
     }
 
     /** Check if a point is marked.
@@ -43,25 +42,29 @@ public class Marker
         @return true, if point is marked, false otherwise. */
     public boolean get(GoPoint p)
     {
-        return m_mark[p.getIndex()];
+        return m_mark.contains(p);
+    }
+
+    /** Get the set of marked points.
+        @return The marked points; the set is owned by the marker and
+        changes with it. */
+    public PointSet getPointSet()
+    {
+        return m_mark;
     }
 
     /** Check if no point is marked.
         @return true, if no point is marked, false otherwise. */
     public boolean isCleared()
     {
-        for (int x = 0; x < m_size; ++x)
-            for (int y = 0; y < m_size; ++y)
-                if (m_mark[GoPoint.getIndex(x, y)])
-                    return false;
-        return true;
+        return m_mark.isEmpty();
     }
 
     /** Mark a point.
         @param p The point to mark. */
     public void set(GoPoint p)
     {
-        m_mark[p.getIndex()] = true;
+        m_mark.add(p);
     }
 
     /** Mark or clear a point.
@@ -70,20 +73,15 @@ public class Marker
         be cleared. */
     public void set(GoPoint p, boolean value)
     {
-        m_mark[p.getIndex()] = value;
+        m_mark.set(p, value);
     }
 
     /** Mark all points from a list.
         @param points List of points. */
     public void set(ConstPointList points)
     {
-        int nuPoints = points.size();
-        // Don't use an iterator for efficiency
-        for (int i = 0; i < nuPoints; ++i)
-            m_mark[points.get(i).getIndex()] = true;
+        m_mark.addAll(points);
     }
 
-    private final int m_size;
-
-    private boolean m_mark[];
+    private final PointSet m_mark = new PointSet();
 }
@@ -8,9 +8,35 @@ import static net.sf.gogui.go.GoColor.WHITE;
 /** Move containing a point and a color.
     The point can be <code>null</code> (for pass move).
     The color is black or white.
-    This class is immutable, references are unique. */
+    This class is immutable, references are unique.
+    Moves can also be represented as packed 16-bit codes, which allows to
+    store move sequences in primitive arrays (see MoveCodeList). A code
+    contains the point index + 1 (0 for pass) in the lower 10 bits and
+    CODE_WHITE set for white moves. */
 public final class Move
 {
+    /** Bit set in the codes of white moves. */
+    public static final int CODE_WHITE = 0x400;
+
+    /** Number of different move codes.
+        All codes are in <code>[0..NUMBER_CODES - 1]</code>. */
+    public static final int NUMBER_CODES = 2 * CODE_WHITE;
+
+    /** Code that can be used to store a null move in code arrays.
+        Not a valid argument for fromCode(). */
+    public static final short NO_MOVE_CODE = -1;
+
+    /** Factory method for constructing a move from a move code.
+        @param code The move code
+        @return Reference to this move */
+    public static Move fromCode(short code)
+    {
+        assert code >= 0 && code < NUMBER_CODES;
+        Move move = s_codes[code];
+        assert move != null;
+        return move;
+    }
+
     /** Factory method for constructing a move.
         @param color The color of the move
         @param x Column in <code>[0..GoPoint.MAX_SIZE - 1]</code>
@@ -54,6 +80,51 @@ public final class Move
         return get(c, null);
     }
 
+    /** Get code for a move without constructing a move.
+        @param color The color of the move
+        @param point Location of the move (null for pass move)
+        @return The move code */
+    public static short getCode(GoColor color, GoPoint point)
+    {
+        assert color.isBlackWhite();
+        int code = (point == null ? 0 : point.getIndex() + 1);
+        if (color == WHITE)
+            code |= CODE_WHITE;
+        return (short)code;
+    }
+
+    /** Get color of a move code.
+        @param code The move code
+        @return The color of the move */
+    public static GoColor getCodeColor(short code)
+    {
+        return ((code & CODE_WHITE) == 0 ? BLACK : WHITE);
+    }
+
+    /** Get point index of a move code.
+        @param code The move code
+        @return The point index as in GoPoint.getIndex() or -1 for pass
+        moves */
+    public static int getCodePointIndex(short code)
+    {
+        return (code & (CODE_WHITE - 1)) - 1;
+    }
+
+    /** Check if a move code is a pass move.
+        @param code The move code
+        @return true, if the code is a pass move */
+    public static boolean isPassCode(short code)
+    {
+        return ((code & (CODE_WHITE - 1)) == 0);
+    }
+
+    /** Get packed move code of this move.
+        @return The move code */
+    public short getCode()
+    {
+        return m_code;
+    }
+
     /** Get color of move.
         @return Color of move */
     public GoColor getColor()
@@ -86,6 +157,11 @@ public final class Move
 
     private static Move[][] s_movesWhite;
 
+    /** Moves indexed by move code. */
+    private static Move[] s_codes;
+
+    private final short m_code;
+
     private final GoColor m_color;
 
     private final GoPoint m_point;
@@ -94,6 +170,7 @@ public final class Move
 
     static
     {
+        s_codes = new Move[NUMBER_CODES];
         s_passBlack = new Move(BLACK, null, "B PASS");
         s_passWhite = new Move(WHITE, null, "W PASS");
         s_movesBlack = init(BLACK);
@@ -123,5 +200,7 @@ public final class Move
         m_point = point;
         m_color = color;
         m_string = string;
+        m_code = getCode(color, point);
+        s_codes[m_code] = this;
     }
 }
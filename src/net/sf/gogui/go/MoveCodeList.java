@@ -0,0 +1,147 @@
+// MoveCodeList.java
+
+package net.sf.gogui.go;
+
+/** List of moves stored as packed move codes.
+    Avoids the object references of a list of moves for long move sequences
+    and for sequences that are compared often.
+    @see Move#getCode */
+public final class MoveCodeList
+{
+    /** Construct empty list. */
+    public MoveCodeList()
+    {
+        this(16);
+    }
+
+    /** Construct empty list with initial capacity.
+        @param initialCapacity The number of moves to reserve memory for. */
+    public MoveCodeList(int initialCapacity)
+    {
+        m_codes = new short[Math.max(initialCapacity, 1)];
+    }
+
+    /** Add a move at the end of the list.
+        @param move The move. */
+    public void add(Move move)
+    {
+        add(move.getCode());
+    }
+
+    /** Add a move code at the end of the list.
+        @param code The move code. */
+    public void add(short code)
+    {
+        if (m_size == m_codes.length)
+        {
+            short[] codes = new short[2 * m_codes.length];
+            System.arraycopy(m_codes, 0, codes, 0, m_size);
+            m_codes = codes;
+        }
+        m_codes[m_size++] = code;
+    }
+
+    /** Remove all moves. */
+    public void clear()
+    {
+        m_size = 0;
+    }
+
+    /** Compare with another list.
+        @return true, if the object is a MoveCodeList containing the same
+        codes in the same order. */
+    public boolean equals(Object object)
+    {
+        if (! (object instanceof MoveCodeList))
+            return false;
+        MoveCodeList list = (MoveCodeList)object;
+        if (list.m_size != m_size)
+            return false;
+        for (int i = 0; i < m_size; ++i)
+            if (list.m_codes[i] != m_codes[i])
+                return false;
+        return true;
+    }
+
+    /** Get a move code.
+        @param i The position in the list.
+        @return The move code at this position. */
+    public short get(int i)
+    {
+        if (i >= m_size)
+            throw new IndexOutOfBoundsException();
+        return m_codes[i];
+    }
+
+    /** Get a move.
+        @param i The position in the list.
+        @return The (unique) move object for the code at this position. */
+    public Move getMove(int i)
+    {
+        return Move.fromCode(get(i));
+    }
+
+    public int hashCode()
+    {
+        int hashCode = 1;
+        for (int i = 0; i < m_size; ++i)
+            hashCode = 31 * hashCode + m_codes[i];
+        return hashCode;
+    }
+
+    public boolean isEmpty()
+    {
+        return (m_size == 0);
+    }
+
+    /** Remove and return last move code.
+        Requires that list is not empty. */
+    public short pop()
+    {
+        assert m_size > 0;
+        return m_codes[--m_size];
+    }
+
+    /** Reverse the order of the moves. */
+    public void reverse()
+    {
+        for (int i = 0, j = m_size - 1; i < j; ++i, --j)
+        {
+            short tmp = m_codes[i];
+            m_codes[i] = m_codes[j];
+            m_codes[j] = tmp;
+        }
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    /** Get a copy of the move codes.
+        @return A new array of length size() */
+    public short[] toArray()
+    {
+        short[] result = new short[m_size];
+        System.arraycopy(m_codes, 0, result, 0, m_size);
+        return result;
+    }
+
+    /** Get string representation.
+        @return The moves separated by spaces, as in Move.toString(). */
+    public String toString()
+    {
+        StringBuilder buffer = new StringBuilder(m_size * 6);
+        for (int i = 0; i < m_size; ++i)
+        {
+            if (i > 0)
+                buffer.append(' ');
+            buffer.append(getMove(i));
+        }
+        return buffer.toString();
+    }
+
+    private int m_size;
+
+    private short[] m_codes;
+}
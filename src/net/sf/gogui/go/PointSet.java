@@ -0,0 +1,352 @@
+// PointSet.java
+
+package net.sf.gogui.go;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** Set of points stored as a bit set.
+    Each point uses one bit at the position of its index
+    (GoPoint.getIndex()) in an array of long values, such that set
+    operations over regions of the board only need a few word operations
+    and no memory allocation. */
+public final class PointSet
+    implements Iterable<GoPoint>
+{
+    /** Number of long values used for the bits of all point indexes. */
+    public static final int NUMBER_WORDS = (GoPoint.NUMBER_INDEXES + 63) / 64;
+
+    public class PointIterator
+        implements Iterator<GoPoint>
+    {
+        public boolean hasNext()
+        {
+            return (m_index >= 0);
+        }
+
+        public GoPoint next()
+        {
+            if (m_index < 0)
+                throw new NoSuchElementException();
+            GoPoint p = GoPoint.fromIndex(m_index);
+            m_index = nextIndex(m_index + 1);
+            return p;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        private int m_index = nextIndex(0);
+    }
+
+    /** Construct empty point set. */
+    public PointSet()
+    {
+    }
+
+    /** Construct point set as a copy of another point set.
+        @param set The set to copy the points from. */
+    public PointSet(PointSet set)
+    {
+        System.arraycopy(set.m_bits, 0, m_bits, 0, NUMBER_WORDS);
+    }
+
+    /** Construct point set containing the points of a list.
+        @param list The list of points. */
+    public PointSet(ConstPointList list)
+    {
+        addAll(list);
+    }
+
+    /** Add a point.
+        @param p The point to add. */
+    public void add(GoPoint p)
+    {
+        add(p.getIndex());
+    }
+
+    /** Add a point by index.
+        @param index The point index as returned by GoPoint.getIndex(). */
+    public void add(int index)
+    {
+        m_bits[index >>> 6] |= (1L << index);
+    }
+
+    /** Add all points of a list.
+        @param list The list of points. */
+    public void addAll(ConstPointList list)
+    {
+        int size = list.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < size; ++i)
+            add(list.get(i));
+    }
+
+    /** Add all points of another set (union).
+        @param set The other set. */
+    public void addAll(PointSet set)
+    {
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            m_bits[i] |= set.m_bits[i];
+    }
+
+    /** Add all points adjacent to points of the set.
+        Shifts the bits of the set in all four directions in parallel
+        instead of iterating over the points.
+        @param size The board size; points outside the board are not
+        added.
+        @param mask If not null, only points contained in the mask are
+        added.
+        @return true, if any points were added. */
+    public boolean dilate(int size, PointSet mask)
+    {
+        long[] board = s_boardMasks[size];
+        boolean changed = false;
+        long previous = 0;
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+        {
+            long word = m_bits[i];
+            long next = (i + 1 < NUMBER_WORDS ? m_bits[i + 1] : 0);
+            long right =
+                ((word << 1) | (previous >>> 63)) & s_notFirstColumn[i];
+            long left = ((word >>> 1) | (next << 63)) & s_notLastColumn[i];
+            long up = (word << GoPoint.MAX_SIZE)
+                | (previous >>> (64 - GoPoint.MAX_SIZE));
+            long down = (word >>> GoPoint.MAX_SIZE)
+                | (next << (64 - GoPoint.MAX_SIZE));
+            long added = (right | left | up | down) & board[i] & ~word;
+            if (mask != null)
+                added &= mask.m_bits[i];
+            if (added != 0)
+            {
+                m_bits[i] = word | added;
+                changed = true;
+            }
+            previous = word;
+        }
+        return changed;
+    }
+
+    /** Get the set of all points on a board.
+        @param size The board size.
+        @return A new set containing all points on the board. */
+    public static PointSet getAllPoints(int size)
+    {
+        PointSet set = new PointSet();
+        System.arraycopy(s_boardMasks[size], 0, set.m_bits, 0, NUMBER_WORDS);
+        return set;
+    }
+
+    /** Remove all points. */
+    public void clear()
+    {
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            m_bits[i] = 0;
+    }
+
+    /** Check if the set contains a point.
+        @param p The point.
+        @return true, if the point is contained in the set. */
+    public boolean contains(GoPoint p)
+    {
+        return contains(p.getIndex());
+    }
+
+    /** Check if the set contains a point by index.
+        @param index The point index as returned by GoPoint.getIndex().
+        @return true, if the point is contained in the set. */
+    public boolean contains(int index)
+    {
+        return ((m_bits[index >>> 6] & (1L << index)) != 0);
+    }
+
+    public boolean equals(Object object)
+    {
+        if (object == null || object.getClass() != getClass())
+            return false;
+        PointSet set = (PointSet)object;
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            if (m_bits[i] != set.m_bits[i])
+                return false;
+        return true;
+    }
+
+    /** Get a word of the underlying bit set.
+        Bit <code>j</code> of word <code>i</code> corresponds to the point
+        index <code>64 * i + j</code>.
+        @param i The word index in <code>[0..NUMBER_WORDS - 1]</code>.
+        @return The word. */
+    public long getWord(int i)
+    {
+        return m_bits[i];
+    }
+
+    public int hashCode()
+    {
+        long hashCode = 0;
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            hashCode = hashCode * 31 + m_bits[i];
+        return (int)(hashCode ^ (hashCode >>> 32));
+    }
+
+    /** Check if the set has common points with another set.
+        @param set The other set.
+        @return true, if the intersection is not empty. */
+    public boolean intersects(PointSet set)
+    {
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            if ((m_bits[i] & set.m_bits[i]) != 0)
+                return true;
+        return false;
+    }
+
+    /** Check if the set is empty.
+        @return true, if the set contains no points. */
+    public boolean isEmpty()
+    {
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            if (m_bits[i] != 0)
+                return false;
+        return true;
+    }
+
+    /** Returns an iterator over the points in this set.
+        The points are returned in the order of their index. */
+    public Iterator<GoPoint> iterator()
+    {
+        return new PointIterator();
+    }
+
+    /** Get the smallest point index in the set equal or greater than a
+        given index.
+        Can be used to iterate over the set without memory allocation:
+        <pre>
+        for (int i = set.nextIndex(0); i &gt;= 0; i = set.nextIndex(i + 1))
+        </pre>
+        @param fromIndex The index to start from.
+        @return The index or -1, if there is no such index. */
+    public int nextIndex(int fromIndex)
+    {
+        int i = fromIndex >>> 6;
+        if (i >= NUMBER_WORDS)
+            return -1;
+        long word = m_bits[i] & (-1L << fromIndex);
+        while (true)
+        {
+            if (word != 0)
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            if (++i >= NUMBER_WORDS)
+                return -1;
+            word = m_bits[i];
+        }
+    }
+
+    /** Remove a point.
+        @param p The point to remove. */
+    public void remove(GoPoint p)
+    {
+        remove(p.getIndex());
+    }
+
+    /** Remove a point by index.
+        @param index The point index as returned by GoPoint.getIndex(). */
+    public void remove(int index)
+    {
+        m_bits[index >>> 6] &= ~(1L << index);
+    }
+
+    /** Remove all points of another set (difference).
+        @param set The other set. */
+    public void removeAll(PointSet set)
+    {
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            m_bits[i] &= ~set.m_bits[i];
+    }
+
+    /** Remove all points not contained in another set (intersection).
+        @param set The other set. */
+    public void retainAll(PointSet set)
+    {
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            m_bits[i] &= set.m_bits[i];
+    }
+
+    /** Add or remove a point.
+        @param p The point.
+        @param value true, if the point should be added; false, if it should
+        be removed. */
+    public void set(GoPoint p, boolean value)
+    {
+        if (value)
+            add(p);
+        else
+            remove(p);
+    }
+
+    /** Set a word of the underlying bit set.
+        @param i The word index in <code>[0..NUMBER_WORDS - 1]</code>.
+        @param word The new word.
+        @see #getWord */
+    public void setWord(int i, long word)
+    {
+        m_bits[i] = word;
+    }
+
+    /** Get the number of points in the set.
+        @return The number of points. */
+    public int size()
+    {
+        int size = 0;
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            size += Long.bitCount(m_bits[i]);
+        return size;
+    }
+
+    /** Get a list of the points in the set.
+        @return List of the points in the order of their index. */
+    public PointList toPointList()
+    {
+        PointList list = new PointList(size());
+        for (int i = nextIndex(0); i >= 0; i = nextIndex(i + 1))
+            list.add(GoPoint.fromIndex(i));
+        return list;
+    }
+
+    public String toString()
+    {
+        return toPointList().toString();
+    }
+
+    /** Points on the board for each board size. */
+    private static final long[][] s_boardMasks;
+
+    /** Points not in the first column (x == 0). */
+    private static final long[] s_notFirstColumn;
+
+    /** Points not in the last column (x == GoPoint.MAX_SIZE - 1). */
+    private static final long[] s_notLastColumn;
+
+    private final long[] m_bits = new long[NUMBER_WORDS];
+
+    static
+    {
+        s_boardMasks = new long[GoPoint.MAX_SIZE + 1][NUMBER_WORDS];
+        s_notFirstColumn = new long[NUMBER_WORDS];
+        s_notLastColumn = new long[NUMBER_WORDS];
+        for (int x = 0; x < GoPoint.MAX_SIZE; ++x)
+            for (int y = 0; y < GoPoint.MAX_SIZE; ++y)
+            {
+                int index = GoPoint.getIndex(x, y);
+                long bit = 1L << index;
+                for (int size = x + 1; size <= GoPoint.MAX_SIZE; ++size)
+                    if (y < size)
+                        s_boardMasks[size][index >>> 6] |= bit;
+                if (x > 0)
+                    s_notFirstColumn[index >>> 6] |= bit;
+                if (x < GoPoint.MAX_SIZE - 1)
+                    s_notLastColumn[index >>> 6] |= bit;
+            }
+    }
+}
@@ -0,0 +1,138 @@
+// Zobrist.java
+
+package net.sf.gogui.go;
+
+import java.util.Random;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+/** Random keys for Zobrist hashing of Go positions.
+    A position hash is the exclusive-or of the keys of all stones on the
+    board, a key for the board size, a key for White to move and a key for
+    the ko point, if there is one.
+    The keys are generated from a fixed seed, so hash values are
+    reproducible between runs and can be stored.
+    @see ConstBoard#getHash() */
+public final class Zobrist
+{
+    /** Compute the hash of a board position from scratch.
+        Returns the same value as ConstBoard.getHash(), but needs time
+        proportional to the number of points on the board.
+        @param board The board.
+        @return The hash value. */
+    public static long compute(ConstBoard board)
+    {
+        return compute(board, 0);
+    }
+
+    /** Compute the hash of a rotated or mirrored board position.
+        @param board The board.
+        @param rotationMode The rotation mode as used in BoardUtil.rotate()
+        @return The hash value of the position that would be obtained by
+        transforming all stones and the ko point of the board.
+        @see BoardUtil#rotate */
+    public static long compute(ConstBoard board, int rotationMode)
+    {
+        int size = board.getSize();
+        long hash = getSizeKey(size) ^ getToMoveKey(board.getToMove());
+        for (GoPoint p : board)
+        {
+            GoColor c = board.getColor(p);
+            if (c != EMPTY)
+                hash ^= getKey(c, BoardUtil.rotate(rotationMode, p, size));
+            if (board.isKo(p))
+                hash ^= getKoKey(BoardUtil.rotate(rotationMode, p, size));
+        }
+        return hash;
+    }
+
+    /** Compute a hash value that is invariant under rotation and mirroring.
+        @param board The board.
+        @return The smallest hash value of the position under all
+        rotation modes.
+        @see BoardUtil#NUMBER_ROTATIONS */
+    public static long computeCanonical(ConstBoard board)
+    {
+        long result = compute(board, 0);
+        for (int rot = 1; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+            result = Math.min(result, compute(board, rot));
+        return result;
+    }
+
+    /** Get the key for a stone.
+        @param c The color of the stone (BLACK or WHITE).
+        @param p The location of the stone.
+        @return The key. */
+    public static long getKey(GoColor c, GoPoint p)
+    {
+        if (c == BLACK)
+            return s_keysBlack[p.getIndex()];
+        else
+        {
+            assert c == WHITE;
+            return s_keysWhite[p.getIndex()];
+        }
+    }
+
+    /** Get the key for the ko point.
+        @param p The ko point or null.
+        @return The key or zero if the point is null. */
+    public static long getKoKey(GoPoint p)
+    {
+        if (p == null)
+            return 0;
+        return s_keysKo[p.getIndex()];
+    }
+
+    /** Get the key for the board size.
+        @param size The board size.
+        @return The key. */
+    public static long getSizeKey(int size)
+    {
+        return s_keysSize[size];
+    }
+
+    /** Get the key for the color to move.
+        @param toMove The color to move.
+        @return The key; zero for Black. */
+    public static long getToMoveKey(GoColor toMove)
+    {
+        if (toMove == WHITE)
+            return s_keyWhiteToMove;
+        return 0;
+    }
+
+    private static final long[] s_keysBlack;
+
+    private static final long[] s_keysWhite;
+
+    private static final long[] s_keysKo;
+
+    private static final long[] s_keysSize;
+
+    private static final long s_keyWhiteToMove;
+
+    static
+    {
+        Random random = new Random(0x5a0b815bL);
+        s_keysBlack = createKeys(random, GoPoint.NUMBER_INDEXES);
+        s_keysWhite = createKeys(random, GoPoint.NUMBER_INDEXES);
+        s_keysKo = createKeys(random, GoPoint.NUMBER_INDEXES);
+        s_keysSize = createKeys(random, GoPoint.MAX_SIZE + 1);
+        s_keyWhiteToMove = random.nextLong();
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private Zobrist()
+    {
+    }
+
+    private static long[] createKeys(Random random, int n)
+    {
+        long[] result = new long[n];
+        for (int i = 0; i < n; ++i)
+            result[i] = random.nextLong();
+        return result;
+    }
+}
@@ -3765,6 +3765,8 @@ public class GoGui
         gameFile.m_file = file;
         if (FileUtil.hasExtension(file, "xml"))
             gameFile.m_format = GameFile.Format.XML;
+        else if (FileUtil.hasExtension(file, "gga"))
+            gameFile.m_format = GameFile.Format.ARCHIVE;
         else
             gameFile.m_format = GameFile.Format.SGF;
         return save(gameFile);
@@ -2,7 +2,6 @@
 
 package net.sf.gogui.gtp;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -10,12 +9,19 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.util.ProcessUtil;
+import net.sf.gogui.util.ThreadUtil;
 
 /** Interface to a Go program that uses GTP over the standard I/O streams.
     <p>
@@ -97,6 +103,25 @@ public final class GtpClient
     public GtpClient(String program, File workingDirectory, boolean log,
                      IOCallback callback)
         throws GtpClient.ExecFailed
+    {
+        this(program, workingDirectory, log, callback, null);
+    }
+
+    /** Constructor with input multiplexer.
+        @param program Command line for program.
+        @param workingDirectory The working directory to run the program in or
+        null for the current directory
+        @param log Log input, output and error stream to standard error.
+        @param callback Callback for external display of the streams. The
+        callback functions for the streams are called in the multiplexer
+        thread, if a multiplexer is used.
+        @param multiplexer Multiplexer for reading the output and error
+        streams of the program or null, if the client should use its own
+        threads for reading them.
+        @see #GtpClient(String,File,boolean,GtpClient.IOCallback) */
+    public GtpClient(String program, File workingDirectory, boolean log,
+                     IOCallback callback, GtpInputMultiplexer multiplexer)
+        throws GtpClient.ExecFailed
     {
         if (workingDirectory != null && ! workingDirectory.isDirectory())
             throw new ExecFailed(program,
@@ -146,7 +171,7 @@ public final class GtpClient
             throw new ExecFailed(program, e);
         }
         init(m_process.getInputStream(), m_process.getOutputStream(),
-             m_process.getErrorStream());
+             m_process.getErrorStream(), multiplexer);
     }
 
     /** Constructor for given input and output streams. */
@@ -158,7 +183,7 @@ public final class GtpClient
         m_callback = callback;
         m_program = "-";
         m_process = null;
-        init(in, out, null);
+        init(in, out, null, null);
     }
 
     /** Close the output stream to the program.
@@ -247,9 +272,7 @@ public final class GtpClient
         ++m_commandNumber;
         if (m_autoNumber)
             command = Integer.toString(m_commandNumber) + " " + command;
-        if (m_log)
-            logOut(command);
-        m_out.println(command);
+        writeCommand(command);
         m_out.flush();
         try
         {
@@ -275,6 +298,108 @@ public final class GtpClient
         send(getCommandPlay(move), timeout, timeoutCallback);
     }
 
+    /** Send multiple commands without waiting for each response.
+        The commands are written to the program back-to-back and numbered
+        with GTP ids (independent of setAutoNumber()). The responses are
+        matched to the commands by their ids; responses without id are
+        accepted in the order of the commands. At most MAX_PIPELINED
+        commands are sent ahead of the received responses, because the
+        program could block writing responses that are not read, while this
+        function blocks writing commands that are not read by the program.
+        @see GtpClientBase#sendPipelined(List) */
+    public ArrayList<Future<String>> sendPipelined(List<String> commands)
+    {
+        return sendPipelined(commands, -1, null);
+    }
+
+    /** Send multiple commands without waiting for each response with
+        timeout.
+        @param commands The commands.
+        @param timeout Timeout in milliseconds for each response or -1, if
+        no timeout
+        @param timeoutCallback Timeout callback or null if no timeout.
+        @return The responses in the same order as the commands.
+        @see #sendPipelined(List) */
+    public ArrayList<Future<String>>
+        sendPipelined(List<String> commands, long timeout,
+                      TimeoutCallback timeoutCallback)
+    {
+        m_timeoutCallback = timeoutCallback;
+        int size = commands.size();
+        ArrayList<Future<String>> result =
+            new ArrayList<Future<String>>(size);
+        GtpFuture[] futures = new GtpFuture[size];
+        String[] numbered = new String[size];
+        int[] ids = new int[size];
+        for (int i = 0; i < size; ++i)
+        {
+            futures[i] = new GtpFuture();
+            result.add(futures[i]);
+        }
+        // Error that makes all remaining commands fail
+        GtpError fatalError = null;
+        int numberSent = 0;
+        for (int i = 0; i < size; ++i)
+        {
+            if (fatalError == null && numberSent < size
+                && numberSent - i < MAX_PIPELINED)
+            {
+                int start = numberSent;
+                int end = Math.min(size, i + MAX_PIPELINED);
+                for ( ; numberSent < end; ++numberSent)
+                {
+                    String command = commands.get(numberSent);
+                    assert ! command.trim().equals("");
+                    assert ! command.trim().startsWith("#");
+                    ++m_commandNumber;
+                    ids[numberSent] = m_commandNumber;
+                    numbered[numberSent] =
+                        Integer.toString(m_commandNumber) + " " + command;
+                    writeCommand(numbered[numberSent]);
+                }
+                m_out.flush();
+                if (m_out.checkError())
+                {
+                    try
+                    {
+                        throwProgramDied();
+                    }
+                    catch (GtpError e)
+                    {
+                        fatalError = e;
+                    }
+                }
+                else if (m_callback != null)
+                    for (int j = start; j < numberSent; ++j)
+                        m_callback.sentCommand(numbered[j]);
+            }
+            if (fatalError != null)
+            {
+                futures[i].setError(fatalError);
+                continue;
+            }
+            m_fullResponse = "";
+            m_response = "";
+            try
+            {
+                String response = readResponse(timeout);
+                int id = getResponseId(m_fullResponse);
+                if (id >= 0 && id != ids[i])
+                    throw new GtpError("Response with id " + id
+                                       + " to command with id " + ids[i]);
+                futures[i].setResponse(response);
+            }
+            catch (GtpError e)
+            {
+                e.setCommand(numbered[i]);
+                futures[i].setError(e);
+                if (m_isProgramDead)
+                    fatalError = e;
+            }
+        }
+        return result;
+    }
+
     /** Send comment.
         @param comment comment line (must start with '#'). */
     public void sendComment(String comment)
@@ -326,8 +451,13 @@ public final class GtpClient
         try
         {
             m_process.waitFor();
-            m_errorThread.join();
-            m_inputThread.join();
+            if (m_streamsClosed != null)
+                m_streamsClosed.await();
+            else
+            {
+                m_errorThread.join();
+                m_inputThread.join();
+            }
         }
         catch (InterruptedException e)
         {
@@ -352,8 +482,13 @@ public final class GtpClient
         }
         try
         {
-            m_errorThread.join(timeout);
-            m_inputThread.join(timeout);
+            if (m_streamsClosed != null)
+                m_streamsClosed.await(timeout, TimeUnit.MILLISECONDS);
+            else
+            {
+                m_errorThread.join(timeout);
+                m_inputThread.join(timeout);
+            }
         }
         catch (InterruptedException e)
         {
@@ -377,86 +512,113 @@ public final class GtpClient
         public String m_text;
     }
 
-    private class InputThread
-        extends Thread
+    /** Assembles the responses from the characters of the output stream.
+        The lines are split like BufferedReader.readLine() and appended
+        directly to a buffer, which is reused for all responses, such that
+        only one String is created for each response. */
+    private class ResponseParser
     {
-        InputThread(InputStream in, BlockingQueue<Message> queue)
+        /** Constructor.
+            @param yield Call Thread.yield() before passing a response to
+            the queue (see comment in putMessage()). */
+        public ResponseParser(boolean yield)
         {
-            m_in = new BufferedReader(new InputStreamReader(in));
-            m_queue = queue;
+            m_yield = yield;
         }
 
-        public void run()
+        /** Handle a character of the output stream. */
+        public void handleChar(char c)
         {
-            try
-            {
-                mainLoop();
-            }
-            catch (Throwable t)
+            if (c == '\n' && m_lastWasCR)
             {
-                StringUtil.printException(t);
+                m_lastWasCR = false;
+                return;
             }
+            m_lastWasCR = (c == '\r');
+            if (c == '\n' || c == '\r')
+                handleLine();
+            else
+                m_buffer.append(c);
+        }
+
+        /** Handle the end of the output stream. */
+        public void handleEnd()
+        {
+            // BufferedReader.readLine() returns an unterminated last line
+            if (m_buffer.length() > m_lineStart)
+                handleLine();
+            putMessage(null);
         }
 
-        private final BufferedReader m_in;
+        private boolean m_isInResponse;
 
-        private final BlockingQueue<Message> m_queue;
+        private boolean m_lastWasCR;
 
-        private final StringBuilder m_buffer = new StringBuilder(1024);
+        private final boolean m_yield;
 
-        private void appendBuffer(String line)
-        {
-            m_buffer.append(line);
-            m_buffer.append('\n');
-        }
+        /** Start of the current line in m_buffer. */
+        private int m_lineStart;
 
-        private boolean isResponseStart(String line)
-        {
-            if (line.length() < 1)
-                return false;
-            char c = line.charAt(0);
-            return (c == '=' || c == '?');
-        }
+        /** Lines of the current response and the current line. */
+        private final StringBuilder m_buffer = new StringBuilder(1024);
 
-        private void mainLoop() throws InterruptedException
+        /** Handle the current line.
+            The line is the part of the buffer after m_lineStart. */
+        private void handleLine()
         {
-            while (true)
+            int lineLength = m_buffer.length() - m_lineStart;
+            if (m_log)
+                logIn(m_buffer.substring(m_lineStart));
+            if (! m_isInResponse)
             {
-                String line = readLine();
-                if (line == null)
+                if (lineLength > 0 && isResponseStart(m_buffer.charAt(0)))
                 {
-                    putMessage(null);
-                    return;
+                    m_isInResponse = true;
+                    endLine();
                 }
-                appendBuffer(line);
-                if (! isResponseStart(line))
+                else
                 {
-                    if (! line.trim().equals(""))
+                    if (! isBlankLine())
                     {
+                        String line = m_buffer.toString();
                         if (m_callback != null)
                             m_callback.receivedInvalidResponse(line);
                         if (m_invalidResponseCallback != null)
                             m_invalidResponseCallback.show(line);
                     }
                     m_buffer.setLength(0);
-                    continue;
-                }
-                while (true)
-                {
-                    line = readLine();
-                    appendBuffer(line);
-                    if (line == null)
-                    {
-                        putMessage(null);
-                        return;
-                    }
-                    if (line.equals(""))
-                    {
-                        putMessage();
-                        break;
-                    }
+                    m_lineStart = 0;
                 }
             }
+            else if (lineLength == 0)
+            {
+                endLine();
+                putMessage();
+                m_isInResponse = false;
+            }
+            else
+                endLine();
+        }
+
+        private void endLine()
+        {
+            m_buffer.append('\n');
+            m_lineStart = m_buffer.length();
+        }
+
+        /** Check if the current line contains only whitespace.
+            Uses the same definition of whitespace as String.trim(). */
+        private boolean isBlankLine()
+        {
+            for (int i = m_lineStart; i < m_buffer.length(); ++i)
+                if (m_buffer.charAt(i) > ' ')
+                    return false;
+            return true;
+        }
+
+        private boolean isResponseStart(char c)
+        {
+            return (c == '=' || c == '?');
         }
 
         private void putMessage()
@@ -468,9 +630,11 @@ public final class GtpClient
             // however and could have a negative effect, if the program
             // writes to stderr immediately after the response (e.g. logging
             // output during pondering).
-            Thread.yield();
+            if (m_yield)
+                Thread.yield();
             putMessage(m_buffer.toString());
             m_buffer.setLength(0);
+            m_lineStart = 0;
         }
 
         private void putMessage(String text)
@@ -484,30 +648,100 @@ public final class GtpClient
                 printInterrupted();
             }
         }
+    }
+
+    /** Reads the output stream if no multiplexer is used. */
+    private class InputReader
+        implements Runnable
+    {
+        InputReader(InputStream in)
+        {
+            m_in = new InputStreamReader(in);
+        }
 
-        private String readLine()
+        public void run()
         {
             try
             {
-                String line = m_in.readLine();
-                if (m_log && line != null)
-                    logIn(line);
-                return line;
+                mainLoop();
+            }
+            catch (Throwable t)
+            {
+                StringUtil.printException(t);
             }
-            catch (IOException e)
+        }
+
+        private final Reader m_in;
+
+        private final ResponseParser m_parser = new ResponseParser(true);
+
+        private final char[] m_chars = new char[4096];
+
+        private void mainLoop()
+        {
+            while (true)
             {
-                return null;
+                int n;
+                try
+                {
+                    n = m_in.read(m_chars);
+                }
+                catch (IOException e)
+                {
+                    n = -1;
+                }
+                if (n < 0)
+                {
+                    m_parser.handleEnd();
+                    return;
+                }
+                for (int i = 0; i < n; ++i)
+                    m_parser.handleChar(m_chars[i]);
             }
         }
     }
 
-    private class ErrorThread
-        extends Thread
+    /** Listener for the output stream if a multiplexer is used. */
+    private class InputListener
+        implements GtpInputMultiplexer.Listener
+    {
+        public void closed()
+        {
+            m_parser.handleEnd();
+            m_streamsClosed.countDown();
+        }
+
+        public void received(CharBuffer text)
+        {
+            while (text.hasRemaining())
+                m_parser.handleChar(text.get());
+        }
+
+        private final ResponseParser m_parser = new ResponseParser(false);
+    }
+
+    /** Listener for the error stream if a multiplexer is used. */
+    private class ErrorListener
+        implements GtpInputMultiplexer.Listener
+    {
+        public void closed()
+        {
+            m_streamsClosed.countDown();
+        }
+
+        public void received(CharBuffer text)
+        {
+            receivedStdErr(text.toString());
+        }
+    }
+
+    /** Reads the error stream if no multiplexer is used. */
+    private class ErrorReader
+        implements Runnable
     {
-        public ErrorThread(InputStream in, BlockingQueue<Message> queue)
+        public ErrorReader(InputStream in)
         {
             m_in = new InputStreamReader(in);
-            m_queue = queue;
         }
 
         public void run()
@@ -528,11 +762,7 @@ public final class GtpClient
                     }
                     if (n <= 0)
                         return;
-                    String text = new String(buffer, 0, n);
-                    if (m_callback != null)
-                        m_callback.receivedStdErr(text);
-                    if (m_log)
-                        logError(text);
+                    receivedStdErr(new String(buffer, 0, n));
                 }
             }
             catch (Throwable t)
@@ -544,6 +774,10 @@ public final class GtpClient
         private final Reader m_in;
     }
 
+    /** Maximum number of commands sent ahead of the responses.
+        @see #sendPipelined(List) */
+    private static final int MAX_PIPELINED = 64;
+
     private InvalidResponseCallback m_invalidResponseCallback;
 
     private boolean m_autoNumber;
@@ -576,19 +810,58 @@ public final class GtpClient
 
     private TimeoutCallback m_timeoutCallback;
 
-    private InputThread m_inputThread;
+    private Thread m_inputThread;
+
+    private Thread m_errorThread;
 
-    private ErrorThread m_errorThread;
+    /** Counts down the closed streams if a multiplexer is used. */
+    private CountDownLatch m_streamsClosed;
 
-    private void init(InputStream in, OutputStream out, InputStream err)
+    /** Get the id of a response.
+        @param response The full response.
+        @return The id or -1, if the response has no id. */
+    private static int getResponseId(String response)
+    {
+        int length = response.length();
+        long id = 0;
+        int i;
+        for (i = 1; i < length; ++i)
+        {
+            char c = response.charAt(i);
+            if (c < '0' || c > '9')
+                break;
+            id = 10 * id + (c - '0');
+            if (id > Integer.MAX_VALUE)
+                return -1;
+        }
+        if (i == 1)
+            return -1;
+        return (int)id;
+    }
+
+    private void init(InputStream in, OutputStream out, InputStream err,
+                      GtpInputMultiplexer multiplexer)
     {
         m_out = new PrintWriter(out);
         m_isProgramDead = false;
+        if (multiplexer != null)
+        {
+            assert m_process != null;
+            // Unbounded queue, the multiplexer thread must not block
+            m_queue = new LinkedBlockingQueue<Message>();
+            m_streamsClosed = new CountDownLatch(2);
+            // Register error stream first, such that the stderr output of
+            // a program is usually passed to the callback before the
+            // response
+            multiplexer.register(err, m_process, new ErrorListener());
+            multiplexer.register(in, m_process, new InputListener());
+            return;
+        }
         m_queue = new ArrayBlockingQueue<Message>(10);
-        m_inputThread = new InputThread(in, m_queue);
+        m_inputThread = ThreadUtil.newThread(new InputReader(in));
         if (err != null)
         {
-            m_errorThread = new ErrorThread(err, m_queue);
+            m_errorThread = ThreadUtil.newThread(new ErrorReader(err));
             m_errorThread.start();
         }
         m_inputThread.start();
@@ -653,6 +926,14 @@ public final class GtpClient
         }
     }
 
+    private void receivedStdErr(String text)
+    {
+        if (m_callback != null)
+            m_callback.receivedStdErr(text);
+        if (m_log)
+            logError(text);
+    }
+
     private void throwProgramDied() throws GtpError
     {
         m_isProgramDead = true;
@@ -707,4 +988,11 @@ public final class GtpClient
         }
         return message;
     }
+
+    private void writeCommand(String command)
+    {
+        if (m_log)
+            logOut(command);
+        m_out.println(command);
+    }
 }
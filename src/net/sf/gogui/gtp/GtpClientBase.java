@@ -4,7 +4,9 @@ package net.sf.gogui.gtp;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Future;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
@@ -328,6 +330,41 @@ public abstract class GtpClientBase
         send(getCommandPlay(move));
     }
 
+    /** Send multiple commands without waiting for each response.
+        Subclasses that communicate through streams can write the commands
+        back-to-back, such that a sequence of commands costs only a single
+        round trip to the program. This default implementation sends the
+        commands one after another with send().
+        All commands are sent, even if some of them fail, so this should
+        only be used for commands that don't depend on the success of the
+        previous ones or if the caller can handle the failures.
+        The function returns after the responses to all commands have been
+        received.
+        @param commands The commands.
+        @return The responses in the same order as the commands. Future.get()
+        throws an ExecutionException with a GtpError as the cause, if the
+        command failed.
+        @see GtpClientUtil#getResponse */
+    public ArrayList<Future<String>> sendPipelined(List<String> commands)
+    {
+        ArrayList<Future<String>> result =
+            new ArrayList<Future<String>>(commands.size());
+        for (String command : commands)
+        {
+            GtpFuture future = new GtpFuture();
+            try
+            {
+                future.setResponse(send(command));
+            }
+            catch (GtpError e)
+            {
+                future.setError(e);
+            }
+            result.add(future);
+        }
+        return result;
+    }
+
     /** Interrupt current command.
         Can be called from a different thread during a send.
         Note: call queryInterruptSupport first
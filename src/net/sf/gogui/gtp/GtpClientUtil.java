@@ -8,7 +8,10 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import net.sf.gogui.go.Move;
+import net.sf.gogui.go.MoveCodeList;
 import static net.sf.gogui.gtp.AnalyzeUtil.getParameterCommand;
 import static net.sf.gogui.gtp.AnalyzeUtil.parseParameterLine;
 import net.sf.gogui.util.ErrorMessage;
@@ -58,6 +61,20 @@ public final class GtpClientUtil
         return cmd.toString();
     }
 
+    public static String getPlaySequenceCommand(GtpClientBase gtp,
+                                                MoveCodeList moves)
+    {
+        assert isPlaySequenceSupported(gtp);
+        StringBuilder cmd = new StringBuilder(2048);
+        cmd.append(getPlaySequenceCommand(gtp));
+        for (int i = 0; i < moves.size(); ++i)
+        {
+            cmd.append(' ');
+            cmd.append(moves.getMove(i));
+        }
+        return cmd.toString();
+    }
+
     public static String getPlaySequenceCommand(GtpClientBase gtp)
     {
         if (gtp.isSupported("gogui-play_sequence"))
@@ -67,6 +84,29 @@ public final class GtpClientUtil
         return null;
     }
 
+    /** Get the result of a command sent with GtpClientBase.sendPipelined.
+        @param future The future returned for the command.
+        @return The response text of the successful response.
+        @throws GtpError If the command failed. */
+    public static String getResponse(Future<String> future) throws GtpError
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof GtpError)
+                throw (GtpError)cause;
+            throw new GtpError(cause.getMessage());
+        }
+        catch (InterruptedException e)
+        {
+            throw new GtpError("Interrupted while waiting for response");
+        }
+    }
+
     /** Get title for current game from program.
         Uses gogui-title (see GoGui documentation) or the deprectated
         command gogui_title.
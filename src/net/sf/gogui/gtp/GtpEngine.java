@@ -8,13 +8,24 @@ import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.InvalidPointException;
 import net.sf.gogui.go.PointList;
 import net.sf.gogui.util.StringUtil;
+import net.sf.gogui.util.ThreadUtil;
 
 /** Base class for Go programs and tools implementing GTP. */
 public class GtpEngine
@@ -95,15 +106,21 @@ public class GtpEngine
         thread. */
     public void interruptCommand()
     {
-        m_interrupted = true;
+        m_numberInterrupts.incrementAndGet();
     }
 
     /** Handle command.
         The default implementation looks up the command within the registered
-        commands and calls the registered callback. */
+        commands and calls the registered callback.
+        Commands registered with registerConcurrent() can be handled by
+        multiple threads at the same time. */
     public void handleCommand(GtpCommand cmd) throws GtpError
     {
-        m_interrupted = false;
+        Integer numberInterrupts = Integer.valueOf(m_numberInterrupts.get());
+        if (m_concurrentInterruptsAtStart.get() != null)
+            m_concurrentInterruptsAtStart.set(numberInterrupts);
+        else
+            m_interruptsAtStart = numberInterrupts.intValue();
         String name = cmd.getCommand();
         GtpCallback callback = (GtpCallback)m_commands.get(name);
         if (callback == null)
@@ -125,32 +142,30 @@ public class GtpEngine
 
     /** Main command loop.
         Reads commands and calls GtpEngine.handleCommand until the end of
-        the input stream or the quit command is reached. */
+        the input stream or the quit command is reached.
+        If concurrent threads were enabled with setConcurrentThreads(),
+        commands registered with registerConcurrent() are run in a thread
+        pool, all other commands are run one after another by the main
+        loop. The responses are always written in the order of the
+        commands. */
     public void mainLoop(InputStream in, OutputStream out) throws IOException
     {
         m_out = new PrintStream(out);
         m_in = in;
-        ReadThread readThread = new ReadThread(this, m_in, m_log != null);
-        readThread.start();
+        CommandReader reader = new CommandReader(this, m_in, m_log != null);
+        ThreadUtil.newThread(reader).start();
+        if (m_concurrentThreads > 0)
+        {
+            mainLoopConcurrent(reader);
+            return;
+        }
         while (true)
         {
-            GtpCommand cmd = readThread.getCommand();
+            GtpCommand cmd = reader.getCommand();
             if (cmd == null)
                 return;
-            boolean status = true;
-            String response;
-            try
-            {
-                handleCommand(cmd);
-                response = cmd.getResponse().toString();
-            }
-            catch (GtpError e)
-            {
-                response = e.getMessage();
-                status = false;
-            }
-            String sanitizedResponse = response.replaceAll("\\n\\n", "\n \n");
-            respond(status, cmd.hasId(), cmd.getId(), sanitizedResponse);
+            boolean status = runCommand(cmd);
+            respond(cmd, status);
             // TODO: Use only quit flag not GtpCommand.isQuit once all
             // subclasses use the new registered quit command
             if (m_quit || cmd.isQuit())
@@ -222,6 +237,26 @@ public class GtpEngine
         m_commands.put(command, callback);
     }
 
+    /** Register new command that can run concurrently to other commands.
+        Like register(), but the command is run in a thread pool, if
+        concurrent threads are enabled with setConcurrentThreads().
+        The callback may only read state that is not changed by other
+        commands (e.g. name or version) and must not change any state,
+        because it can run at the same time as any other command.
+        The command is still run through handleCommand(). Engines that
+        override handleCommand() and keep state in it (e.g. a response or
+        delay for the next command) must not use this state for commands,
+        for which isConcurrent() returns true.
+        No commands are registered as concurrent by default.
+        Registering the command again with register() makes it a normal
+        command again. */
+    public final void registerConcurrent(String command,
+                                         GtpCallback callback)
+    {
+        register(command, callback);
+        m_concurrentCommands.add(command);
+    }
+
     public void respond(boolean status, boolean hasId, int id,
                         String response)
     {
@@ -242,6 +277,18 @@ public class GtpEngine
             m_log.println(fullResponse);
     }
 
+    /** Set number of threads for concurrent commands.
+        Must be called before mainLoop(). By default, it is zero, and all
+        commands are run one after another by the main loop.
+        @param numberThreads The maximum number of commands registered
+        with registerConcurrent() that run at the same time. Zero disables
+        running commands concurrently. */
+    public void setConcurrentThreads(int numberThreads)
+    {
+        assert numberThreads >= 0;
+        m_concurrentThreads = numberThreads;
+    }
+
     /** Set quit flag for terminating command loop. */
     public void setQuit()
     {
@@ -264,16 +311,111 @@ public class GtpEngine
     {
         if (m_commands.containsKey(command))
             m_commands.remove(command);
+        m_concurrentCommands.remove(command);
+    }
+
+    /** Check if a command is run concurrently to other commands.
+        @return true, if the command was registered with
+        registerConcurrent() and concurrent threads are enabled with
+        setConcurrentThreads(). */
+    public final boolean isConcurrent(String command)
+    {
+        return (m_concurrentThreads > 0
+                && m_concurrentCommands.contains(command));
     }
 
+    /** Check if the current command was interrupted.
+        Can be called from any thread, e.g. from a search thread started by
+        a command. In a thread of the pool for concurrent commands, it
+        refers to the command handled by this thread.
+        @return true, if interruptCommand() was called after the current
+        command was started. */
     protected boolean isInterrupted()
     {
-        return m_interrupted;
+        Integer numberInterruptsAtStart = m_concurrentInterruptsAtStart.get();
+        if (numberInterruptsAtStart == null)
+            return (m_numberInterrupts.get() != m_interruptsAtStart);
+        return (m_numberInterrupts.get()
+                != numberInterruptsAtStart.intValue());
     }
 
-    private volatile boolean m_interrupted;
+    /** Writes responses in the order of the commands.
+        Commands are added in the order they were received. A response is
+        written when its command and all commands received before it are
+        finished. */
+    private final class ResponseBuffer
+    {
+        public Entry add(GtpCommand cmd)
+        {
+            m_lock.lock();
+            try
+            {
+                Entry entry = new Entry(cmd);
+                m_entries.add(entry);
+                return entry;
+            }
+            finally
+            {
+                m_lock.unlock();
+            }
+        }
 
-    private boolean m_quit;
+        public void finished(Entry entry, boolean status)
+        {
+            m_lock.lock();
+            try
+            {
+                entry.m_finished = true;
+                entry.m_status = status;
+                while (! m_entries.isEmpty()
+                       && m_entries.getFirst().m_finished)
+                {
+                    Entry first = m_entries.removeFirst();
+                    respond(first.m_cmd, first.m_status);
+                }
+            }
+            finally
+            {
+                m_lock.unlock();
+            }
+        }
+
+        private final LinkedList<Entry> m_entries = new LinkedList<Entry>();
+
+        private final Lock m_lock = new ReentrantLock();
+    }
+
+    private static final class Entry
+    {
+        public Entry(GtpCommand cmd)
+        {
+            m_cmd = cmd;
+        }
+
+        public final GtpCommand m_cmd;
+
+        public boolean m_finished;
+
+        public boolean m_status;
+    }
+
+    /** Number of calls to interruptCommand(). */
+    private final AtomicInteger m_numberInterrupts = new AtomicInteger();
+
+    /** Value of m_numberInterrupts at the start of the current command.
+        Not used for commands run in the pool for concurrent commands. */
+    private volatile int m_interruptsAtStart;
+
+    /** Value of m_numberInterrupts at the start of the current concurrent
+        command.
+        Only set in the threads of the pool for concurrent commands; null
+        in all other threads, which use m_interruptsAtStart. */
+    private final ThreadLocal<Integer> m_concurrentInterruptsAtStart =
+        new ThreadLocal<Integer>();
+
+    private volatile boolean m_quit;
+
+    private int m_concurrentThreads;
 
     private String m_name = "Unknown";
 
@@ -286,52 +428,165 @@ public class GtpEngine
     private final Map<String,GtpCallback> m_commands
         = new TreeMap<String,GtpCallback>();
 
+    /** Commands registered with registerConcurrent(). */
+    private final Set<String> m_concurrentCommands = new HashSet<String>();
+
     private InputStream m_in;
 
     private final PrintStream m_log;
 
     private PrintStream m_out;
+
+    /** Main loop if concurrent threads are enabled.
+        Concurrent commands are run in a thread pool. All other commands
+        are run by this loop like in mainLoop() and the next command is
+        only read after they are finished, so that no command is started
+        after a command that set the quit flag. */
+    private void mainLoopConcurrent(CommandReader reader)
+    {
+        ExecutorService pool =
+            Executors.newFixedThreadPool(m_concurrentThreads,
+                                         ThreadUtil.getThreadFactory());
+        final ResponseBuffer buffer = new ResponseBuffer();
+        try
+        {
+            while (true)
+            {
+                final GtpCommand cmd = reader.getCommand();
+                if (cmd == null)
+                    break;
+                final Entry entry = buffer.add(cmd);
+                if (isConcurrent(cmd.getCommand()))
+                {
+                    pool.execute(new Runnable() {
+                            public void run() {
+                                buffer.finished(entry,
+                                                runConcurrentCommand(cmd));
+                            } });
+                    continue;
+                }
+                buffer.finished(entry, runCommand(cmd));
+                if (m_quit || cmd.isQuit())
+                    break;
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+            awaitTermination(pool);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor)
+    {
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS))
+                    break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /** Run a command with handleCommand().
+        @param cmd The command. If the command fails, the response is
+        replaced by the error message.
+        @return false, if the command failed. */
+    private boolean runCommand(GtpCommand cmd)
+    {
+        try
+        {
+            handleCommand(cmd);
+            return true;
+        }
+        catch (GtpError e)
+        {
+            cmd.setResponse(e.getMessage());
+            return false;
+        }
+    }
+
+    /** Run a command in a thread of the pool for concurrent commands.
+        Uses a thread-local value for isInterrupted(), because the command
+        can run at the same time as other commands. */
+    private boolean runConcurrentCommand(GtpCommand cmd)
+    {
+        m_concurrentInterruptsAtStart.set(
+                                Integer.valueOf(m_numberInterrupts.get()));
+        try
+        {
+            return runCommand(cmd);
+        }
+        finally
+        {
+            m_concurrentInterruptsAtStart.remove();
+        }
+    }
+
+    private void respond(GtpCommand cmd, boolean status)
+    {
+        String response = cmd.getResponse().toString();
+        String sanitizedResponse = response.replaceAll("\\n\\n", "\n \n");
+        respond(status, cmd.hasId(), cmd.getId(), sanitizedResponse);
+    }
 }
 
-/** Thread reading the command stream.
+/** Reads the command stream.
     Reading is done in a seperate thread to allow the notification
     of Server about an asynchronous interrupt received using
-    the special comment line '# interrupt'. */
-class ReadThread
-    extends Thread
+    the special comment line '# interrupt'.
+    Uses a lock from java.util.concurrent instead of synchronized and wait(),
+    which would pin the carrier thread if run in a virtual thread (see
+    ThreadUtil). */
+class CommandReader
+    implements Runnable
 {
-    public ReadThread(GtpEngine server, InputStream in, boolean log)
+    public CommandReader(GtpEngine server, InputStream in, boolean log)
     {
         m_in = new BufferedReader(new InputStreamReader(in));
         m_server = server;
         m_log = log;
     }
 
-    public synchronized boolean endOfFile()
+    public boolean endOfFile()
     {
-        return m_endOfFile;
+        m_lock.lock();
+        try
+        {
+            return m_endOfFile;
+        }
+        finally
+        {
+            m_lock.unlock();
+        }
     }
 
     public GtpCommand getCommand()
     {
-        synchronized (this)
+        m_lock.lock();
+        try
         {
             assert ! m_waitCommand;
             m_waitCommand = true;
-            notifyAll();
-            try
-            {
-                wait();
-            }
-            catch (InterruptedException e)
-            {
-                System.err.println("Interrupted");
-            }
-            assert m_endOfFile || ! m_waitCommand;
+            m_changed.signalAll();
+            while (m_waitCommand)
+                m_changed.awaitUninterruptibly();
             GtpCommand result = m_command;
             m_command = null;
             return result;
         }
+        finally
+        {
+            m_lock.unlock();
+        }
     }
 
     public void run()
@@ -343,10 +598,15 @@ class ReadThread
                 String line = m_in.readLine();
                 if (line == null)
                 {
-                    synchronized (this)
+                    m_lock.lock();
+                    try
                     {
                         m_endOfFile = true;
                     }
+                    finally
+                    {
+                        m_lock.unlock();
+                    }
                 }
                 else
                 {
@@ -360,21 +620,24 @@ class ReadThread
                     if (line.equals("") || line.charAt(0) == '#')
                         continue;
                 }
-                synchronized (this)
+                m_lock.lock();
+                try
                 {
                     while (! m_waitCommand)
-                    {
-                        wait();
-                    }
+                        m_changed.awaitUninterruptibly();
                     if (line == null)
                         m_command = null;
                     else
                         m_command = new GtpCommand(line);
-                    notifyAll();
                     m_waitCommand = false;
+                    m_changed.signalAll();
                     if (m_command == null || m_command.isQuit())
                         return;
                 }
+                finally
+                {
+                    m_lock.unlock();
+                }
             }
         }
         catch (Throwable e)
@@ -394,4 +657,9 @@ class ReadThread
     private GtpCommand m_command;
 
     private final GtpEngine m_server;
+
+    private final Lock m_lock = new ReentrantLock();
+
+    /** Signalled if m_waitCommand changed. */
+    private final Condition m_changed = m_lock.newCondition();
 }
@@ -0,0 +1,130 @@
+// GtpFuture.java
+
+package net.sf.gogui.gtp;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** Future for the response to a GTP command.
+    Completed with the response text or with a GtpError, which is thrown by
+    get() as the cause of an ExecutionException. Commands cannot be
+    cancelled, because they are sent to the program immediately.
+    Uses a lock instead of synchronized, such that waiting does not pin the
+    carrier thread of a virtual thread.
+    @see GtpClientBase#sendPipelined */
+final class GtpFuture
+    implements Future<String>
+{
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        return false;
+    }
+
+    public String get() throws InterruptedException, ExecutionException
+    {
+        m_lock.lock();
+        try
+        {
+            while (! m_isDone)
+                m_done.await();
+            return getResult();
+        }
+        finally
+        {
+            m_lock.unlock();
+        }
+    }
+
+    public String get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        m_lock.lock();
+        try
+        {
+            long left = unit.toNanos(timeout);
+            while (! m_isDone)
+            {
+                if (left <= 0)
+                    throw new TimeoutException();
+                left = m_done.awaitNanos(left);
+            }
+            return getResult();
+        }
+        finally
+        {
+            m_lock.unlock();
+        }
+    }
+
+    public boolean isCancelled()
+    {
+        return false;
+    }
+
+    public boolean isDone()
+    {
+        m_lock.lock();
+        try
+        {
+            return m_isDone;
+        }
+        finally
+        {
+            m_lock.unlock();
+        }
+    }
+
+    public void setError(GtpError error)
+    {
+        m_lock.lock();
+        try
+        {
+            assert ! m_isDone;
+            m_error = error;
+            m_isDone = true;
+            m_done.signalAll();
+        }
+        finally
+        {
+            m_lock.unlock();
+        }
+    }
+
+    public void setResponse(String response)
+    {
+        m_lock.lock();
+        try
+        {
+            assert ! m_isDone;
+            m_response = response;
+            m_isDone = true;
+            m_done.signalAll();
+        }
+        finally
+        {
+            m_lock.unlock();
+        }
+    }
+
+    private boolean m_isDone;
+
+    private String m_response;
+
+    private GtpError m_error;
+
+    private final Lock m_lock = new ReentrantLock();
+
+    private final Condition m_done = m_lock.newCondition();
+
+    private String getResult() throws ExecutionException
+    {
+        if (m_error != null)
+            throw new ExecutionException(m_error);
+        return m_response;
+    }
+}
@@ -0,0 +1,244 @@
+// GtpInputMultiplexer.java
+
+package net.sf.gogui.gtp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import net.sf.gogui.util.StringUtil;
+import net.sf.gogui.util.ThreadUtil;
+
+/** Reads the output of many GTP programs in a single thread.
+    By default, a GtpClient uses two threads for reading the standard output
+    and standard error streams of the program with blocking reads. If many
+    programs are used at the same time (e.g. by TwoGtp with many threads),
+    a single multiplexer can be shared between the clients instead.
+    <p>
+    Java provides no selectable channels for the streams of a process,
+    therefore the multiplexer polls all streams with InputStream.available()
+    and only reads bytes that are available, which never blocks. If no
+    stream has data, the thread sleeps for a time that doubles while the
+    streams stay idle up to a maximum of MAX_SLEEP milliseconds. The end of a
+    stream is detected, when the process has exited and the stream contains
+    no more data.
+    </p>
+    <p>
+    The listeners are called in the multiplexer thread and should not block,
+    because that would block reading the streams of all other programs.
+    </p> */
+public final class GtpInputMultiplexer
+{
+    /** Listener for the decoded text of a stream. */
+    interface Listener
+    {
+        /** Called when text was received.
+            @param text The text; only valid during the call. */
+        void received(CharBuffer text);
+
+        /** Called when the end of the stream was reached. */
+        void closed();
+    }
+
+    /** Register a stream of a process.
+        @param in The stream.
+        @param process The process that writes to the stream.
+        @param listener The listener for the text of the stream. */
+    void register(InputStream in, Process process, Listener listener)
+    {
+        m_lock.lock();
+        try
+        {
+            m_streams.add(new Stream(in, process, listener));
+            if (m_thread == null)
+            {
+                m_thread = ThreadUtil.newThread(new Runnable() {
+                        public void run()
+                        {
+                            try
+                            {
+                                mainLoop();
+                            }
+                            catch (Throwable t)
+                            {
+                                StringUtil.printException(t);
+                            }
+                        }
+                    });
+                m_thread.setName("GtpInputMultiplexer");
+                m_thread.setDaemon(true);
+                m_thread.start();
+            }
+            m_registered.signalAll();
+        }
+        finally
+        {
+            m_lock.unlock();
+        }
+    }
+
+    /** Maximum sleep time in milliseconds if all streams are idle. */
+    private static final int MAX_SLEEP = 4;
+
+    private static final class Stream
+    {
+        public Stream(InputStream in, Process process, Listener listener)
+        {
+            m_in = in;
+            m_process = process;
+            m_listener = listener;
+            m_decoder = Charset.defaultCharset().newDecoder();
+            m_decoder.onMalformedInput(CodingErrorAction.REPLACE);
+            m_decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        /** Read the available data.
+            @return true if data was read or the stream was closed. */
+        public boolean poll()
+        {
+            // Check for exit before checking for available data, so that
+            // no data written before the exit can get lost
+            boolean hasExited = hasExited();
+            int n;
+            try
+            {
+                n = m_in.available();
+                if (n == 0)
+                {
+                    if (! hasExited)
+                        return false;
+                    close();
+                    return true;
+                }
+                n = Math.min(n, m_bytes.remaining());
+                n = m_in.read(m_bytes.array(), m_bytes.position(), n);
+            }
+            catch (IOException e)
+            {
+                n = -1;
+            }
+            if (n < 0)
+            {
+                close();
+                return true;
+            }
+            m_bytes.position(m_bytes.position() + n);
+            decode(false);
+            return true;
+        }
+
+        public boolean isClosed()
+        {
+            return m_isClosed;
+        }
+
+        private boolean m_isClosed;
+
+        private final InputStream m_in;
+
+        private final Process m_process;
+
+        private final Listener m_listener;
+
+        private final CharsetDecoder m_decoder;
+
+        private final ByteBuffer m_bytes = ByteBuffer.allocate(8192);
+
+        private final CharBuffer m_chars = CharBuffer.allocate(8192);
+
+        private void close()
+        {
+            decode(true);
+            m_decoder.flush(m_chars);
+            sendChars();
+            m_isClosed = true;
+            m_listener.closed();
+        }
+
+        private void decode(boolean endOfInput)
+        {
+            m_bytes.flip();
+            while (true)
+            {
+                CoderResult result =
+                    m_decoder.decode(m_bytes, m_chars, endOfInput);
+                sendChars();
+                if (! result.isOverflow())
+                    break;
+            }
+            m_bytes.compact();
+        }
+
+        private boolean hasExited()
+        {
+            try
+            {
+                m_process.exitValue();
+                return true;
+            }
+            catch (IllegalThreadStateException e)
+            {
+                return false;
+            }
+        }
+
+        private void sendChars()
+        {
+            m_chars.flip();
+            if (m_chars.hasRemaining())
+                m_listener.received(m_chars);
+            m_chars.clear();
+        }
+    }
+
+    private Thread m_thread;
+
+    private final Lock m_lock = new ReentrantLock();
+
+    /** Signalled if a stream was registered. */
+    private final Condition m_registered = m_lock.newCondition();
+
+    private final CopyOnWriteArrayList<Stream> m_streams =
+        new CopyOnWriteArrayList<Stream>();
+
+    private void mainLoop() throws InterruptedException
+    {
+        int sleep = 0;
+        while (true)
+        {
+            m_lock.lock();
+            try
+            {
+                while (m_streams.isEmpty())
+                    m_registered.await();
+            }
+            finally
+            {
+                m_lock.unlock();
+            }
+            boolean anyData = false;
+            for (Stream stream : m_streams)
+                if (stream.poll())
+                {
+                    anyData = true;
+                    if (stream.isClosed())
+                        m_streams.remove(stream);
+                }
+            if (anyData)
+                sleep = 0;
+            else
+            {
+                sleep = Math.min(Math.max(1, 2 * sleep), MAX_SLEEP);
+                Thread.sleep(sleep);
+            }
+        }
+    }
+}
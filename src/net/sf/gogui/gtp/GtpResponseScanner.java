@@ -0,0 +1,313 @@
+// GtpResponseScanner.java
+
+package net.sf.gogui.gtp;
+
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.PointList;
+
+/** Cursor for parsing GTP responses.
+    Parses points, numbers and point lists directly from the characters of
+    a response without creating a String for each token. The text can be
+    any CharSequence, for example a String or a StringBuilder, which is
+    reused for multiple responses. A scanner can also be reused for
+    multiple texts with reset().
+    Tokens are separated by whitespace. Unlike StringUtil.splitArguments(),
+    quotes are not handled. */
+public final class GtpResponseScanner
+{
+    public GtpResponseScanner()
+    {
+        reset("");
+    }
+
+    public GtpResponseScanner(CharSequence text)
+    {
+        reset(text);
+    }
+
+    /** Get the current position of the cursor in the text. */
+    public int getPosition()
+    {
+        return m_position;
+    }
+
+    /** Check if there is another token.
+        Skips whitespace including newlines. */
+    public boolean hasNext()
+    {
+        while (m_position < m_end
+               && Character.isWhitespace(m_text.charAt(m_position)))
+            ++m_position;
+        return (m_position < m_end);
+    }
+
+    /** Check if there is another token on the current line.
+        Skips whitespace, but not the end of the line. */
+    public boolean hasNextOnLine()
+    {
+        while (m_position < m_end)
+        {
+            char c = m_text.charAt(m_position);
+            if (c == '\n' || ! Character.isWhitespace(c))
+                break;
+            ++m_position;
+        }
+        return (m_position < m_end && m_text.charAt(m_position) != '\n');
+    }
+
+    /** Get the next token as a string.
+        Only for tokens that need to be stored as strings, parsing points and
+        numbers should use the other functions. */
+    public String next() throws GtpResponseFormatError
+    {
+        int start = nextToken();
+        return m_text.subSequence(start, m_position).toString();
+    }
+
+    /** Parse the next token as a floating point number. */
+    public double nextDouble() throws GtpResponseFormatError
+    {
+        int start = nextToken();
+        int end = m_position;
+        int i = start;
+        boolean negative = false;
+        char c = m_text.charAt(i);
+        if (c == '-' || c == '+')
+        {
+            negative = (c == '-');
+            ++i;
+        }
+        long mantissa = 0;
+        int numberDigits = 0;
+        int numberFractionDigits = 0;
+        boolean isFraction = false;
+        for ( ; i < end; ++i)
+        {
+            c = m_text.charAt(i);
+            if (c == '.' && ! isFraction)
+                isFraction = true;
+            else if (c >= '0' && c <= '9')
+            {
+                mantissa = 10 * mantissa + (c - '0');
+                ++numberDigits;
+                if (isFraction)
+                    ++numberFractionDigits;
+            }
+            else
+                break;
+        }
+        // The fast path is exact: the mantissa and the power of ten can be
+        // represented as double and the division is correctly rounded.
+        // Other formats (e.g. exponents) are left to Double.parseDouble()
+        if (i == end && numberDigits > 0 && numberDigits <= 15
+            && numberFractionDigits < POWERS_OF_TEN.length)
+        {
+            double result = mantissa / POWERS_OF_TEN[numberFractionDigits];
+            return (negative ? -result : result);
+        }
+        try
+        {
+            return Double.parseDouble(m_text.subSequence(start, end)
+                                      .toString());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new GtpResponseFormatError("Floating point number expected");
+        }
+    }
+
+    /** Parse the next token as an integer. */
+    public int nextInt() throws GtpResponseFormatError
+    {
+        int start = nextToken();
+        int end = m_position;
+        int i = start;
+        boolean negative = false;
+        char c = m_text.charAt(i);
+        if (c == '-' || c == '+')
+        {
+            negative = (c == '-');
+            ++i;
+        }
+        if (i == end)
+            throw new GtpResponseFormatError("Integer expected");
+        long result = 0;
+        for ( ; i < end; ++i)
+        {
+            c = m_text.charAt(i);
+            if (c < '0' || c > '9')
+                throw new GtpResponseFormatError("Integer expected");
+            result = 10 * result + (c - '0');
+            if (result > (long)Integer.MAX_VALUE + 1)
+                throw new GtpResponseFormatError("Integer expected");
+        }
+        if (negative)
+            result = -result;
+        if (result > Integer.MAX_VALUE)
+            throw new GtpResponseFormatError("Integer expected");
+        return (int)result;
+    }
+
+    /** Skip to the beginning of the next line.
+        @return false, if the end of the text was reached without finding
+        a newline. */
+    public boolean nextLine()
+    {
+        while (m_position < m_end)
+            if (m_text.charAt(m_position++) == '\n')
+                return true;
+        return false;
+    }
+
+    /** Parse the next token as a point.
+        @param boardSize The board size.
+        @return The point or null for pass. */
+    public GoPoint nextPoint(int boardSize) throws GtpResponseFormatError
+    {
+        int start = nextToken();
+        return parsePoint(m_text, start, m_position, boardSize);
+    }
+
+    /** Parse all remaining tokens as points.
+        @param boardSize The board size.
+        @param list The list to append the points to. */
+    public void nextPointList(int boardSize, PointList list)
+        throws GtpResponseFormatError
+    {
+        while (hasNext())
+            list.add(nextPoint(boardSize));
+    }
+
+    /** Skip the next token, if it is equal to a word.
+        The comparison ignores case like String.equalsIgnoreCase().
+        @return true, if the next token was equal to the word and was
+        skipped. */
+    public boolean skipWord(String word)
+    {
+        if (! hasNext())
+            return false;
+        int end = m_position + word.length();
+        if (end > m_end
+            || (end < m_end && ! Character.isWhitespace(m_text.charAt(end))))
+            return false;
+        for (int i = 0; i < word.length(); ++i)
+        {
+            char c = m_text.charAt(m_position + i);
+            char w = word.charAt(i);
+            if (c != w && Character.toUpperCase(c) != Character.toUpperCase(w)
+                && Character.toLowerCase(c) != Character.toLowerCase(w))
+                return false;
+        }
+        m_position = end;
+        return true;
+    }
+
+    /** Start scanning a new text. */
+    public void reset(CharSequence text)
+    {
+        reset(text, 0, text.length());
+    }
+
+    /** Start scanning a part of a new text.
+        @param text The text.
+        @param start The start index of the part to scan.
+        @param end The end index (exclusive) of the part to scan. */
+    public void reset(CharSequence text, int start, int end)
+    {
+        assert start >= 0 && start <= end && end <= text.length();
+        m_text = text;
+        m_position = start;
+        m_end = end;
+    }
+
+    /** Check if a part of a text has the syntax of a point or pass.
+        Accepts the same words as the regular expression
+        "[Pp][Aa][Ss][Ss]|[A-Ta-t](1\\d|[1-9])". */
+    static boolean isPoint(CharSequence text, int start, int end)
+    {
+        int length = end - start;
+        if (length == 4)
+            return isPass(text, start);
+        if (length < 2 || length > 3)
+            return false;
+        char c = Character.toUpperCase(text.charAt(start));
+        if (c < 'A' || c > 'T')
+            return false;
+        char digit = text.charAt(start + 1);
+        if (length == 2)
+            return (digit >= '1' && digit <= '9');
+        char secondDigit = text.charAt(start + 2);
+        return (digit == '1' && secondDigit >= '0' && secondDigit <= '9');
+    }
+
+    /** Parse a part of a text as a point.
+        Accepts the same format as GoPoint.parsePoint().
+        @return The point or null for pass. */
+    static GoPoint parsePoint(CharSequence text, int start, int end,
+                              int boardSize)
+        throws GtpResponseFormatError
+    {
+        int length = end - start;
+        if (length == 4 && isPass(text, start))
+            return null;
+        if (length < 2)
+            throw invalidPoint(text, start, end);
+        char xChar = Character.toUpperCase(text.charAt(start));
+        if (xChar >= 'J')
+            --xChar;
+        int x = xChar - 'A';
+        int y = 0;
+        for (int i = start + 1; i < end; ++i)
+        {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9' || y > GoPoint.MAX_SIZE)
+                throw invalidPoint(text, start, end);
+            y = 10 * y + (c - '0');
+        }
+        --y;
+        if (x < 0 || x >= boardSize || y < 0 || y >= boardSize)
+            throw invalidPoint(text, start, end);
+        return GoPoint.get(x, y);
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+        1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private int m_end;
+
+    private int m_position;
+
+    private CharSequence m_text;
+
+    private static GtpResponseFormatError invalidPoint(CharSequence text,
+                                                       int start, int end)
+    {
+        return new GtpResponseFormatError("Invalid point \""
+                                          + text.subSequence(start, end)
+                                          + "\"");
+    }
+
+    private static boolean isPass(CharSequence text, int start)
+    {
+        return (Character.toUpperCase(text.charAt(start)) == 'P'
+                && Character.toUpperCase(text.charAt(start + 1)) == 'A'
+                && Character.toUpperCase(text.charAt(start + 2)) == 'S'
+                && Character.toUpperCase(text.charAt(start + 3)) == 'S');
+    }
+
+    /** Skip to the next token.
+        @return The start index of the token. The cursor is at the end of
+        the token. */
+    private int nextToken() throws GtpResponseFormatError
+    {
+        if (! hasNext())
+            throw new GtpResponseFormatError("Unexpected end of response");
+        int start = m_position;
+        while (m_position < m_end
+               && ! Character.isWhitespace(m_text.charAt(m_position)))
+            ++m_position;
+        return start;
+    }
+}
@@ -4,6 +4,7 @@ package net.sf.gogui.gtp;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 import net.sf.gogui.game.TimeSettings;
 import net.sf.gogui.go.Board;
 import net.sf.gogui.go.ConstBoard;
@@ -16,6 +17,7 @@ import static net.sf.gogui.go.GoColor.WHITE_BLACK;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
+import net.sf.gogui.go.MoveCodeList;
 import net.sf.gogui.util.ObjectUtil;
 
 /** Synchronizes a GTP engine with a Go board.
@@ -69,7 +71,7 @@ public class GtpSynchronizer
         sendGameInfo(komi, timeSettings);
         ConstBoard targetState = computeTargetState(board);
         setup(targetState);
-        ArrayList<Move> moves = new ArrayList<Move>();
+        MoveCodeList moves = new MoveCodeList();
         for (int i = 0; i < targetState.getNumberMoves(); ++i)
             moves.add(targetState.getMove(i));
         play(moves);
@@ -88,7 +90,7 @@ public class GtpSynchronizer
             return;
         }
         m_isOutOfSync = true;
-        ArrayList<Move> moves = new ArrayList<Move>();
+        MoveCodeList moves = new MoveCodeList();
         int numberUndo = computeToPlay(moves, targetState);
         if (numberUndo == 0 || m_isSupportedUndo || m_isSupportedGGUndo)
         {
@@ -240,7 +242,7 @@ public class GtpSynchronizer
 
     /** Compute number of moves to undo and moves to execute.
         @return Number of moves to undo. */
-    private int computeToPlay(ArrayList<Move> moves, ConstBoard targetState)
+    private int computeToPlay(MoveCodeList moves, ConstBoard targetState)
         throws GtpError
     {
         int numberCommonMoves = findNumberCommonMoves(targetState);
@@ -258,8 +260,8 @@ public class GtpSynchronizer
         {
             if (i >= m_engineState.getNumberMoves())
                 break;
-            Move move = (Move)targetState.getMove(i);
-            if (! move.equals(m_engineState.getMove(i)))
+            if (targetState.getMove(i).getCode()
+                != m_engineState.getMove(i).getCode())
                 break;
         }
         return i;
@@ -300,7 +302,7 @@ public class GtpSynchronizer
         m_engineState.play(move);
     }
 
-    private void play(ArrayList<Move> moves) throws GtpError
+    private void play(MoveCodeList moves) throws GtpError
     {
         if (moves.isEmpty())
             return;
@@ -309,16 +311,38 @@ public class GtpSynchronizer
             String cmd = GtpClientUtil.getPlaySequenceCommand(m_gtp, moves);
             m_gtp.send(cmd);
             for (int i = 0; i < moves.size(); ++i)
-                m_engineState.play(moves.get(i));
+                m_engineState.play(moves.getMove(i));
         }
-        else
+        else if (moves.size() > 1)
         {
+            ArrayList<String> commands = new ArrayList<String>(moves.size());
+            for (int i = 0; i < moves.size(); ++i)
+                commands.add(m_gtp.getCommandPlay(moves.getMove(i)));
+            ArrayList<Future<String>> responses =
+                m_gtp.sendPipelined(commands);
             for (int i = 0; i < moves.size(); ++i)
             {
-                play(moves.get(i));
+                try
+                {
+                    GtpClientUtil.getResponse(responses.get(i));
+                }
+                catch (GtpError e)
+                {
+                    // The following commands were already sent, so the
+                    // state of the engine is unknown and it needs a full
+                    // initialization at the next synchronization
+                    m_engineState = null;
+                    throw e;
+                }
+                m_engineState.play(moves.getMove(i));
                 updateListener();
             }
         }
+        else
+        {
+            play(moves.getMove(0));
+            updateListener();
+        }
     }
 
     private void sendGameInfo(Komi komi, TimeSettings timeSettings)
@@ -7,8 +7,6 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import net.sf.gogui.game.ConstClock;
 import net.sf.gogui.game.TimeSettings;
 import net.sf.gogui.go.GoColor;
@@ -93,19 +91,22 @@ public final class GtpUtil
     public static double[][] parseDoubleBoard(String response, int boardSize)
         throws GtpResponseFormatError
     {
-        try
+        double result[][] = new double[boardSize][boardSize];
+        GtpResponseScanner scanner = new GtpResponseScanner(response);
+        for (int y = boardSize - 1; y >= 0; --y)
         {
-            double result[][] = new double[boardSize][boardSize];
-            String s[][] = parseStringBoard(response, boardSize);
+            while (! scanner.hasNextOnLine())
+                if (! scanner.nextLine())
+                    throw new GtpResponseFormatError("Incomplete board");
             for (int x = 0; x < boardSize; ++x)
-                for (int y = 0; y < boardSize; ++y)
-                    result[x][y] = Double.parseDouble(s[x][y]);
-            return result;
-        }
-        catch (NumberFormatException e)
-        {
-            throw new GtpResponseFormatError("Floating point number expected");
+            {
+                if (! scanner.hasNextOnLine())
+                    throw new GtpResponseFormatError("Incomplete board");
+                result[x][y] = scanner.nextDouble();
+            }
+            scanner.nextLine();
         }
+        return result;
     }
 
     public static GoPoint parsePoint(String s, int boardSize)
@@ -125,14 +126,9 @@ public final class GtpUtil
     public static PointList parsePointList(String s, int boardSize)
         throws GtpResponseFormatError
     {
-        try
-        {
-            return GoPoint.parsePointList(s, boardSize);
-        }
-        catch (InvalidPointException e)
-        {
-            throw new GtpResponseFormatError(e.getMessage());
-        }
+        PointList list = new PointList();
+        new GtpResponseScanner(s).nextPointList(boardSize, list);
+        return list;
     }
 
     /** Find all points contained in string. */
@@ -141,28 +137,35 @@ public final class GtpUtil
         return parsePointString(text, GoPoint.MAX_SIZE);
     }
 
-    /** Find all points contained in string. */
+    /** Find all points contained in string.
+        Finds all words in the text that are points or "pass" (see
+        GtpResponseScanner.isPoint()). Points that are not on the board are
+        ignored. */
     public static PointList parsePointString(String text, int boardSize)
     {
-        String regex = "\\b([Pp][Aa][Ss][Ss]|[A-Ta-t](1\\d|[1-9]))\\b";
-        Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(text);
         PointList list = new PointList(32);
-        while (matcher.find())
+        int length = text.length();
+        int i = 0;
+        while (i < length)
         {
-            int start = matcher.start();
-            int end = matcher.end();
-            GoPoint point;
+            if (! isWordChar(text.charAt(i)))
+            {
+                ++i;
+                continue;
+            }
+            int start = i;
+            while (i < length && isWordChar(text.charAt(i)))
+                ++i;
+            if (! GtpResponseScanner.isPoint(text, start, i))
+                continue;
             try
             {
-                point = parsePoint(text.substring(start, end), boardSize);
+                list.add(GtpResponseScanner.parsePoint(text, start, i,
+                                                       boardSize));
             }
             catch (GtpResponseFormatError e)
             {
-                assert false;
-                continue;
             }
-            list.add(point);
         }
         return list;
     }
@@ -295,6 +298,13 @@ public final class GtpUtil
         }
     }
 
+    /** Check if character is a word character as used by the regular
+        expression boundary matcher. */
+    private static boolean isWordChar(char c)
+    {
+        return (Character.isLetterOrDigit(c) || c == '_');
+    }
+
     /** Make constructor unavailable; class is for namespace only. */
     private GtpUtil()
     {
@@ -3,11 +3,7 @@
 package net.sf.gogui.gui;
 
 import java.awt.Color;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Locale;
 import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.ConstPointList;
 import net.sf.gogui.go.GoColor;
@@ -21,6 +17,7 @@ import net.sf.gogui.go.PointList;
 import net.sf.gogui.gtp.AnalyzeCommand;
 import net.sf.gogui.gtp.AnalyzeType;
 import net.sf.gogui.gtp.GtpResponseFormatError;
+import net.sf.gogui.gtp.GtpResponseScanner;
 import net.sf.gogui.gtp.GtpUtil;
 import net.sf.gogui.util.StringUtil;
 
@@ -139,95 +136,131 @@ public final class AnalyzeShow
     }
 
     /** Parse gfx analyze command response and display it on the board.
+        Uses a single GtpResponseScanner for all lines of the response.
         @param showTextBuffer See AnalyzeShow.show() */
     public static void showGfx(String response, GuiBoard guiBoard,
                                StatusBar statusBar,
                                StringBuilder showTextBuffer)
     {
-        BufferedReader reader
-            = new BufferedReader(new StringReader(response));
-        while (true)
+        GtpResponseScanner scanner = new GtpResponseScanner();
+        int length = response.length();
+        int start = 0;
+        while (start < length)
         {
-            String line;
-            try
-            {
-                line = reader.readLine();
-            }
-            catch (IOException e)
-            {
-                assert false;
-                break;
-            }
-            if (line == null)
+            int end = start;
+            while (end < length && response.charAt(end) != '\n'
+                   && response.charAt(end) != '\r')
+                ++end;
+            showGfxLine(response, start, end, scanner, guiBoard, statusBar,
+                        showTextBuffer);
+            start = end + 1;
+        }
+    }
+
+    /** Parse gfx analyze command response line and display it on the board.
+        @param showTextBuffer See AnalyzeShow.show() */
+    public static void showGfxLine(String line, GuiBoard guiBoard,
+                                   StatusBar statusBar,
+                                   StringBuilder showTextBuffer)
+    {
+        showGfxLine(line, 0, line.length(), new GtpResponseScanner(),
+                    guiBoard, statusBar, showTextBuffer);
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private AnalyzeShow()
+    {
+    }
+
+    private static GoColor getColor(ConstBoard board, GoPoint pointArg,
+                                    ConstPointList pointListArg)
+    {
+        GoColor color = EMPTY;
+        if (pointArg != null)
+            color = board.getColor(pointArg);
+        if (color != EMPTY)
+            return color;
+        for (GoPoint point : pointListArg)
+        {
+            color = board.getColor(point);
+            if (color != EMPTY)
                 break;
-            showGfxLine(line, guiBoard, statusBar, showTextBuffer);
+        }
+        return color;
+    }
+
+    /** Get the next point of a gfx command.
+        @return The point or null for pass or an invalid point. */
+    private static GoPoint nextGfxPoint(GtpResponseScanner scanner, int size)
+    {
+        try
+        {
+            return scanner.nextPoint(size);
+        }
+        catch (GtpResponseFormatError e)
+        {
+            return null;
         }
     }
 
-    public static void showGfxCircle(String[] arg, GuiBoard guiBoard)
+    private static void showGfxCircle(GtpResponseScanner scanner,
+                                      GuiBoard guiBoard)
     {
         int size = guiBoard.getBoardSize();
-        for (int i = 1; i < arg.length; ++i)
+        while (scanner.hasNext())
         {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(arg[i], size);
-                if (point == null)
-                    continue;
+            GoPoint point = nextGfxPoint(scanner, size);
+            if (point != null)
                 guiBoard.setMarkCircle(point, true);
-            }
-            catch (InvalidPointException e)
-            {
-            }
         }
     }
 
-    public static void showGfxColor(String[] arg, GuiBoard guiBoard)
+    private static void showGfxColor(GtpResponseScanner scanner,
+                                     GuiBoard guiBoard)
     {
-        if (arg.length < 2)
+        if (! scanner.hasNext())
             return;
         int size = guiBoard.getBoardSize();
-        Color color = GuiBoardUtil.getColor(arg[1]);
-        for (int i = 2; i < arg.length; ++i)
+        Color color;
+        try
         {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(arg[i], size);
-                if (point == null)
-                    continue;
+            color = GuiBoardUtil.getColor(scanner.next());
+        }
+        catch (GtpResponseFormatError e)
+        {
+            assert false;
+            return;
+        }
+        while (scanner.hasNext())
+        {
+            GoPoint point = nextGfxPoint(scanner, size);
+            if (point != null)
                 guiBoard.setFieldBackground(point, color);
-            }
-            catch (InvalidPointException e)
-            {
-            }
         }
     }
 
-    public static void showGfxInfluence(String[] arg, GuiBoard guiBoard)
+    private static void showGfxInfluence(GtpResponseScanner scanner,
+                                         GuiBoard guiBoard)
     {
         int size = guiBoard.getBoardSize();
-        for (int i = 1; i < arg.length; i += 2)
+        while (scanner.hasNext())
         {
+            GoPoint point = nextGfxPoint(scanner, size);
+            if (! scanner.hasNext())
+                break;
             try
             {
-                GoPoint point = GoPoint.parsePoint(arg[i], size);
-                if (i + 1 >= arg.length)
-                    break;
-                if (point == null)
-                    continue;
-                double value = Double.parseDouble(arg[i + 1]);
-                guiBoard.setInfluence(point, value);
-            }
-            catch (InvalidPointException e)
-            {
+                double value = scanner.nextDouble();
+                if (point != null)
+                    guiBoard.setInfluence(point, value);
             }
-            catch (NumberFormatException e)
+            catch (GtpResponseFormatError e)
             {
             }
         }
     }
 
-    public static void showGfxLabel(String[] arg, GuiBoard guiBoard)
+    private static void showGfxLabel(String[] arg, GuiBoard guiBoard)
     {
         int size = guiBoard.getBoardSize();
         for (int i = 1; i < arg.length; i += 2)
@@ -247,147 +280,126 @@ public final class AnalyzeShow
         }
     }
 
-    /** Parse gfx analyze command response line and display it on the board.
-        @param showTextBuffer See AnalyzeShow.show() */
-    public static void showGfxLine(String line, GuiBoard guiBoard,
-                                   StatusBar statusBar,
-                                   StringBuilder showTextBuffer)
+    /** Parse a line of a gfx analyze command response.
+        The line is the part of the text from start to end (exclusive).
+        Labels and texts can contain quotes or spaces and are parsed from a
+        substring of the line, the other gfx commands are parsed with the
+        scanner without creating strings. */
+    private static void showGfxLine(String text, int start, int end,
+                                    GtpResponseScanner scanner,
+                                    GuiBoard guiBoard, StatusBar statusBar,
+                                    StringBuilder showTextBuffer)
     {
-        String[] args = StringUtil.splitArguments(line);
-        if (args.length == 0)
-            return;
-        String cmd = args[0].toUpperCase(Locale.ENGLISH);
-        if (cmd.equals("BLACK"))
-            showGfxTerritory(args, BLACK, guiBoard);
-        else if (cmd.equals("CIRCLE"))
-            showGfxCircle(args, guiBoard);
-        else if (cmd.equals("CLEAR"))
+        scanner.reset(text, start, end);
+        if (scanner.skipWord("BLACK"))
+            showGfxTerritory(scanner, BLACK, guiBoard);
+        else if (scanner.skipWord("CIRCLE"))
+            showGfxCircle(scanner, guiBoard);
+        else if (scanner.skipWord("CLEAR"))
             guiBoard.clearAll();
-        else if (cmd.equals("COLOR"))
-            showGfxColor(args, guiBoard);
-        else if (cmd.equals("INFLUENCE"))
-            showGfxInfluence(args, guiBoard);
-        else if (cmd.equals("LABEL"))
-            showGfxLabel(args, guiBoard);
-        else if (cmd.equals("MARK"))
-            showGfxMark(args, guiBoard);
-        else if (cmd.equals("SQUARE"))
-            showGfxSquare(args, guiBoard);
-        else if (cmd.equals("TEXT"))
+        else if (scanner.skipWord("COLOR"))
+            showGfxColor(scanner, guiBoard);
+        else if (scanner.skipWord("INFLUENCE"))
+            showGfxInfluence(scanner, guiBoard);
+        else if (scanner.skipWord("LABEL"))
+            showGfxLabel(StringUtil.splitArguments(text.substring(start,
+                                                                  end)),
+                         guiBoard);
+        else if (scanner.skipWord("MARK"))
+            showGfxMark(scanner, guiBoard);
+        else if (scanner.skipWord("SQUARE"))
+            showGfxSquare(scanner, guiBoard);
+        else if (scanner.skipWord("TEXT"))
         {
-            line = line.trim();
+            String line = text.substring(start, end).trim();
             int pos = line.indexOf(' ');
-            String text = "";
+            String info = "";
             if (pos > 0)
-                text = line.substring(pos + 1);
+                info = line.substring(pos + 1);
             if (showTextBuffer == null)
-                statusBar.setText(text);
+                statusBar.setText(info);
             else
             {
                 if (showTextBuffer.length() > 0)
                     showTextBuffer.append('\n');
-                showTextBuffer.append(text);
+                showTextBuffer.append(info);
             }
         }
-        else if (cmd.equals("TRIANGLE"))
-            showGfxTriangle(args, guiBoard);
-        else if (cmd.equals("VAR"))
-            showGfxVariation(args, guiBoard);
-        else if (cmd.equals("WHITE"))
-            showGfxTerritory(args, WHITE, guiBoard);
+        else if (scanner.skipWord("TRIANGLE"))
+            showGfxTriangle(scanner, guiBoard);
+        else if (scanner.skipWord("VAR"))
+            showGfxVariation(scanner, guiBoard);
+        else if (scanner.skipWord("WHITE"))
+            showGfxTerritory(scanner, WHITE, guiBoard);
     }
 
-    public static void showGfxMark(String[] args, GuiBoard guiBoard)
+    private static void showGfxMark(GtpResponseScanner scanner,
+                                    GuiBoard guiBoard)
     {
         int size = guiBoard.getBoardSize();
-        for (int i = 1; i < args.length; ++i)
+        while (scanner.hasNext())
         {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(args[i], size);
-                if (point == null)
-                    continue;
+            GoPoint point = nextGfxPoint(scanner, size);
+            if (point != null)
                 guiBoard.setMark(point, true);
-            }
-            catch (InvalidPointException e)
-            {
-            }
         }
     }
 
-    public static void showGfxSquare(String[] args, GuiBoard guiBoard)
+    private static void showGfxSquare(GtpResponseScanner scanner,
+                                      GuiBoard guiBoard)
     {
         int size = guiBoard.getBoardSize();
-        for (int i = 1; i < args.length; ++i)
+        while (scanner.hasNext())
         {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(args[i], size);
-                if (point == null)
-                    continue;
+            GoPoint point = nextGfxPoint(scanner, size);
+            if (point != null)
                 guiBoard.setMarkSquare(point, true);
-            }
-            catch (InvalidPointException e)
-            {
-            }
         }
     }
 
-    public static void showGfxTriangle(String[] args, GuiBoard guiBoard)
+    private static void showGfxTerritory(GtpResponseScanner scanner,
+                                         GoColor color, GuiBoard guiBoard)
     {
         int size = guiBoard.getBoardSize();
-        for (int i = 1; i < args.length; ++i)
+        while (scanner.hasNext())
         {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(args[i], size);
-                if (point == null)
-                    continue;
-                guiBoard.setMarkTriangle(point, true);
-            }
-            catch (InvalidPointException e)
-            {
-            }
+            GoPoint point = nextGfxPoint(scanner, size);
+            if (point != null)
+                guiBoard.setTerritory(point, color);
         }
     }
 
-    public static void showGfxTerritory(String[] args, GoColor color,
+    private static void showGfxTriangle(GtpResponseScanner scanner,
                                         GuiBoard guiBoard)
     {
         int size = guiBoard.getBoardSize();
-        for (int i = 1; i < args.length; ++i)
+        while (scanner.hasNext())
         {
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(args[i], size);
-                if (point == null)
-                    continue;
-                guiBoard.setTerritory(point, color);
-            }
-            catch (InvalidPointException e)
-            {
-            }
+            GoPoint point = nextGfxPoint(scanner, size);
+            if (point != null)
+                guiBoard.setMarkTriangle(point, true);
         }
     }
 
-    public static void showGfxVariation(String[] args, GuiBoard guiBoard)
+    private static void showGfxVariation(GtpResponseScanner scanner,
+                                         GuiBoard guiBoard)
     {
         int size = guiBoard.getBoardSize();
         int n = 0;
-        for (int i = 1; i < args.length; i += 2)
+        while (true)
         {
+            GoColor color;
+            if (scanner.skipWord("b"))
+                color = BLACK;
+            else if (scanner.skipWord("w"))
+                color = WHITE;
+            else
+                break;
+            if (! scanner.hasNext())
+                break;
             try
             {
-                GoColor color;
-                if (args[i].equalsIgnoreCase("b"))
-                    color = BLACK;
-                else if (args[i].equalsIgnoreCase("w"))
-                    color = WHITE;
-                else
-                    break;
-                if (i + 1 >= args.length)
-                    break;
-                GoPoint point = GoPoint.parsePoint(args[i + 1], size);
+                GoPoint point = scanner.nextPoint(size);
                 ++n;
                 if (point != null)
                 {
@@ -395,34 +407,12 @@ public final class AnalyzeShow
                     guiBoard.setLabel(point, Integer.toString(n));
                 }
             }
-            catch (InvalidPointException e)
+            catch (GtpResponseFormatError e)
             {
             }
         }
     }
 
-    /** Make constructor unavailable; class is for namespace only. */
-    private AnalyzeShow()
-    {
-    }
-
-    private static GoColor getColor(ConstBoard board, GoPoint pointArg,
-                                    ConstPointList pointListArg)
-    {
-        GoColor color = EMPTY;
-        if (pointArg != null)
-            color = board.getColor(pointArg);
-        if (color != EMPTY)
-            return color;
-        for (GoPoint point : pointListArg)
-        {
-            color = board.getColor(point);
-            if (color != EMPTY)
-                break;
-        }
-        return color;
-    }
-
     private static void showVariation(GuiBoard guiBoard, String response,
                                       GoColor color)
     {
@@ -4,6 +4,9 @@ package net.sf.gogui.gui;
 
 import java.awt.Component;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
 import javax.swing.SwingUtilities;
 import net.sf.gogui.game.TimeSettings;
 import net.sf.gogui.go.ConstBoard;
@@ -174,6 +177,19 @@ public class GuiGtpClient
         return m_gtp.send(command, TIMEOUT, timeoutCallback);
     }
 
+    /** Send multiple commands in event dispatch thread.
+        @see GtpClient#sendPipelined(List) */
+    public ArrayList<Future<String>> sendPipelined(List<String> commands)
+    {
+        assert SwingUtilities.isEventDispatchThread();
+        assert ! m_commandInProgress;
+        if (commands.isEmpty())
+            return new ArrayList<Future<String>>();
+        String command = commands.get(commands.size() - 1);
+        TimeoutCallback timeoutCallback = new TimeoutCallback(command);
+        return m_gtp.sendPipelined(commands, TIMEOUT, timeoutCallback);
+    }
+
     public void setAutoNumber(boolean enable)
     {
         m_gtp.setAutoNumber(enable);
@@ -0,0 +1,426 @@
+// SgfCollection.java
+
+package net.sf.gogui.sgf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import net.sf.gogui.go.GoPoint;
+
+/** Collection of SGF game trees in a single file.
+    Large SGF databases often store thousands of games as a sequence of
+    game trees in a single file. This class memory-maps the file and scans
+    it once for the boundaries of the game trees and some properties of
+    their root nodes (PB, PW, RE, DT, SZ). The games are parsed only on
+    demand with read(int).
+    The index can be stored in a file and is reused as long as the length
+    and modification time of the SGF file do not change. */
+public final class SgfCollection
+{
+    /** Open a collection and build the index.
+        @param file The SGF file.
+        @throws IOException If the file cannot be read or is larger than
+        2 GB. */
+    public SgfCollection(File file) throws IOException
+    {
+        m_file = file;
+        m_buffer = SgfParser.map(file);
+        buildIndex();
+    }
+
+    /** Open a collection using a persistent index.
+        If the index file exists and belongs to the current version of the
+        SGF file, it is used instead of scanning the SGF file. Otherwise the
+        index is built and written to the index file.
+        @param file The SGF file.
+        @param indexFile The index file.
+        @throws IOException If the SGF file cannot be read or is larger than
+        2 GB. Errors when reading or writing the index file are ignored,
+        because the index can always be rebuilt. */
+    public SgfCollection(File file, File indexFile) throws IOException
+    {
+        m_file = file;
+        m_buffer = SgfParser.map(file);
+        boolean isIndexRead = false;
+        if (indexFile.exists())
+        {
+            try
+            {
+                isIndexRead = readIndex(indexFile);
+            }
+            catch (IOException e)
+            {
+            }
+        }
+        if (! isIndexRead)
+        {
+            buildIndex();
+            try
+            {
+                writeIndex(indexFile);
+            }
+            catch (IOException e)
+            {
+            }
+        }
+    }
+
+    /** Get the board size of a game.
+        @param game The index of the game.
+        @return The value of the SZ property, 19 if the game has no SZ
+        property (default in the SGF standard) or -1 if the value is
+        invalid. */
+    public int getBoardSize(int game)
+    {
+        String value = getProperty(game, SZ);
+        if (value == null)
+            return 19;
+        try
+        {
+            int size = Integer.parseInt(value.trim());
+            if (size <= 0 || size > GoPoint.MAX_SIZE)
+                return -1;
+            return size;
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /** Get the date of a game.
+        @param game The index of the game.
+        @return The value of the DT property or null. */
+    public String getDate(int game)
+    {
+        return getProperty(game, DT);
+    }
+
+    /** Get the SGF file of this collection. */
+    public File getFile()
+    {
+        return m_file;
+    }
+
+    public int getNumberGames()
+    {
+        return m_numberGames;
+    }
+
+    /** Get the name of a player of a game.
+        @param game The index of the game.
+        @param c The color of the player.
+        @return The value of the PB or PW property or null. */
+    public String getPlayer(int game, GoColor c)
+    {
+        assert c.isBlackWhite();
+        return getProperty(game, c == BLACK ? PB : PW);
+    }
+
+    /** Get the result of a game.
+        @param game The index of the game.
+        @return The value of the RE property or null. */
+    public String getResult(int game)
+    {
+        return getProperty(game, RE);
+    }
+
+    /** Parse a game.
+        Can be called from multiple threads at the same time.
+        @param game The index of the game.
+        @return The reader containing the game tree and warnings.
+        @throws SgfError If the game cannot be parsed. */
+    public SgfReader read(int game) throws SgfError
+    {
+        if (game < 0 || game >= m_numberGames)
+            throw new IndexOutOfBoundsException();
+        ByteBuffer buffer = m_buffer.duplicate();
+        buffer.limit(m_end[game]);
+        buffer.position(m_start[game]);
+        return new SgfReader(buffer, m_file);
+    }
+
+    /** Write the index to a file.
+        @param indexFile The index file.
+        @throws IOException If writing fails. */
+    public void writeIndex(File indexFile) throws IOException
+    {
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(
+                                     new FileOutputStream(indexFile)));
+        try
+        {
+            out.writeUTF(INDEX_FORMAT);
+            out.writeLong(m_file.length());
+            out.writeLong(m_file.lastModified());
+            out.writeInt(m_numberGames);
+            for (int i = 0; i < m_numberGames; ++i)
+            {
+                out.writeInt(m_start[i]);
+                out.writeInt(m_end[i]);
+                for (int j = 0; j < NUMBER_PROPERTIES; ++j)
+                {
+                    String value = m_properties[i * NUMBER_PROPERTIES + j];
+                    out.writeBoolean(value != null);
+                    if (value != null)
+                    {
+                        // writeUTF() supports only 65535 bytes
+                        if (value.length() > MAX_INDEX_VALUE_LENGTH)
+                            value = value.substring(0, MAX_INDEX_VALUE_LENGTH);
+                        out.writeUTF(value);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static final String INDEX_FORMAT = "GoGui SGF collection index 1";
+
+    private static final int MAX_INDEX_VALUE_LENGTH = 16384;
+
+    private static final int PB = 0;
+
+    private static final int PW = 1;
+
+    private static final int RE = 2;
+
+    private static final int DT = 3;
+
+    private static final int SZ = 4;
+
+    private static final int NUMBER_PROPERTIES = 5;
+
+    /** Names of indexed properties in order of the constants above. */
+    private static final String[] s_properties =
+        { "PB", "PW", "RE", "DT", "SZ" };
+
+    private int m_numberGames;
+
+    /** Start of the game trees in the file. */
+    private int[] m_start = new int[256];
+
+    /** End of the game trees in the file. */
+    private int[] m_end = new int[256];
+
+    /** Values of the indexed properties.
+        Contains NUMBER_PROPERTIES entries per game, null for missing
+        properties. */
+    private String[] m_properties = new String[256 * NUMBER_PROPERTIES];
+
+    private final File m_file;
+
+    private final ByteBuffer m_buffer;
+
+    private void addGame(int start, int end, String[] properties)
+    {
+        if (m_numberGames == m_start.length)
+        {
+            int length = 2 * m_numberGames;
+            int[] newStart = new int[length];
+            int[] newEnd = new int[length];
+            String[] newProperties = new String[length * NUMBER_PROPERTIES];
+            System.arraycopy(m_start, 0, newStart, 0, m_numberGames);
+            System.arraycopy(m_end, 0, newEnd, 0, m_numberGames);
+            System.arraycopy(m_properties, 0, newProperties, 0,
+                             m_numberGames * NUMBER_PROPERTIES);
+            m_start = newStart;
+            m_end = newEnd;
+            m_properties = newProperties;
+        }
+        m_start[m_numberGames] = start;
+        m_end[m_numberGames] = end;
+        System.arraycopy(properties, 0, m_properties,
+                         m_numberGames * NUMBER_PROPERTIES, NUMBER_PROPERTIES);
+        ++m_numberGames;
+    }
+
+    /** Scan the file for game trees.
+        Only tracks the nesting of the trees and the values of the indexed
+        properties in the root nodes; the games are not parsed. */
+    private void buildIndex()
+    {
+        SgfLexer lexer = new SgfLexer(m_buffer.duplicate(),
+                                      SgfParser.DEFAULT_CHARSET);
+        // Raw values of the indexed properties and CA in the current root
+        int[] valueStart = new int[NUMBER_PROPERTIES + 1];
+        int[] valueEnd = new int[NUMBER_PROPERTIES + 1];
+        String[] properties = new String[NUMBER_PROPERTIES];
+        int depth = 0;
+        int gameStart = -1;
+        int numberNodes = 0;
+        int property = -1;
+        boolean isFirstValue = false;
+        m_numberGames = 0;
+        while (true)
+        {
+            int t = lexer.next();
+            if (t == SgfLexer.TT_EOF)
+                break;
+            if (t == '(')
+            {
+                if (depth == 0)
+                {
+                    lexer.setCharset(SgfParser.DEFAULT_CHARSET);
+                    gameStart = lexer.getPosition() - 1;
+                    numberNodes = 0;
+                    for (int i = 0; i <= NUMBER_PROPERTIES; ++i)
+                        valueStart[i] = -1;
+                }
+                ++depth;
+            }
+            else if (t == ')')
+            {
+                if (depth > 0)
+                {
+                    --depth;
+                    if (depth == 0)
+                    {
+                        getProperties(lexer, valueStart, valueEnd,
+                                      properties);
+                        addGame(gameStart, lexer.getPosition(), properties);
+                    }
+                }
+            }
+            else if (t == ';')
+            {
+                if (depth > 0)
+                    ++numberNodes;
+                property = -1;
+            }
+            else if (t == SgfLexer.TT_PROPERTY)
+            {
+                property = -1;
+                isFirstValue = true;
+                if (depth > 0 && numberNodes == 1)
+                {
+                    String p =
+                        SgfReader.checkForObsoleteLongProps(
+                                                        lexer.getProperty());
+                    if (p == "CA")
+                        property = NUMBER_PROPERTIES;
+                    else
+                        for (int i = 0; i < NUMBER_PROPERTIES; ++i)
+                            if (p == s_properties[i])
+                                property = i;
+                }
+            }
+            else if (t == '[')
+            {
+                if (! lexer.readValue())
+                    break;
+                if (property >= 0 && isFirstValue)
+                {
+                    valueStart[property] = lexer.getValueStart();
+                    valueEnd[property] = lexer.getValueEnd();
+                    // The values after CA must be scanned with its charset,
+                    // if it is not ASCII compatible
+                    if (property == NUMBER_PROPERTIES)
+                        lexer.setCharset(getCharset(lexer, valueStart,
+                                                    valueEnd));
+                }
+                isFirstValue = false;
+            }
+        }
+        if (depth > 0)
+        {
+            // Last game tree not closed, leave error handling to SgfReader
+            getProperties(lexer, valueStart, valueEnd, properties);
+            addGame(gameStart, lexer.getLimit(), properties);
+        }
+    }
+
+    /** Get the charset given by the CA property of a root node.
+        @return The charset or the default charset, if the root node has
+        no CA property or the charset is unknown. */
+    private static Charset getCharset(SgfLexer lexer, int[] valueStart,
+                                      int[] valueEnd)
+    {
+        if (valueStart[NUMBER_PROPERTIES] < 0)
+            return SgfParser.DEFAULT_CHARSET;
+        String name = lexer.decodeValue(valueStart[NUMBER_PROPERTIES],
+                                        valueEnd[NUMBER_PROPERTIES]).trim();
+        try
+        {
+            return Charset.forName(name);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return SgfParser.DEFAULT_CHARSET;
+        }
+    }
+
+    /** Decode the values of the indexed properties of a root node.
+        Uses the charset given by the CA property, if it exists. */
+    private static void getProperties(SgfLexer lexer, int[] valueStart,
+                                      int[] valueEnd, String[] properties)
+    {
+        lexer.setCharset(getCharset(lexer, valueStart, valueEnd));
+        for (int i = 0; i < NUMBER_PROPERTIES; ++i)
+        {
+            if (valueStart[i] < 0)
+                properties[i] = null;
+            else
+                properties[i] = lexer.decodeValue(valueStart[i], valueEnd[i]);
+        }
+        lexer.setCharset(SgfParser.DEFAULT_CHARSET);
+    }
+
+    private String getProperty(int game, int property)
+    {
+        if (game < 0 || game >= m_numberGames)
+            throw new IndexOutOfBoundsException();
+        return m_properties[game * NUMBER_PROPERTIES + property];
+    }
+
+    /** Read the index from a file.
+        @return false, if the index file is not for the current version of
+        the SGF file */
+    private boolean readIndex(File indexFile) throws IOException
+    {
+        DataInputStream in =
+            new DataInputStream(new BufferedInputStream(
+                                    new FileInputStream(indexFile)));
+        try
+        {
+            if (! in.readUTF().equals(INDEX_FORMAT)
+                || in.readLong() != m_file.length()
+                || in.readLong() != m_file.lastModified())
+                return false;
+            int numberGames = in.readInt();
+            String[] properties = new String[NUMBER_PROPERTIES];
+            for (int i = 0; i < numberGames; ++i)
+            {
+                int start = in.readInt();
+                int end = in.readInt();
+                if (start < 0 || end < start || end > m_buffer.limit())
+                    return false;
+                for (int j = 0; j < NUMBER_PROPERTIES; ++j)
+                {
+                    if (in.readBoolean())
+                        properties[j] = in.readUTF();
+                    else
+                        properties[j] = null;
+                }
+                addGame(start, end, properties);
+            }
+            return true;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+// SgfHandler.java
+
+package net.sf.gogui.sgf;
+
+/** Callback for SgfParser.
+    Receives the structure of the game trees in an SGF stream as a sequence
+    of events, similar to SAX for XML. Handlers that do not need a complete
+    GameTree (e.g. for counting results or following only the main
+    variation) can process SGF files with constant memory.
+    A game tree consists of a sequence of nodes, optionally followed by
+    variations; each variation is again a sequence of nodes, enclosed in
+    startVariation() and endVariation(). Each node is enclosed in
+    startNode() and endNode() with a property() call for each property.
+    All callbacks can abort the parsing by throwing an SgfError. */
+public interface SgfHandler
+{
+    /** End of a game tree. */
+    void endGame() throws SgfError;
+
+    /** End of a node.
+        Called after all properties of the node. */
+    void endNode() throws SgfError;
+
+    /** End of a variation. */
+    void endVariation() throws SgfError;
+
+    /** Property of the current node.
+        Properties with obsolete long names (e.g. BLACK, COMMENT) are
+        reported with the standard short name. Properties without values
+        are not reported (but cause a warning).
+        @param name The property name in upper case. The string is
+        interned, so it can be compared with ==.
+        @param values The values of the property. The object is reused by
+        the parser and only valid during this call. */
+    void property(String name, SgfValues values) throws SgfError;
+
+    /** Start of a game tree.
+        If the stream contains multiple game trees (collection), this is
+        called for each game tree. */
+    void startGame() throws SgfError;
+
+    /** Start of a node. */
+    void startNode() throws SgfError;
+
+    /** Start of a variation.
+        Variations contain the children of the last node before the
+        variation. */
+    void startVariation() throws SgfError;
+
+    /** Non-fatal problem in the SGF data.
+        @param message The warning message. */
+    void warning(String message) throws SgfError;
+}
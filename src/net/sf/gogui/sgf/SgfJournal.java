@@ -0,0 +1,350 @@
+// SgfJournal.java
+
+package net.sf.gogui.sgf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.Node;
+import net.sf.gogui.util.Platform;
+
+/** Incremental saving of a game tree.
+    The tree is written once as a complete SGF file. Later changes are
+    appended to a journal file (the SGF file name with the extension
+    ".journal" appended), so that saving costs time proportional to the
+    change instead of the size of the tree. The journal is compacted into
+    a new SGF file, when it grows larger than the SGF file.
+    The owner of the tree must report all changes with nodeAdded(),
+    nodeChanged(), nodeRemoved() and nodeMadeFirstChild(). Other changes
+    (e.g. changes of the root node) require a compact().
+    The journal contains the length and modification time of the SGF file
+    it belongs to and is ignored by replay(), if they do not match. An
+    incomplete last record (e.g. after a crash) is ignored, too. */
+public final class SgfJournal
+{
+    /** Write the game tree and start a new journal.
+        @param file The SGF file.
+        @param tree The game tree. The tree is used for compaction and must
+        stay valid while the journal is used.
+        @param application Application name for AP property.
+        @param version If not null, version appended to application name in
+        AP property.
+        @throws IOException If writing the SGF file or the journal fails. */
+    public SgfJournal(File file, ConstGameTree tree, String application,
+                      String version) throws IOException
+    {
+        m_file = file;
+        m_journalFile = getJournalFile(file);
+        m_tree = tree;
+        m_application = application;
+        m_version = version;
+        compact();
+    }
+
+    /** Close the journal file.
+        The SGF file and the journal stay valid and can be read with
+        replay(). */
+    public void close() throws IOException
+    {
+        m_out.close();
+    }
+
+    /** Write the complete game tree and start a new journal. */
+    public void compact() throws IOException
+    {
+        if (m_out != null)
+            m_out.close();
+        File tmpFile = new File(m_file.getPath() + ".new");
+        new SgfWriter(new FileOutputStream(tmpFile).getChannel(), m_tree,
+                      m_application, m_version);
+        if (Platform.isWindows())
+            // File.renameTo() fails on Windows if target exists
+            m_file.delete();
+        if (! tmpFile.renameTo(m_file))
+            throw new IOException("Could not rename " + tmpFile);
+        // Delete the old journal only after the new file is complete, such
+        // that a crash before cannot lose changes. If it survives a crash
+        // after the rename, replay() ignores it, because its header does
+        // not match the new file.
+        if (m_journalFile.exists() && ! m_journalFile.delete())
+            throw new IOException("Could not delete " + m_journalFile);
+        m_ids.clear();
+        m_nextId = 0;
+        addIds(m_tree.getRootConst());
+        m_out = new DataOutputStream(
+               new BufferedOutputStream(new FileOutputStream(m_journalFile)));
+        m_out.writeUTF(FORMAT);
+        m_out.writeLong(m_file.length());
+        m_out.writeLong(m_file.lastModified());
+        m_out.flush();
+        m_fileSize = m_file.length();
+    }
+
+    /** Get the journal file used for an SGF file. */
+    public static File getJournalFile(File file)
+    {
+        return new File(file.getPath() + ".journal");
+    }
+
+    /** Report a new node.
+        The node and its subtree are appended to the journal.
+        @param node The new node. Its father must already be known to the
+        journal. */
+    public void nodeAdded(ConstNode node) throws IOException
+    {
+        // Not recursive, games can be long
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        stack.add(node);
+        while (! stack.isEmpty())
+        {
+            ConstNode n = stack.remove(stack.size() - 1);
+            m_out.writeByte(ADD);
+            m_out.writeInt(getId(n.getFatherConst()));
+            writeNode(n);
+            m_ids.put(n, m_nextId++);
+            for (int i = n.getNumberChildren() - 1; i >= 0; --i)
+                stack.add(n.getChildConst(i));
+        }
+        finishRecord();
+    }
+
+    /** Report a change of the properties of a node.
+        Changes of the root node cause a compaction.
+        @param node The changed node. */
+    public void nodeChanged(ConstNode node) throws IOException
+    {
+        if (node.getFatherConst() == null)
+        {
+            compact();
+            return;
+        }
+        m_out.writeByte(CHANGE);
+        m_out.writeInt(getId(node));
+        writeNode(node);
+        finishRecord();
+    }
+
+    /** Report that a node was made the first child of its father.
+        @param node The node. */
+    public void nodeMadeFirstChild(ConstNode node) throws IOException
+    {
+        m_out.writeByte(MAKE_FIRST_CHILD);
+        m_out.writeInt(getId(node));
+        finishRecord();
+    }
+
+    /** Report that a node and its subtree were removed from the tree.
+        @param node The removed node. */
+    public void nodeRemoved(ConstNode node) throws IOException
+    {
+        m_out.writeByte(REMOVE);
+        m_out.writeInt(getId(node));
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        stack.add(node);
+        while (! stack.isEmpty())
+        {
+            ConstNode n = stack.remove(stack.size() - 1);
+            m_ids.remove(n);
+            for (int i = 0; i < n.getNumberChildren(); ++i)
+                stack.add(n.getChildConst(i));
+        }
+        finishRecord();
+    }
+
+    /** Read an SGF file and replay its journal.
+        @param file The SGF file.
+        @return The game tree with all changes of the journal applied. If
+        the journal does not exist or belongs to another version of the SGF
+        file, the game tree of the SGF file. */
+    public static GameTree replay(File file) throws IOException, SgfError
+    {
+        SgfReader reader =
+            new SgfReader(new FileInputStream(file), file, null, 0);
+        GameTree tree = reader.getTree();
+        File journalFile = getJournalFile(file);
+        if (! journalFile.exists())
+            return tree;
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        ArrayList<Node> stack = new ArrayList<Node>();
+        stack.add(tree.getRoot());
+        while (! stack.isEmpty())
+        {
+            Node node = stack.remove(stack.size() - 1);
+            nodes.add(node);
+            for (int i = node.getNumberChildren() - 1; i >= 0; --i)
+                stack.add(node.getChild(i));
+        }
+        DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(journalFile)));
+        try
+        {
+            if (! in.readUTF().equals(FORMAT)
+                || in.readLong() != file.length()
+                || in.readLong() != file.lastModified())
+                return tree;
+            while (true)
+            {
+                int type = in.read();
+                if (type < 0)
+                    break;
+                int id = in.readInt();
+                Node node = nodes.get(id);
+                if (type == ADD)
+                {
+                    Node child = readNode(in, tree.getBoardSize());
+                    node.append(child);
+                    nodes.add(child);
+                }
+                else if (type == CHANGE)
+                {
+                    Node newNode = readNode(in, tree.getBoardSize());
+                    replaceNode(node, newNode);
+                    nodes.set(id, newNode);
+                }
+                else if (type == MAKE_FIRST_CHILD)
+                    node.getFather().makeFirstChild(node);
+                else if (type == REMOVE)
+                    node.getFather().removeChild(node);
+                else
+                    throw new SgfError("Invalid journal " + journalFile);
+            }
+        }
+        catch (EOFException e)
+        {
+            // Incomplete last record
+        }
+        finally
+        {
+            in.close();
+        }
+        return tree;
+    }
+
+    private static final String FORMAT = "GoGui SGF journal 1";
+
+    private static final int ADD = 1;
+
+    private static final int CHANGE = 2;
+
+    private static final int MAKE_FIRST_CHILD = 3;
+
+    private static final int REMOVE = 4;
+
+    private int m_nextId;
+
+    private long m_fileSize;
+
+    private final File m_file;
+
+    private final File m_journalFile;
+
+    private final ConstGameTree m_tree;
+
+    private final String m_application;
+
+    private final String m_version;
+
+    private DataOutputStream m_out;
+
+    /** Node IDs in the order of the SGF file and the journal records. */
+    private final Map<ConstNode,Integer> m_ids =
+        new IdentityHashMap<ConstNode,Integer>();
+
+    /** Buffer for writing a node, reused for efficiency. */
+    private final ByteArrayOutputStream m_nodeBuffer =
+        new ByteArrayOutputStream();
+
+    private void addIds(ConstNode root)
+    {
+        // Same order as the nodes in the SGF file
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        stack.add(root);
+        while (! stack.isEmpty())
+        {
+            ConstNode node = stack.remove(stack.size() - 1);
+            m_ids.put(node, m_nextId++);
+            for (int i = node.getNumberChildren() - 1; i >= 0; --i)
+                stack.add(node.getChildConst(i));
+        }
+    }
+
+    /** Finish the records of a reported change.
+        The journal is buffered and written at the end of each reported
+        change. */
+    private void finishRecord() throws IOException
+    {
+        m_out.flush();
+        if (m_out.size() > m_fileSize)
+            compact();
+    }
+
+    private int getId(ConstNode node)
+    {
+        Integer id = m_ids.get(node);
+        if (id == null)
+            throw new IllegalArgumentException("Node not in journal");
+        return id.intValue();
+    }
+
+    private static Node readNode(DataInputStream in, int size)
+        throws IOException, SgfError
+    {
+        byte[] header = ("(;CA[" + SgfWriter.ENCODING + "]SZ[" + size + "]")
+            .getBytes("US-ASCII");
+        int length = in.readInt();
+        byte[] buffer = new byte[header.length + length + 1];
+        System.arraycopy(header, 0, buffer, 0, header.length);
+        in.readFully(buffer, header.length, length);
+        buffer[buffer.length - 1] = ')';
+        SgfReader reader = new SgfReader(ByteBuffer.wrap(buffer), null);
+        Node root = reader.getTree().getRoot();
+        Node node = root.getChild();
+        root.removeChild(node);
+        return node;
+    }
+
+    /** Replace a node by a new node with the same position in the tree. */
+    private static void replaceNode(Node node, Node newNode)
+    {
+        while (node.hasChildren())
+        {
+            Node child = node.getChild(0);
+            node.removeChild(child);
+            newNode.append(child);
+        }
+        Node father = node.getFather();
+        ArrayList<Node> children = new ArrayList<Node>();
+        while (father.hasChildren())
+        {
+            Node child = father.getChild(0);
+            father.removeChild(child);
+            children.add(child == node ? newNode : child);
+        }
+        for (Node child : children)
+            father.append(child);
+    }
+
+    private void writeNode(ConstNode node) throws IOException
+    {
+        m_nodeBuffer.reset();
+        new SgfWriter(Channels.newChannel(m_nodeBuffer), node,
+                      m_tree.getBoardSize());
+        m_out.writeInt(m_nodeBuffer.size());
+        m_nodeBuffer.writeTo(m_out);
+    }
+}
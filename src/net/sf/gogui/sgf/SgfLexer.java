@@ -0,0 +1,450 @@
+// SgfLexer.java
+
+package net.sf.gogui.sgf;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Locale;
+
+/** Byte-level scanner for SGF.
+    Splits SGF data into tokens without decoding it into characters.
+    Property values are only located by their position in the buffer; they
+    are decoded into strings on demand, so that values that are not text
+    (e.g. move coordinates) can be parsed directly from the bytes.
+    The scanner assumes that ASCII characters are encoded as single bytes
+    (charsets like UTF-16 are not supported). Outside of values, only ASCII
+    characters are expected. Inside of values, the bytes of the escape
+    character and the closing bracket can also occur as the second byte of
+    a multi-byte character in some charsets (e.g. Shift_JIS, Big5, GBK). For
+    such charsets (see isAsciiCompatible()), values are decoded character by
+    character while searching for the closing bracket, which is slower, and
+    the escape characters are removed after decoding.
+    The charset can be changed with setCharset() while scanning, but it
+    applies only to values read after the change. SgfParser sets the charset
+    of a game by looking ahead for the CA property in the root node, which
+    is scanned with the default charset ISO-8859-1. If a value in the root
+    node before the CA property contains a multi-byte character with such a
+    second byte, the CA property might not be found. */
+final class SgfLexer
+{
+    /** Token type for end of data. */
+    public static final int TT_EOF = -1;
+
+    /** Token type for a property identifier.
+        @see #getProperty */
+    public static final int TT_PROPERTY = -2;
+
+    /** Construct scanner.
+        @param buffer The SGF data between the buffer's position and
+        limit.
+        @param charset The charset used for decoding values. */
+    public SgfLexer(ByteBuffer buffer, Charset charset)
+    {
+        m_buffer = buffer;
+        setCharset(charset);
+        m_position = buffer.position();
+        m_limit = buffer.limit();
+    }
+
+    /** Decode the current value into a string.
+        Removes escape characters and soft linebreaks and transforms all
+        linebreaks allowed in SGF (LF, CR, LFCR, CRLF) to a single LF.
+        @return The decoded value. */
+    public String decodeValue()
+    {
+        return decodeValue(m_valueStart, m_valueEnd);
+    }
+
+    /** Decode a value into a string.
+        @param start The start of the value as returned by getValueStart().
+        @param end The end of the value as returned by getValueEnd().
+        @return The decoded value.
+        @see #decodeValue() */
+    public String decodeValue(int start, int end)
+    {
+        if (m_decodeBuffer.length < end - start)
+            m_decodeBuffer = new byte[2 * (end - start)];
+        if (! m_isAsciiCompatible)
+        {
+            for (int i = start; i < end; ++i)
+                m_decodeBuffer[i - start] = m_buffer.get(i);
+            return unescape(new String(m_decodeBuffer, 0, end - start,
+                                       m_charset));
+        }
+        int length = unescape(m_buffer, start, end, m_decodeBuffer);
+        return new String(m_decodeBuffer, 0, length, m_charset);
+    }
+
+    /** Get the charset used for decoding values. */
+    public Charset getCharset()
+    {
+        return m_charset;
+    }
+
+    /** Get a copy of a range of the data.
+        @param start The absolute start index in the buffer.
+        @param end The absolute end index in the buffer.
+        @return The bytes between start and end. */
+    public byte[] getBytes(int start, int end)
+    {
+        byte[] result = new byte[end - start];
+        ByteBuffer buffer = m_buffer.duplicate();
+        buffer.position(start);
+        buffer.get(result);
+        return result;
+    }
+
+    /** Get a byte of the data.
+        @param index The absolute index in the buffer. */
+    public int getByte(int index)
+    {
+        return m_buffer.get(index) & 0xff;
+    }
+
+    /** Get the limit of the data in the buffer. */
+    public int getLimit()
+    {
+        return m_limit;
+    }
+
+    /** Get the current position in the buffer. */
+    public int getPosition()
+    {
+        return m_position;
+    }
+
+    /** Get the identifier of the current TT_PROPERTY token.
+        @return The identifier converted to upper case; the strings are
+        interned, so they can be compared with ==. */
+    public String getProperty()
+    {
+        return m_property;
+    }
+
+    /** Get the end of the current value.
+        @return The index in the buffer of the closing bracket. */
+    public int getValueEnd()
+    {
+        return m_valueEnd;
+    }
+
+    /** Get the start of the current value.
+        @return The index in the buffer after the opening bracket. */
+    public int getValueStart()
+    {
+        return m_valueStart;
+    }
+
+    /** Read the next token.
+        Skips whitespace. Property identifiers are returned as TT_PROPERTY,
+        all other characters are returned as the token type (e.g. '(', ')',
+        ';', '['). After a '[' token, readValue() must be called to read
+        the value.
+        @return The token type. */
+    public int next()
+    {
+        while (m_position < m_limit)
+        {
+            int c = m_buffer.get(m_position) & 0xff;
+            if (c > ' ')
+                break;
+            ++m_position;
+        }
+        if (m_position >= m_limit)
+            return TT_EOF;
+        int c = m_buffer.get(m_position) & 0xff;
+        if (! isWordStart(c))
+        {
+            ++m_position;
+            return c;
+        }
+        int start = m_position;
+        ++m_position;
+        while (m_position < m_limit
+               && isWordPart(m_buffer.get(m_position) & 0xff))
+            ++m_position;
+        m_property = getPropertyString(start, m_position);
+        return TT_PROPERTY;
+    }
+
+    /** Go back to a previous position.
+        Used to push back tokens that were read ahead.
+        @param position A position previously returned by getPosition() */
+    public void pushBack(int position)
+    {
+        m_position = position;
+    }
+
+    /** Read a value after a '[' token.
+        Sets the value start and end to the range between the brackets.
+        @return false, if the data ended before the closing bracket. */
+    public boolean readValue()
+    {
+        m_valueStart = m_position;
+        if (! m_isAsciiCompatible)
+            return readValueDecoded();
+        boolean quoted = false;
+        while (m_position < m_limit)
+        {
+            int c = m_buffer.get(m_position++) & 0xff;
+            if (quoted)
+                quoted = false;
+            else if (c == '\\')
+                quoted = true;
+            else if (c == ']')
+            {
+                m_valueEnd = m_position - 1;
+                return true;
+            }
+        }
+        m_valueEnd = m_limit;
+        return false;
+    }
+
+    /** Set the charset used for decoding values.
+        Can be changed while scanning, e.g. after reading the CA property
+        of the root node. The charset is also used for finding the end of
+        the values read after the change, if it is not ASCII compatible.
+        @param charset The new charset. */
+    public void setCharset(Charset charset)
+    {
+        m_charset = charset;
+        m_isAsciiCompatible = isAsciiCompatible(charset);
+        m_decoder = null;
+    }
+
+    /** Check if the bytes of ASCII characters cannot be part of the
+        encoding of other characters in a charset.
+        Only true for charsets known to have this property (single-byte
+        charsets like ISO-8859-1, UTF-8 and the EUC charsets). Values in
+        other charsets need to be decoded before they can be scanned for
+        SGF control characters. */
+    static boolean isAsciiCompatible(Charset charset)
+    {
+        String name = charset.name();
+        return (name.equals("US-ASCII") || name.equals("UTF-8")
+                || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125")
+                || name.startsWith("KOI8-") || name.equals("EUC-JP")
+                || name.equals("EUC-KR") || name.equals("GB2312"));
+    }
+
+    private int m_position;
+
+    private final int m_limit;
+
+    private int m_valueStart;
+
+    private int m_valueEnd;
+
+    private String m_property;
+
+    private final ByteBuffer m_buffer;
+
+    private Charset m_charset;
+
+    /** Can values be scanned at the byte level in the current charset.
+        @see #isAsciiCompatible */
+    private boolean m_isAsciiCompatible;
+
+    /** Decoder for scanning values, if the charset is not ASCII compatible.
+        Created on demand. */
+    private CharsetDecoder m_decoder;
+
+    /** Output of m_decoder; a character or a surrogate pair. */
+    private final CharBuffer m_decoded = CharBuffer.allocate(2);
+
+    /** Temporary buffer reused for efficiency. */
+    private byte[] m_decodeBuffer = new byte[256];
+
+    /** Interned strings for one and two letter property identifiers.
+        Indexed by 27 * (first letter + 1) + second letter + 1 (0 for
+        none). */
+    private static final String[] s_shortProperties = new String[27 * 27];
+
+    /** Get identifier as interned upper case string.
+        Avoids creating strings for the standard short identifiers. */
+    private String getPropertyString(int start, int end)
+    {
+        int length = end - start;
+        if (length <= 2)
+        {
+            int c1 = toUpper(m_buffer.get(start) & 0xff);
+            int c2 = (length == 2 ? toUpper(m_buffer.get(start + 1) & 0xff)
+                      : 'A' - 1);
+            if (c1 >= 'A' && c1 <= 'Z' && c2 >= 'A' - 1 && c2 <= 'Z')
+            {
+                int index = 27 * (c1 - 'A' + 1) + (c2 - 'A' + 1);
+                String s = s_shortProperties[index];
+                if (s == null)
+                {
+                    StringBuilder buffer = new StringBuilder(2);
+                    buffer.append((char)c1);
+                    if (length == 2)
+                        buffer.append((char)c2);
+                    s = buffer.toString().intern();
+                    s_shortProperties[index] = s;
+                }
+                return s;
+            }
+        }
+        if (m_decodeBuffer.length < length)
+            m_decodeBuffer = new byte[2 * length];
+        for (int i = start; i < end; ++i)
+            m_decodeBuffer[i - start] = m_buffer.get(i);
+        String s = new String(m_decodeBuffer, 0, length, m_charset);
+        return s.toUpperCase(Locale.ENGLISH).intern();
+    }
+
+    /** Read a value in a charset that is not ASCII compatible.
+        Decodes the value one character at a time to know the position of
+        the closing bracket in the buffer.
+        @see #readValue */
+    private boolean readValueDecoded()
+    {
+        if (m_decoder == null)
+            m_decoder = m_charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        m_decoder.reset();
+        ByteBuffer in = m_buffer.duplicate();
+        in.limit(m_limit);
+        in.position(m_position);
+        boolean quoted = false;
+        while (in.hasRemaining())
+        {
+            int start = in.position();
+            m_decoded.clear();
+            m_decoded.limit(1);
+            m_decoder.decode(in, m_decoded, true);
+            if (m_decoded.position() == 0)
+            {
+                // Needs room for a surrogate pair
+                m_decoded.limit(2);
+                m_decoder.decode(in, m_decoded, true);
+                if (m_decoded.position() == 0)
+                    break;
+            }
+            char c = m_decoded.get(0);
+            if (quoted)
+                quoted = false;
+            else if (c == '\\')
+                quoted = true;
+            else if (c == ']')
+            {
+                m_valueEnd = start;
+                m_position = in.position();
+                return true;
+            }
+        }
+        m_valueEnd = m_limit;
+        m_position = m_limit;
+        return false;
+    }
+
+    /** Remove escape characters and soft linebreaks from a decoded value.
+        Same as unescape(ByteBuffer, int, int, byte[]), but works on
+        characters. Used for charsets that are not ASCII compatible.
+        @param value The value with escape characters.
+        @return The value without escape characters. */
+    static String unescape(String value)
+    {
+        StringBuilder result = new StringBuilder(value.length());
+        boolean quoted = false;
+        int last = -1;
+        for (int i = 0; i < value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            if (quoted)
+            {
+                if (c != '\n' && c != '\r')
+                    result.append(c);
+                last = c;
+                quoted = false;
+            }
+            else
+            {
+                quoted = (c == '\\');
+                if (quoted)
+                    continue;
+                boolean isLinebreak = (c == '\n' || c == '\r');
+                boolean lastLinebreak = (last == '\n' || last == '\r');
+                if (isLinebreak && lastLinebreak && c != last)
+                    last = -1;
+                else
+                {
+                    result.append(isLinebreak ? '\n' : c);
+                    last = c;
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /** Remove escape characters and soft linebreaks from a value.
+        Transforms all linebreaks allowed in SGF (LF, CR, LFCR, CRLF) to a
+        single LF.
+        @param buffer The buffer containing the value.
+        @param start The start index of the value in the buffer.
+        @param end The end index of the value in the buffer.
+        @param out The array for the result; must have a length of at least
+        end - start.
+        @return The number of bytes written to out. */
+    static int unescape(ByteBuffer buffer, int start, int end, byte[] out)
+    {
+        int length = 0;
+        boolean quoted = false;
+        int last = -1;
+        for (int i = start; i < end; ++i)
+        {
+            int c = buffer.get(i) & 0xff;
+            if (quoted)
+            {
+                if (c != '\n' && c != '\r')
+                    out[length++] = (byte)c;
+                last = c;
+                quoted = false;
+            }
+            else
+            {
+                quoted = (c == '\\');
+                if (quoted)
+                    continue;
+                boolean isLinebreak = (c == '\n' || c == '\r');
+                boolean lastLinebreak = (last == '\n' || last == '\r');
+                if (isLinebreak && lastLinebreak && c != last)
+                    last = -1;
+                else
+                {
+                    out[length++] = (byte)(isLinebreak ? '\n' : c);
+                    last = c;
+                }
+            }
+        }
+        return length;
+    }
+
+    /** Characters that start identifiers.
+        Compatible with the default word characters of
+        java.io.StreamTokenizer, which was used before. */
+    private static boolean isWordStart(int c)
+    {
+        return ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c >= 160);
+    }
+
+    private static boolean isWordPart(int c)
+    {
+        return (isWordStart(c) || (c >= '0' && c <= '9') || c == '.'
+                || c == '-');
+    }
+
+    private static int toUpper(int c)
+    {
+        if (c >= 'a' && c <= 'z')
+            return c - 'a' + 'A';
+        return c;
+    }
+}
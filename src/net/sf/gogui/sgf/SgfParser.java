@@ -0,0 +1,325 @@
+// SgfParser.java
+
+package net.sf.gogui.sgf;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/** Event-based SGF parser.
+    Reports the game trees in SGF data to an SgfHandler without building
+    a GameTree. Property values are decoded only if the handler requests
+    them. The charset given by the CA property in the root node of a game
+    is used for decoding all values of this game.
+    @see SgfReader */
+public final class SgfParser
+{
+    /** Create parser for a file.
+        The file is memory-mapped, so that large files can be parsed
+        without reading them into memory.
+        @param file The SGF file.
+        @throws IOException If the file cannot be read or is larger than
+        2 GB. */
+    public SgfParser(File file) throws IOException
+    {
+        this(map(file), file);
+    }
+
+    /** Create parser for a stream.
+        Reads the stream completely, but does not close it.
+        @param in Stream to read from.
+        @param file File name used in error messages, can be null
+        @param size Size of stream if known (only used as a hint for the
+        buffer size), 0 otherwise
+        @throws IOException If reading the stream fails.
+        @throws SgfError If the stream is too large to be read into
+        memory. */
+    public SgfParser(InputStream in, File file, long size)
+        throws IOException, SgfError
+    {
+        this(readBytes(in, file, size), file);
+    }
+
+    /** Parse all game trees.
+        @param handler The handler to receive the events.
+        @throws SgfError If the data contains no game tree, on fatal syntax
+        errors or if a callback of the handler throws an SgfError. */
+    public void parse(SgfHandler handler) throws SgfError
+    {
+        m_handler = handler;
+        if (! findGame(true))
+            throw getError("No root tree found");
+        do
+            parseGame();
+        while (findGame(false));
+    }
+
+    /** Parse a single game tree.
+        Used by SgfReader, which does not support multiple game trees.
+        Text after the game tree causes a warning, unless it is the start
+        of another game tree, which causes an error.
+        @param handler The handler to receive the events.
+        @throws SgfError If the data contains no or multiple game trees, on
+        fatal syntax errors or if a callback of the handler throws an
+        SgfError. */
+    public void parseSingleGame(SgfHandler handler) throws SgfError
+    {
+        m_handler = handler;
+        if (! findGame(true))
+            throw getError("No root tree found");
+        parseGame();
+        int t = m_lexer.next();
+        if (t == '(')
+            throw getError("Multiple SGF trees not supported");
+        else if (t != SgfLexer.TT_EOF)
+            m_handler.warning("Extra text after SGF tree");
+    }
+
+    SgfParser(ByteBuffer buffer, File file)
+    {
+        m_file = file;
+        m_lexer = new SgfLexer(buffer, DEFAULT_CHARSET);
+        m_values = new SgfValues(m_lexer);
+    }
+
+    /** Create an error with the file name prepended to the message. */
+    static SgfError getError(File file, String message)
+    {
+        if (file == null)
+            return new SgfError(message);
+        else
+            return new SgfError(file.getName() + ": " + message);
+    }
+
+    /** Get the lexer used by the parser.
+        Allows SgfReader to keep the positions of values for later decoding
+        and to show the progress. */
+    SgfLexer getLexer()
+    {
+        return m_lexer;
+    }
+
+    /** Memory-map a file for reading.
+        @throws IOException If the file cannot be read or is larger than
+        2 GB. */
+    static ByteBuffer map(File file) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File too large");
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    /** Maximum size of an array on common VMs. */
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    /** Default charset according to the SGF version 4 standard. */
+    static final Charset DEFAULT_CHARSET = Charset.forName("ISO-8859-1");
+
+    private final File m_file;
+
+    private final SgfLexer m_lexer;
+
+    private SgfHandler m_handler;
+
+    /** Values of the current property, reused for efficiency. */
+    private final SgfValues m_values;
+
+    /** Find the start of the next game tree.
+        @param isFirst true, if no game tree was found yet (only used for
+        the warning message about extra text)
+        @return true, if a game tree was found. The lexer is positioned
+        before the first node. */
+    private boolean findGame(boolean isFirst) throws SgfError
+    {
+        while (true)
+        {
+            int t = m_lexer.next();
+            if (t == SgfLexer.TT_EOF)
+                return false;
+            if (t == '(')
+            {
+                // Better make sure that ( is followed by a node
+                int position = m_lexer.getPosition();
+                if (m_lexer.next() == ';')
+                {
+                    m_lexer.pushBack(position);
+                    return true;
+                }
+            }
+            if (isFirst)
+                m_handler.warning("Extra text before SGF tree");
+            else
+                m_handler.warning("Extra text after SGF tree");
+        }
+    }
+
+    private SgfError getError(String message)
+    {
+        return getError(m_file, message);
+    }
+
+    /** Parse a game tree.
+        The opening parenthesis is already read, the lexer is positioned
+        before the first node. */
+    private void parseGame() throws SgfError
+    {
+        m_lexer.setCharset(DEFAULT_CHARSET);
+        setCharset();
+        m_handler.startGame();
+        int depth = 0;
+        while (true)
+        {
+            int t = m_lexer.next();
+            if (t == ';')
+                parseNode();
+            else if (t == '(')
+            {
+                ++depth;
+                m_handler.startVariation();
+            }
+            else if (t == ')')
+            {
+                if (depth == 0)
+                    break;
+                --depth;
+                m_handler.endVariation();
+            }
+            else if (t == SgfLexer.TT_EOF)
+            {
+                m_handler.warning("Game tree not closed");
+                break;
+            }
+            else
+                throw getError("Next node expected");
+        }
+        m_handler.endGame();
+    }
+
+    private void parseNode() throws SgfError
+    {
+        m_handler.startNode();
+        while (true)
+        {
+            int position = m_lexer.getPosition();
+            if (m_lexer.next() != SgfLexer.TT_PROPERTY)
+            {
+                m_lexer.pushBack(position);
+                break;
+            }
+            String p = m_lexer.getProperty();
+            readValues();
+            if (m_values.size() == 0)
+            {
+                m_handler.warning("Property \"" + p + "\" has no value");
+                continue;
+            }
+            p = SgfReader.checkForObsoleteLongProps(p);
+            m_handler.property(p, m_values);
+        }
+        m_handler.endNode();
+    }
+
+    /** Read the stream into a buffer.
+        @param in The stream.
+        @param file File name used in error messages, can be null
+        @param size The size of the stream if known, 0 otherwise.
+        @throws SgfError If the stream is larger than the maximum array
+        size. */
+    private static ByteBuffer readBytes(InputStream in, File file,
+                                        long size)
+        throws IOException, SgfError
+    {
+        int length = 0;
+        byte[] buffer =
+            new byte[(int)Math.min(Math.max(size, in.available()) + 1,
+                                   MAX_BUFFER_SIZE)];
+        while (true)
+        {
+            if (length == buffer.length)
+            {
+                if (length == MAX_BUFFER_SIZE)
+                {
+                    if (in.read() < 0)
+                        break;
+                    throw getError(file, "File too large");
+                }
+                int newSize =
+                    (int)Math.min(2L * buffer.length, MAX_BUFFER_SIZE);
+                byte[] newBuffer = new byte[newSize];
+                System.arraycopy(buffer, 0, newBuffer, 0, length);
+                buffer = newBuffer;
+            }
+            int n = in.read(buffer, length, buffer.length - length);
+            if (n < 0)
+                break;
+            length += n;
+        }
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    /** Read the values of the current property into m_values. */
+    private void readValues() throws SgfError
+    {
+        m_values.clear();
+        while (true)
+        {
+            int position = m_lexer.getPosition();
+            if (m_lexer.next() != '[')
+            {
+                m_lexer.pushBack(position);
+                return;
+            }
+            if (! m_lexer.readValue())
+                throw getError("Property value incomplete");
+            m_values.add(m_lexer.getValueStart(), m_lexer.getValueEnd());
+        }
+    }
+
+    /** Look ahead for a CA property in the root node.
+        The charset must be known before the handler receives the values
+        of the root node, which can precede the CA property. Unknown
+        charsets are ignored here; the handler receives the CA property
+        and can issue a warning. The values before the CA property are
+        scanned with the default charset (see SgfLexer for the charsets,
+        for which this can fail). */
+    private void setCharset() throws SgfError
+    {
+        int position = m_lexer.getPosition();
+        if (m_lexer.next() == ';')
+        {
+            while (m_lexer.next() == SgfLexer.TT_PROPERTY)
+            {
+                String p = m_lexer.getProperty();
+                readValues();
+                // Use the last CA, if there are duplicates (as SgfReader)
+                if (p == "CA" && m_values.size() > 0)
+                {
+                    try
+                    {
+                        m_lexer.setCharset(Charset.forName(
+                                                 m_values.get(0).trim()));
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                    }
+                }
+            }
+        }
+        m_lexer.pushBack(position);
+    }
+}
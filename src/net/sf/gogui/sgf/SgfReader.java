@@ -2,24 +2,20 @@
 
 package net.sf.gogui.sgf;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.StreamTokenizer;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.Map;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.ArrayList;
 import java.util.Locale;
 import java.util.Set;
+import net.sf.gogui.game.CompactGameTree;
 import net.sf.gogui.game.GameInfo;
 import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.LazyText;
 import net.sf.gogui.game.MarkType;
 import net.sf.gogui.game.Node;
 import net.sf.gogui.game.StringInfo;
@@ -35,61 +31,71 @@ import net.sf.gogui.go.InvalidPointException;
 import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.go.PointList;
-import net.sf.gogui.util.ByteCountInputStream;
 import net.sf.gogui.util.ProgressShow;
 
 /** SGF reader.
-    @bug The error messages currently don't contain line numbers, see
-    implementation of getError(). */
+    The SGF data is scanned at the byte level with SgfLexer. Property values
+    are only decoded into strings, if they are needed as text; point values
+    are parsed directly from the bytes.
+    @bug The error messages currently don't contain line numbers. */
 public final class SgfReader
 {
     /** Read SGF file from stream.
         Default charset is ISO-8859-1 according to the SGF version 4 standard.
-        The charset property is only respected if the stream is a
-        FileInputStream, because it has to be reopened with a different
-        encoding.
+        The charset property in the root node is respected for all kinds of
+        streams. The stream is read only once; the property values are
+        decoded after the charset is known.
         The stream is closed after reading.
         @param in Stream to read from.
-        @param file File name if input stream is a FileInputStream to allow
-        reopening the stream after a charset change
+        @param file File name used in error messages, can be null
         @param progressShow Callback to show progress, can be null
-        @param size Size of stream if progressShow != null
+        @param size Size of stream if known (only used as a hint for the
+        buffer size), 0 otherwise
         @throws SgfError If reading fails. */
     public SgfReader(InputStream in, File file, ProgressShow progressShow,
                      long size)
         throws SgfError
+    {
+        this(in, file, progressShow, size, false);
+    }
+
+    /** Read SGF file from stream into a game tree or a compact game tree.
+        If compact is true, the nodes are added to a CompactGameTree while
+        reading and Node objects are kept only for nodes that contain
+        information other than move and comment. This needs much less
+        memory for very large trees. The tree can be read with
+        getCompactTree() in this case, getTree() returns null.
+        @param in Stream to read from.
+        @param file File name used in error messages, can be null
+        @param progressShow Callback to show progress, can be null
+        @param size Size of stream if known (only used as a hint for the
+        buffer size), 0 otherwise
+        @param compact Read into a CompactGameTree.
+        @throws SgfError If reading fails. */
+    public SgfReader(InputStream in, File file, ProgressShow progressShow,
+                     long size, boolean compact)
+        throws SgfError
     {
         m_file = file;
+        m_builder = (compact ? new CompactGameTree.Builder() : null);
         m_progressShow = progressShow;
-        m_size = size;
-        m_isFile = (in instanceof FileInputStream && file != null);
         if (progressShow != null)
             progressShow.showProgress(0);
         try
         {
-            // SGF FF 4 standard defines ISO-8859-1 as default
-            readSgf(in, "ISO-8859-1");
+            readSgf(new SgfParser(in, file, size));
         }
-        catch (SgfCharsetChanged e1)
+        catch (FileNotFoundException e)
         {
-            try
-            {
-                in.close();
-                in = new FileInputStream(file);
-            }
-            catch (IOException e2)
-            {
-                throw new SgfError("Could not reset SGF stream after"
-                                   + " charset change.");
-            }
-            try
-            {
-                readSgf(in, m_newCharset);
-            }
-            catch (SgfCharsetChanged e3)
-            {
-                assert false;
-            }
+            throw new SgfError("File not found.");
+        }
+        catch (IOException e)
+        {
+            throw new SgfError("IO error");
+        }
+        catch (OutOfMemoryError e)
+        {
+            throw new SgfError("Out of memory");
         }
         finally
         {
@@ -104,8 +110,60 @@ public final class SgfReader
         }
     }
 
+    /** Read SGF file into a game tree or a compact game tree.
+        The file is memory-mapped, so that it is not copied into memory as
+        a whole, as with the constructors that read from a stream.
+        @param file The SGF file.
+        @param progressShow Callback to show progress, can be null
+        @param compact Read into a CompactGameTree.
+        @throws SgfError If reading fails. */
+    public SgfReader(File file, ProgressShow progressShow, boolean compact)
+        throws SgfError
+    {
+        m_file = file;
+        m_builder = (compact ? new CompactGameTree.Builder() : null);
+        m_progressShow = progressShow;
+        if (progressShow != null)
+            progressShow.showProgress(0);
+        try
+        {
+            readSgf(new SgfParser(file));
+        }
+        catch (FileNotFoundException e)
+        {
+            throw new SgfError("File not found.");
+        }
+        catch (IOException e)
+        {
+            throw new SgfError("IO error");
+        }
+    }
+
+    /** Read SGF game from a buffer.
+        Used by SgfCollection to parse a single game in a memory-mapped file
+        without copying it.
+        @param buffer The SGF data between the buffer's position and limit.
+        @param file File name used in error messages, can be null
+        @throws SgfError If reading fails. */
+    SgfReader(ByteBuffer buffer, File file) throws SgfError
+    {
+        m_file = file;
+        m_progressShow = null;
+        m_builder = null;
+        readSgf(new SgfParser(buffer, file));
+    }
+
+    /** Get compact game tree of loaded SGF file.
+        @return The game tree or null, if the reader was not created for a
+        compact tree. */
+    public CompactGameTree getCompactTree()
+    {
+        return m_compactTree;
+    }
+
     /** Get game tree of loaded SGF file.
-        @return The game tree. */
+        @return The game tree or null, if the reader was created for a
+        compact tree. */
     public GameTree getTree()
     {
         return m_tree;
@@ -126,59 +184,260 @@ public final class SgfReader
         return result.toString();
     }
 
-    private static class SgfCharsetChanged
-        extends Exception
+    /** Builds the game tree from the events of SgfParser. */
+    private class TreeBuilder
+        implements SgfHandler
     {
-    }
+        public void endGame()
+        {
+        }
+
+        public void endNode() throws SgfError
+        {
+            handleProps(m_node, m_node == m_root);
+            setTimeSettings(m_node);
+            Move move = m_node.getMove();
+            if (m_isRootChild && move != null)
+            {
+                if (move.getColor() == BLACK)
+                    m_hasBlackChildMoves = true;
+                else
+                    m_hasWhiteChildMoves = true;
+            }
+            if (m_builder != null)
+            {
+                if (m_node == m_root)
+                    m_root.createGameInfo(); // Like in GameTree constructor
+                m_index = m_builder.addNode(m_fatherIndex, m_node);
+            }
+        }
+
+        public void endVariation()
+        {
+            m_node = m_variationStart.remove(m_variationStart.size() - 1);
+            if (m_builder != null)
+            {
+                int last = m_variationStartIndex.size() - 1;
+                m_index = m_variationStartIndex.remove(last);
+            }
+        }
 
-    private final boolean m_isFile;
+        public void property(String name, SgfValues values) throws SgfError
+        {
+            addProp(name, values);
+        }
+
+        public void startGame()
+        {
+        }
+
+        public void startNode()
+        {
+            showProgress();
+            Node son = new Node();
+            m_isRootChild = (m_node != null && m_node == m_root);
+            if (m_node == null)
+                m_root = son;
+            else if (m_builder == null)
+                m_node.append(son);
+            m_node = son;
+            m_fatherIndex = m_index;
+            m_ignoreOvertime = false;
+            m_byoyomiMoves = -1;
+            m_byoyomi = -1;
+            m_preByoyomi = -1;
+            m_numberProps = 0;
+            m_numberValues = 0;
+        }
+
+        public void startVariation()
+        {
+            m_variationStart.add(m_node);
+            if (m_builder != null)
+                m_variationStartIndex.add(m_index);
+        }
+
+        public void warning(String message)
+        {
+            setWarning(message);
+        }
+    }
 
     /** Has current node inconsistent FF3 overtime settings properties. */
     private boolean m_ignoreOvertime;
 
+    /** Is the father of the current node the root node. */
+    private boolean m_isRootChild;
+
+    private boolean m_hasBlackChildMoves;
+
+    private boolean m_hasWhiteChildMoves;
+
+    /** Index of the current node in the compact tree. */
+    private int m_index;
+
+    /** Index of the father of the current node in the compact tree. */
+    private int m_fatherIndex;
+
     private int m_lastPercent;
 
     private int m_boardSize;
 
     private int m_byoyomiMoves;
 
-    private final long m_size;
-
     private long m_byoyomi;
 
     private long m_preByoyomi;
 
-    private ByteCountInputStream m_byteCountInputStream;
+    private GameTree m_tree;
+
+    private CompactGameTree m_compactTree;
 
-    private java.io.Reader m_reader;
+    /** Builder for the compact tree or null, if reading a GameTree.
+        The nodes are not linked to their fathers in this case. */
+    private final CompactGameTree.Builder m_builder;
 
-    private GameTree m_tree;
+    private Node m_root;
+
+    /** Current node. */
+    private Node m_node;
+
+    /** Nodes that contain the currently open variations as children. */
+    private final ArrayList<Node> m_variationStart = new ArrayList<Node>();
+
+    /** Indexes of m_variationStart in the compact tree. */
+    private final ArrayList<Integer> m_variationStartIndex =
+        new ArrayList<Integer>();
 
     private final ProgressShow m_progressShow;
 
     /** Contains strings with warnings. */
     private final Set<String> m_warnings = new TreeSet<String>();
 
-    private StreamTokenizer m_tokenizer;
+    /** Lexer of the parser, used for decoding the values. */
+    private SgfLexer m_lexer;
 
     private final File m_file;
 
-    private String m_newCharset;
+    private final PointList m_pointList = new PointList();
+
+    /** Temporary list reused for efficiency. */
+    private final ArrayList<String> m_values = new ArrayList<String>();
 
-    /** Pre-allocated temporary buffer for use within functions. */
-    private final StringBuilder m_buffer = new StringBuilder(512);
+    /** Number of properties of the current node. */
+    private int m_numberProps;
 
-    private final PointList m_pointList = new PointList();
+    /** Names of the properties of the current node.
+        Sorted in ascending order, contains no duplicates. */
+    private String[] m_propName = new String[32];
+
+    /** Index of the first value of a property in m_valueStart and
+        m_valueEnd. */
+    private int[] m_propFirstValue = new int[32];
+
+    private int[] m_propNumberValues = new int[32];
+
+    /** Number of values of the properties of the current node. */
+    private int m_numberValues;
+
+    /** Start of the raw values of the current node in the lexer buffer. */
+    private int[] m_valueStart = new int[64];
+
+    /** End of the raw values of the current node in the lexer buffer. */
+    private int[] m_valueEnd = new int[64];
+
+    private void addPointListPoint(GoPoint point)
+    {
+        if (point == null)
+            setWarning("Point list argument contains PASS");
+        else
+            m_pointList.add(point);
+    }
+
+    private void addPointListRange(GoPoint point1, GoPoint point2)
+    {
+        if (point1 == null || point2 == null)
+        {
+            setWarning("Compressed point list contains PASS");
+            return;
+        }
+        int xMin = Math.min(point1.getX(), point2.getX());
+        int xMax = Math.max(point1.getX(), point2.getX());
+        int yMin = Math.min(point1.getY(), point2.getY());
+        int yMax = Math.max(point1.getY(), point2.getY());
+        for (int x = xMin; x <= xMax; ++x)
+            for (int y = yMin; y <= yMax; ++y)
+                m_pointList.add(GoPoint.get(x, y));
+    }
+
+    /** Add a property to the properties of the current node.
+        Only stores the positions of the raw values; decoding is done on
+        demand. */
+    private void addProp(String p, SgfValues values)
+    {
+        int firstValue = m_numberValues;
+        int numberValues = values.size();
+        for (int i = 0; i < numberValues; ++i)
+        {
+            if (m_numberValues == m_valueStart.length)
+            {
+                m_valueStart = copyOf(m_valueStart, 2 * m_numberValues);
+                m_valueEnd = copyOf(m_valueEnd, 2 * m_numberValues);
+            }
+            m_valueStart[m_numberValues] = values.getStart(i);
+            m_valueEnd[m_numberValues] = values.getEnd(i);
+            ++m_numberValues;
+        }
+        int index = findProp(p);
+        if (index >= 0)
+        {
+            // Silently accept duplicate properties, as long as they have
+            // the same value (only check for single value properties)
+            if (m_propNumberValues[index] > 1 || numberValues > 1
+                || ! getValue(index).equals(decodeValue(firstValue)))
+                setWarning("Duplicate property " + p + " in node");
+        }
+        addProp(p, firstValue, numberValues);
+    }
 
-    /** Map containing the properties of the current node. */
-    private final Map<String,ArrayList<String>> m_props =
-        new TreeMap<String,ArrayList<String>>();
+    /** Add a property to the properties of the current node.
+        If the node already has a property with this name, it is replaced. */
+    private void addProp(String p, int firstValue, int numberValues)
+    {
+        int i = m_numberProps - 1;
+        while (i >= 0 && m_propName[i].compareTo(p) > 0)
+            --i;
+        if (i >= 0 && m_propName[i] == p)
+        {
+            m_propFirstValue[i] = firstValue;
+            m_propNumberValues[i] = numberValues;
+            return;
+        }
+        if (m_numberProps == m_propName.length)
+        {
+            int newLength = 2 * m_numberProps;
+            String[] propName = new String[newLength];
+            System.arraycopy(m_propName, 0, propName, 0, m_numberProps);
+            m_propName = propName;
+            m_propFirstValue = copyOf(m_propFirstValue, newLength);
+            m_propNumberValues = copyOf(m_propNumberValues, newLength);
+        }
+        ++i;
+        int n = m_numberProps - i;
+        System.arraycopy(m_propName, i, m_propName, i + 1, n);
+        System.arraycopy(m_propFirstValue, i, m_propFirstValue, i + 1, n);
+        System.arraycopy(m_propNumberValues, i, m_propNumberValues, i + 1, n);
+        m_propName[i] = p;
+        m_propFirstValue[i] = firstValue;
+        m_propNumberValues[i] = numberValues;
+        ++m_numberProps;
+    }
 
     /** Apply some fixes for broken SGF files. */
     private void applyFixes()
     {
-        Node root = m_tree.getRoot();
-        GameInfo info = m_tree.getGameInfo(root);
+        Node root = m_root;
+        GameInfo info = root.getGameInfo();
         if (root.hasSetup() && root.getPlayer() == null)
         {
             if (info.getHandicap() > 0)
@@ -187,49 +446,19 @@ public final class SgfReader
             }
             else
             {
-                boolean hasBlackChildMoves = false;
-                boolean hasWhiteChildMoves = false;
-                for (int i = 0; i < root.getNumberChildren(); ++i)
-                {
-                    Move move = root.getChild(i).getMove();
-                    if (move == null)
-                        continue;
-                    if (move.getColor() == BLACK)
-                        hasBlackChildMoves = true;
-                    if (move.getColor() == WHITE)
-                        hasWhiteChildMoves = true;
-                }
-                if (hasBlackChildMoves && ! hasWhiteChildMoves)
+                if (m_hasBlackChildMoves && ! m_hasWhiteChildMoves)
                     root.setPlayer(BLACK);
-                if (hasWhiteChildMoves && ! hasBlackChildMoves)
+                if (m_hasWhiteChildMoves && ! m_hasBlackChildMoves)
                     root.setPlayer(WHITE);
             }
         }
     }
 
-    private void checkEndOfFile() throws SgfError, IOException
-    {
-        while (true)
-        {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
-            if (t == '(')
-                throw getError("Multiple SGF trees not supported");
-            else if (t == StreamTokenizer.TT_EOF)
-                return;
-            else if (t != ' ' && t != '\t' && t != '\n' && t != '\r')
-            {
-                setWarning("Extra text after SGF tree");
-                return;
-            }
-        }
-    }
-
     /** Check for obsolete long names for standard properties.
         These are still used in some old SGF files.
         @param property Property name
         @return Short standard version of the property or original property */
-    private String checkForObsoleteLongProps(String property)
+    static String checkForObsoleteLongProps(String property)
     {
         if (property.length() <= 2)
             return property;
@@ -284,35 +513,36 @@ public final class SgfReader
         return property;
     }
 
+    private static int[] copyOf(int[] array, int newLength)
+    {
+        int[] result = new int[newLength];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length,
+                                                       newLength));
+        return result;
+    }
+
     private GameInfo createGameInfo(Node node)
     {
         return node.createGameInfo();
     }
 
-    private void findRoot() throws SgfError, IOException
+    /** Decode a value of the current node.
+        @param i Index of the value in m_valueStart and m_valueEnd */
+    private String decodeValue(int i)
     {
-        while (true)
-        {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
-            if (t == '(')
-            {
-                // Better make sure that ( is followed by a node
-                m_tokenizer.nextToken();
-                t = m_tokenizer.ttype;
-                if (t == ';')
-                {
-                    m_tokenizer.pushBack();
-                    return;
-                }
-                else
-                    setWarning("Extra text before SGF tree");
-            }
-            else if (t == StreamTokenizer.TT_EOF)
-                throw getError("No root tree found");
-            else
-                setWarning("Extra text before SGF tree");
-        }
+        return m_lexer.decodeValue(m_valueStart[i], m_valueEnd[i]);
+    }
+
+    /** Find a property of the current node.
+        @param p The property name (interned)
+        @return The index of the property or -1, if the node has no such
+        property */
+    private int findProp(String p)
+    {
+        for (int i = 0; i < m_numberProps; ++i)
+            if (m_propName[i] == p)
+                return i;
+        return -1;
     }
 
     private int getBoardSize()
@@ -324,41 +554,64 @@ public final class SgfReader
 
     private SgfError getError(String message)
     {
-        // Line numbers in error messages is currently disabled because
-        // StreamTokenizer.lineno() does not work as expected with Windows-style
-        // line endings (it seems to count CRLF as two line endings; last with
-        // Java 1.7).
-        /*
-        int lineNumber = m_tokenizer.lineno();
-        if (m_file == null)
-            return new SgfError(lineNumber + ": " + message);
-        else
-        {
-            String s = m_file.getName() + ":" + lineNumber + ": " + message;
-            return new SgfError(s);
-        }
-        */
-        if (m_file == null)
-            return new SgfError(message);
-        else
-            return new SgfError(m_file.getName() + ": " + message);
+        return SgfParser.getError(m_file, message);
+    }
+
+    /** Get the values of a property of the current node for decoding on
+        demand.
+        @param prop Index of the property */
+    private LazyText[] getLazyValues(int prop)
+    {
+        int firstValue = m_propFirstValue[prop];
+        int numberValues = m_propNumberValues[prop];
+        LazyText[] values = new LazyText[numberValues];
+        for (int i = 0; i < numberValues; ++i)
+            values[i] = getLazyValue(firstValue + i);
+        return values;
+    }
+
+    /** Get a value of the current node for decoding on demand.
+        @param i Index of the value in m_valueStart and m_valueEnd */
+    private LazyText getLazyValue(int i)
+    {
+        return new SgfText(m_lexer.getBytes(m_valueStart[i], m_valueEnd[i]),
+                           m_lexer.getCharset());
+    }
+
+    /** Get the decoded first value of a property of the current node.
+        @param prop Index of the property */
+    private String getValue(int prop)
+    {
+        return decodeValue(m_propFirstValue[prop]);
+    }
+
+    /** Get the decoded values of a property of the current node.
+        @param prop Index of the property
+        @return The values; the list is reused in the next call. */
+    private ArrayList<String> getValues(int prop)
+    {
+        m_values.clear();
+        int firstValue = m_propFirstValue[prop];
+        int numberValues = m_propNumberValues[prop];
+        for (int i = firstValue; i < firstValue + numberValues; ++i)
+            m_values.add(decodeValue(i));
+        return m_values;
     }
 
     private void handleProps(Node node, boolean isRoot)
-        throws IOException, SgfError, SgfCharsetChanged
+        throws SgfError
     {
         // Handle SZ property first to be able to parse points
-        if (m_props.containsKey("SZ"))
+        int sizeIndex = findProp("SZ");
+        if (sizeIndex >= 0)
         {
-            ArrayList<String> values = m_props.get("SZ");
-            m_props.remove("SZ");
             if (! isRoot)
                 setWarning("Size property not in root node ignored");
             else
             {
                 try
                 {
-                    int size = parseInt(values.get(0));
+                    int size = parseInt(getValue(sizeIndex));
                     if (size <= 0 || size > GoPoint.MAX_SIZE)
                         setWarning("Invalid board size value");
                     assert m_boardSize == -1;
@@ -370,72 +623,79 @@ public final class SgfReader
                 }
             }
         }
-        for (Map.Entry<String,ArrayList<String>> entry : m_props.entrySet())
+        // Values are decoded only in the branches that need them, point
+        // values are parsed directly from the raw bytes
+        for (int i = 0; i < m_numberProps; ++i)
         {
-            String p = entry.getKey();
-            ArrayList<String> values = entry.getValue();
-            String v = values.get(0);
+            String p = m_propName[i];
+            if (p == "SZ")
+                continue;
             if (p == "AB")
             {
-                parsePointList(values);
+                parsePointList(i);
                 node.addStones(BLACK, m_pointList);
             }
             else if (p == "AE")
             {
-                parsePointList(values);
+                parsePointList(i);
                 node.addStones(EMPTY, m_pointList);
             }
             else if (p == "AN")
-                set(node, StringInfo.ANNOTATION, v);
+                set(node, StringInfo.ANNOTATION, getValue(i));
             else if (p == "AW")
             {
-                parsePointList(values);
+                parsePointList(i);
                 node.addStones(WHITE, m_pointList);
             }
             else if (p == "B")
             {
-                node.setMove(Move.get(BLACK, parsePoint(v)));
+                node.setMove(Move.get(BLACK, parsePoint(i, 0)));
             }
             else if (p == "BL")
             {
                 try
                 {
-                    node.setTimeLeft(BLACK, Double.parseDouble(v));
+                    node.setTimeLeft(BLACK, Double.parseDouble(getValue(i)));
                 }
                 catch (NumberFormatException e)
                 {
                 }
             }
             else if (p == "BR")
-                set(node, StringInfoColor.RANK, BLACK, v);
+                set(node, StringInfoColor.RANK, BLACK, getValue(i));
             else if (p == "BT")
-                set(node, StringInfoColor.TEAM, BLACK, v);
+                set(node, StringInfoColor.TEAM, BLACK, getValue(i));
             else if (p == "C")
-                node.setComment(v);
+                setComment(node, m_propFirstValue[i]);
             else if (p == "CA")
             {
-                if (isRoot && m_isFile && m_newCharset == null)
+                // The charset was already applied by SgfParser
+                if (isRoot)
                 {
-                    m_newCharset = v.trim();
-                    if (Charset.isSupported(m_newCharset))
-                        throw new SgfCharsetChanged();
-                    else
-                        setWarning("Unknown character set \"" + m_newCharset
+                    String charset = getValue(i).trim();
+                    try
+                    {
+                        Charset.forName(charset);
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                        setWarning("Unknown character set \"" + charset
                                    + "\"");
+                    }
                 }
             }
             else if (p == "CP")
-                set(node, StringInfo.COPYRIGHT, v);
+                set(node, StringInfo.COPYRIGHT, getValue(i));
             else if (p == "CR")
-                parseMarked(node, MarkType.CIRCLE, values);
+                parseMarked(node, MarkType.CIRCLE, i);
             else if (p == "DT")
-                set(node, StringInfo.DATE, v);
+                set(node, StringInfo.DATE, getValue(i));
             else if (p == "FF")
             {
                 int format = -1;
                 try
                 {
-                    format = Integer.parseInt(v);
+                    format = Integer.parseInt(getValue(i));
                 }
                 catch (NumberFormatException e)
                 {
@@ -446,14 +706,14 @@ public final class SgfReader
             else if (p == "GM")
             {
                 // Some SGF files contain GM[], interpret as GM[1]
-                v = v.trim();
+                String v = getValue(i).trim();
                 if (! v.equals("") && ! v.equals("1"))
                     throw getError("Not a Go game");
             }
             else if (p == "HA")
             {
                 // Some SGF files contain HA[], interpret as unknown handicap
-                v = v.trim();
+                String v = getValue(i).trim();
                 if (! v.equals(""))
                 {
                     try
@@ -471,12 +731,13 @@ public final class SgfReader
                 }
             }
             else if (p == "KM")
-                parseKomi(node, v);
+                parseKomi(node, getValue(i));
             else if (p == "LB")
             {
-                for (int i = 0; i < values.size(); ++i)
+                ArrayList<String> values = getValues(i);
+                for (int j = 0; j < values.size(); ++j)
                 {
-                    String value = values.get(i);
+                    String value = values.get(j);
                     int pos = value.indexOf(':');
                     if (pos > 0)
                     {
@@ -487,68 +748,68 @@ public final class SgfReader
                 }
             }
             else if (p == "MA" || p == "M")
-                parseMarked(node, MarkType.MARK, values);
+                parseMarked(node, MarkType.MARK, i);
             else if (p == "OB")
             {
                 try
                 {
-                    node.setMovesLeft(BLACK, Integer.parseInt(v));
+                    node.setMovesLeft(BLACK, Integer.parseInt(getValue(i)));
                 }
                 catch (NumberFormatException e)
                 {
                 }
             }
             else if (p == "OM")
-                parseOvertimeMoves(v);
+                parseOvertimeMoves(getValue(i));
             else if (p == "OP")
-                parseOvertimePeriod(v);
+                parseOvertimePeriod(getValue(i));
             else if (p == "OT")
-                parseOvertime(node, v);
+                parseOvertime(node, getValue(i));
             else if (p == "OW")
             {
                 try
                 {
-                    node.setMovesLeft(WHITE, Integer.parseInt(v));
+                    node.setMovesLeft(WHITE, Integer.parseInt(getValue(i)));
                 }
                 catch (NumberFormatException e)
                 {
                 }
             }
             else if (p == "PB")
-                set(node, StringInfoColor.NAME, BLACK, v);
+                set(node, StringInfoColor.NAME, BLACK, getValue(i));
             else if (p == "PW")
-                set(node, StringInfoColor.NAME, WHITE, v);
+                set(node, StringInfoColor.NAME, WHITE, getValue(i));
             else if (p == "PL")
-                node.setPlayer(parseColor(v));
+                node.setPlayer(parseColor(getValue(i)));
             else if (p == "RE")
-                set(node, StringInfo.RESULT, v);
+                set(node, StringInfo.RESULT, getValue(i));
             else if (p == "RO")
-                set(node, StringInfo.ROUND, v);
+                set(node, StringInfo.ROUND, getValue(i));
             else if (p == "RU")
-                set(node, StringInfo.RULES, v);
+                set(node, StringInfo.RULES, getValue(i));
             else if (p == "SO")
-                set(node, StringInfo.SOURCE, v);
+                set(node, StringInfo.SOURCE, getValue(i));
             else if (p == "SQ")
-                parseMarked(node, MarkType.SQUARE, values);
+                parseMarked(node, MarkType.SQUARE, i);
             else if (p == "SL")
-                parseMarked(node, MarkType.SELECT, values);
+                parseMarked(node, MarkType.SELECT, i);
             else if (p == "TB")
-                parseMarked(node, MarkType.TERRITORY_BLACK, values);
+                parseMarked(node, MarkType.TERRITORY_BLACK, i);
             else if (p == "TM")
-                parseTime(node, v);
+                parseTime(node, getValue(i));
             else if (p == "TR")
-                parseMarked(node, MarkType.TRIANGLE, values);
+                parseMarked(node, MarkType.TRIANGLE, i);
             else if (p == "US")
-                set(node, StringInfo.USER, v);
+                set(node, StringInfo.USER, getValue(i));
             else if (p == "W")
-                node.setMove(Move.get(WHITE, parsePoint(v)));
+                node.setMove(Move.get(WHITE, parsePoint(i, 0)));
             else if (p == "TW")
-                parseMarked(node, MarkType.TERRITORY_WHITE, values);
+                parseMarked(node, MarkType.TERRITORY_WHITE, i);
             else if (p == "V")
             {
                 try
                 {
-                    node.setValue(Float.parseFloat(v));
+                    node.setValue(Float.parseFloat(getValue(i)));
                 }
                 catch (NumberFormatException e)
                 {
@@ -558,18 +819,18 @@ public final class SgfReader
             {
                 try
                 {
-                    node.setTimeLeft(WHITE, Double.parseDouble(v));
+                    node.setTimeLeft(WHITE, Double.parseDouble(getValue(i)));
                 }
                 catch (NumberFormatException e)
                 {
                 }
             }
             else if (p == "WR")
-                set(node, StringInfoColor.RANK, WHITE, v);
+                set(node, StringInfoColor.RANK, WHITE, getValue(i));
             else if (p == "WT")
-                set(node, StringInfoColor.TEAM, WHITE, v);
+                set(node, StringInfoColor.TEAM, WHITE, getValue(i));
             else if (p != "FF" && p != "GN" && p != "AP")
-                node.addSgfProperty(p, values);
+                node.addSgfProperty(p, getLazyValues(i));
         }
     }
 
@@ -615,11 +876,10 @@ public final class SgfReader
         }
     }
 
-    private void parseMarked(Node node, MarkType type,
-                             ArrayList<String> values)
+    private void parseMarked(Node node, MarkType type, int prop)
         throws SgfError
     {
-        parsePointList(values);
+        parsePointList(prop);
         for (GoPoint p : m_pointList)
             node.addMarked(p, type);
     }
@@ -688,11 +948,21 @@ public final class SgfReader
         }
         else if (s.length() != 2)
             throwInvalidCoordinates(s);
+        return parsePointLetters(s.charAt(0), s.charAt(1));
+    }
+
+    /** Parse point value in standard SGF encoding.
+        @param c1 First letter (lower case)
+        @param c2 Second letter (lower case)
+        @return Point or null, if pass move
+        @throw SgfError If point is outside board */
+    private GoPoint parsePointLetters(int c1, int c2) throws SgfError
+    {
         int boardSize = getBoardSize();
-        if (s.equals("tt") && boardSize <= 19)
+        if (c1 == 't' && c2 == 't' && boardSize <= 19)
             return null;
-        int x = s.charAt(0) - 'a';
-        int y = boardSize - (s.charAt(1) - 'a') - 1;
+        int x = c1 - 'a';
+        int y = boardSize - (c2 - 'a') - 1;
         if (x < 0 || x >= boardSize || y < 0 || y >= boardSize)
         {
             if (x == boardSize && y == -1)
@@ -701,47 +971,84 @@ public final class SgfReader
                 setWarning("Non-standard pass move encoding");
                 return null;
             }
-            throw getError("Coordinates \"" + s + "\" outside board size "
-                           + boardSize);
+            throw getError("Coordinates \"" + (char)c1 + (char)c2
+                           + "\" outside board size " + boardSize);
         }
         return GoPoint.get(x, y);
     }
 
-    private void parsePointList(ArrayList<String> values) throws SgfError
+    /** Parse point value of a property of the current node.
+        Parses the value directly from the raw bytes, if it is in the
+        standard two-letter encoding.
+        @param prop Index of the property
+        @param i Index of the value
+        @return Point or null, if pass move
+        @throw SgfError On invalid value */
+    private GoPoint parsePoint(int prop, int i) throws SgfError
+    {
+        int index = m_propFirstValue[prop] + i;
+        return parsePointRaw(m_valueStart[index], m_valueEnd[index]);
+    }
+
+    private void parsePointList(int prop) throws SgfError
     {
         m_pointList.clear();
-        for (int i = 0; i < values.size(); ++i)
+        int firstValue = m_propFirstValue[prop];
+        int numberValues = m_propNumberValues[prop];
+        for (int i = firstValue; i < firstValue + numberValues; ++i)
         {
-            String value = values.get(i);
-            int pos = value.indexOf(':');
-            if (pos < 0)
+            int start = m_valueStart[i];
+            int end = m_valueEnd[i];
+            int pos = -1;
+            boolean isEscaped = false;
+            for (int j = start; j < end; ++j)
             {
-                GoPoint point = parsePoint(value);
-                if (point == null)
-                    setWarning("Point list argument contains PASS");
-                else
-                    m_pointList.add(point);
+                int c = m_lexer.getByte(j);
+                if (c == '\\')
+                    isEscaped = true;
+                else if (c == ':' && pos < 0)
+                    pos = j;
             }
-            else
+            if (isEscaped)
             {
-                GoPoint point1 = parsePoint(value.substring(0, pos));
-                GoPoint point2 = parsePoint(value.substring(pos + 1));
-                if (point1 == null || point2 == null)
-                {
-                    setWarning("Compressed point list contains PASS");
-                    continue;
-                }
-                int xMin = Math.min(point1.getX(), point2.getX());
-                int xMax = Math.max(point1.getX(), point2.getX());
-                int yMin = Math.min(point1.getY(), point2.getY());
-                int yMax = Math.max(point1.getY(), point2.getY());
-                for (int x = xMin; x <= xMax; ++x)
-                    for (int y = yMin; y <= yMax; ++y)
-                        m_pointList.add(GoPoint.get(x, y));
+                // Rare case, use decoded value
+                String value = decodeValue(i);
+                int k = value.indexOf(':');
+                if (k < 0)
+                    addPointListPoint(parsePoint(value));
+                else
+                    addPointListRange(parsePoint(value.substring(0, k)),
+                                      parsePoint(value.substring(k + 1)));
             }
+            else if (pos < 0)
+                addPointListPoint(parsePointRaw(start, end));
+            else
+                addPointListRange(parsePointRaw(start, pos),
+                                  parsePointRaw(pos + 1, end));
         }
     }
 
+    /** Parse point from raw bytes.
+        Falls back to parsePoint(String) for values that are not in the
+        standard two-letter encoding. */
+    private GoPoint parsePointRaw(int start, int end) throws SgfError
+    {
+        if (end == start)
+            return null;
+        if (end - start == 2)
+        {
+            int c1 = m_lexer.getByte(start);
+            int c2 = m_lexer.getByte(start + 1);
+            if (c1 >= 'A' && c1 <= 'Z')
+                c1 += 'a' - 'A';
+            if (c2 >= 'A' && c2 <= 'Z')
+                c2 += 'a' - 'A';
+            if (c1 >= 'a' && c1 <= 'z' && c2 >= 'a' && c2 <= 'z')
+                return parsePointLetters(c1, c2);
+        }
+        return parsePoint(m_lexer.decodeValue(start, end));
+    }
+
     /** TM property.
         According to FF4, TM needs to be a real value, but older SGF versions
         allow a string with unspecified content. We try to parse a few known
@@ -761,133 +1068,22 @@ public final class SgfReader
             m_preByoyomi = preByoyomi;
     }
 
-    private Node readNext(Node father, boolean isRoot)
-        throws IOException, SgfError, SgfCharsetChanged
-    {
-        if (m_progressShow != null)
-        {
-            int percent;
-            if (m_size > 0)
-            {
-                long count = m_byteCountInputStream.getCount();
-                percent = (int)(count * 100 / m_size);
-            }
-            else
-                percent = 100;
-            if (percent != m_lastPercent)
-                m_progressShow.showProgress(percent);
-            m_lastPercent = percent;
-        }
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype == '(')
-        {
-            Node node = father;
-            while (node != null)
-                node = readNext(node, false);
-            return father;
-        }
-        if (ttype == ')')
-            return null;
-        if (ttype == StreamTokenizer.TT_EOF)
-        {
-            setWarning("Game tree not closed");
-            return null;
-        }
-        if (ttype != ';')
-            throw getError("Next node expected");
-        Node son = new Node();
-        if (father != null)
-            father.append(son);
-        m_ignoreOvertime = false;
-        m_byoyomiMoves = -1;
-        m_byoyomi = -1;
-        m_preByoyomi = -1;
-        m_props.clear();
-        while (readProp());
-        handleProps(son, isRoot);
-        setTimeSettings(son);
-        return son;
-    }
-
-    private boolean readProp() throws IOException, SgfError
-    {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype == StreamTokenizer.TT_WORD)
-        {
-            // Use intern() to allow fast comparsion with ==
-            String p = m_tokenizer.sval.toUpperCase(Locale.ENGLISH).intern();
-            ArrayList<String> values = new ArrayList<String>();
-            String s;
-            while ((s = readValue()) != null)
-                values.add(s);
-            if (values.isEmpty())
-            {
-                setWarning("Property \"" + p + "\" has no value");
-                return true;
-            }
-            p = checkForObsoleteLongProps(p);
-            if (m_props.containsKey(p))
-                // Silently accept duplicate properties, as long as they have
-                // the same value (only check for single value properties)
-                if (m_props.get(p).size() > 1 || values.size() > 1
-                    || ! values.get(0).equals(m_props.get(p).get(0)))
-                    setWarning("Duplicate property " + p + " in node");
-            m_props.put(p, values);
-            return true;
-        }
-        if (ttype != '\n')
-            // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-            m_tokenizer.pushBack();
-        return false;
-    }
-
-    private void readSgf(InputStream in, String charset)
-        throws SgfError, SgfCharsetChanged
+    private void readSgf(SgfParser parser) throws SgfError
     {
         try
         {
             m_boardSize = -1;
-            if (m_progressShow != null)
-            {
-                m_byteCountInputStream = new ByteCountInputStream(in);
-                in = m_byteCountInputStream;
-            }
-            InputStreamReader reader;
-            try
-            {
-                reader = new InputStreamReader(in, charset);
-            }
-            catch (UnsupportedEncodingException e)
-            {
-                // Should actually not happen, because this function is only
-                // called with charset ISO-8859-1 (should be supported on every
-                // Java platform according to Charset documentation) or with a
-                // CA property value, which was already checked with
-                // Charset.isSupported()
-                setWarning("Character set \"" + charset + "\" not supported");
-                reader = new InputStreamReader(in);
-            }
-            m_reader = new BufferedReader(reader);
-            m_tokenizer = new StreamTokenizer(m_reader);
-            findRoot();
-            Node root = readNext(null, true);
-            Node node = root;
-            while (node != null)
-                node = readNext(node, false);
-            checkEndOfFile();
+            m_index = -1;
+            m_lexer = parser.getLexer();
+            parser.parseSingleGame(new TreeBuilder());
             getBoardSize(); // Set to default value if still unknown
-            m_tree = new GameTree(m_boardSize, root);
+            if (m_builder == null)
+                m_tree = new GameTree(m_boardSize, m_root);
+            // The builder keeps the root node (it always has a game info),
+            // so the fixes are also applied to the compact tree
             applyFixes();
-        }
-        catch (FileNotFoundException e)
-        {
-            throw new SgfError("File not found.");
-        }
-        catch (IOException e)
-        {
-            throw new SgfError("IO error");
+            if (m_builder != null)
+                m_compactTree = m_builder.finish(m_boardSize);
         }
         catch (OutOfMemoryError e)
         {
@@ -895,63 +1091,6 @@ public final class SgfReader
         }
     }
 
-    private String readValue() throws IOException, SgfError
-    {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype != '[')
-        {
-            if (ttype != '\n')
-                // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-                m_tokenizer.pushBack();
-            return null;
-        }
-        m_buffer.setLength(0);
-        boolean quoted = false;
-        Character last = null;
-        while (true)
-        {
-            int c = m_reader.read();
-            if (c < 0)
-                throw getError("Property value incomplete");
-            if (quoted)
-            {
-                if (c != '\n' && c != '\r')
-                    m_buffer.append((char)c);
-                last = Character.valueOf((char)c);
-                quoted = false;
-            }
-            else
-            {
-                if (c == ']')
-                    break;
-                quoted = (c == '\\');
-                if (! quoted)
-                {
-                    // Transform all linebreaks allowed in SGF (LF, CR, LFCR,
-                    // CRLF) to a single '\n'
-                    boolean isLinebreak = (c == '\n' || c == '\r');
-                    boolean lastLinebreak =
-                        (last != null && (last.charValue() == '\n'
-                                          || last.charValue() == '\r'));
-                    boolean filterSecondLinebreak =
-                        (isLinebreak && lastLinebreak && c != last.charValue());
-                    if (filterSecondLinebreak)
-                        last = null;
-                    else
-                    {
-                        if (isLinebreak)
-                            m_buffer.append('\n');
-                        else
-                            m_buffer.append((char)c);
-                        last = Character.valueOf((char)c);
-                    }
-                }
-            }
-        }
-        return m_buffer.toString();
-    }
-
     private void set(Node node, StringInfo type, String value)
     {
         GameInfo info = createGameInfo(node);
@@ -965,6 +1104,16 @@ public final class SgfReader
         info.set(type, c, value);
     }
 
+    /** Set comment without decoding it, if possible.
+        @param i Index of the value in m_valueStart and m_valueEnd */
+    private void setComment(Node node, int i)
+    {
+        if (SgfText.isNotEmpty(m_lexer, m_valueStart[i], m_valueEnd[i]))
+            node.setComment(getLazyValue(i));
+        else
+            node.setComment(decodeValue(i));
+    }
+
     private void setTimeSettings(Node node)
     {
         TimeSettings s = null;
@@ -986,6 +1135,21 @@ public final class SgfReader
         m_warnings.add(message);
     }
 
+    private void showProgress()
+    {
+        if (m_progressShow == null)
+            return;
+        int percent;
+        if (m_lexer.getLimit() > 0)
+            percent = (int)((long)m_lexer.getPosition() * 100
+                            / m_lexer.getLimit());
+        else
+            percent = 100;
+        if (percent != m_lastPercent)
+            m_progressShow.showProgress(percent);
+        m_lastPercent = percent;
+    }
+
     private void throwInvalidCoordinates(String s) throws SgfError
     {
         throw getError("Invalid coordinates \"" + s + "\"");
@@ -0,0 +1,65 @@
+// SgfText.java
+
+package net.sf.gogui.sgf;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import net.sf.gogui.game.LazyText;
+
+/** SGF text value that is decoded on demand.
+    Stores a copy of the raw bytes of the value as they appear in the file
+    (with escape characters and original linebreaks) and the charset of the
+    file. A copy is used instead of a reference to the input buffer, so
+    that the buffer (which can be a memory-mapped file) is not kept alive
+    by the game tree. */
+final class SgfText
+    implements LazyText
+{
+    /** Constructor.
+        @param raw The raw bytes of the value; the array is not copied.
+        @param charset The charset of the value. */
+    public SgfText(byte[] raw, Charset charset)
+    {
+        m_raw = raw;
+        m_charset = charset;
+    }
+
+    public String decode()
+    {
+        if (! SgfLexer.isAsciiCompatible(m_charset))
+            return SgfLexer.unescape(new String(m_raw, m_charset));
+        byte[] buffer = new byte[m_raw.length];
+        int length =
+            SgfLexer.unescape(ByteBuffer.wrap(m_raw), 0, m_raw.length, buffer);
+        return new String(buffer, 0, length, m_charset);
+    }
+
+    /** Check if a value can be decoded lazily without changing its
+        emptiness.
+        Comments that contain only whitespaces are deleted when set in a
+        node, which can only be checked after decoding. This returns true,
+        if the value contains an ASCII character that is neither a
+        whitespace nor an escape character and the charset maps ASCII bytes
+        always to ASCII characters, because then the decoded value cannot
+        be empty.
+        @param lexer The lexer containing the value.
+        @param start The start of the value.
+        @param end The end of the value.
+        @return true if the decoded value is known to be not empty. */
+    public static boolean isNotEmpty(SgfLexer lexer, int start, int end)
+    {
+        if (! SgfLexer.isAsciiCompatible(lexer.getCharset()))
+            return false;
+        for (int i = start; i < end; ++i)
+        {
+            int c = lexer.getByte(i);
+            if (c > ' ' && c < 127 && c != '\\')
+                return true;
+        }
+        return false;
+    }
+
+    private final byte[] m_raw;
+
+    private final Charset m_charset;
+}
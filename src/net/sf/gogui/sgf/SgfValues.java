@@ -0,0 +1,95 @@
+// SgfValues.java
+
+package net.sf.gogui.sgf;
+
+/** Values of an SGF property.
+    Passed to SgfHandler.property(). The values are located in the data of
+    the parser and are only decoded into strings, if get() is called. */
+public final class SgfValues
+{
+    /** Get a value.
+        Escape characters and soft linebreaks are removed and all linebreaks
+        are transformed to a single LF.
+        @param i The index of the value.
+        @return The decoded value. */
+    public String get(int i)
+    {
+        if (i >= m_size)
+            throw new IndexOutOfBoundsException();
+        return m_lexer.decodeValue(m_start[i], m_end[i]);
+    }
+
+    /** Get a byte of a value without decoding it.
+        Can be used to parse values that contain only ASCII characters, like
+        points, without creating strings. Escape characters are not
+        removed.
+        @param i The index of the value.
+        @param j The index of the byte in the raw value.
+        @see #getLength */
+    public int getByte(int i, int j)
+    {
+        if (j >= getLength(i))
+            throw new IndexOutOfBoundsException();
+        return m_lexer.getByte(m_start[i] + j);
+    }
+
+    /** Get the number of bytes of a value without decoding it.
+        @param i The index of the value. */
+    public int getLength(int i)
+    {
+        if (i >= m_size)
+            throw new IndexOutOfBoundsException();
+        return m_end[i] - m_start[i];
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    SgfValues(SgfLexer lexer)
+    {
+        m_lexer = lexer;
+    }
+
+    void add(int start, int end)
+    {
+        if (m_size == m_start.length)
+        {
+            int[] newStart = new int[2 * m_size];
+            int[] newEnd = new int[2 * m_size];
+            System.arraycopy(m_start, 0, newStart, 0, m_size);
+            System.arraycopy(m_end, 0, newEnd, 0, m_size);
+            m_start = newStart;
+            m_end = newEnd;
+        }
+        m_start[m_size] = start;
+        m_end[m_size] = end;
+        ++m_size;
+    }
+
+    void clear()
+    {
+        m_size = 0;
+    }
+
+    /** Get the end of a raw value in the buffer of the lexer. */
+    int getEnd(int i)
+    {
+        return m_end[i];
+    }
+
+    /** Get the start of a raw value in the buffer of the lexer. */
+    int getStart(int i)
+    {
+        return m_start[i];
+    }
+
+    private int m_size;
+
+    private int[] m_start = new int[16];
+
+    private int[] m_end = new int[16];
+
+    private final SgfLexer m_lexer;
+}
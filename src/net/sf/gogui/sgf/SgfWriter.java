@@ -2,9 +2,12 @@
 
 package net.sf.gogui.sgf;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 import net.sf.gogui.game.ConstGameInfo;
 import net.sf.gogui.game.ConstGameTree;
@@ -27,13 +30,18 @@ import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.PointList;
 import net.sf.gogui.util.StringUtil;
 
-/** Write in SGF format. */
+/** Write in SGF format.
+    The output is encoded directly into a byte buffer. Property names and
+    points are written as bytes and values are escaped into a reusable
+    buffer, so that writing a node does not create temporary strings. */
 public class SgfWriter
 {
     public static final String ENCODING = "UTF-8";
 
     /** Write game tree in SGF format.
-        @param out Output stream.
+        Errors are ignored; use the constructor with a WritableByteChannel
+        to check for write errors.
+        @param out Output stream. The stream is closed after writing.
         @param tree Game tree to write.
         @param application Application name for AP property.
         @param version If not null, version appended to application name in
@@ -41,27 +49,34 @@ public class SgfWriter
     public SgfWriter(OutputStream out, ConstGameTree tree, String application,
                      String version)
     {
+        this(getChannel(out), tree.getBoardSize());
         try
         {
-            m_out = new PrintStream(out, false, ENCODING);
+            writeTree(tree, application, version);
         }
-        catch (UnsupportedEncodingException e)
+        catch (IOException e)
         {
-            // UTF-8 should be supported by every Java implementation
-            assert false;
         }
-        print("(");
-        m_size = tree.getBoardSize();
-        printHeader(application, version);
-        printNewLine();
-        printNode(tree.getRootConst(), true);
-        print(")");
-        m_out.println(m_buffer.toString());
-        m_out.close();
+    }
+
+    /** Write game tree in SGF format.
+        @param out Channel to write to. The channel is closed after
+        writing.
+        @param tree Game tree to write.
+        @param application Application name for AP property.
+        @param version If not null, version appended to application name in
+        AP property.
+        @throws IOException If writing to the channel fails. */
+    public SgfWriter(WritableByteChannel out, ConstGameTree tree,
+                     String application, String version) throws IOException
+    {
+        this(out, tree.getBoardSize());
+        writeTree(tree, application, version);
     }
 
     /** Write position in SGF format.
-        @param out Output stream.
+        Errors are ignored.
+        @param out Output stream. The stream is closed after writing.
         @param board Position to write.
         @param application Application name for AP property.
         @param version If not null, version appended to application name in
@@ -69,91 +84,289 @@ public class SgfWriter
     public SgfWriter(OutputStream out, ConstBoard board, String application,
                      String version)
     {
-        m_size = board.getSize();
-        m_out = new PrintStream(out);
-        print("(");
-        printHeader(application, version);
-        printNewLine();
-        printPosition(board);
-        print(")");
-        m_out.println(m_buffer.toString());
-        m_out.close();
+        this(getChannel(out), board.getSize());
+        try
+        {
+            try
+            {
+                print('(');
+                printHeader(application, version);
+                printNewLine();
+                printPosition(board);
+                print(')');
+                printLine();
+                flush();
+            }
+            finally
+            {
+                m_channel.close();
+            }
+        }
+        catch (IOException e)
+        {
+        }
     }
 
-    private static final int STRINGBUF_CAPACITY = 128;
+    /** Write the properties of a single node.
+        Used by SgfJournal. Writes a semicolon followed by the properties.
+        The channel is not closed.
+        @param out Channel to write to.
+        @param node The node.
+        @param size The board size for encoding points. */
+    SgfWriter(WritableByteChannel out, ConstNode node, int size)
+        throws IOException
+    {
+        this(out, size);
+        print(';');
+        printProperties(node);
+        flush();
+    }
+
+    private static final int BUFFER_SIZE = 8192;
 
     private static final int MAX_CHARS_PER_LINE = 78;
 
-    private final StringBuilder m_buffer
-        = new StringBuilder(STRINGBUF_CAPACITY);
+    private static final byte[] LINE_SEPARATOR =
+        getAscii(System.getProperty("line.separator"));
+
+    private static final byte[] PROP_AB = getAscii("AB");
+
+    private static final byte[] PROP_AE = getAscii("AE");
+
+    private static final byte[] PROP_AW = getAscii("AW");
+
+    private static final byte[] PROP_B = getAscii("B");
+
+    private static final byte[] PROP_BL = getAscii("BL[");
+
+    private static final byte[] PROP_C = getAscii("C[");
+
+    private static final byte[] PROP_CR = getAscii("CR");
+
+    private static final byte[] PROP_LB = getAscii("LB");
+
+    private static final byte[] PROP_MA = getAscii("MA");
+
+    private static final byte[] PROP_OB = getAscii("OB[");
+
+    private static final byte[] PROP_OW = getAscii("OW[");
+
+    private static final byte[] PROP_PL_B = getAscii("PL[B]");
+
+    private static final byte[] PROP_PL_W = getAscii("PL[W]");
+
+    private static final byte[] PROP_SL = getAscii("SL");
+
+    private static final byte[] PROP_SQ = getAscii("SQ");
+
+    private static final byte[] PROP_TB = getAscii("TB");
+
+    private static final byte[] PROP_TR = getAscii("TR");
+
+    private static final byte[] PROP_TW = getAscii("TW");
+
+    private static final byte[] PROP_V = getAscii("V[");
+
+    private static final byte[] PROP_W = getAscii("W");
+
+    private static final byte[] PROP_WL = getAscii("WL[");
 
     private final int m_size;
 
-    private PrintStream m_out;
+    /** Number of characters in the current line.
+        Counted in UTF-16 characters (as String.length()), not in bytes. */
+    private int m_lineLength;
+
+    /** Number of bytes in m_item. */
+    private int m_itemSize;
+
+    /** Number of characters in m_item (as String.length()). */
+    private int m_itemLength;
+
+    /** Does the current item contain a newline after its first
+        character. */
+    private boolean m_itemHasNewLine;
+
+    /** Encoded text that is written to the current line as a whole.
+        Reused for efficiency. */
+    private byte[] m_item = new byte[128];
 
-    private String getEscaped(String text)
+    private final ByteBuffer m_buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final WritableByteChannel m_channel;
+
+    private SgfWriter(WritableByteChannel channel, int size)
+    {
+        m_channel = channel;
+        m_size = size;
+    }
+
+    /** Append an ASCII character to the current item. */
+    private void append(char c)
+    {
+        ensureItemCapacity(1);
+        if (c == '\n' && m_itemLength > 0)
+            m_itemHasNewLine = true;
+        m_item[m_itemSize++] = (byte)c;
+        ++m_itemLength;
+    }
+
+    /** Append a pre-encoded ASCII string to the current item. */
+    private void append(byte[] bytes)
     {
-        return getEscaped(text, false);
+        ensureItemCapacity(bytes.length);
+        System.arraycopy(bytes, 0, m_item, m_itemSize, bytes.length);
+        m_itemSize += bytes.length;
+        m_itemLength += bytes.length;
     }
 
-    private String getEscaped(String text, boolean escapeColon)
+    /** Append a non-negative integer to the current item. */
+    private void append(int n)
     {
-        StringBuilder result = new StringBuilder(2 * text.length());
-        for (int i = 0; i < text.length(); ++i)
+        assert n >= 0;
+        int numberDigits = 1;
+        for (int i = n; i >= 10; i /= 10)
+            ++numberDigits;
+        ensureItemCapacity(numberDigits);
+        for (int i = numberDigits - 1; i >= 0; --i)
+        {
+            m_item[m_itemSize + i] = (byte)('0' + n % 10);
+            n /= 10;
+        }
+        m_itemSize += numberDigits;
+        m_itemLength += numberDigits;
+    }
+
+    /** Append a string encoded in UTF-8 to the current item.
+        @param text The string.
+        @param escape Escape special characters and replace whitespace
+        characters other than newline by spaces.
+        @param escapeColon Also escape colons (only used if escape is
+        true). */
+    private void append(String text, boolean escape, boolean escapeColon)
+    {
+        int length = text.length();
+        // At most 3 bytes per char; a surrogate pair needs 4 bytes for 2
+        // chars. Escaped characters are ASCII and need 2 bytes.
+        ensureItemCapacity(3 * length);
+        byte[] item = m_item;
+        int size = m_itemSize;
+        for (int i = 0; i < length; ++i)
         {
             char c = text.charAt(i);
-            String specialCharacters;
-            if (escapeColon)
-                specialCharacters = "]:\\";
-            else
-                specialCharacters = "]\\";
-            if (specialCharacters.indexOf(c) >= 0)
+            if (c < 0x80)
+            {
+                if (escape)
+                {
+                    if (c == ']' || c == '\\' || (escapeColon && c == ':'))
+                    {
+                        item[size++] = '\\';
+                        ++m_itemLength;
+                    }
+                    else if (c != '\n' && Character.isWhitespace(c))
+                        c = ' ';
+                }
+                if (c == '\n' && m_itemLength > 0)
+                    m_itemHasNewLine = true;
+                item[size++] = (byte)c;
+            }
+            else if (escape && Character.isWhitespace(c))
+                item[size++] = ' ';
+            else if (c < 0x800)
+            {
+                item[size++] = (byte)(0xc0 | (c >> 6));
+                item[size++] = (byte)(0x80 | (c & 0x3f));
+            }
+            else if (c < Character.MIN_SURROGATE
+                     || c > Character.MAX_SURROGATE)
             {
-                result.append('\\');
-                result.append(c);
+                item[size++] = (byte)(0xe0 | (c >> 12));
+                item[size++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+                item[size++] = (byte)(0x80 | (c & 0x3f));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length
+                     && Character.isLowSurrogate(text.charAt(i + 1)))
+            {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                item[size++] = (byte)(0xf0 | (codePoint >> 18));
+                item[size++] = (byte)(0x80 | ((codePoint >> 12) & 0x3f));
+                item[size++] = (byte)(0x80 | ((codePoint >> 6) & 0x3f));
+                item[size++] = (byte)(0x80 | (codePoint & 0x3f));
+                ++m_itemLength;
             }
-            else if (c != '\n' && Character.isWhitespace(c))
-                result.append(' ');
             else
-                result.append(c);
+                // Unpaired surrogate, replaced as by the UTF-8 encoder
+                item[size++] = '?';
+            ++m_itemLength;
         }
-        return result.toString();
+        m_itemSize = size;
+    }
+
+    private void appendEscaped(String text)
+    {
+        append(text, true, false);
     }
 
-    private static int getMoveNumberInVariation(ConstNode node)
+    private void appendPoint(GoPoint p)
     {
-        int moveNumber = 0;
-        while (node != null)
+        if (p == null)
+            return;
+        ensureItemCapacity(2);
+        m_item[m_itemSize++] = (byte)('a' + p.getX());
+        m_item[m_itemSize++] = (byte)('a' + (m_size - p.getY() - 1));
+        m_itemLength += 2;
+    }
+
+    private void appendPointList(ConstPointList list)
+    {
+        for (int i = 0; i < list.size(); ++i)
+            appendPointValue(list.get(i));
+    }
+
+    private void appendPointValue(GoPoint p)
+    {
+        append('[');
+        appendPoint(p);
+        append(']');
+    }
+
+    private void appendText(String text)
+    {
+        append(text, false, false);
+    }
+
+    private void ensureItemCapacity(int n)
+    {
+        if (m_itemSize + n > m_item.length)
         {
-            if (node.getMove() != null)
-                ++moveNumber;
-            node = node.getFatherConst();
-            if (node != null && node.getNumberChildren() > 1)
-                break;
+            byte[] newItem = new byte[Math.max(2 * m_item.length,
+                                               m_itemSize + n)];
+            System.arraycopy(m_item, 0, newItem, 0, m_itemSize);
+            m_item = newItem;
         }
-        return moveNumber;
     }
 
-    private String getPoint(GoPoint p)
+    private void flush() throws IOException
     {
-        if (p == null)
-            return "";
-        int x = 'a' + p.getX();
-        int y = 'a' + (m_size - p.getY() - 1);
-        return "" + (char)x + (char)y;
+        m_buffer.flip();
+        while (m_buffer.hasRemaining())
+            m_channel.write(m_buffer);
+        m_buffer.clear();
     }
 
-    private String getPointValue(GoPoint point)
+    private static byte[] getAscii(String text)
     {
-        return "[" + getPoint(point) + "]";
+        byte[] result = new byte[text.length()];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = (byte)text.charAt(i);
+        return result;
     }
 
-    private String getPointList(ConstPointList v)
+    private static WritableByteChannel getChannel(OutputStream out)
     {
-        StringBuilder buffer = new StringBuilder(STRINGBUF_CAPACITY);
-        for (int i = 0; i < v.size(); ++i)
-            buffer.append(getPointValue(v.get(i)));
-        return buffer.toString();
+        if (out instanceof FileOutputStream)
+            return ((FileOutputStream)out).getChannel();
+        return Channels.newChannel(out);
     }
 
     private boolean hasByoyomiInformation(ConstNode node)
@@ -165,68 +378,109 @@ public class SgfWriter
         return (settings != null && settings.getUseByoyomi());
     }
 
-    private void print(String text)
+    private void print(char c) throws IOException
     {
-        if (text.indexOf('\n') > 0)
+        append(c);
+        printItem();
+    }
+
+    /** Write the current item to the current line.
+        Starts a new line, if the line would get too long. Items that
+        contain newlines are written on separate lines. */
+    private void printItem() throws IOException
+    {
+        if (m_itemHasNewLine)
         {
             printNewLine();
-            m_buffer.append(text);
+            write(m_item, m_itemSize);
+            m_lineLength += m_itemLength;
             printNewLine();
-            return;
         }
-        if (m_buffer.length() + text.length() > MAX_CHARS_PER_LINE)
-            printNewLine();
-        m_buffer.append(text);
+        else
+        {
+            if (m_lineLength + m_itemLength > MAX_CHARS_PER_LINE)
+                printNewLine();
+            write(m_item, m_itemSize);
+            m_lineLength += m_itemLength;
+        }
+        m_itemSize = 0;
+        m_itemLength = 0;
+        m_itemHasNewLine = false;
     }
 
-    private void printNewLine()
+    /** Terminate the current line. */
+    private void printLine() throws IOException
     {
-        if (m_buffer.length() > 0)
-        {
-            m_out.println(m_buffer.toString());
-            m_buffer.replace(0, m_buffer.length(), "");
-        }
+        write(LINE_SEPARATOR, LINE_SEPARATOR.length);
+        m_lineLength = 0;
+    }
+
+    /** Terminate the current line, if it is not empty. */
+    private void printNewLine() throws IOException
+    {
+        if (m_lineLength > 0)
+            printLine();
     }
 
     private void printHeader(String application, String version)
+        throws IOException
     {
-        StringBuilder header = new StringBuilder(128);
-        header.append(";FF[4]CA[");
-        header.append(getEscaped(ENCODING));
-        header.append(']');
+        appendText(";FF[4]CA[");
+        appendEscaped(ENCODING);
+        append(']');
         if (application != null && ! application.equals(""))
         {
-            String appName = application;
+            appendText("AP[");
+            appendEscaped(application);
             if (version != null && ! version.equals(""))
-                appName = appName + ":" + version;
-            header.append("AP[");
-            header.append(getEscaped(appName));
-            header.append(']');
+            {
+                append(':');
+                appendEscaped(version);
+            }
+            append(']');
         }
         if (m_size != 19)
         {
-            header.append("SZ[");
-            header.append(m_size);
-            header.append(']');
+            appendText("SZ[");
+            append(m_size);
+            append(']');
         }
-        print(header.toString());
+        printItem();
     }
 
-    private void printGameInfo(ConstGameInfo info)
+    private void printGameInfo(ConstGameInfo info) throws IOException
     {
         int handicap = info.getHandicap();
         Komi komi = info.getKomi();
         if (handicap > 0)
-            print("HA[" + handicap + "]");
+        {
+            appendText("HA[");
+            append(handicap);
+            append(']');
+            printItem();
+        }
         if (komi != null && ! (handicap > 0 && komi.equals(new Komi(0))))
-            print("KM[" + komi + "]");
+        {
+            appendText("KM[");
+            appendText(komi.toString());
+            append(']');
+            printItem();
+        }
         TimeSettings timeSettings = info.getTimeSettings();
         if (timeSettings != null)
         {
-            print("TM[" + timeSettings.getPreByoyomi() / 1000 + "]");
+            appendText("TM[");
+            appendText(Long.toString(timeSettings.getPreByoyomi() / 1000));
+            append(']');
+            printItem();
             String overtime = SgfUtil.getOvertime(timeSettings);
             if (overtime != null)
-                print("OT[" + overtime + "]");
+            {
+                appendText("OT[");
+                appendText(overtime);
+                append(']');
+                printItem();
+            }
         }
         printInfo("PB", info.get(StringInfoColor.NAME, BLACK));
         printInfo("PW", info.get(StringInfoColor.NAME, WHITE));
@@ -245,164 +499,260 @@ public class SgfWriter
         printNewLine();
     }
 
-    private void printInfo(String label, String value)
+    private void printInfo(String label, String value) throws IOException
     {
         if (value == null || value.equals(""))
             return;
-        print(label + "[" + getEscaped(value) + "]");
+        appendText(label);
+        append('[');
+        appendEscaped(value);
+        append(']');
+        printItem();
     }
 
-    private void printLabels(ConstNode node)
+    private void printLabels(ConstNode node) throws IOException
     {
         Map<GoPoint,String> labels = node.getLabelsUnmodifiable();
         if (labels == null || labels.isEmpty())
             return;
-        StringBuilder buffer = new StringBuilder(STRINGBUF_CAPACITY);
-        buffer.append("LB");
+        append(PROP_LB);
         for (Map.Entry<GoPoint,String> entry : labels.entrySet())
         {
-            GoPoint point = entry.getKey();
-            String value = entry.getValue();
-            buffer.append('[');
-            buffer.append(getPoint(point));
-            buffer.append(':');
-            buffer.append(getEscaped(value, true));
-            buffer.append(']');
+            append('[');
+            appendPoint(entry.getKey());
+            append(':');
+            append(entry.getValue(), true, true);
+            append(']');
         }
-        print(buffer.toString());
+        printItem();
     }
 
-    private void printMarked(ConstNode node, String property, MarkType type)
+    private void printMarked(ConstNode node, byte[] property, MarkType type)
+        throws IOException
     {
         ConstPointList marked = node.getMarkedConst(type);
         if (marked != null && ! marked.isEmpty())
-            print(property + getPointList(marked));
+        {
+            append(property);
+            appendPointList(marked);
+            printItem();
+        }
     }
 
-    private void printNode(ConstNode node, boolean isRoot)
+    /** Print a node and its subtree.
+        Nodes with a single child are followed in a loop, so that long
+        games do not need a deep recursion.
+        @param node The node.
+        @param isRoot true, if the node is the root node.
+        @param moveNumber The number of moves in the variation before the
+        node. Used for starting a new line every 10 moves. */
+    private void printNode(ConstNode node, boolean isRoot, int moveNumber)
+        throws IOException
     {
-        Move move = node.getMove();
-        if (! isRoot)
+        while (true)
         {
+            Move move = node.getMove();
             if (move != null)
+                ++moveNumber;
+            if (! isRoot)
             {
-                int moveNumber = getMoveNumberInVariation(node);
-                if (moveNumber != 1 && moveNumber % 10 == 1)
+                if (move != null && moveNumber != 1 && moveNumber % 10 == 1)
                     printNewLine();
+                print(';');
             }
-            print(";");
+            printProperties(node);
+            int numberChildren = node.getNumberChildren();
+            if (numberChildren == 0)
+                return;
+            if (numberChildren > 1)
+            {
+                for (int i = 0; i < numberChildren; ++i)
+                {
+                    printNewLine();
+                    print('(');
+                    printNode(node.getChildConst(i), false, 0);
+                    print(')');
+                }
+                return;
+            }
+            node = node.getChildConst();
+            isRoot = false;
+        }
+    }
+
+    private void printPosition(ConstBoard board) throws IOException
+    {
+        PointList black = new PointList();
+        PointList white = new PointList();
+        for (GoPoint p : board)
+        {
+            GoColor c = board.getColor(p);
+            if (c == BLACK)
+                black.add(p);
+            else if (c == WHITE)
+                white.add(p);
         }
+        printSetup(black, white);
+        printNewLine();
+        printToPlay(board.getToMove());
+    }
+
+    private void printProperties(ConstNode node) throws IOException
+    {
+        Move move = node.getMove();
         ConstGameInfo info = node.getGameInfoConst();
         if (info != null)
             printGameInfo(info);
         if (move != null)
         {
-            String point = getPointValue(move.getPoint());
             if (move.getColor() == BLACK)
-                print("B" + point);
+                append(PROP_B);
             else
-                print("W" + point);
+                append(PROP_W);
+            appendPointValue(move.getPoint());
+            printItem();
         }
         for (GoColor c : BLACK_WHITE_EMPTY)
         {
             ConstPointList points = node.getSetup(c);
             if (points.size() == 0)
                 continue;
-            StringBuilder buffer = new StringBuilder(STRINGBUF_CAPACITY);
             if (c == BLACK)
-                buffer.append("AB");
+                append(PROP_AB);
             else if (c == WHITE)
-                buffer.append("AW");
+                append(PROP_AW);
             else
-                buffer.append("AE");
-            for (GoPoint p : points)
-                buffer.append(getPointValue(p));
-            print(buffer.toString());
+                append(PROP_AE);
+            appendPointList(points);
+            printItem();
         }
         String comment = node.getComment();
         if (! StringUtil.isEmpty(comment))
-            print("C[" + getEscaped(comment) + "]");
+        {
+            append(PROP_C);
+            appendEscaped(comment);
+            append(']');
+            printItem();
+        }
         if (! Double.isNaN(node.getTimeLeft(BLACK)))
-            print("BL[" + node.getTimeLeft(BLACK) + "]");
+            printValue(PROP_BL, Double.toString(node.getTimeLeft(BLACK)));
         if (node.getMovesLeft(BLACK) >= 0)
-            print("OB[" + node.getMovesLeft(BLACK) + "]");
+            printValue(PROP_OB, node.getMovesLeft(BLACK));
         if (! Double.isNaN(node.getTimeLeft(WHITE)))
-            print("WL[" + node.getTimeLeft(WHITE) + "]");
+            printValue(PROP_WL, Double.toString(node.getTimeLeft(WHITE)));
         if (node.getMovesLeft(WHITE) >= 0)
-            print("OW[" + node.getMovesLeft(WHITE) + "]");
+            printValue(PROP_OW, node.getMovesLeft(WHITE));
         if (node.getPlayer() != null)
             printToPlay(node.getPlayer());
-        printMarked(node, "MA", MarkType.MARK);
-        printMarked(node, "CR", MarkType.CIRCLE);
-        printMarked(node, "SQ", MarkType.SQUARE);
-        printMarked(node, "TR", MarkType.TRIANGLE);
-        printMarked(node, "SL", MarkType.SELECT);
-        printMarked(node, "TB", MarkType.TERRITORY_BLACK);
-        printMarked(node, "TW", MarkType.TERRITORY_WHITE);
+        printMarked(node, PROP_MA, MarkType.MARK);
+        printMarked(node, PROP_CR, MarkType.CIRCLE);
+        printMarked(node, PROP_SQ, MarkType.SQUARE);
+        printMarked(node, PROP_TR, MarkType.TRIANGLE);
+        printMarked(node, PROP_SL, MarkType.SELECT);
+        printMarked(node, PROP_TB, MarkType.TERRITORY_BLACK);
+        printMarked(node, PROP_TW, MarkType.TERRITORY_WHITE);
         printLabels(node);
         if (! Double.isNaN(node.getValue()))
-            print("V[" + node.getValue() + "]");
+            printValue(PROP_V, Float.toString(node.getValue()));
         ConstSgfProperties sgfProps = NodeUtil.cleanSgfProps(node);
         if (sgfProps != null)
             for (String key : sgfProps.getKeys())
             {
                 if (key.equals("OT") && hasByoyomiInformation(node))
                     continue;
-                print(key);
+                appendText(key);
+                printItem();
                 for (int i = 0; i < sgfProps.getNumberValues(key); ++i)
-                    print("[" + sgfProps.getValue(key, i) + "]");
+                {
+                    append('[');
+                    appendText(sgfProps.getValue(key, i));
+                    append(']');
+                    printItem();
+                }
             }
-        int numberChildren = node.getNumberChildren();
-        if (numberChildren == 0)
-            return;
-        if (numberChildren == 1)
-        {
-            printNode(node.getChildConst(), false);
-            return;
-        }
-        for (int i = 0; i < numberChildren; ++i)
-        {
-            printNewLine();
-            print("(");
-            printNode(node.getChildConst(i), false);
-            print(")");
-        }
-    }
-
-    private void printPosition(ConstBoard board)
-    {
-        PointList black = new PointList();
-        PointList white = new PointList();
-        for (GoPoint p : board)
-        {
-            GoColor c = board.getColor(p);
-            if (c == BLACK)
-                black.add(p);
-            else if (c == WHITE)
-                white.add(p);
-        }
-        printSetup(black, white);
-        printNewLine();
-        printToPlay(board.getToMove());
     }
 
     private void printSetup(ConstPointList black, ConstPointList white)
+        throws IOException
     {
         if (black.size() > 0 || white.size() > 0)
         {
             if (black.size() > 0)
-                print("AB" + getPointList(black));
+            {
+                append(PROP_AB);
+                appendPointList(black);
+                printItem();
+            }
             printNewLine();
             if (white.size() > 0)
-                print("AW" + getPointList(white));
+            {
+                append(PROP_AW);
+                appendPointList(white);
+                printItem();
+            }
         }
     }
 
-    private void printToPlay(GoColor color)
+    private void printToPlay(GoColor color) throws IOException
     {
         if (color == BLACK)
-            print("PL[B]");
+            append(PROP_PL_B);
         else
-            print("PL[W]");
+            append(PROP_PL_W);
+        printItem();
+    }
+
+    /** Print a property with a single value.
+        @param property The property name including the opening bracket. */
+    private void printValue(byte[] property, int value) throws IOException
+    {
+        append(property);
+        append(value);
+        append(']');
+        printItem();
+    }
+
+    /** Print a property with a single value.
+        @param property The property name including the opening bracket. */
+    private void printValue(byte[] property, String value)
+        throws IOException
+    {
+        append(property);
+        appendText(value);
+        append(']');
+        printItem();
+    }
+
+    private void write(byte[] bytes, int length) throws IOException
+    {
+        int offset = 0;
+        while (length > 0)
+        {
+            int n = Math.min(length, m_buffer.remaining());
+            m_buffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+            if (! m_buffer.hasRemaining())
+                flush();
+        }
+    }
+
+    private void writeTree(ConstGameTree tree, String application,
+                           String version) throws IOException
+    {
+        try
+        {
+            print('(');
+            printHeader(application, version);
+            printNewLine();
+            printNode(tree.getRootConst(), true, 0);
+            print(')');
+            printLine();
+            flush();
+        }
+        finally
+        {
+            m_channel.close();
+        }
     }
 }
@@ -197,9 +197,11 @@ public final class ThumbnailCreator
         exists, the last position. */
     private ConstBoard readFile(File file) throws ErrorMessage
     {
-        GameReader reader = new GameReader(file);
+        // The tree is only read, so large SGF files (e.g. search traces)
+        // can be read into a compact tree
+        GameReader reader = new GameReader(file, null, true);
         m_gameFile = reader.getFile();
-        ConstGameTree tree = reader.getTree();
+        ConstGameTree tree = reader.getConstTree();
         ConstGameInfo info = tree.getGameInfoConst(tree.getRootConst());
         m_description = info.suggestGameName();
         if (m_description == null)
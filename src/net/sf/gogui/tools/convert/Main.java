@@ -7,6 +7,8 @@ import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Locale;
+import net.sf.gogui.archive.ArchiveReader;
+import net.sf.gogui.archive.ArchiveWriter;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.gamefile.GameReader;
 import net.sf.gogui.sgf.SgfWriter;
@@ -18,7 +20,8 @@ import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.version.Version;
 import net.sf.gogui.xml.XmlWriter;
 
-/** Convert SGF and Jago XML Go game files to other formats. */
+/** Convert SGF and Jago XML Go game files and game archives to other
+    formats. */
 public final class Main
 {
     /** Main function. */
@@ -31,6 +34,7 @@ public final class Main
                 "config:",
                 "force",
                 "format:",
+                "game:",
                 "help",
                 "title:",
                 "version",
@@ -51,45 +55,68 @@ public final class Main
             String title = opt.get("title", "");
             boolean werror = opt.contains("werror");
             boolean checkOnly = opt.contains("check");
+            int game = -1;
+            if (opt.contains("game"))
+                game = opt.getInteger("game", 1, 1) - 1;
             ArrayList<String> arguments = opt.getArguments();
-            if (! (arguments.size() == 2
-                   || (arguments.size() == 1 && checkOnly)))
+            if (arguments.size() < 1 || (arguments.size() < 2 && ! checkOnly))
             {
                 printUsage(System.err);
                 System.exit(1);
             }
-            File in = new File(arguments.get(0));
+            ArrayList<File> in = new ArrayList<File>();
+            for (String argument : arguments)
+                in.add(new File(argument));
             File out = null;
             String format = null;
             if (! checkOnly)
             {
-                out = new File(arguments.get(1));
+                out = in.remove(in.size() - 1);
                 if (opt.contains("format"))
                     format = opt.get("format");
                 else
                     format =
                         FileUtil.getExtension(out).toLowerCase(Locale.ENGLISH);
-                if (! format.equals("sgf")
+                if (! format.equals("gga")
+                    && ! format.equals("sgf")
                     && ! format.equals("tex")
                     && ! format.equals("xml"))
                     throw new ErrorMessage("Unknown format");
+                if (in.size() > 1 && ! format.equals("gga"))
+                {
+                    printUsage(System.err);
+                    System.exit(1);
+                }
                 if (out.exists() && ! force)
                     throw new ErrorMessage("File \"" + out
                                            + "\" already exists");
             }
-            if (! in.exists())
-                throw new ErrorMessage("File \"" + in + "\" not found");
-            GameReader reader = new GameReader(in);
-            ConstGameTree tree = reader.getTree();
-            String warnings = reader.getWarnings();
-            if (warnings != null)
-            {
-                System.err.print(warnings);
-                if (werror)
-                    System.exit(1);
-            }
-            if (! checkOnly)
+            for (File file : in)
+                if (! file.exists())
+                    throw new ErrorMessage("File \"" + file + "\" not found");
+            ArchiveWriter archiveWriter = null;
+            if (! checkOnly && format.equals("gga"))
+                archiveWriter =
+                    new ArchiveWriter(new FileOutputStream(out), true);
+            for (File file : in)
             {
+                if (archiveWriter != null && game < 0
+                    && ArchiveReader.isArchive(file))
+                {
+                    // Copy all games
+                    ArchiveReader reader = new ArchiveReader(file);
+                    for (int i = 0; i < reader.getNumberGames(); ++i)
+                        archiveWriter.add(reader.read(i));
+                    continue;
+                }
+                ConstGameTree tree = readTree(file, game, werror);
+                if (checkOnly)
+                    continue;
+                if (archiveWriter != null)
+                {
+                    archiveWriter.add(tree);
+                    continue;
+                }
                 String version = Version.get();
                 if (format.equals("xml"))
                     new XmlWriter(new FileOutputStream(out), tree,
@@ -102,6 +129,8 @@ public final class Main
                 else
                     assert false; // checked above
             }
+            if (archiveWriter != null)
+                archiveWriter.close();
         }
         catch (Throwable t)
         {
@@ -118,14 +147,46 @@ public final class Main
     private static void printUsage(PrintStream out)
     {
         out.print("Usage: gogui-convert infile outfile\n" +
+                  "       gogui-convert infile... outfile.gga\n" +
                   "\n" +
-                  "-check   only check reading a file\n" +
+                  "-check   only check reading files\n" +
                   "-config  config file\n" +
                   "-force   overwrite existing files\n" +
-                  "-format  output format (sgf,tex,xml)\n" +
+                  "-format  output format (gga,sgf,tex,xml)\n" +
+                  "-game    number of game to read from archives\n" +
+                  "         (default: all games for gga output,\n" +
+                  "         first game otherwise)\n" +
                   "-help    display this help and exit\n" +
                   "-title   use title\n" +
                   "-version print version and exit\n" +
                   "-werror  handle read warnings as errors\n");
     }
+
+    /** Read a game.
+        @param file The file.
+        @param game Index of the game to read, if the file is an archive;
+        -1 for the first game.
+        @param werror Exit, if there are warnings. */
+    private static ConstGameTree readTree(File file, int game,
+                                          boolean werror)
+        throws ErrorMessage
+    {
+        if (game >= 0 && ArchiveReader.isArchive(file))
+        {
+            ArchiveReader reader = new ArchiveReader(file);
+            if (game >= reader.getNumberGames())
+                throw new ErrorMessage("Archive \"" + file + "\" has only "
+                                       + reader.getNumberGames() + " games");
+            return reader.read(game);
+        }
+        GameReader reader = new GameReader(file);
+        String warnings = reader.getWarnings();
+        if (warnings != null)
+        {
+            System.err.print(warnings);
+            if (werror)
+                System.exit(1);
+        }
+        return reader.getTree();
+    }
 }
@@ -313,6 +313,13 @@ public class Dummy
 
     public void handleCommand(GtpCommand cmd) throws GtpError
     {
+        if (isConcurrent(cmd.getCommand()))
+        {
+            // Does not use the state for the next command, because it can
+            // run at the same time as other commands
+            super.handleCommand(cmd);
+            return;
+        }
         if (m_nextResponseFixed)
         {
             m_nextResponseFixed = false;
@@ -420,10 +427,10 @@ public class Dummy
         register("gogui-dummy-sleep", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdSleep(cmd); } });
-        register("echo", new GtpCallback() {
+        registerConcurrent("echo", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdEcho(cmd); } });
-        register("echo_err", new GtpCallback() {
+        registerConcurrent("echo_err", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdEchoErr(cmd); } });
         register("genmove", new GtpCallback() {
@@ -438,6 +445,21 @@ public class Dummy
         register("play", new GtpCallback() {
                 public void run(GtpCommand cmd) throws GtpError {
                     cmdPlay(cmd); } });
+        registerConcurrent("known_command", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    cmdKnownCommand(cmd); } });
+        registerConcurrent("list_commands", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    cmdListCommands(cmd); } });
+        registerConcurrent("name", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    cmdName(cmd); } });
+        registerConcurrent("protocol_version", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    cmdProtocolVersion(cmd); } });
+        registerConcurrent("version", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    cmdVersion(cmd); } });
     }
 
     private void sleep(long millis)
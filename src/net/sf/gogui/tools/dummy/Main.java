@@ -22,6 +22,7 @@ public final class Main
                 "log:",
                 "resign:",
                 "srand:",
+                "threads:",
                 "version"
             };
             Options opt = Options.parse(args, options);
@@ -35,6 +36,7 @@ public final class Main
                     "-log file  log GTP stream to file\n" +
                     "-resign n  resign at n'th genmove\n" +
                     "-srand n   random seed\n" +
+                    "-threads n run simple commands in n threads\n" +
                     "-version   print version and exit\n";
                 System.out.print(helpText);
                 return;
@@ -58,7 +60,9 @@ public final class Main
                 useRandomSeed = true;
             }
             int resign = opt.getInteger("resign", -1);
+            int threads = opt.getInteger("threads", 0, 0);
             Dummy dummy = new Dummy(log, useRandomSeed, randomSeed, resign);
+            dummy.setConcurrentThreads(threads);
             dummy.mainLoop(System.in, System.out);
             if (log != null)
                 log.close();
@@ -3,9 +3,9 @@
 package net.sf.gogui.tools.server;
 
 import net.sf.gogui.util.Options;
-import net.sf.gogui.util.ProcessUtil;
 import net.sf.gogui.util.StreamCopy;
 import net.sf.gogui.util.StringUtil;
+import net.sf.gogui.util.ThreadUtil;
 import net.sf.gogui.version.Version;
 import java.io.File;
 import java.io.FileInputStream;
@@ -44,7 +44,10 @@ public final class Server
         {
             Process process
                 = runtime.exec(StringUtil.splitArguments(program));
-            Thread stdErrThread = new ProcessUtil.StdErrThread(process);
+            Thread stdErrThread =
+                ThreadUtil.newThread(new StreamCopy(false,
+                                                    process.getErrorStream(),
+                                                    System.err, false));
             stdErrThread.start();
             Socket socket;
             if (serverSocket == null)
@@ -61,11 +64,15 @@ public final class Server
             if (timeout >= 0)
                 socket.setSoTimeout(timeout * 1000);
             Thread fromNet =
-                new Thread(new StreamCopy(verbose, socket.getInputStream(),
-                                          process.getOutputStream(), true));
+                ThreadUtil.newThread(new StreamCopy(verbose,
+                                                    socket.getInputStream(),
+                                                    process.getOutputStream(),
+                                                    true));
             Thread toNet =
-                new Thread(new StreamCopy(verbose, process.getInputStream(),
-                                          socket.getOutputStream(), false));
+                ThreadUtil.newThread(new StreamCopy(verbose,
+                                                    process.getInputStream(),
+                                                    socket.getOutputStream(),
+                                                    false));
             fromNet.start();
             toNet.start();
             toNet.join();
@@ -2,21 +2,28 @@
 
 package net.sf.gogui.tools.statistics;
 
-import java.io.InputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
-import net.sf.gogui.game.ConstNode;
-import net.sf.gogui.game.GameTree;
+import java.util.Locale;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
-import net.sf.gogui.go.Move;
-import net.sf.gogui.sgf.SgfReader;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.InvalidPointException;
+import net.sf.gogui.sgf.SgfError;
+import net.sf.gogui.sgf.SgfHandler;
+import net.sf.gogui.sgf.SgfParser;
+import net.sf.gogui.sgf.SgfValues;
 import net.sf.gogui.util.ErrorMessage;
 
-/** Check that SGF files meet the requirements for a Statistics run. */
+/** Check that SGF files meet the requirements for a Statistics run.
+    Only the main variation is checked for the requirements. The files are
+    processed with SgfParser without building game trees, but the values
+    of the properties that SgfReader rejects are checked in all nodes, so
+    that the same files fail as with SgfReader. */
 public class FileCheck
 {
     public FileCheck(ArrayList<String> sgfFiles, int size, boolean allowSetup)
@@ -31,6 +38,201 @@ public class FileCheck
         }
     }
 
+    /** Handles the events of the main variation. */
+    private class Handler
+        implements SgfHandler
+    {
+        public void endGame()
+        {
+        }
+
+        public void endNode() throws SgfError
+        {
+            // Points are checked at the end of the node, because SZ can
+            // follow other properties in the root node
+            for (int i = 0; i < m_points.size(); ++i)
+                checkPoint(m_points.get(i));
+            if (! m_isMainVariation)
+                return;
+            if (m_isRoot && m_boardSize != m_size)
+                throwError("size is not " + m_size);
+            if (m_hasSetup)
+            {
+                if (m_allowSetup)
+                {
+                    if (m_isRoot)
+                        m_toMove = EMPTY;
+                    else
+                        throw new SgfError("setup stones"
+                                           + " in non-root position");
+                }
+                else
+                    throw new SgfError("contains setup stones");
+            }
+            if (m_moveColor != null)
+            {
+                if (m_toMove == EMPTY)
+                    m_toMove = m_moveColor;
+                if (m_moveColor != m_toMove)
+                    throwError("non-alternating moves");
+                m_toMove = m_toMove.otherColor();
+            }
+            m_isRoot = false;
+        }
+
+        public void endVariation()
+        {
+            int last = m_isMainVariationStack.size() - 1;
+            m_isMainVariation = m_isMainVariationStack.remove(last);
+            m_isFirstVariation = false;
+        }
+
+        public void property(String name, SgfValues values) throws SgfError
+        {
+            if (name == "GM")
+            {
+                // Some SGF files contain GM[], interpret as GM[1]
+                String v = values.get(0).trim();
+                if (! v.equals("") && ! v.equals("1"))
+                    throwError("Not a Go game");
+            }
+            else if (name == "PL")
+                checkColor(values.get(0));
+            else if (name == "B" || name == "W")
+                m_points.add(values.get(0));
+            else if (name == "AB" || name == "AW" || name == "AE")
+            {
+                for (int i = 0; i < values.size(); ++i)
+                {
+                    String value = values.get(i);
+                    int pos = value.indexOf(':');
+                    if (pos < 0)
+                        m_points.add(value);
+                    else
+                    {
+                        m_points.add(value.substring(0, pos));
+                        m_points.add(value.substring(pos + 1));
+                    }
+                }
+            }
+            if (! m_isMainVariation)
+                return;
+            if (name == "SZ" && m_isRoot)
+            {
+                try
+                {
+                    m_boardSize = Integer.parseInt(values.get(0).trim());
+                }
+                catch (NumberFormatException e)
+                {
+                    throwError("invalid size");
+                }
+            }
+            else if (name == "AB" || name == "AW" || name == "AE")
+            {
+                for (int i = 0; i < values.size(); ++i)
+                    if (values.getLength(i) > 0)
+                        m_hasSetup = true;
+            }
+            else if (name == "B")
+            {
+                // W takes precedence, as in SgfReader
+                if (m_moveColor == null)
+                    m_moveColor = BLACK;
+            }
+            else if (name == "W")
+                m_moveColor = WHITE;
+        }
+
+        public void startGame()
+        {
+        }
+
+        public void startNode()
+        {
+            m_points.clear();
+            m_hasSetup = false;
+            m_moveColor = null;
+            m_isFirstVariation = true;
+        }
+
+        public void startVariation()
+        {
+            m_isMainVariationStack.add(m_isMainVariation);
+            m_isMainVariation = m_isMainVariation && m_isFirstVariation;
+        }
+
+        public void warning(String message)
+        {
+        }
+
+        private boolean m_isRoot = true;
+
+        private boolean m_isMainVariation = true;
+
+        /** Is the next variation the first child of the last node. */
+        private boolean m_isFirstVariation;
+
+        private boolean m_hasSetup;
+
+        private int m_boardSize = 19; // Default size in the SGF standard
+
+        private GoColor m_toMove = BLACK;
+
+        /** Color of the move in the current node, null if no move. */
+        private GoColor m_moveColor;
+
+        private final ArrayList<Boolean> m_isMainVariationStack =
+            new ArrayList<Boolean>();
+
+        /** Point values of the current node. */
+        private final ArrayList<String> m_points = new ArrayList<String>();
+
+        private void checkColor(String s) throws SgfError
+        {
+            s = s.trim().toLowerCase(Locale.ENGLISH);
+            if (! s.equals("b") && ! s.equals("1") && ! s.equals("w")
+                && ! s.equals("2"))
+                throwError("Invalid color value");
+        }
+
+        /** Check a point value in the same way as SgfReader.
+            Accepts pass moves, also in the non-standard encoding as a
+            point just outside the board, and the human-readable encoding
+            used by SmartGo. */
+        private void checkPoint(String s) throws SgfError
+        {
+            s = s.trim().toLowerCase(Locale.ENGLISH);
+            if (s.equals(""))
+                return;
+            if (s.length() > 2
+                || (s.length() == 2
+                    && (s.charAt(1) < 'a' || s.charAt(1) > 'z')))
+            {
+                try
+                {
+                    GoPoint.parsePoint(s, GoPoint.MAX_SIZE);
+                }
+                catch (InvalidPointException e)
+                {
+                    throwError("Invalid coordinates \"" + s + "\"");
+                }
+                return;
+            }
+            if (s.length() != 2)
+                throwError("Invalid coordinates \"" + s + "\"");
+            if (s.equals("tt") && m_boardSize <= 19)
+                return;
+            int x = s.charAt(0) - 'a';
+            int y = s.charAt(1) - 'a';
+            if (x == m_boardSize && y == m_boardSize)
+                return;
+            if (x < 0 || x >= m_boardSize || y < 0 || y >= m_boardSize)
+                throwError("Coordinates \"" + s + "\" outside board size "
+                           + m_boardSize);
+        }
+    }
+
     private final boolean m_allowSetup;
 
     private final int m_size;
@@ -39,50 +241,24 @@ public class FileCheck
 
     private void checkFile() throws ErrorMessage
     {
-        InputStream in = null;
+        SgfParser parser = null;
         try
         {
-            in = new FileInputStream(m_file);
+            parser = new SgfParser(m_file);
         }
         catch (FileNotFoundException e)
         {
             throwError("file not found");
         }
-        SgfReader reader = new SgfReader(in, m_file, null, 0);
-        GameTree tree = reader.getTree();
-        if (tree.getBoardSize() != m_size)
-            throwError("size is not " + m_size);
-        ConstNode root = tree.getRoot();
-        GoColor toMove = BLACK;
-        for (ConstNode node = root; node != null; node = node.getChildConst())
+        catch (IOException e)
         {
-            if (node.hasSetup())
-            {
-                if (m_allowSetup)
-                {
-                    if (node == root)
-                        toMove = EMPTY;
-                    else
-                        throw new ErrorMessage("setup stones"
-                                               + " in non-root position");
-                }
-                else
-                    throw new ErrorMessage("contains setup stones");
-            }
-            Move move = node.getMove();
-            if (move != null)
-            {
-                if (toMove == EMPTY)
-                    toMove = move.getColor();
-                if (move.getColor() != toMove)
-                    throwError("non-alternating moves");
-                toMove = toMove.otherColor();
-            }
+            throwError("read error");
         }
+        parser.parseSingleGame(new Handler());
     }
 
-    private void throwError(String reason) throws ErrorMessage
+    private void throwError(String reason) throws SgfError
     {
-        throw new ErrorMessage(m_file + ": " + reason);
+        throw new SgfError(m_file + ": " + reason);
     }
 }
@@ -2,20 +2,19 @@
 
 package net.sf.gogui.tools.statistics;
 
-import java.io.InputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.concurrent.Future;
 import net.sf.gogui.game.ConstGame;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.ConstGameInfo;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.Game;
 import net.sf.gogui.game.NodeUtil;
+import net.sf.gogui.gamefile.CorpusReader;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.EMPTY;
@@ -24,10 +23,9 @@ import net.sf.gogui.go.InvalidPointException;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.gtp.GtpClient;
 import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpClientUtil;
 import net.sf.gogui.gtp.GtpError;
 import net.sf.gogui.gtp.GtpSynchronizer;
-import net.sf.gogui.sgf.SgfError;
-import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.Platform;
 import net.sf.gogui.util.StringUtil;
@@ -98,8 +96,20 @@ public class Statistics
         String host = Platform.getHostInfo();
         m_table.setProperty("Host", host);
         m_table.setProperty("Date", StringUtil.getDate());
-        for (int i = 0; i < sgfFiles.size(); ++i)
-            handleFile(sgfFiles.get(i));
+        ArrayList<File> files = new ArrayList<File>(sgfFiles.size());
+        for (String name : sgfFiles)
+            files.add(new File(name));
+        // Read the next files in parallel while the engine is busy
+        CorpusReader reader = new CorpusReader(files);
+        try
+        {
+            for (int i = 0; i < sgfFiles.size(); ++i)
+                handleFile(sgfFiles.get(i), reader.next());
+        }
+        finally
+        {
+            reader.close();
+        }
         m_gtp.send("quit");
         m_gtp.close();
         m_gtp.waitForExit();
@@ -352,15 +362,13 @@ public class Statistics
         return m_commands.get(index);
     }
 
-    private void handleFile(String name)
-        throws ErrorMessage, FileNotFoundException, GtpError,
-               SgfError
+    private void handleFile(String name, CorpusReader.Result result)
+        throws ErrorMessage, GtpError
     {
-        File file = new File(name);
-        InputStream in = new FileInputStream(file);
-        SgfReader reader = new SgfReader(in, file, null, 0);
+        if (result.getError() != null)
+            throw result.getError();
         ++m_numberGames;
-        Game game = new Game(reader.getTree());
+        Game game = new Game(result.getTree());
         checkGame(game.getTree(), name);
         if (m_random)
             iteratePositionsRandom(game, name);
@@ -379,36 +387,45 @@ public class Statistics
         if (! m_quiet)
             System.err.println(name + ":" + number);
         m_table.startRow();
+        // Send all commands of the position at once to avoid a round trip
+        // to the program for each command
+        ArrayList<Command> commands = new ArrayList<Command>();
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            Command command = getCommand(i);
+            if (command.m_begin && beginCommands)
+                commands.add(command);
+        }
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            Command command = getCommand(i);
+            if (! command.m_begin && ! command.m_final && regularCommands)
+                commands.add(command);
+        }
+        for (int i = 0; i < m_commands.size(); ++i)
+        {
+            Command command = getCommand(i);
+            if (command.m_final && finalCommands)
+                commands.add(command);
+        }
+        ArrayList<String> cmds = new ArrayList<String>(commands.size());
+        for (Command command : commands)
+            cmds.add(convertCommand(command.m_command, toMove));
+        ArrayList<Future<String>> responses = m_gtp.sendPipelined(cmds);
         try
         {
             m_table.set("File", name);
             m_table.set("Move", number);
-            for (int i = 0; i < m_commands.size(); ++i)
+            for (int i = 0; i < commands.size(); ++i)
             {
-                Command command = getCommand(i);
-                if (command.m_begin && beginCommands)
-                {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
-                }
-            }
-            for (int i = 0; i < m_commands.size(); ++i)
-            {
-                Command command = getCommand(i);
-                if (! command.m_begin && ! command.m_final && regularCommands)
-                {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
-                }
-            }
-            for (int i = 0; i < m_commands.size(); ++i)
-            {
-                Command command = getCommand(i);
-                if (command.m_final && finalCommands)
-                {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
-                }
+                Command command = commands.get(i);
+                String response =
+                    GtpClientUtil.getResponse(responses.get(i)).trim();
+                response = response.replaceAll("\t", " ");
+                response = response.replaceAll("\n", " ");
+                response = convertResponse(command.m_command, response,
+                                           toMove, move);
+                m_table.set(command.m_columnTitle, response);
             }
         }
         catch (Table.InvalidLocation e)
@@ -495,16 +512,6 @@ public class Statistics
                            beginCommands, regularCommands, finalCommands);
     }
 
-    private String send(String command, GoColor toMove, Move move)
-        throws GtpError
-    {
-        String cmd = convertCommand(command, toMove);
-        String response = m_gtp.send(cmd).trim();
-        response = response.replaceAll("\t", " ");
-        response = response.replaceAll("\n", " ");
-        return convertResponse(command, response, toMove, move);
-    }
-
     private void synchronize(ConstGame game) throws GtpError
     {
         ConstNode node = game.getGameInfoNode();
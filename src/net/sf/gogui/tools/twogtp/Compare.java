@@ -3,55 +3,44 @@
 package net.sf.gogui.tools.twogtp;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.GameTree;
+import net.sf.gogui.gamefile.CorpusReader;
 import net.sf.gogui.go.Board;
 import net.sf.gogui.go.BoardUtil;
 import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.EMPTY;
 import static net.sf.gogui.go.GoColor.BLACK_WHITE_EMPTY;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Move;
+import net.sf.gogui.go.MoveCodeList;
 import net.sf.gogui.go.PointList;
-import net.sf.gogui.sgf.SgfReader;
 
 /** Find duplicates in games. */
 public final class Compare
 {
-    public static final class Placement
-    {
-        public boolean m_isSetup;
-
-        public GoColor m_color;
-
-        public GoPoint m_point;
-
-        public Placement(boolean isSetup, GoColor color, GoPoint point)
-        {
-            m_isSetup = isSetup;
-            m_color = color;
-            m_point = point;
-        }
+    /** Flag set in the code of a placement that is a setup stone.
+        The other bits are the move code of the placement, or
+        SETUP_EMPTY and the point index + 1 for removed stones.
+        @see #getPlacements */
+    public static final int SETUP = Move.NUMBER_CODES;
 
-        public Placement(Move move)
-        {
-            this(false, move.getColor(), move.getPoint());
-        }
-    }
+    /** Flag set in the code of a placement that removes a stone. */
+    public static final int SETUP_EMPTY = 2 * SETUP;
 
     /** Check if game already exists in game collection.
         All games must have the same board size.
         Also finds rotated duplicates.
         @param board Board with the correct size (only used for
         Board.rotate).
-        @param moves Moves of game to check.
+        @param moves Moves of game to check as returned by getPlacements().
         @param games Games in collection. The key is the game number, the value
-        is the sequence of moves.
+        is the sequence of moves as returned by getPlacements().
         @param useAlternate If true, assume that players are exchanged every
         second game. Only check games where player played the same color.
         @param isAlternated If useAlternate, indicate if game to check
@@ -60,40 +49,38 @@ public final class Compare
         collection or "-" if no duplicate was found. If a nearly identical
         game is found (&lt;= 20% identical moves comparing moves by number),
         the game number is returned with a question mark appended. */
-    public static String checkDuplicate(ConstBoard board,
-                                      ArrayList<Placement> moves,
-                                      Map<Integer, ArrayList<Placement>> games,
-                                      boolean useAlternate,
-                                      boolean isAlternated)
+    public static String checkDuplicate(ConstBoard board, short[] moves,
+                                        Map<Integer, short[]> games,
+                                        boolean useAlternate,
+                                        boolean isAlternated)
     {
         String result = "-";
-        int size = board.getSize();
-        for (Map.Entry<Integer, ArrayList<Placement>> entry : games.entrySet())
+        int[][] rotation = getRotationTable(board.getSize());
+        for (Map.Entry<Integer, short[]> entry : games.entrySet())
         {
             int numberGame = entry.getKey();
             if (useAlternate && ((numberGame % 2 != 0) != isAlternated))
                 continue;
-            ArrayList<Placement> gameMoves = entry.getValue();
+            short[] gameMoves = entry.getValue();
             for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
             {
+                int[] rotatedPoint = rotation[rot];
                 int numberDifferent = 0;
-                int moveNumber = moves.size();
+                int moveNumber = moves.length;
                 int maxDifferent = moveNumber / 5;
-                if (gameMoves.size() != moveNumber)
+                if (gameMoves.length != moveNumber)
                 {
-                    numberDifferent = Math.abs(gameMoves.size() - moveNumber);
-                    moveNumber = Math.min(gameMoves.size(), moveNumber);
+                    numberDifferent = Math.abs(gameMoves.length - moveNumber);
+                    moveNumber = Math.min(gameMoves.length, moveNumber);
                 }
                 for (int i = 0;
                      numberDifferent <= maxDifferent && i < moveNumber; ++i)
                 {
-                    Placement move = moves.get(i);
-                    Placement gameMove = gameMoves.get(i);
-                    GoPoint gameRotatedPoint =
-                        BoardUtil.rotate(rot, gameMove.m_point, size);
-                    if (move.m_isSetup != gameMove.m_isSetup
-                        || ! move.m_color.equals(gameMove.m_color)
-                        || ! GoPoint.equals(move.m_point, gameRotatedPoint))
+                    int move = moves[i];
+                    int gameMove = gameMoves[i];
+                    if ((move & ~POINT_MASK) != (gameMove & ~POINT_MASK)
+                        || (move & POINT_MASK)
+                           != rotatedPoint[gameMove & POINT_MASK])
                         ++numberDifferent;
                 }
                 if (numberDifferent == 0)
@@ -109,38 +96,55 @@ public final class Compare
         Prints the results to standard output, one line per game
         with the filename and the duplicate information as returned by
         Compare.checkDuplicate.
+        The files are read in parallel with CorpusReader.
         @param filenames List of filenames
         @throws Exception If reading one of the files fails. */
     public static void compare(ArrayList<String> filenames) throws Exception
     {
         Board board = null;
-        Map<Integer, ArrayList<Placement>> games =
-            new TreeMap<Integer, ArrayList<Placement>>();
-        for (int gameNumber = 0; gameNumber < filenames.size(); ++gameNumber)
+        Map<Integer, short[]> games = new TreeMap<Integer, short[]>();
+        ArrayList<File> files = new ArrayList<File>(filenames.size());
+        for (String filename : filenames)
+            files.add(new File(filename));
+        CorpusReader reader = new CorpusReader(files);
+        try
         {
-            String filename = filenames.get(gameNumber);
-            File file = new File(filename);
-            FileInputStream fileStream = new FileInputStream(file);
-            SgfReader reader = new SgfReader(fileStream, file, null, 0);
-            GameTree tree = reader.getTree();
-            int size = tree.getBoardSize();
-            if (board == null)
-                board = new Board(size);
-            else if (size != board.getSize())
-                throw new Exception("Board size in " + filename +
-                                    " does not match other games");
-            ArrayList<Placement> moves = getPlacements(tree.getRoot());
-            String duplicate =
-                checkDuplicate(board, moves, games, false, false);
-            System.out.println(Integer.toString(gameNumber) + " " +
-                               filename + " " + duplicate);
-            games.put(gameNumber, moves);
+            while (reader.hasNext())
+            {
+                CorpusReader.Result result = reader.next();
+                if (result.getError() != null)
+                    throw result.getError();
+                int gameNumber = result.getIndex();
+                String filename = filenames.get(gameNumber);
+                GameTree tree = result.getTree();
+                int size = tree.getBoardSize();
+                if (board == null)
+                    board = new Board(size);
+                else if (size != board.getSize())
+                    throw new Exception("Board size in " + filename +
+                                        " does not match other games");
+                short[] moves = getPlacements(tree.getRoot());
+                String duplicate =
+                    checkDuplicate(board, moves, games, false, false);
+                System.out.println(Integer.toString(gameNumber) + " " +
+                                   filename + " " + duplicate);
+                games.put(gameNumber, moves);
+            }
+        }
+        finally
+        {
+            reader.close();
         }
     }
 
-    public static ArrayList<Placement> getPlacements(ConstNode node)
+    /** Get the setup stones and moves in the main variation.
+        @param node The start node (usually the root node).
+        @return The placements as move codes with the flags SETUP and
+        SETUP_EMPTY. Setup stones of a node are sorted by point and color
+        (black, white, removed) and precede the move of the node. */
+    public static short[] getPlacements(ConstNode node)
     {
-        ArrayList<Placement> result = new ArrayList<Placement>(512);
+        MoveCodeList result = new MoveCodeList(512);
         while (node != null)
         {
             for (GoColor c : BLACK_WHITE_EMPTY)
@@ -148,18 +152,44 @@ public final class Compare
                 PointList list = new PointList(node.getSetup(c));
                 Collections.sort(list);
                 for (GoPoint p : list)
-                    result.add(new Placement(true, c, p));
+                {
+                    if (c == EMPTY)
+                        result.add((short)(SETUP | SETUP_EMPTY
+                                           | (p.getIndex() + 1)));
+                    else
+                        result.add((short)(SETUP | Move.getCode(c, p)));
+                }
             }
             Move move = node.getMove();
             if (move != null)
-                result.add(new Placement(move));
+                result.add(move.getCode());
             node = node.getChildConst();
         }
-        return result;
+        return result.toArray();
     }
 
+    /** Mask for the point index + 1 (0 for pass) in placement codes. */
+    private static final int POINT_MASK = Move.CODE_WHITE - 1;
+
     /** Make constructor unavailable; class is for namespace only. */
     private Compare()
     {
     }
+
+    /** Get table for rotating the point part of placement codes.
+        @return Array indexed by rotation and point index + 1 (0 for pass)
+        containing the rotated point index + 1. */
+    private static int[][] getRotationTable(int size)
+    {
+        int[][] result = new int[BoardUtil.NUMBER_ROTATIONS][POINT_MASK + 1];
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+            for (int x = 0; x < size; ++x)
+                for (int y = 0; y < size; ++y)
+                {
+                    GoPoint p = GoPoint.get(x, y);
+                    GoPoint rotated = BoardUtil.rotate(rot, p, size);
+                    result[rot][p.getIndex() + 1] = rotated.getIndex() + 1;
+                }
+        return result;
+    }
 }
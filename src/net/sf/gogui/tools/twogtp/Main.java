@@ -7,9 +7,11 @@ import java.util.ArrayList;
 import net.sf.gogui.game.TimeSettings;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Komi;
+import net.sf.gogui.gtp.GtpInputMultiplexer;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.Options;
 import net.sf.gogui.util.StringUtil;
+import net.sf.gogui.util.ThreadUtil;
 import net.sf.gogui.version.Version;
 
 /** TwoGtp main function. */
@@ -134,24 +136,30 @@ public final class Main
                 System.in.close();
 
             TwoGtp twoGtp[] = new TwoGtp[numberThreads];
-            TwoGtpThread thread[] = new TwoGtpThread[numberThreads];
+            AutoPlay autoPlay[] = new AutoPlay[numberThreads];
+            Thread thread[] = new Thread[numberThreads];
+            // Read the streams of all programs in a single thread instead of
+            // two threads per program
+            GtpInputMultiplexer multiplexer = null;
+            if (numberThreads > 1)
+                multiplexer = new GtpInputMultiplexer();
             ResultFile resultFile = null;
             for (int i = 0; i < numberThreads; ++i)
             {
                 ArrayList<Program> allPrograms = new ArrayList<Program>();
                 Program blackProgram =
-                    new Program(black, "Black", "B", verbose);
+                    new Program(black, "Black", "B", verbose, multiplexer);
                 allPrograms.add(blackProgram);
                 Program whiteProgram =
-                    new Program(white, "White", "W", verbose);
+                    new Program(white, "White", "W", verbose, multiplexer);
                 allPrograms.add(whiteProgram);
                 Program refereeProgram;
                 if (referee.equals(""))
                     refereeProgram = null;
                 else
                 {
-                    refereeProgram =
-                        new Program(referee, "Referee", "R", verbose);
+                    refereeProgram = new Program(referee, "Referee", "R",
+                                                 verbose, multiplexer);
                     allPrograms.add(refereeProgram);
                 }
                 for (Program program : allPrograms)
@@ -174,7 +182,8 @@ public final class Main
                     twoGtp[i].setDebugToComment(true);
                 if (auto)
                 {
-                    thread[i] = new TwoGtpThread(twoGtp[i]);
+                    autoPlay[i] = new AutoPlay(twoGtp[i]);
+                    thread[i] = ThreadUtil.newThread(autoPlay[i]);
                     thread[i].start();
                 }
             }
@@ -183,9 +192,9 @@ public final class Main
                 for (int i = 0; i < numberThreads; ++i)
                     thread[i].join();
                 for (int i = 0; i < numberThreads; ++i)
-                    if (thread[i].getException() != null)
+                    if (autoPlay[i].getException() != null)
                     {
-                        StringUtil.printException(thread[i].getException());
+                        StringUtil.printException(autoPlay[i].getException());
                         exitError = true;
                     }
             }
@@ -209,10 +218,11 @@ public final class Main
     }
 }
 
-class TwoGtpThread
-    extends Thread
+/** Runs TwoGtp.autoPlay() in a thread. */
+class AutoPlay
+    implements Runnable
 {
-    public TwoGtpThread(TwoGtp twoGtp)
+    public AutoPlay(TwoGtp twoGtp)
     {
         m_twoGtp = twoGtp;
     }
@@ -10,6 +10,7 @@ import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.GoColor;
 import net.sf.gogui.gtp.GtpClient;
 import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpInputMultiplexer;
 import net.sf.gogui.gtp.GtpSynchronizer;
 import net.sf.gogui.util.Table;
 
@@ -17,9 +18,20 @@ public class Program
 {
     public Program(String command, String defaultName, String logPrefix,
                    boolean verbose) throws GtpError
+    {
+        this(command, defaultName, logPrefix, verbose, null);
+    }
+
+    /** Constructor.
+        @param multiplexer Multiplexer shared with other programs for reading
+        the streams of the program or null.
+        @see GtpInputMultiplexer */
+    public Program(String command, String defaultName, String logPrefix,
+                   boolean verbose, GtpInputMultiplexer multiplexer)
+        throws GtpError
     {
         m_defaultName = defaultName;
-        m_gtp = new GtpClient(command, null, verbose, null);
+        m_gtp = new GtpClient(command, null, verbose, null, multiplexer);
         m_gtp.setLogPrefix(logPrefix);
         m_synchronizer = new GtpSynchronizer(m_gtp);
         m_gtp.queryProtocolVersion();
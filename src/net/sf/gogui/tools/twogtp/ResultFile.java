@@ -81,8 +81,7 @@ public class ResultFile
                                        double cpuTimeWhite)
         throws ErrorMessage
     {
-        ArrayList<Compare.Placement> moves
-            = Compare.getPlacements(game.getTree().getRootConst());
+        short[] moves = Compare.getPlacements(game.getTree().getRootConst());
         String duplicate =
             Compare.checkDuplicate(game.getBoard(), moves, m_games,
                                    m_alternate, alternated);
@@ -200,8 +199,8 @@ public class ResultFile
 
     private final Table m_table;
 
-    private final TreeMap<Integer, ArrayList<Compare.Placement>> m_games
-        = new TreeMap<Integer, ArrayList<Compare.Placement>>();
+    private final TreeMap<Integer, short[]> m_games
+        = new TreeMap<Integer, short[]>();
 
     private void acquireLock() throws ErrorMessage
     {
@@ -307,8 +307,7 @@ public class TwoGtp
 
     private final String m_filePrefix;
 
-    private final ArrayList<ArrayList<Compare.Placement>> m_games
-        = new ArrayList<ArrayList<Compare.Placement>>(100);
+    private final ArrayList<short[]> m_games = new ArrayList<short[]>(100);
 
     private ResultFile m_resultFile;
 
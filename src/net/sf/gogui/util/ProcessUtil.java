@@ -6,56 +6,15 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-
-class ExitWaiter
-    extends Thread
-{
-    public ExitWaiter(Object monitor, Process process)
-    {
-        m_monitor = monitor;
-        m_process = process;
-    }
-
-    public boolean isFinished()
-    {
-        synchronized (m_mutex)
-        {
-            return m_isFinished;
-        }
-    }
-
-    public void run()
-    {
-        try
-        {
-            m_process.waitFor();
-        }
-        catch (InterruptedException e)
-        {
-        }
-        synchronized (m_mutex)
-        {
-            m_isFinished = true;
-        }
-        synchronized (m_monitor)
-        {
-            m_monitor.notifyAll();
-        }
-    }
-
-    private boolean m_isFinished;
-
-    private final Object m_monitor;
-
-    private final Object m_mutex = new Object();
-
-    private final Process m_process;
-};
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /** Static utility functions and classes related to processes. */
 public class ProcessUtil
 {
-    /** Copies standard error of a process to System.err. */
+    /** Copies standard error of a process to System.err.
+        Always a platform thread; use ThreadUtil.newThread() with a
+        StreamCopy for a thread of the kind selected in ThreadUtil. */
     public static class StdErrThread
         extends Thread
     {
@@ -109,31 +68,41 @@ public class ProcessUtil
         Runtime runtime = Runtime.getRuntime();
         Process process = runtime.exec(cmdArray);
         Thread copyOut =
-            new Thread(new StreamCopy(false, process.getInputStream(),
-                                      System.err, false));
+            ThreadUtil.newThread(new StreamCopy(false,
+                                                process.getInputStream(),
+                                                System.err, false));
         copyOut.start();
         Thread copyErr =
-            new Thread(new StreamCopy(false, process.getErrorStream(),
-                                      System.err, false));
+            ThreadUtil.newThread(new StreamCopy(false,
+                                                process.getErrorStream(),
+                                                System.err, false));
         copyErr.start();
     }
 
-    public static boolean waitForExit(Process process, long timeout)
+    public static boolean waitForExit(final Process process, long timeout)
     {
-        Object monitor = new Object();
-        ExitWaiter exitWaiter = new ExitWaiter(monitor, process);
-        synchronized (monitor)
+        final CountDownLatch exited = new CountDownLatch(1);
+        Thread exitWaiter = ThreadUtil.newThread(new Runnable() {
+                public void run()
+                {
+                    try
+                    {
+                        process.waitFor();
+                    }
+                    catch (InterruptedException e)
+                    {
+                    }
+                    exited.countDown();
+                }
+            });
+        exitWaiter.start();
+        try
         {
-            exitWaiter.start();
-            try
-            {
-                monitor.wait(timeout);
-                return exitWaiter.isFinished();
-            }
-            catch (InterruptedException e)
-            {
-                return false;
-            }
+            return exited.await(timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            return false;
         }
     }
 }
@@ -0,0 +1,101 @@
+// ThreadUtil.java
+
+package net.sf.gogui.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/** Static utility functions related to threads.
+    The threads that run I/O loops (e.g. for reading the streams of GTP
+    engines) are created with newThread(), so that the kind of thread can be
+    selected at a single place. By default, platform threads are used. If
+    the system property gogui.virtualthreads is set to true and the Java
+    runtime supports virtual threads (Java 21 or newer), virtual threads are
+    used, which need much less memory if many engines are run at the same
+    time (e.g. by TwoGtp with many threads). Virtual threads are always
+    daemon threads. They are accessed with reflection, because GoGui is
+    compiled for older versions of Java. */
+public final class ThreadUtil
+{
+    /** Get the thread factory used by newThread().
+        Can be used for creating thread pools with the same kind of threads
+        as newThread(). */
+    public static ThreadFactory getThreadFactory()
+    {
+        return s_factory;
+    }
+
+    /** Get a thread factory for virtual threads.
+        @return The factory or null, if virtual threads are not supported
+        by the Java runtime. */
+    public static ThreadFactory getVirtualThreadFactory()
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            // Use the method of the public interface, the class of the
+            // builder is not accessible
+            Method factory =
+                Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory)factory.invoke(builder);
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /** Check if newThread() creates virtual threads. */
+    public static boolean isVirtual()
+    {
+        return (s_factory != s_platformFactory);
+    }
+
+    /** Create a new thread.
+        The thread is not started.
+        @param runnable The runnable to run in the thread.
+        @return The thread. */
+    public static Thread newThread(Runnable runnable)
+    {
+        return s_factory.newThread(runnable);
+    }
+
+    /** Select the kind of threads created by newThread().
+        @param virtual true for virtual threads, false for platform threads.
+        @return false, if virtual threads were requested, but are not
+        supported by the Java runtime. */
+    public static boolean setVirtual(boolean virtual)
+    {
+        ThreadFactory factory = s_platformFactory;
+        if (virtual)
+        {
+            factory = getVirtualThreadFactory();
+            if (factory == null)
+                return false;
+        }
+        s_factory = factory;
+        return true;
+    }
+
+    private static final ThreadFactory s_platformFactory =
+        new ThreadFactory() {
+            public Thread newThread(Runnable runnable)
+            {
+                return new Thread(runnable);
+            }
+        };
+
+    private static volatile ThreadFactory s_factory = s_platformFactory;
+
+    static
+    {
+        if (Boolean.getBoolean("gogui.virtualthreads")
+            && ! setVirtual(true))
+            System.err.println("Virtual threads not supported");
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private ThreadUtil()
+    {
+    }
+}
@@ -11,9 +11,9 @@ import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeSet;
@@ -142,6 +142,105 @@ public final class XmlReader
         return result.toString();
     }
 
+    /** Known elements.
+        Element names are mapped to this enum once per element, so that the
+        handlers can dispatch with a switch instead of comparing strings. */
+    private enum Element
+    {
+        ADD_BLACK("AddBlack"),
+
+        ADD_WHITE("AddWhite"),
+
+        ANNOTATION("Annotation"),
+
+        APPLICATION("Application"),
+
+        ARG("Arg"),
+
+        AT("at"),
+
+        BLACK("Black"),
+
+        BLACK_PLAYER("BlackPlayer"),
+
+        BLACK_RANK("BlackRank"),
+
+        BLACK_TEAM("BlackTeam"),
+
+        BLACK_TO_PLAY("BlackToPlay"),
+
+        BOARD_SIZE("BoardSize"),
+
+        COMMENT("Comment"),
+
+        COPYRIGHT("Copyright"),
+
+        DATE("Date"),
+
+        DELETE("Delete"),
+
+        GO("Go"),
+
+        GO_GAME("GoGame"),
+
+        HANDICAP("Handicap"),
+
+        INFORMATION("Information"),
+
+        KOMI("Komi"),
+
+        LINE("Line"),
+
+        MARK("Mark"),
+
+        NODE("Node"),
+
+        NODES("Nodes"),
+
+        P("P"),
+
+        RESULT("Result"),
+
+        ROUND("Round"),
+
+        RULES("Rules"),
+
+        SGF("SGF"),
+
+        SOURCE("Source"),
+
+        TIME("Time"),
+
+        USER("User"),
+
+        VARIATION("Variation"),
+
+        WHITE("White"),
+
+        WHITE_PLAYER("WhitePlayer"),
+
+        WHITE_RANK("WhiteRank"),
+
+        WHITE_TEAM("WhiteTeam"),
+
+        WHITE_TO_PLAY("WhiteToPlay"),
+
+        /** Used for unknown elements. */
+        UNKNOWN(null);
+
+        Element(String name)
+        {
+            m_name = name;
+        }
+
+        public String getName()
+        {
+            return m_name;
+        }
+
+        private final String m_name;
+    }
+
     private class Handler
         extends DefaultHandler
     {
@@ -153,176 +252,269 @@ public final class XmlReader
                 showProgress();
             checkNoCharacters();
             m_element = name;
+            m_elementType = s_elements.get(name);
             m_atts = atts;
             if (m_isFirstElement)
             {
-                if (! m_element.equals("Go"))
+                if (m_elementType != Element.GO)
                     throw new SAXException("Not a Go game");
                 m_isFirstElement = false;
             }
-            if (name.equals("Annotation"))
+            if (m_elementType == null)
+            {
+                setWarning("Ignoring unknown element: " + name);
+                m_elementType = Element.UNKNOWN;
+            }
+            switch (m_elementType)
+            {
+            case ANNOTATION:
                 startInfoElemWithoutFormat();
-            else if (name.equals("Application"))
+                break;
+            case APPLICATION:
                 startInfoElemWithFormat();
-            else if (name.equals("AddBlack"))
+                break;
+            case ADD_BLACK:
                 startSetup(BLACK);
-            else if (name.equals("AddWhite"))
+                break;
+            case ADD_WHITE:
                 startSetup(WHITE);
-            else if (name.equals("Arg"))
-                checkParent("SGF");
-            else if (name.equals("at"))
-                checkParent("Black", "White", "AddBlack", "AddWhite", "Delete",
-                            "Mark");
-            else if (name.equals("Black"))
+                break;
+            case ARG:
+                checkParent(Element.SGF);
+                break;
+            case AT:
+                checkParent(Element.BLACK, Element.WHITE, Element.ADD_BLACK,
+                            Element.ADD_WHITE, Element.DELETE, Element.MARK);
+                break;
+            case BLACK:
                 startMove(BLACK);
-            else if (name.equals("BlackPlayer"))
+                break;
+            case BLACK_PLAYER:
                 startInfoElemWithFormat();
-            else if (name.equals("BlackRank"))
+                break;
+            case BLACK_RANK:
                 startInfoElemWithFormat();
-            else if (name.equals("BlackTeam"))
+                break;
+            case BLACK_TEAM:
                 startInfoElemWithoutFormat();
-            else if (name.equals("BlackToPlay"))
+                break;
+            case BLACK_TO_PLAY:
                 startToPlay(BLACK);
-            else if (name.equals("BoardSize"))
+                break;
+            case BOARD_SIZE:
                 startInfoElemWithFormat();
-            else if (name.equals("Comment"))
+                break;
+            case COMMENT:
                 startComment();
-            else if (name.equals("Copyright"))
+                break;
+            case COPYRIGHT:
                 startCopyright();
-            else if (name.equals("Date"))
+                break;
+            case DATE:
                 startInfoElemWithFormat();
-            else if (name.equals("Delete"))
+                break;
+            case DELETE:
                 startSetup(EMPTY);
-            else if (name.equals("Go"))
+                break;
+            case GO:
                 startGo();
-            else if (name.equals("GoGame"))
+                break;
+            case GO_GAME:
                 startGoGame();
-            else if (name.equals("Handicap"))
+                break;
+            case HANDICAP:
                 startInfoElemWithFormat();
-            else if (name.equals("Information"))
+                break;
+            case INFORMATION:
                 startInformation();
-            else if (name.equals("Line"))
+                break;
+            case LINE:
                 startLine();
-            else if (name.equals("Komi"))
+                break;
+            case KOMI:
                 startInfoElemWithFormat();
-            else if (name.equals("Mark"))
+                break;
+            case MARK:
                 startMark();
-            else if (name.equals("Node"))
+                break;
+            case NODE:
                 startNode();
-            else if (name.equals("Nodes"))
+                break;
+            case NODES:
                 startNodes();
-            else if (name.equals("P"))
+                break;
+            case P:
                 startP();
-            else if (name.equals("Result"))
+                break;
+            case RESULT:
                 startInfoElemWithFormat();
-            else if (name.equals("Round"))
+                break;
+            case ROUND:
                 startInfoElemWithoutFormat();
-            else if (name.equals("Rules"))
+                break;
+            case RULES:
                 startInfoElemWithFormat();
-            else if (name.equals("Source"))
+                break;
+            case SOURCE:
                 startInfoElemWithFormat();
-            else if (name.equals("SGF"))
+                break;
+            case SGF:
                 startSGF();
-            else if (name.equals("Time"))
+                break;
+            case TIME:
                 startInfoElemWithFormat();
-            else if (name.equals("User"))
+                break;
+            case USER:
                 startInfoElemWithoutFormat();
-            else if (name.equals("Variation"))
+                break;
+            case VARIATION:
                 startVariation();
-            else if (name.equals("White"))
+                break;
+            case WHITE:
                 startMove(WHITE);
-            else if (name.equals("WhitePlayer"))
+                break;
+            case WHITE_PLAYER:
                 startInfoElemWithFormat();
-            else if (name.equals("WhiteRank"))
+                break;
+            case WHITE_RANK:
                 startInfoElemWithFormat();
-            else if (name.equals("WhiteTeam"))
+                break;
+            case WHITE_TEAM:
                 startInfoElemWithoutFormat();
-            else if (name.equals("WhiteToPlay"))
+                break;
+            case WHITE_TO_PLAY:
                 startToPlay(WHITE);
-            else
-                setWarning("Ignoring unknown element: " + name);
-            m_elementStack.push(name);
+                break;
+            default:
+                break;
+            }
+            m_elementStack.add(name);
+            m_elementTypeStack.add(m_elementType);
             m_characters.setLength(0);
         }
 
         public void endElement(String namespaceURI, String name,
                                String qualifiedName) throws SAXException
         {
-            m_element = m_elementStack.pop();
-            if (name.equals("AddBlack"))
+            m_element = m_elementStack.remove(m_elementStack.size() - 1);
+            m_elementType =
+                m_elementTypeStack.remove(m_elementTypeStack.size() - 1);
+            switch (m_elementType)
+            {
+            case ADD_BLACK:
                 endSetup(BLACK);
-            else if (name.equals("AddWhite"))
+                break;
+            case ADD_WHITE:
                 endSetup(WHITE);
-            else if (name.equals("Annotation"))
+                break;
+            case ANNOTATION:
                 m_info.set(StringInfo.ANNOTATION, getCharacters());
-            else if (name.equals("Arg"))
+                break;
+            case ARG:
                 m_sgfArgs.add(getCharacters());
-            else if (name.equals("at"))
+                break;
+            case AT:
                 endAt();
-            else if (name.equals("Black"))
+                break;
+            case BLACK:
                 endMove(BLACK);
-            else if (name.equals("BlackPlayer"))
+                break;
+            case BLACK_PLAYER:
                 m_info.set(StringInfoColor.NAME, BLACK, getCharacters());
-            else if (name.equals("BlackRank"))
+                break;
+            case BLACK_RANK:
                 m_info.set(StringInfoColor.RANK, BLACK, getCharacters());
-            else if (name.equals("BlackTeam"))
+                break;
+            case BLACK_TEAM:
                 m_info.set(StringInfoColor.TEAM, BLACK, getCharacters());
-            else if (name.equals("BlackToPlay"))
+                break;
+            case BLACK_TO_PLAY:
                 endToPlay();
-            else if (name.equals("BoardSize"))
+                break;
+            case BOARD_SIZE:
                 endBoardSize();
-            else if (name.equals("Comment"))
+                break;
+            case COMMENT:
                 endComment();
-            else if (name.equals("Copyright"))
+                break;
+            case COPYRIGHT:
                 endCopyright();
-            else if (name.equals("Date"))
+                break;
+            case DATE:
                 m_info.set(StringInfo.DATE, getCharacters());
-            else if (name.equals("Delete"))
+                break;
+            case DELETE:
                 endSetup(EMPTY);
-            else if (name.equals("Go"))
+                break;
+            case GO:
                 checkNoCharacters();
-            else if (name.equals("GoGame"))
+                break;
+            case GO_GAME:
                 checkNoCharacters();
-            else if (name.equals("Handicap"))
+                break;
+            case HANDICAP:
                 endHandicap();
-            else if (name.equals("Information"))
+                break;
+            case INFORMATION:
                 checkNoCharacters();
-            else if (name.equals("Komi"))
+                break;
+            case KOMI:
                 endKomi();
-            else if (name.equals("Mark"))
+                break;
+            case MARK:
                 endMark();
-            else if (name.equals("Node"))
+                break;
+            case NODE:
                 endNode();
-            else if (name.equals("Nodes"))
+                break;
+            case NODES:
                 checkNoCharacters();
-            else if (name.equals("P"))
+                break;
+            case P:
                 endP();
-            else if (name.equals("Result"))
+                break;
+            case RESULT:
                 m_info.set(StringInfo.RESULT, getCharacters());
-            else if (name.equals("Round"))
+                break;
+            case ROUND:
                 m_info.set(StringInfo.ROUND, getCharacters());
-            else if (name.equals("Rules"))
+                break;
+            case RULES:
                 m_info.set(StringInfo.RULES, getCharacters());
-            else if (name.equals("SGF"))
+                break;
+            case SGF:
                 endSgf();
-            else if (name.equals("Source"))
+                break;
+            case SOURCE:
                 m_info.set(StringInfo.SOURCE, getCharacters());
-            else if (name.equals("Time"))
+                break;
+            case TIME:
                 endTime();
-            else if (name.equals("User"))
+                break;
+            case USER:
                 m_info.set(StringInfo.USER, getCharacters());
-            else if (name.equals("White"))
+                break;
+            case WHITE:
                 endMove(WHITE);
-            else if (name.equals("WhitePlayer"))
+                break;
+            case WHITE_PLAYER:
                 m_info.set(StringInfoColor.NAME, WHITE, getCharacters());
-            else if (name.equals("WhiteRank"))
+                break;
+            case WHITE_RANK:
                 m_info.set(StringInfoColor.RANK, WHITE, getCharacters());
-            else if (name.equals("WhiteTeam"))
+                break;
+            case WHITE_TEAM:
                 m_info.set(StringInfoColor.TEAM, WHITE, getCharacters());
-            else if (name.equals("WhiteToPlay"))
+                break;
+            case WHITE_TO_PLAY:
                 endToPlay();
-            else if (name.equals("Variation"))
+                break;
+            case VARIATION:
                 endVariation();
+                break;
+            default:
+                break;
+            }
             m_characters.setLength(0);
         }
 
@@ -381,6 +573,16 @@ public final class XmlReader
 
     private static final int DEFAULT_BOARDSIZE = 19;
 
+    private static final Map<String,Element> s_elements =
+        new HashMap<String,Element>();
+
+    static
+    {
+        for (Element element : Element.values())
+            if (element.getName() != null)
+                s_elements.put(element.getName(), element);
+    }
+
     private boolean m_isFirstElement;
 
     private boolean m_isFirstNode;
@@ -401,7 +603,11 @@ public final class XmlReader
     private final long m_streamSize;
 
     /** Element stack. */
-    private Stack<String> m_elementStack = new Stack<String>();
+    private final ArrayList<String> m_elementStack = new ArrayList<String>();
+
+    /** Element stack (types of elements). */
+    private final ArrayList<Element> m_elementTypeStack =
+        new ArrayList<Element>();
 
     /** Current node. */
     private Node m_node;
@@ -417,6 +623,9 @@ public final class XmlReader
     /** Current element */
     private String m_element;
 
+    /** Type of current element */
+    private Element m_elementType;
+
     /** Attributes of current element */
     private Attributes m_atts;
 
@@ -467,11 +676,17 @@ public final class XmlReader
 
     private void checkAttributes(String... atts) throws SAXException
     {
-        List<String> list = Arrays.asList(atts);
         for (int i = 0; i < m_atts.getLength(); ++i)
         {
             String name = m_atts.getLocalName(i);
-            if (! list.contains(name))
+            boolean found = false;
+            for (String att : atts)
+                if (att.equals(name))
+                {
+                    found = true;
+                    break;
+                }
+            if (! found)
                 setWarning("Unknown attribute \"" + name + "\" for element \""
                            + m_element + "\"");
         }
@@ -479,7 +694,7 @@ public final class XmlReader
 
     private void checkNoCharacters() throws SAXException
     {
-        if (! getCharacters().trim().equals(""))
+        if (! isEmpty(m_characters))
             setWarning("Cannot handle text content in element \"" + m_element
                        + "\"");
     }
@@ -492,12 +707,14 @@ public final class XmlReader
                        + parent + "\"");
     }
 
-    private void checkParent(String... parents) throws SAXException
+    private void checkParent(Element... parents) throws SAXException
     {
-        String parent = parentElement();
-        if (! Arrays.asList(parents).contains(parent))
-            throwError("Element \"" + m_element + "\" cannot be child of \""
-                       + parent + "\"");
+        Element parentType = parentElementType();
+        for (Element element : parents)
+            if (element == parentType)
+                return;
+        throwError("Element \"" + m_element + "\" cannot be child of \""
+                   + parentElement() + "\"");
     }
 
     private void createNode()
@@ -512,24 +729,32 @@ public final class XmlReader
 
     private void endAt() throws SAXException
     {
-        GoPoint p = getPoint(getCharacters());
-        String parent = parentElement();
-        if (parent.equals("Black"))
+        GoPoint p = getPoint(m_characters);
+        switch (parentElementType())
+        {
+        case BLACK:
             m_node.setMove(Move.get(BLACK, p));
-        else if (parent.equals("White"))
+            break;
+        case WHITE:
             m_node.setMove(Move.get(WHITE, p));
-        else if (parent.equals("AddBlack"))
+            break;
+        case ADD_BLACK:
             m_node.addStone(BLACK, p);
-        else if (parent.equals("AddWhite"))
+            break;
+        case ADD_WHITE:
             m_node.addStone(WHITE, p);
-        else if (parent.equals("Delete"))
+            break;
+        case DELETE:
             m_node.addStone(EMPTY, p);
-        else if (parent.equals("Mark"))
-        {
+            break;
+        case MARK:
             if (m_markType != null)
                 m_node.addMarked(p, m_markType);
             if (m_label != null)
                 m_node.setLabel(p, m_label);
+            break;
+        default:
+            break;
         }
     }
 
@@ -579,10 +804,9 @@ public final class XmlReader
         // According to the DTD, mark cannot contain
         // text content, but we accept it, if the point is text content
         // instead of a at-subelement or an at-attribute
-        String value = getCharacters();
-        if (! value.trim().equals(""))
+        if (! isEmpty(m_characters))
         {
-            GoPoint p = getPoint(value);
+            GoPoint p = getPoint(m_characters);
             if (m_markType != null)
                 m_node.addMarked(p, m_markType);
             if (m_label != null)
@@ -595,9 +819,8 @@ public final class XmlReader
         // According to the DTD, Black and White cannot contain text
         // content, but we accept it, if the move is text content instead
         // of a at-subelement or an at-attribute
-        String value = getCharacters();
-        if (! value.trim().equals(""))
-            m_node.setMove(Move.get(c, getPoint(value)));
+        if (! isEmpty(m_characters))
+            m_node.setMove(Move.get(c, getPoint(m_characters)));
     }
 
     private void endNode() throws SAXException
@@ -617,9 +840,8 @@ public final class XmlReader
         // According to the DTD, AddBlack, AddWhite, and Delete cannot contain
         // text content, but we accept it, if the point is text content instead
         // of a at-subelement or an at-attribute
-        String value = getCharacters();
-        if (! value.trim().equals(""))
-            m_node.addStone(c, getPoint(value));
+        if (! isEmpty(m_characters))
+            m_node.addStone(c, getPoint(m_characters));
     }
 
     private void endSgf() throws SAXException
@@ -882,7 +1104,7 @@ public final class XmlReader
 
     private void endToPlay() throws SAXException
     {
-        if (! getCharacters().trim().equals(""))
+        if (! isEmpty(m_characters))
             setWarning("Ignoring text content in element \"" + m_element
                        + "\"");
     }
@@ -933,32 +1155,44 @@ public final class XmlReader
         return text;
     }
 
-    private GoPoint getPoint(String value) throws SAXException
+    /** Parse a point.
+        Avoids creating strings for the common case of a letter followed by
+        a number and uses GoPoint.parsePoint() otherwise.
+        @return The point or null for pass moves and empty values. */
+    private GoPoint getPoint(CharSequence value) throws SAXException
     {
-        value = value.trim();
-        if (value.equals(""))
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ')
+            ++start;
+        while (end > start && value.charAt(end - 1) <= ' ')
+            --end;
+        if (start == end)
             return null;
-        GoPoint p;
-        try
+        int boardSize;
+        if (m_isBoardSizeKnown)
+            boardSize = m_boardSize;
+        else
+            boardSize = GoPoint.MAX_SIZE;
+        GoPoint p = parsePoint(value, start, end, boardSize);
+        if (p == null)
         {
-            if (m_isBoardSizeKnown)
-                p = GoPoint.parsePoint(value, m_boardSize);
-            else
+            try
             {
-                p = GoPoint.parsePoint(value, GoPoint.MAX_SIZE);
-                if (p != null)
-                {
-                    m_boardSize = Math.max(m_boardSize, p.getX());
-                    m_boardSize = Math.max(m_boardSize, p.getY());
-                }
+                String s = value.subSequence(start, end).toString();
+                p = GoPoint.parsePoint(s, boardSize);
+            }
+            catch (InvalidPointException e)
+            {
+                throwError(e.getMessage());
             }
-            return p;
         }
-        catch (InvalidPointException e)
+        if (p != null && ! m_isBoardSizeKnown)
         {
-            throwError(e.getMessage());
+            m_boardSize = Math.max(m_boardSize, p.getX());
+            m_boardSize = Math.max(m_boardSize, p.getY());
         }
-        return null; // Unreachable; avoid compiler error
+        return p;
     }
 
     private GoPoint getSgfPoint(String s) throws SAXException
@@ -1035,14 +1269,14 @@ public final class XmlReader
 
     private void startComment() throws SAXException
     {
-        checkParent("Nodes", "Node", "Variation");
+        checkParent(Element.NODES, Element.NODE, Element.VARIATION);
         checkAttributes();
         m_paragraphElementText = "";
     }
 
     private void startCopyright() throws SAXException
     {
-        checkParent("Information");
+        checkParent(Element.INFORMATION);
         checkAttributes();
         m_paragraphElementText = "";
     }
@@ -1055,7 +1289,7 @@ public final class XmlReader
 
     private void startGoGame() throws SAXException
     {
-        checkParent("Go");
+        checkParent(Element.GO);
         checkAttributes("name");
         String name = m_atts.getValue("name");
         if (name != null)
@@ -1068,7 +1302,7 @@ public final class XmlReader
 
     private void startInfoElemWithFormat() throws SAXException
     {
-        checkParent("Information");
+        checkParent(Element.INFORMATION);
         checkAttributes("format");
         String format = m_atts.getValue("format");
         if (format == null)
@@ -1081,13 +1315,13 @@ public final class XmlReader
 
     private void startInfoElemWithoutFormat() throws SAXException
     {
-        checkParent("Information");
+        checkParent(Element.INFORMATION);
         checkAttributes();
     }
 
     private void startInformation() throws SAXException
     {
-        checkParent("GoGame");
+        checkParent(Element.GO_GAME);
         checkAttributes();
     }
 
@@ -1101,7 +1335,7 @@ public final class XmlReader
 
     private void startMark() throws SAXException
     {
-        checkParent("Node");
+        checkParent(Element.NODE);
         checkAttributes("at", "label", "territory", "type");
         m_markType = null;
         m_label = m_atts.getValue("label");
@@ -1142,8 +1376,8 @@ public final class XmlReader
 
     private void startMove(GoColor c) throws SAXException
     {
-        checkParent("Node", "Nodes", "Variation");
-        if (! parentElement().equals("Node"))
+        checkParent(Element.NODE, Element.NODES, Element.VARIATION);
+        if (parentElementType() != Element.NODE)
             createNode();
         checkAttributes("annotate", "at", "timeleft", "name", "number");
         String name = m_atts.getValue("name");
@@ -1173,7 +1407,7 @@ public final class XmlReader
 
     private void startNode() throws SAXException
     {
-        checkParent("Nodes", "Variation");
+        checkParent(Element.NODES, Element.VARIATION);
         // blacktime and whitetime are not allowed in the DTD, but used
         // by Jago 5.0
         checkAttributes("blacktime", "name", "whitetime");
@@ -1219,7 +1453,7 @@ public final class XmlReader
 
     private void startNodes() throws SAXException
     {
-        checkParent("GoGame");
+        checkParent(Element.GO_GAME);
         checkAttributes();
         if (++m_numberTrees > 1)
             throwError("More than one Nodes element in element GoGame");
@@ -1227,13 +1461,13 @@ public final class XmlReader
 
     private void startP() throws SAXException
     {
-        checkParent("Comment", "Copyright");
+        checkParent(Element.COMMENT, Element.COPYRIGHT);
         checkAttributes();
     }
 
     private void startSetup(GoColor c) throws SAXException
     {
-        checkParent("Node");
+        checkParent(Element.NODE);
         checkAttributes("at");
         String value = m_atts.getValue("at");
         if (value != null)
@@ -1242,7 +1476,7 @@ public final class XmlReader
 
     private void startSGF() throws SAXException
     {
-        checkParent("Node");
+        checkParent(Element.NODE);
         checkAttributes("type");
         m_sgfType = m_atts.getValue("type");
         m_sgfArgs.clear();
@@ -1254,14 +1488,14 @@ public final class XmlReader
         // occur in a valid document, because they have no legal parent.
         // I assume that they were meant to be child elements of Node
         // and set the player in setup positions
-        checkParent("Node");
+        checkParent(Element.NODE);
         checkAttributes();
         m_node.setPlayer(c);
     }
 
     private void startVariation() throws SAXException
     {
-        checkParent("Nodes", "Variation");
+        checkParent(Element.NODES, Element.VARIATION);
         checkAttributes();
         if (m_node == null)
             throwError("Variation without main node");
@@ -1270,11 +1504,59 @@ public final class XmlReader
         m_node = null;
     }
 
+    /** Check if characters contain only whitespace.
+        Uses the same definition of whitespace as String.trim(). */
+    private static boolean isEmpty(CharSequence s)
+    {
+        for (int i = 0; i < s.length(); ++i)
+            if (s.charAt(i) > ' ')
+                return false;
+        return true;
+    }
+
     private String parentElement()
     {
         if (m_elementStack.isEmpty())
             return null;
-        return m_elementStack.peek();
+        return m_elementStack.get(m_elementStack.size() - 1);
+    }
+
+    /** Type of parent element.
+        @return The type or null, if the current element is the root
+        element. */
+    private Element parentElementType()
+    {
+        if (m_elementTypeStack.isEmpty())
+            return null;
+        return m_elementTypeStack.get(m_elementTypeStack.size() - 1);
+    }
+
+    /** Parse a point consisting of a letter and a number.
+        @return The point or null, if the characters are not a valid point
+        of this form. */
+    private static GoPoint parsePoint(CharSequence value, int start,
+                                      int end, int boardSize)
+    {
+        if (end - start < 2 || end - start > 3)
+            return null;
+        char xChar = Character.toUpperCase(value.charAt(start));
+        if (xChar < 'A' || xChar > 'Z')
+            return null;
+        if (xChar >= 'J')
+            --xChar;
+        int x = xChar - 'A';
+        int y = 0;
+        for (int i = start + 1; i < end; ++i)
+        {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+                return null;
+            y = 10 * y + (c - '0');
+        }
+        --y;
+        if (x >= boardSize || y < 0 || y >= boardSize)
+            return null;
+        return GoPoint.get(x, y);
     }
 
     private int parseInt() throws SAXException
@@ -0,0 +1,229 @@
+// ArchiveTest.java
+
+package net.sf.gogui.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.GameInfo;
+import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.MarkType;
+import net.sf.gogui.game.Node;
+import net.sf.gogui.game.StringInfo;
+import net.sf.gogui.game.StringInfoColor;
+import net.sf.gogui.game.TimeSettings;
+import net.sf.gogui.gamefile.GameFile;
+import net.sf.gogui.gamefile.GameReader;
+import net.sf.gogui.gamefile.GameWriter;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.go.Move;
+import net.sf.gogui.sgf.SgfWriter;
+import net.sf.gogui.util.ErrorMessage;
+
+public final class ArchiveTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ArchiveTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_file = File.createTempFile("gogui", ".gga");
+    }
+
+    public void tearDown()
+    {
+        m_file.delete();
+    }
+
+    public void testCompressed() throws Exception
+    {
+        checkRoundTrip(true);
+    }
+
+    public void testGameReaderWriter() throws Exception
+    {
+        GameFile gameFile = new GameFile();
+        gameFile.m_file = m_file;
+        gameFile.m_format = GameFile.Format.ARCHIVE;
+        GameTree tree = createTree(9);
+        new GameWriter(gameFile, tree, null, null);
+        GameReader reader = new GameReader(m_file);
+        assertEquals(GameFile.Format.ARCHIVE,
+                     reader.getFile().m_format);
+        assertEquals(writeSgf(tree), writeSgf(reader.getTree()));
+        assertNull(reader.getWarnings());
+    }
+
+    public void testInvalid() throws Exception
+    {
+        write(false, createTree(19));
+        RandomAccessFile file = new RandomAccessFile(m_file, "rw");
+        file.setLength(file.length() - 1);
+        file.close();
+        try
+        {
+            new ArchiveReader(m_file);
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+        }
+        assertTrue(ArchiveReader.isArchive(m_file));
+        assertFalse(ArchiveReader.isArchive(new File(m_file + ".missing")));
+    }
+
+    /** Test that moves and points outside the board are rejected. */
+    public void testPointOutsideBoard() throws Exception
+    {
+        Node root = new Node();
+        root.append(new Node(Move.get(BLACK, 9, 0)));
+        write(false, new GameTree(9, root));
+        checkInvalid();
+        root = new Node();
+        root.addStone(WHITE, GoPoint.get(0, 9));
+        write(false, new GameTree(9, root));
+        checkInvalid();
+        root = new Node();
+        root.addMarked(GoPoint.get(10, 10), MarkType.MARK);
+        write(false, new GameTree(9, root));
+        checkInvalid();
+    }
+
+    /** Test that GameWriter does not replace an archive with multiple
+        games by a single game. */
+    public void testSaveMultipleGames() throws Exception
+    {
+        write(false, createTree(9), createTree(19));
+        GameFile gameFile = new GameFile();
+        gameFile.m_file = m_file;
+        gameFile.m_format = GameFile.Format.ARCHIVE;
+        try
+        {
+            new GameWriter(gameFile, createTree(9), null, null);
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+        }
+        assertEquals(2, new ArchiveReader(m_file).getNumberGames());
+        write(false, createTree(9));
+        new GameWriter(gameFile, createTree(19), null, null);
+        assertEquals(19, new ArchiveReader(m_file).read(0).getBoardSize());
+    }
+
+    public void testUncompressed() throws Exception
+    {
+        checkRoundTrip(false);
+    }
+
+    private File m_file;
+
+    private void checkRoundTrip(boolean compress) throws Exception
+    {
+        GameTree[] trees = { createTree(19), new GameTree(), createTree(9) };
+        write(compress, trees);
+        ArchiveReader reader = new ArchiveReader(m_file);
+        assertEquals(trees.length, reader.getNumberGames());
+        // Read in different order to test the index
+        for (int i = trees.length - 1; i >= 0; --i)
+        {
+            GameTree tree = reader.read(i);
+            assertEquals(trees[i].getBoardSize(), tree.getBoardSize());
+            assertEquals(writeSgf(trees[i]), writeSgf(tree));
+        }
+    }
+
+    private static GameTree createTree(int size)
+    {
+        Node root = new Node();
+        root.addStone(BLACK, GoPoint.get(2, 2));
+        root.addStone(BLACK, GoPoint.get(6, 6));
+        root.setPlayer(WHITE);
+        root.addSgfProperty("XX", "unknown");
+        ArrayList<String> values = new ArrayList<String>();
+        values.add("a");
+        values.add("b");
+        root.addSgfProperty("YY", values);
+        GameInfo info = root.createGameInfo();
+        info.setHandicap(2);
+        info.setKomi(new Komi(0.5));
+        info.setTimeSettings(new TimeSettings(60000, 30000, 5));
+        info.set(StringInfo.RULES, "Japanese");
+        info.set(StringInfoColor.NAME, BLACK, "Black \u00e4\u6f22");
+        info.set(StringInfoColor.RANK, WHITE, "3d");
+        GameTree tree = new GameTree(size, root);
+        Node node = root;
+        for (int i = 0; i < 50; ++i)
+        {
+            Node child = new Node(Move.get(i % 2 == 0 ? WHITE : BLACK,
+                                           i % size, (i / size) % size));
+            child.setTimeLeft(BLACK, 100.5 - i);
+            if (i % 7 == 0)
+                child.setMovesLeft(WHITE, i);
+            if (i % 5 == 0)
+                child.setComment("Comment " + i % 3);
+            node.append(child);
+            node = child;
+        }
+        node = root.getChild().getChild();
+        Node variation = new Node(Move.getPass(WHITE));
+        variation.setValue(-1.25f);
+        variation.addMarked(GoPoint.get(0, 0), MarkType.TRIANGLE);
+        variation.addMarked(GoPoint.get(1, 0), MarkType.TRIANGLE);
+        variation.addMarked(GoPoint.get(1, 1), MarkType.TERRITORY_WHITE);
+        variation.setLabel(GoPoint.get(3, 3), "A");
+        variation.setLabel(GoPoint.get(4, 3), "");
+        node.append(variation);
+        Node setup = new Node();
+        setup.addStone(EMPTY, GoPoint.get(2, 2));
+        setup.addStone(WHITE, GoPoint.get(1, 2));
+        setup.createGameInfo().setTimeSettings(new TimeSettings(1000));
+        variation.append(setup);
+        node.append(new Node(Move.get(BLACK, size - 1, size - 1)));
+        return tree;
+    }
+
+    private void checkInvalid()
+    {
+        try
+        {
+            new ArchiveReader(m_file).read(0);
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+        }
+    }
+
+    private void write(boolean compress, ConstGameTree... trees)
+        throws Exception
+    {
+        ArchiveWriter writer =
+            new ArchiveWriter(new FileOutputStream(m_file), compress);
+        for (ConstGameTree tree : trees)
+            writer.add(tree);
+        writer.close();
+    }
+
+    private static String writeSgf(ConstGameTree tree) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SgfWriter(out, tree, null, null);
+        return out.toString(SgfWriter.ENCODING);
+    }
+}
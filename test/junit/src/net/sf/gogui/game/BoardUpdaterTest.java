@@ -3,6 +3,7 @@
 package net.sf.gogui.game;
 
 import net.sf.gogui.go.Board;
+import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import net.sf.gogui.go.GoPoint;
@@ -81,5 +82,55 @@ public final class BoardUpdaterTest
         assertEquals(BLACK, board.getColor(GoPoint.get(3, 3)));
     }
 
+    /** Test that navigating between nodes with a reused updater gives the
+        same result as updating from the root. */
+    public void testNavigation()
+    {
+        GameTree tree = new GameTree();
+        Node root = tree.getRoot();
+        Node node1 = appendMove(root, BLACK, 3, 3);
+        Node node2 = appendMove(node1, WHITE, 2, 3);
+        Node node3 = appendMove(node2, BLACK, 3, 2);
+        Node variation1 = appendMove(node1, WHITE, 15, 15);
+        Node variation2 = appendMove(variation1, BLACK, 15, 3);
+        Node setup = new Node();
+        setup.addStone(WHITE, GoPoint.get(10, 10));
+        setup.setPlayer(BLACK);
+        node3.append(setup);
+        Node node4 = appendMove(setup, BLACK, 10, 11);
+        Node pass = new Node(Move.getPass(WHITE));
+        node4.append(pass);
+        Node player = new Node();
+        player.setPlayer(WHITE);
+        node2.append(player);
+        Board board = new Board(19);
+        Node[] sequence = {
+            node3, variation2, node2, player, node4, setup, pass, node1,
+            root, node3, player, variation1
+        };
+        for (Node node : sequence)
+        {
+            m_updater.update(tree, node, board);
+            Board expected = new Board(19);
+            new BoardUpdater().update(tree, node, expected);
+            assertEquals(expected.getHash(), board.getHash());
+            assertEquals(expected.getToMove(), board.getToMove());
+            assertEquals(expected.getNumberMoves(), board.getNumberMoves());
+            for (int i = 0; i < board.getNumberMoves(); ++i)
+                assertEquals(expected.getMove(i), board.getMove(i));
+        }
+        // Change of current node after last update
+        player.setPlayer(BLACK);
+        m_updater.update(tree, player, board);
+        assertEquals(BLACK, board.getToMove());
+    }
+
     private BoardUpdater m_updater;
+
+    private static Node appendMove(Node father, GoColor c, int x, int y)
+    {
+        Node node = new Node(Move.get(c, GoPoint.get(x, y)));
+        father.append(node);
+        return node;
+    }
 }
@@ -0,0 +1,138 @@
+// CompactGameTreeTest.java
+
+package net.sf.gogui.game;
+
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
+public final class CompactGameTreeTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(CompactGameTreeTest.class);
+    }
+
+    public void testCopy()
+    {
+        GameTree tree = createTree();
+        CompactGameTree compact = new CompactGameTree(tree);
+        assertEquals(9, compact.getBoardSize());
+        assertEquals(NodeUtil.subtreeSize(tree.getRoot()),
+                     compact.getNumberNodes());
+        assertTrue(compact.hasVariations());
+        assertSameTree(tree.getRoot(), compact.getRootConst());
+        ConstNode node = compact.getRootConst().getChildConst();
+        assertSame(node, compact.getRootConst().getChildConst(0));
+        assertSame(compact.getRootConst(), node.getFatherConst());
+        assertEquals("Comment with umlaut \u00e4", node.getComment());
+        assertEquals(Move.get(BLACK, 2, 2), node.getMove());
+        assertEquals(WHITE, node.getToMove());
+        ConstNode variation = compact.getRootConst().getChildConst(1);
+        assertSame(variation, compact.getRootConst().variationAfter(node));
+        assertSame(node, compact.getRootConst().variationBefore(variation));
+        assertEquals(1, compact.getRootConst().getChildIndex(variation));
+        assertEquals(GoPoint.get(4, 4),
+                     variation.getSetup(WHITE).get(0));
+        assertEquals("A", variation.getLabel(GoPoint.get(1, 1)));
+        assertEquals(0.5f, variation.getValue());
+        assertEquals(5, variation.getMovesLeft(WHITE));
+        assertSame(compact.getGameInfoConst(compact.getRootConst()),
+                   compact.getGameInfoConst(variation));
+        assertEquals(6.5, compact.getGameInfoConst(node).getKomi().toDouble(),
+                     0);
+    }
+
+    public void testToGameTree()
+    {
+        GameTree tree = createTree();
+        CompactGameTree compact = new CompactGameTree(tree);
+        GameTree copy = compact.toGameTree();
+        assertSameTree(copy.getRoot(), compact.getRootConst());
+        ConstNode node = NodeUtil.getLast(compact.getRootConst()
+                                          .getChildConst(1));
+        Node copyNode = compact.getNode(copy, node);
+        assertEquals(node.getMove(), copyNode.getMove());
+        assertEquals(NodeUtil.getVariationString(node),
+                     NodeUtil.getVariationString(copyNode));
+        copyNode.setComment("Edited");
+        assertNull(node.getComment());
+    }
+
+    private static void assertSameNode(ConstNode node1, ConstNode node2)
+    {
+        assertEquals(node1.getMove(), node2.getMove());
+        assertEquals(node1.getComment(), node2.getComment());
+        assertEquals(node1.hasComment(), node2.hasComment());
+        assertEquals(node1.getPlayer(), node2.getPlayer());
+        assertEquals(node1.getToMove(), node2.getToMove());
+        assertEquals(node1.isEmpty(), node2.isEmpty());
+        assertEquals(node1.getNumberChildren(), node2.getNumberChildren());
+        assertEquals(node1.getLabelsUnmodifiable(),
+                     node2.getLabelsUnmodifiable());
+        assertEquals(node1.getGameInfoConst(), node2.getGameInfoConst());
+        for (GoColor c : GoColor.BLACK_WHITE_EMPTY)
+            assertEquals(node1.getSetup(c), node2.getSetup(c));
+        for (MarkType type : MarkType.values())
+            assertEquals(node1.getMarkedConst(type),
+                         node2.getMarkedConst(type));
+        for (GoColor c : GoColor.BLACK_WHITE)
+        {
+            assertEquals(node1.getMovesLeft(c), node2.getMovesLeft(c));
+            assertEquals(node1.getTimeLeft(c), node2.getTimeLeft(c));
+        }
+        assertEquals(node1.getValue(), node2.getValue());
+    }
+
+    private static void assertSameTree(ConstNode root1, ConstNode root2)
+    {
+        ConstNode node1 = root1;
+        ConstNode node2 = root2;
+        while (node1 != null)
+        {
+            assertNotNull(node2);
+            assertSameNode(node1, node2);
+            node1 = NodeUtil.nextNode(node1);
+            node2 = NodeUtil.nextNode(node2);
+        }
+        assertNull(node2);
+    }
+
+    private static GameTree createTree()
+    {
+        GameTree tree = new GameTree(9, null, null, null, null);
+        tree.getGameInfo(tree.getRoot()).setKomi(
+                                      new net.sf.gogui.go.Komi(6.5));
+        Node root = tree.getRoot();
+        Node node = new Node(Move.get(BLACK, 2, 2));
+        node.setComment("Comment with umlaut \u00e4");
+        root.append(node);
+        Node child = new Node(Move.get(WHITE, 6, 6));
+        child.addMarked(GoPoint.get(2, 2), MarkType.TRIANGLE);
+        node.append(child);
+        child.append(new Node(Move.getPass(BLACK)));
+        Node variation = new Node();
+        variation.addStone(WHITE, GoPoint.get(4, 4));
+        variation.addStone(EMPTY, GoPoint.get(3, 3));
+        variation.setPlayer(BLACK);
+        variation.setLabel(GoPoint.get(1, 1), "A");
+        variation.setValue(0.5f);
+        variation.setMovesLeft(WHITE, 5);
+        variation.setTimeLeft(WHITE, 30);
+        variation.addSgfProperty("XX", "foo");
+        root.append(variation);
+        Node last = new Node(Move.get(BLACK, 8, 8));
+        variation.append(last);
+        last.append(new Node(Move.get(WHITE, 0, 0)));
+        return tree;
+    }
+}
@@ -8,6 +8,7 @@ import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Move;
+import net.sf.gogui.go.MoveCodeList;
 
 public final class NodeUtilTest
     extends junit.framework.TestCase
@@ -51,6 +52,21 @@ public final class NodeUtilTest
         assertTrue(NodeUtil.findByMoveNumber(m_node7, 1) == m_node8);
     }
 
+    public void testFindByMoveSequence()
+    {
+        short[] moves = {
+            Move.get(BLACK, 2, 2).getCode(),
+            Move.get(WHITE, 5, 3).getCode(),
+            Move.get(BLACK, 6, 3).getCode()
+        };
+        assertSame(m_node0, NodeUtil.findByMoveSequence(m_node0, moves, 0));
+        assertSame(m_node2, NodeUtil.findByMoveSequence(m_node0, moves, 1));
+        assertSame(m_node3, NodeUtil.findByMoveSequence(m_node0, moves, 2));
+        assertSame(m_node5, NodeUtil.findByMoveSequence(m_node0, moves, 3));
+        moves[1] = Move.getPass(WHITE).getCode();
+        assertNull(NodeUtil.findByMoveSequence(m_node0, moves, 3));
+    }
+
     public void testFindByVariation()
     {
         assertTrue(NodeUtil.findByVariation(m_node0, "") == m_node0);
@@ -91,6 +107,15 @@ public final class NodeUtilTest
                                              Move.get(BLACK, 2, 3)));
     }
 
+    public void testGetChildWithMoveCode()
+    {
+        assertSame(m_node11,
+                   NodeUtil.getChildWithMove(m_node7,
+                                             Move.getPass(BLACK).getCode()));
+        assertNull(NodeUtil.getChildWithMove(m_node7,
+                                             Move.getPass(WHITE).getCode()));
+    }
+
     public void testGetDepth()
     {
         assertEquals(NodeUtil.getDepth(m_node0), 0);
@@ -117,6 +142,18 @@ public final class NodeUtilTest
         assertEquals(NodeUtil.getMoveNumber(m_node6), 3);
     }
 
+    public void testGetMoveSequence()
+    {
+        MoveCodeList moves = new MoveCodeList();
+        NodeUtil.getMoveSequence(m_node6, moves);
+        assertEquals("B C3 W F4 B G4", moves.toString());
+        NodeUtil.getMoveSequence(m_node10, moves);
+        assertEquals(1, moves.size());
+        assertSame(Move.get(WHITE, 0, 1), moves.getMove(0));
+        NodeUtil.getMoveSequence(m_node1, moves);
+        assertTrue(moves.isEmpty());
+    }
+
     public void testGetMovesLeft()
     {
         assertEquals(NodeUtil.getMovesLeft(m_node0), 3);
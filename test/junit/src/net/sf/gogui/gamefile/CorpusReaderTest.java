@@ -0,0 +1,98 @@
+// CorpusReaderTest.java
+
+package net.sf.gogui.gamefile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+public final class CorpusReaderTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(CorpusReaderTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        for (int i = 0; i < NUMBER_FILES; ++i)
+        {
+            File file = File.createTempFile("gogui", ".sgf");
+            if (i == MISSING_FILE)
+                file.delete();
+            else
+                write(file, "(;SZ[" + (i + 2) + "])");
+            m_files.add(file);
+        }
+    }
+
+    public void tearDown()
+    {
+        for (File file : m_files)
+            file.delete();
+    }
+
+    /** Test that results are returned in order and errors are collected.
+        Uses more threads than the maximum number of pending files and less
+        threads than files. */
+    public void testRead() throws Exception
+    {
+        checkRead(new CorpusReader(m_files, 3, 2));
+        checkRead(new CorpusReader(m_files, 1, 5));
+        checkRead(new CorpusReader(m_files));
+    }
+
+    public void testClose() throws Exception
+    {
+        CorpusReader reader = new CorpusReader(m_files, 2, 4);
+        assertTrue(reader.hasNext());
+        assertEquals(0, reader.next().getIndex());
+        reader.close();
+        assertFalse(reader.hasNext());
+    }
+
+    private static final int NUMBER_FILES = 20;
+
+    private static final int MISSING_FILE = 7;
+
+    private final ArrayList<File> m_files = new ArrayList<File>();
+
+    private void checkRead(CorpusReader reader) throws Exception
+    {
+        for (int i = 0; i < NUMBER_FILES; ++i)
+        {
+            assertTrue(reader.hasNext());
+            CorpusReader.Result result = reader.next();
+            assertEquals(i, result.getIndex());
+            assertEquals(m_files.get(i), result.getFile());
+            if (i == MISSING_FILE)
+            {
+                assertNotNull(result.getError());
+                assertNull(result.getTree());
+            }
+            else
+            {
+                assertNull(result.getError());
+                assertEquals(i + 2, result.getTree().getBoardSize());
+            }
+        }
+        assertFalse(reader.hasNext());
+        assertEquals(1, reader.getErrors().size());
+        assertEquals(MISSING_FILE, reader.getErrors().get(0).getIndex());
+        reader.close();
+    }
+
+    private static void write(File file, String text) throws Exception
+    {
+        OutputStream out = new FileOutputStream(file);
+        out.write(text.getBytes("ISO-8859-1"));
+        out.close();
+    }
+}
@@ -0,0 +1,151 @@
+// BoardSnapshotTest.java
+
+package net.sf.gogui.go;
+
+import java.util.ArrayList;
+import java.util.Random;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+public final class BoardSnapshotTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(BoardSnapshotTest.class);
+    }
+
+    public void testImmutable()
+    {
+        Board board = new Board(9);
+        board.play(BLACK, GoPoint.get(2, 2));
+        BoardSnapshot snapshot = board.getSnapshot();
+        board.play(WHITE, GoPoint.get(2, 3));
+        board.undo();
+        board.undo();
+        board.play(WHITE, GoPoint.get(4, 4));
+        BoardSnapshot snapshot2 = board.getSnapshot();
+        assertEquals(BLACK, snapshot.getColor(GoPoint.get(2, 2)));
+        assertEquals(EMPTY, snapshot.getColor(GoPoint.get(4, 4)));
+        assertEquals(1, snapshot.getNumberMoves());
+        assertEquals(Move.get(BLACK, 2, 2), snapshot.getLastMove());
+        assertEquals(EMPTY, snapshot2.getColor(GoPoint.get(2, 2)));
+        assertEquals(WHITE, snapshot2.getColor(GoPoint.get(4, 4)));
+        assertEquals(Move.get(WHITE, 4, 4), snapshot2.getMove(0));
+        board.init(13);
+        assertEquals(9, snapshot2.getSize());
+        assertEquals(13, board.getSnapshot().getSize());
+    }
+
+    /** Compare snapshots taken during random games with the board at the
+        time of the snapshot and check that they did not change later. */
+    public void testRandom()
+    {
+        Random random = new Random(1);
+        Board board = new Board(9);
+        ArrayList<BoardSnapshot> snapshots = new ArrayList<BoardSnapshot>();
+        ArrayList<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 2000; ++i)
+        {
+            int r = random.nextInt(20);
+            if (r == 0)
+            {
+                PointList black = new PointList();
+                black.add(GoPoint.get(random.nextInt(9), random.nextInt(9)));
+                board.setup(black, null, WHITE);
+            }
+            else if (r < 4 && board.getNumberMoves() > 0)
+                board.undo(random.nextInt(board.getNumberMoves()) + 1);
+            else
+            {
+                GoColor c = board.getToMove();
+                GoPoint p = GoPoint.get(random.nextInt(9),
+                                        random.nextInt(9));
+                if (random.nextInt(10) == 0)
+                    p = null;
+                if (p == null || (board.getColor(p) == EMPTY
+                                  && ! board.isKo(p)
+                                  && ! board.isSuicide(c, p)))
+                    board.play(c, p);
+            }
+            if (random.nextInt(3) == 0)
+            {
+                BoardSnapshot snapshot = board.getSnapshot();
+                assertSameState(board, snapshot);
+                snapshots.add(snapshot);
+                expected.add(getState(board));
+            }
+        }
+        for (int i = 0; i < snapshots.size(); ++i)
+            assertEquals(expected.get(i), getState(snapshots.get(i)));
+    }
+
+    private static void assertSameState(ConstBoard board,
+                                        ConstBoard snapshot)
+    {
+        assertEquals(getState(board), getState(snapshot));
+        assertEquals(board.bothPassed(), snapshot.bothPassed());
+        assertEquals(board.isModified(), snapshot.isModified());
+        if (board.getNumberMoves() > 0)
+        {
+            assertEquals(new PointList(board.getKilled()),
+                         new PointList(snapshot.getKilled()));
+            assertEquals(new PointList(board.getSuicide()),
+                         new PointList(snapshot.getSuicide()));
+        }
+        int[] liberties1 = new int[GoPoint.NUMBER_INDEXES];
+        int[] liberties2 = new int[GoPoint.NUMBER_INDEXES];
+        board.getLiberties(liberties1);
+        snapshot.getLiberties(liberties2);
+        boolean[] legal1 = new boolean[GoPoint.NUMBER_INDEXES];
+        boolean[] legal2 = new boolean[GoPoint.NUMBER_INDEXES];
+        PointSet atari1 = new PointSet();
+        PointSet atari2 = new PointSet();
+        board.getAtari(atari1);
+        snapshot.getAtari(atari2);
+        assertEquals(atari1, atari2);
+        for (GoColor c : GoColor.BLACK_WHITE)
+        {
+            board.getLegalMoves(c, legal1);
+            snapshot.getLegalMoves(c, legal2);
+            for (GoPoint p : board)
+            {
+                int index = p.getIndex();
+                assertEquals(legal1[index], legal2[index]);
+                assertEquals(liberties1[index], liberties2[index]);
+                assertEquals(board.isSuicide(c, p),
+                             snapshot.isSuicide(c, p));
+                assertEquals(board.isCaptureOrSuicide(c, p),
+                             snapshot.isCaptureOrSuicide(c, p));
+            }
+        }
+    }
+
+    private static String getState(ConstBoard board)
+    {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(BoardUtil.toString(board, false, false));
+        for (int i = 0; i < board.getNumberMoves(); ++i)
+        {
+            buffer.append(board.getMove(i));
+            buffer.append(' ');
+        }
+        for (GoPoint p : board)
+            if (board.isKo(p))
+                buffer.append(" ko " + p);
+        buffer.append(" setup " + board.getSetup(BLACK) + " "
+                      + board.getSetup(WHITE) + " " + board.getSetupPlayer()
+                      + " " + board.isSetupHandicap());
+        buffer.append(" captured " + board.getCaptured(BLACK) + " "
+                      + board.getCaptured(WHITE));
+        buffer.append(" hash " + board.getHash());
+        buffer.append(" toMove " + board.getToMove());
+        return buffer.toString();
+    }
+}
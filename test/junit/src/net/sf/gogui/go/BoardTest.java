@@ -2,6 +2,9 @@
 
 package net.sf.gogui.go;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
@@ -93,6 +96,118 @@ public final class BoardTest
         assertTrue(board.getKilled().isEmpty());
     }
 
+    /** Test Board.getStones() after merging blocks and undo. */
+    public void testGetAtari()
+    {
+        Board board = new Board(9);
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(WHITE, GoPoint.get(1, 0));
+        board.play(BLACK, GoPoint.get(4, 4));
+        board.play(WHITE, GoPoint.get(5, 5));
+        board.play(BLACK, GoPoint.get(4, 5));
+        PointSet atari = new PointSet();
+        board.getAtari(atari);
+        assertEquals(1, atari.size());
+        assertTrue(atari.contains(GoPoint.get(0, 0)));
+    }
+
+    public void testGetLegalMoves()
+    {
+        Board board = new Board(19);
+        // 2 @ O . .
+        // 1 . @ O .
+        //   A B C D
+        PointList black = new PointList();
+        PointList white = new PointList();
+        black.add(GoPoint.get(0, 1));
+        black.add(GoPoint.get(1, 0));
+        white.add(GoPoint.get(1, 1));
+        white.add(GoPoint.get(2, 0));
+        board.setup(black, white, BLACK);
+        boolean[] legal = new boolean[GoPoint.NUMBER_INDEXES];
+        board.getLegalMoves(WHITE, legal);
+        assertTrue(legal[GoPoint.get(0, 0).getIndex()]);
+        assertFalse(legal[GoPoint.get(1, 1).getIndex()]);
+        board.getLegalMoves(BLACK, legal);
+        assertTrue(legal[GoPoint.get(0, 0).getIndex()]);
+        assertFalse(legal[GoPoint.get(0, 1).getIndex()]);
+        board.play(WHITE, GoPoint.get(0, 0));
+        board.getLegalMoves(BLACK, legal);
+        assertFalse(legal[GoPoint.get(1, 0).getIndex()]);
+        board.getLegalMoves(WHITE, legal);
+        assertTrue(legal[GoPoint.get(1, 0).getIndex()]);
+    }
+
+    /** Compare bulk queries with point by point queries on random
+        positions. */
+    public void testGetLibertiesAndBlocks()
+    {
+        java.util.Random random = new java.util.Random(1);
+        Board board = new Board(9);
+        int[] liberties = new int[GoPoint.NUMBER_INDEXES];
+        int[] block = new int[GoPoint.NUMBER_INDEXES];
+        boolean[] legal = new boolean[GoPoint.NUMBER_INDEXES];
+        PointList stones = new PointList();
+        for (int i = 0; i < 200; ++i)
+        {
+            GoPoint p = GoPoint.get(random.nextInt(9), random.nextInt(9));
+            GoColor toMove = board.getToMove();
+            if (board.getColor(p) == EMPTY && ! board.isKo(p)
+                && ! board.isSuicide(toMove, p))
+                board.play(toMove, p);
+            board.getLiberties(liberties);
+            board.getBlocks(block);
+            GoColor c = board.getToMove();
+            board.getLegalMoves(c, legal);
+            for (GoPoint q : board)
+            {
+                int index = q.getIndex();
+                GoColor color = board.getColor(q);
+                if (color == EMPTY)
+                {
+                    assertEquals(0, liberties[index]);
+                    assertEquals(-1, block[index]);
+                    assertEquals(! board.isSuicide(c, q) && ! board.isKo(q),
+                                 legal[index]);
+                    continue;
+                }
+                assertFalse(legal[index]);
+                stones.clear();
+                board.getStones(q, color, stones);
+                PointList libs = new PointList();
+                for (GoPoint stone : stones)
+                {
+                    assertEquals(block[index], block[stone.getIndex()]);
+                    for (GoPoint adj : board.getAdjacent(stone))
+                        if (board.getColor(adj) == EMPTY
+                            && ! libs.contains(adj))
+                            libs.add(adj);
+                }
+                assertEquals(libs.size(), liberties[index]);
+            }
+        }
+    }
+
+    public void testGetStones()
+    {
+        Board board = new Board(19);
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(BLACK, GoPoint.get(2, 0));
+        board.play(BLACK, GoPoint.get(1, 0));
+        PointList stones = new PointList();
+        board.getStones(GoPoint.get(0, 0), BLACK, stones);
+        assertEquals(3, stones.size());
+        assertTrue(stones.contains(GoPoint.get(1, 0)));
+        assertTrue(stones.contains(GoPoint.get(2, 0)));
+        board.undo();
+        stones.clear();
+        board.getStones(GoPoint.get(0, 0), BLACK, stones);
+        assertEquals(1, stones.size());
+        stones.clear();
+        board.getStones(GoPoint.get(0, 0), WHITE, stones);
+        assertTrue(stones.isEmpty());
+    }
+
     /** Test Board.getSuicide(). */
     public void testGetSuicide()
     {
@@ -118,6 +233,65 @@ public final class BoardTest
         assertTrue(suicide.contains(GoPoint.get(1, 0)));
     }
 
+    /** Test that Board.getHash() is updated incrementally. */
+    public void testGetHash()
+    {
+        Board board = new Board(19);
+        long emptyHash = board.getHash();
+        assertEquals(Zobrist.compute(board), emptyHash);
+        board.play(BLACK, GoPoint.get(3, 3));
+        board.play(WHITE, GoPoint.get(15, 15));
+        board.play(BLACK, GoPoint.get(15, 3));
+        long hash = board.getHash();
+        assertEquals(Zobrist.compute(board), hash);
+        assertFalse(hash == emptyHash);
+        board.undo();
+        board.undo();
+        board.undo();
+        assertEquals(emptyHash, board.getHash());
+        board.play(BLACK, GoPoint.get(15, 3));
+        board.play(WHITE, GoPoint.get(15, 15));
+        board.play(BLACK, GoPoint.get(3, 3));
+        assertEquals(hash, board.getHash());
+        board.init(9);
+        assertEquals(Zobrist.compute(board), board.getHash());
+        assertFalse(board.getHash() == emptyHash);
+    }
+
+    /** Test that Board.getHash() includes the ko point and that the
+        canonical hash is invariant under rotation. */
+    public void testGetHashKoAndRotation()
+    {
+        Board board = new Board(19);
+        PointList black = new PointList();
+        PointList white = new PointList();
+        black.add(GoPoint.get(0, 1));
+        black.add(GoPoint.get(1, 0));
+        white.add(GoPoint.get(1, 1));
+        white.add(GoPoint.get(2, 0));
+        board.setup(black, white, WHITE);
+        board.play(WHITE, GoPoint.get(0, 0));
+        assertEquals(Zobrist.compute(board), board.getHash());
+        long canonical = Zobrist.computeCanonical(board);
+        Board rotated = new Board(19);
+        PointList rotatedBlack = new PointList();
+        PointList rotatedWhite = new PointList();
+        for (GoPoint p : black)
+            rotatedBlack.add(BoardUtil.rotate(6, p, 19));
+        for (GoPoint p : white)
+            rotatedWhite.add(BoardUtil.rotate(6, p, 19));
+        rotated.setup(rotatedBlack, rotatedWhite, WHITE);
+        rotated.play(WHITE, BoardUtil.rotate(6, GoPoint.get(0, 0), 19));
+        assertEquals(Zobrist.compute(board, 6), rotated.getHash());
+        assertEquals(canonical, Zobrist.computeCanonical(rotated));
+        long hashWithKo = board.getHash();
+        board.play(BLACK, GoPoint.get(10, 10));
+        board.play(WHITE, GoPoint.get(10, 11));
+        board.undo();
+        board.undo();
+        assertEquals(hashWithKo, board.getHash());
+    }
+
     /** Test Board.isKo(). */
     public void testIsKo()
     {
@@ -158,6 +332,31 @@ public final class BoardTest
         assertTrue(board.isSuicide(WHITE, GoPoint.get(1, 0)));
     }
 
+    /** Test that captures and undo keep the liberties of blocks exact. */
+    public void testIsCaptureOrSuicide()
+    {
+        Board board = new Board(19);
+        // 3 . . . .
+        // 2 O . . .
+        // 1 @ O . .
+        //   A B C D
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(WHITE, GoPoint.get(2, 0));
+        assertFalse(board.isCaptureOrSuicide(WHITE, GoPoint.get(1, 0)));
+        board.play(WHITE, GoPoint.get(0, 1));
+        assertTrue(board.isCaptureOrSuicide(WHITE, GoPoint.get(1, 0)));
+        assertFalse(board.isCaptureOrSuicide(BLACK, GoPoint.get(1, 0)));
+        board.play(WHITE, GoPoint.get(1, 0));
+        assertEquals(EMPTY, board.getColor(GoPoint.get(0, 0)));
+        assertTrue(board.isSuicide(BLACK, GoPoint.get(0, 0)));
+        assertTrue(board.isCaptureOrSuicide(BLACK, GoPoint.get(0, 0)));
+        board.undo();
+        assertEquals(BLACK, board.getColor(GoPoint.get(0, 0)));
+        assertTrue(board.isCaptureOrSuicide(WHITE, GoPoint.get(1, 0)));
+        board.undo();
+        assertFalse(board.isCaptureOrSuicide(WHITE, GoPoint.get(1, 0)));
+    }
+
     public void testGetLastMove()
     {
         Board board = new Board(19);
@@ -168,6 +367,32 @@ public final class BoardTest
         assertNull(board.getLastMove());
     }
 
+    /** Test that playing and undoing moves does not allocate memory once
+        the move stack has reached its size.
+        Uses the allocated bytes accounting of the thread management bean,
+        if the Java runtime supports it. */
+    public void testPlayUndoNoAllocation() throws Exception
+    {
+        Method getAllocatedBytes = getAllocatedBytesMethod();
+        if (getAllocatedBytes == null)
+            return;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Long threadId = Long.valueOf(Thread.currentThread().getId());
+        Board board = new Board(9);
+        // Warm up
+        playAndUndoCaptures(board, 1000);
+        int n = 10000;
+        long allocated =
+            ((Long)getAllocatedBytes.invoke(bean, threadId)).longValue();
+        int numberMoves = playAndUndoCaptures(board, n);
+        allocated =
+            ((Long)getAllocatedBytes.invoke(bean, threadId)).longValue()
+            - allocated;
+        // Allow for the allocations of the accounting function itself
+        assertTrue("allocated " + allocated + " bytes",
+                   allocated < numberMoves);
+    }
+
     /** Test that playing on a occupied field does not fail.
         Board.play spciefies that a play never fails.
         Also tests that the old stone is correctly restored. */
@@ -234,4 +459,54 @@ public final class BoardTest
         assertEquals(EMPTY, board.getColor(GoPoint.get(0, 0)));
         assertEquals(BLACK, board.getToMove());
     }
+
+    private static Method getAllocatedBytesMethod()
+    {
+        try
+        {
+            Class<?> beanClass =
+                Class.forName("com.sun.management.ThreadMXBean");
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (! beanClass.isInstance(bean))
+                return null;
+            Method method =
+                beanClass.getMethod("getThreadAllocatedBytes", long.class);
+            Method isSupported =
+                beanClass.getMethod("isThreadAllocatedMemorySupported");
+            if (! ((Boolean)isSupported.invoke(bean)).booleanValue())
+                return null;
+            return method;
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /** Repeatedly play and undo a sequence of moves with captures.
+        @return The total number of moves played. */
+    private static int playAndUndoCaptures(Board board, int n)
+    {
+        // 3 . O @ .
+        // 2 O @ . @
+        // 1 @ O @ .
+        //   A B C D
+        Move[] moves = {
+            Move.get(BLACK, 0, 0), Move.get(WHITE, 1, 0),
+            Move.get(BLACK, 1, 1), Move.get(WHITE, 0, 1),
+            Move.get(BLACK, 2, 0), Move.get(WHITE, 1, 2),
+            Move.get(BLACK, 2, 2), Move.get(WHITE, 0, 0),
+            Move.get(BLACK, 3, 1), Move.get(WHITE, 5, 5),
+            Move.get(BLACK, 1, 0), Move.getPass(WHITE)
+        };
+        int numberMoves = 0;
+        for (int i = 0; i < n; ++i)
+        {
+            for (int j = 0; j < moves.length; ++j)
+                board.play(moves[j]);
+            numberMoves += moves.length;
+            board.undo(moves.length);
+        }
+        return numberMoves;
+    }
 }
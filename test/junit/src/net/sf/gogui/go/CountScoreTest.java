@@ -0,0 +1,105 @@
+// CountScoreTest.java
+
+package net.sf.gogui.go;
+
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.Score.ScoringMethod.AREA;
+import static net.sf.gogui.go.Score.ScoringMethod.TERRITORY;
+
+public final class CountScoreTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(CountScoreTest.class);
+    }
+
+    public void testChangeStatus()
+    {
+        // 5 . . O . .
+        // 4 . . O . .
+        // 3 . @ O . .
+        // 2 @ @ O . .
+        // 1 . @ O . .
+        //   A B C D E
+        Board board = createBoard();
+        CountScore countScore = new CountScore();
+        countScore.begin(board, null);
+        PointList stones = countScore.changeStatus(GoPoint.get(1, 1));
+        assertEquals(4, stones.size());
+        countScore.compute();
+        assertTrue(countScore.isDead(GoPoint.get(0, 1)));
+        assertEquals(WHITE, countScore.getColor(GoPoint.get(0, 0)));
+        assertEquals(WHITE, countScore.getColor(GoPoint.get(1, 1)));
+        Score score = countScore.getScore(new Komi(0), AREA);
+        assertEquals(-25.0, score.m_result);
+        score = countScore.getScore(new Komi(0), TERRITORY);
+        assertEquals(4, score.m_capturedBlack);
+        assertEquals(-24.0, score.m_result);
+        countScore.changeStatus(GoPoint.get(1, 1));
+        countScore.compute();
+        assertEquals(BLACK, countScore.getColor(GoPoint.get(0, 0)));
+        assertEquals(BLACK, countScore.getColor(GoPoint.get(1, 1)));
+        assertEquals(WHITE, countScore.getColor(GoPoint.get(4, 4)));
+        assertEquals(-10.0, countScore.getScore(new Komi(0), AREA).m_result);
+    }
+
+    public void testEmptyBoard()
+    {
+        Board board = new Board(5);
+        CountScore countScore = new CountScore();
+        countScore.begin(board, null);
+        assertEquals(EMPTY, countScore.getColor(GoPoint.get(2, 2)));
+        assertEquals(-6.5, countScore.getScore(new Komi(6.5), AREA).m_result);
+    }
+
+    /** Test that the incremental update after changing the status of
+        stones gives the same result as computing the score from scratch. */
+    public void testIncrementalCompute()
+    {
+        Board board = createBoard();
+        board.play(BLACK, GoPoint.get(3, 1));
+        board.play(BLACK, GoPoint.get(4, 3));
+        CountScore countScore = new CountScore();
+        countScore.begin(board, null);
+        GoPoint[] toggle = {
+            GoPoint.get(3, 1), GoPoint.get(1, 1), GoPoint.get(2, 2),
+            GoPoint.get(4, 3), GoPoint.get(3, 1), GoPoint.get(2, 2)
+        };
+        for (GoPoint p : toggle)
+        {
+            countScore.changeStatus(p);
+            countScore.compute();
+            PointList dead = new PointList();
+            for (GoPoint q : board)
+                if (countScore.isDead(q))
+                    dead.add(q);
+            CountScore expected = new CountScore();
+            expected.begin(board, dead);
+            for (GoPoint q : board)
+                assertEquals(expected.getColor(q), countScore.getColor(q));
+        }
+    }
+
+    private static Board createBoard()
+    {
+        Board board = new Board(5);
+        PointList black = new PointList();
+        PointList white = new PointList();
+        black.add(GoPoint.get(1, 0));
+        black.add(GoPoint.get(0, 1));
+        black.add(GoPoint.get(1, 1));
+        black.add(GoPoint.get(1, 2));
+        for (int y = 0; y < 5; ++y)
+            white.add(GoPoint.get(2, y));
+        board.setup(black, white, BLACK);
+        return board;
+    }
+}
@@ -0,0 +1,56 @@
+// IntPointListTest.java
+
+package net.sf.gogui.go;
+
+public final class IntPointListTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(IntPointListTest.class);
+    }
+
+    public void testAddAndGet()
+    {
+        IntPointList list = new IntPointList(1);
+        GoPoint p1 = GoPoint.get(1, 1);
+        GoPoint p2 = GoPoint.get(2, 2);
+        GoPoint p3 = GoPoint.get(2, 3);
+        list.add(p1);
+        list.add(p2.getIndex());
+        list.add(p3);
+        assertEquals(3, list.size());
+        assertEquals(p1, list.get(0));
+        assertEquals(p2.getIndex(), list.getIndex(1));
+        assertTrue(list.contains(p3));
+        assertFalse(list.contains(GoPoint.get(0, 0)));
+        assertEquals(p3.getIndex(), list.pop());
+        assertEquals(2, list.size());
+        list.clear();
+        assertTrue(list.isEmpty());
+    }
+
+    public void testConstPointList()
+    {
+        PointList points = new PointList();
+        points.add(GoPoint.get(0, 0));
+        points.add(GoPoint.get(3, 4));
+        IntPointList list = new IntPointList(points);
+        assertEquals(list, new IntPointList(points));
+        assertFalse(list.equals(points));
+        assertFalse(points.equals(list));
+        assertEquals(points, list.toPointList());
+        assertEquals(points, new PointList(list));
+        assertEquals(points.hashCode(), list.hashCode());
+        assertEquals(points.toString(), list.toString());
+        int n = 0;
+        for (GoPoint p : list)
+            assertEquals(points.get(n++), p);
+        assertEquals(2, n);
+    }
+}
@@ -18,6 +18,35 @@ public final class MoveTest
         return new junit.framework.TestSuite(MoveTest.class);
     }
 
+    public void testCode()
+    {
+        for (int x = 0; x < GoPoint.MAX_SIZE; ++x)
+            for (int y = 0; y < GoPoint.MAX_SIZE; ++y)
+                for (GoColor c : GoColor.BLACK_WHITE)
+                {
+                    GoPoint p = GoPoint.get(x, y);
+                    Move move = Move.get(c, p);
+                    short code = move.getCode();
+                    assertTrue(code >= 0 && code < Move.NUMBER_CODES);
+                    assertEquals(code, Move.getCode(c, p));
+                    assertSame(move, Move.fromCode(code));
+                    assertSame(c, Move.getCodeColor(code));
+                    assertEquals(p.getIndex(), Move.getCodePointIndex(code));
+                    assertFalse(Move.isPassCode(code));
+                }
+        for (GoColor c : GoColor.BLACK_WHITE)
+        {
+            Move pass = Move.getPass(c);
+            short code = pass.getCode();
+            assertSame(pass, Move.fromCode(code));
+            assertSame(c, Move.getCodeColor(code));
+            assertEquals(-1, Move.getCodePointIndex(code));
+            assertTrue(Move.isPassCode(code));
+        }
+        assertTrue(Move.getPass(BLACK).getCode()
+                   != Move.getPass(WHITE).getCode());
+    }
+
     public void testPass()
     {
         Move blackPass = Move.getPass(BLACK);
@@ -0,0 +1,91 @@
+// PointSetTest.java
+
+package net.sf.gogui.go;
+
+import java.util.Iterator;
+
+public final class PointSetTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(PointSetTest.class);
+    }
+
+    public void testBasics()
+    {
+        PointSet set = new PointSet();
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.size());
+        GoPoint p1 = GoPoint.get(0, 0);
+        GoPoint p2 = GoPoint.get(24, 24);
+        set.add(p1);
+        set.add(p2);
+        set.add(p2);
+        assertFalse(set.isEmpty());
+        assertEquals(2, set.size());
+        assertTrue(set.contains(p1));
+        assertTrue(set.contains(p2));
+        assertFalse(set.contains(GoPoint.get(1, 0)));
+        set.remove(p1);
+        assertFalse(set.contains(p1));
+        assertEquals(1, set.size());
+        set.clear();
+        assertTrue(set.isEmpty());
+    }
+
+    public void testIterate()
+    {
+        PointSet set = new PointSet();
+        GoPoint p1 = GoPoint.get(2, 0);
+        GoPoint p2 = GoPoint.get(13, 2);
+        GoPoint p3 = GoPoint.get(1, 20);
+        set.add(p3);
+        set.add(p1);
+        set.add(p2);
+        Iterator<GoPoint> it = set.iterator();
+        assertTrue(it.hasNext());
+        assertEquals(p1, it.next());
+        assertTrue(it.hasNext());
+        assertEquals(p2, it.next());
+        assertTrue(it.hasNext());
+        assertEquals(p3, it.next());
+        assertFalse(it.hasNext());
+        assertEquals(p2.getIndex(), set.nextIndex(p1.getIndex() + 1));
+        assertEquals(-1, set.nextIndex(p3.getIndex() + 1));
+        assertEquals("C1 O3 B21", set.toString());
+    }
+
+    public void testSetOperations()
+    {
+        GoPoint p1 = GoPoint.get(0, 0);
+        GoPoint p2 = GoPoint.get(5, 5);
+        GoPoint p3 = GoPoint.get(18, 18);
+        PointSet set1 = new PointSet();
+        set1.add(p1);
+        set1.add(p2);
+        PointSet set2 = new PointSet();
+        set2.add(p2);
+        set2.add(p3);
+        assertTrue(set1.intersects(set2));
+        PointSet union = new PointSet(set1);
+        union.addAll(set2);
+        assertEquals(3, union.size());
+        PointSet intersection = new PointSet(set1);
+        intersection.retainAll(set2);
+        assertEquals(1, intersection.size());
+        assertTrue(intersection.contains(p2));
+        PointSet difference = new PointSet(set1);
+        difference.removeAll(set2);
+        assertEquals(1, difference.size());
+        assertTrue(difference.contains(p1));
+        assertFalse(difference.intersects(set2));
+        assertEquals(set1, new PointSet(set1.toPointList()));
+        assertFalse(set1.equals(set2));
+    }
+}
@@ -0,0 +1,233 @@
+// GtpClientTest.java
+
+package net.sf.gogui.gtp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Future;
+import net.sf.gogui.go.Board;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
+public final class GtpClientTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GtpClientTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_expect = new GtpExpectEngine(null);
+        m_gtp = new GtpEngineConnection(m_expect).getGtpClient();
+        assertTrue(m_gtp instanceof GtpClient);
+    }
+
+    public void tearDown()
+    {
+        m_gtp.close();
+    }
+
+    /** Test reading the streams of multiple programs with a multiplexer.
+        Runs GoGui's dummy engine in a new Java VM. */
+    public void testMultiplexer() throws Exception
+    {
+        String java = System.getProperty("java.home") + File.separator
+            + "bin" + File.separator + "java";
+        String program = "\"" + java + "\" -cp \""
+            + System.getProperty("java.class.path")
+            + "\" net.sf.gogui.tools.dummy.Main";
+        GtpInputMultiplexer multiplexer = new GtpInputMultiplexer();
+        GtpClient[] gtp = new GtpClient[2];
+        final StringBuffer[] stdErr = new StringBuffer[2];
+        for (int i = 0; i < gtp.length; ++i)
+        {
+            final StringBuffer buffer = new StringBuffer();
+            stdErr[i] = buffer;
+            GtpClient.IOCallback callback = new GtpClient.IOCallback() {
+                    public void receivedInvalidResponse(String s) { }
+
+                    public void receivedResponse(boolean error, String s) { }
+
+                    public void receivedStdErr(String s)
+                    {
+                        buffer.append(s);
+                    }
+
+                    public void sentCommand(String s) { }
+                };
+            gtp[i] = new GtpClient(program, null, false, callback,
+                                   multiplexer);
+        }
+        for (int i = 0; i < gtp.length; ++i)
+        {
+            assertEquals("foo " + i, gtp[i].send("echo foo " + i));
+            gtp[i].send("echo_err bar " + i);
+            try
+            {
+                gtp[i].send("unknown_command");
+                fail();
+            }
+            catch (GtpError e)
+            {
+            }
+            String response = gtp[i].send("gogui-dummy-long_response 2000");
+            assertEquals(2000, response.split("\n").length);
+        }
+        for (int i = 0; i < gtp.length; ++i)
+        {
+            gtp[i].send("quit");
+            gtp[i].close();
+            gtp[i].waitForExit();
+            assertEquals("bar " + i + "\n", stdErr[i].toString());
+            try
+            {
+                gtp[i].send("name");
+                fail();
+            }
+            catch (GtpError e)
+            {
+                assertTrue(gtp[i].isProgramDead());
+            }
+        }
+    }
+
+    /** Test splitting the output of the program into lines.
+        Line ends can be LF, CR or CR LF, lines outside responses are
+        reported as invalid responses. */
+    public void testLineEnds() throws Exception
+    {
+        String output = "garbage\r\n= a\r\nb\r\n\r\n=\r\r"
+            + "  \n? err\n\n= c";
+        final StringBuffer invalid = new StringBuffer();
+        GtpClient.IOCallback callback = new GtpClient.IOCallback() {
+                public void receivedInvalidResponse(String s)
+                {
+                    invalid.append(s);
+                }
+
+                public void receivedResponse(boolean error, String s) { }
+
+                public void receivedStdErr(String s) { }
+
+                public void sentCommand(String s) { }
+            };
+        GtpClient gtp =
+            new GtpClient(new ByteArrayInputStream(output.getBytes("UTF-8")),
+                          new ByteArrayOutputStream(), false, callback);
+        assertEquals("a\nb", gtp.send("foo"));
+        assertEquals("", gtp.send("bar"));
+        try
+        {
+            gtp.send("baz");
+            fail();
+        }
+        catch (GtpError e)
+        {
+            assertEquals("err", e.getMessage());
+        }
+        // Unterminated response at the end of the stream
+        try
+        {
+            gtp.send("qux");
+            fail();
+        }
+        catch (GtpError e)
+        {
+        }
+        assertEquals("garbage", invalid.toString());
+    }
+
+    /** Test that failing commands don't affect the following commands. */
+    public void testSendPipelined() throws Exception
+    {
+        m_expect.expect("foo", "1");
+        m_expect.expect("bar", "2");
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("foo");
+        commands.add("baz");
+        commands.add("bar");
+        ArrayList<Future<String>> responses = m_gtp.sendPipelined(commands);
+        assertTrue(m_expect.isExpectQueueEmpty());
+        assertEquals(3, responses.size());
+        assertEquals("1", GtpClientUtil.getResponse(responses.get(0)));
+        try
+        {
+            GtpClientUtil.getResponse(responses.get(1));
+            fail();
+        }
+        catch (GtpError e)
+        {
+            assertTrue(e.getCommand().endsWith("baz"));
+        }
+        assertEquals("2", GtpClientUtil.getResponse(responses.get(2)));
+        m_expect.expect("name", "Expect");
+        assertEquals("Expect", m_gtp.send("name"));
+    }
+
+    /** Test sending more commands than the maximum number of commands
+        sent ahead of the responses. */
+    public void testSendPipelinedMany() throws Exception
+    {
+        ArrayList<String> commands = new ArrayList<String>();
+        for (int i = 0; i < 1000; ++i)
+        {
+            String command = "command" + i;
+            m_expect.expect(command, Integer.toString(i));
+            commands.add(command);
+        }
+        ArrayList<Future<String>> responses = m_gtp.sendPipelined(commands);
+        assertTrue(m_expect.isExpectQueueEmpty());
+        for (int i = 0; i < 1000; ++i)
+            assertEquals(Integer.toString(i),
+                         GtpClientUtil.getResponse(responses.get(i)));
+    }
+
+    /** Test that GtpSynchronizer reinitializes the engine after a failed
+        pipelined play command. */
+    public void testSynchronizePipelined() throws Exception
+    {
+        GtpSynchronizer synchronizer = new GtpSynchronizer(m_gtp);
+        Board board = new Board(9);
+        board.play(Move.get(BLACK, GoPoint.get(0, 0)));
+        board.play(Move.get(WHITE, GoPoint.get(1, 0)));
+        board.play(Move.get(BLACK, GoPoint.get(2, 0)));
+        m_expect.expect("boardsize 9");
+        m_expect.expect("clear_board");
+        m_expect.expect("play B A1");
+        // play W B1 fails
+        m_expect.expect("play B C1");
+        try
+        {
+            synchronizer.synchronize(board, null, null);
+            fail();
+        }
+        catch (GtpError e)
+        {
+        }
+        assertTrue(m_expect.isExpectQueueEmpty());
+        assertTrue(synchronizer.isOutOfSync());
+        m_expect.expect("boardsize 9");
+        m_expect.expect("clear_board");
+        m_expect.expect("play B A1");
+        m_expect.expect("play W B1");
+        m_expect.expect("play B C1");
+        synchronizer.synchronize(board, null, null);
+        assertTrue(m_expect.isExpectQueueEmpty());
+        assertFalse(synchronizer.isOutOfSync());
+    }
+
+    private GtpExpectEngine m_expect;
+
+    private GtpClientBase m_gtp;
+}
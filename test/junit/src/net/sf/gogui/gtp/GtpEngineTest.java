@@ -2,6 +2,12 @@
 
 package net.sf.gogui.gtp;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public final class GtpEngineTest
     extends junit.framework.TestCase
 {
@@ -22,4 +28,98 @@ public final class GtpEngineTest
         assertEquals("true", gtp.send("known_command name"));
         assertEquals("false", gtp.send("known_command foobar"));
     }
+
+    /** Test that only interrupts after the start of a command are
+        reported by GtpEngine.isInterrupted(). */
+    public void testIsInterrupted() throws GtpError
+    {
+        final GtpEngine engine = new GtpEngine(null);
+        final boolean[] interrupted = new boolean[2];
+        engine.register("check", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    interrupted[0] = engine.isInterrupted();
+                    engine.interruptCommand();
+                    interrupted[1] = engine.isInterrupted();
+                } });
+        engine.interruptCommand();
+        engine.handleCommand(new GtpCommand("check"));
+        assertFalse(interrupted[0]);
+        assertTrue(interrupted[1]);
+    }
+
+    /** Test GtpEngine.isInterrupted() in a thread that does not handle
+        commands (e.g. a search thread started by a command). */
+    public void testIsInterruptedOtherThread() throws Exception
+    {
+        final GtpEngine engine = new GtpEngine(null);
+        engine.register("check", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError { } });
+        final boolean[] interrupted = new boolean[2];
+        Thread thread = new Thread() {
+                public void run()
+                {
+                    interrupted[0] = engine.isInterrupted();
+                    engine.interruptCommand();
+                    interrupted[1] = engine.isInterrupted();
+                }
+            };
+        engine.handleCommand(new GtpCommand("check"));
+        thread.start();
+        thread.join();
+        assertFalse(interrupted[0]);
+        assertTrue(interrupted[1]);
+        engine.handleCommand(new GtpCommand("check"));
+        thread = new Thread() {
+                public void run()
+                {
+                    interrupted[0] = engine.isInterrupted();
+                }
+            };
+        thread.start();
+        thread.join();
+        assertFalse(interrupted[0]);
+    }
+
+    /** Test that concurrent commands run at the same time and that the
+        responses are written in the order of the commands.
+        Also checks that concurrent commands are run through
+        handleCommand() and that no command is run after quit. */
+    public void testConcurrentCommands() throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger numberHandled = new AtomicInteger();
+        GtpEngine engine = new GtpEngine(null) {
+                public void handleCommand(GtpCommand cmd) throws GtpError
+                {
+                    numberHandled.incrementAndGet();
+                    super.handleCommand(cmd);
+                }
+            };
+        engine.registerConcurrent("wait", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    try
+                    {
+                        if (! latch.await(10, TimeUnit.SECONDS))
+                            throw new GtpError("timeout");
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new GtpError("interrupted");
+                    }
+                    cmd.setResponse("done");
+                } });
+        engine.registerConcurrent("signal", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    latch.countDown(); } });
+        engine.setConcurrentThreads(2);
+        String input =
+            "1 wait\n2 signal\n3 name\n4 foobar\n5 quit\n6 name\n"
+            + "7 wait\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.mainLoop(new ByteArrayInputStream(input.getBytes()), out);
+        assertEquals("=1 done\n\n=2 \n\n=3 Unknown\n\n"
+                     + "?4 unknown command: foobar\n\n=5 \n\n",
+                     out.toString());
+        assertEquals(5, numberHandled.get());
+    }
 }
@@ -0,0 +1,154 @@
+// GtpResponseScannerTest.java
+
+package net.sf.gogui.gtp;
+
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.PointList;
+
+public final class GtpResponseScannerTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GtpResponseScannerTest.class);
+    }
+
+    public void testLines() throws GtpResponseFormatError
+    {
+        GtpResponseScanner scanner = new GtpResponseScanner("1 2\n\n 3\n");
+        assertTrue(scanner.hasNextOnLine());
+        assertEquals(1, scanner.nextInt());
+        assertTrue(scanner.hasNextOnLine());
+        assertEquals(2, scanner.nextInt());
+        assertFalse(scanner.hasNextOnLine());
+        assertTrue(scanner.nextLine());
+        assertFalse(scanner.hasNextOnLine());
+        assertTrue(scanner.nextLine());
+        assertTrue(scanner.hasNextOnLine());
+        assertEquals("3", scanner.next());
+        assertTrue(scanner.nextLine());
+        assertFalse(scanner.hasNext());
+        assertFalse(scanner.nextLine());
+    }
+
+    public void testNextDouble() throws GtpResponseFormatError
+    {
+        String text = "0.1 -2.5 +3 .5 7. 1e3 -0 123456789.0123456789";
+        GtpResponseScanner scanner = new GtpResponseScanner(text);
+        assertEquals(0.1, scanner.nextDouble(), 0);
+        assertEquals(-2.5, scanner.nextDouble(), 0);
+        assertEquals(3.0, scanner.nextDouble(), 0);
+        assertEquals(0.5, scanner.nextDouble(), 0);
+        assertEquals(7.0, scanner.nextDouble(), 0);
+        assertEquals(1000.0, scanner.nextDouble(), 0);
+        assertEquals(Double.valueOf(-0.0),
+                     Double.valueOf(scanner.nextDouble()));
+        assertEquals(123456789.0123456789, scanner.nextDouble(), 0);
+        checkInvalidDouble("abc");
+        checkInvalidDouble("-");
+        checkInvalidDouble("1.2.3");
+        checkInvalidDouble("");
+    }
+
+    public void testNextInt() throws GtpResponseFormatError
+    {
+        String text = "0 -17 +3 2147483647 -2147483648";
+        GtpResponseScanner scanner = new GtpResponseScanner(text);
+        assertEquals(0, scanner.nextInt());
+        assertEquals(-17, scanner.nextInt());
+        assertEquals(3, scanner.nextInt());
+        assertEquals(Integer.MAX_VALUE, scanner.nextInt());
+        assertEquals(Integer.MIN_VALUE, scanner.nextInt());
+        checkInvalidInt("2147483648");
+        checkInvalidInt("1.5");
+        checkInvalidInt("-");
+        checkInvalidInt("");
+    }
+
+    public void testNextPointList() throws GtpResponseFormatError
+    {
+        StringBuilder buffer = new StringBuilder("A1 pass\n\tT19  j10 ");
+        GtpResponseScanner scanner = new GtpResponseScanner(buffer);
+        PointList list = new PointList();
+        scanner.nextPointList(19, list);
+        assertEquals(4, list.size());
+        assertSame(GoPoint.get(0, 0), list.get(0));
+        assertNull(list.get(1));
+        assertSame(GoPoint.get(18, 18), list.get(2));
+        assertSame(GoPoint.get(8, 9), list.get(3));
+        // Reuse scanner and buffer
+        buffer.setLength(0);
+        buffer.append("= C3\n\n");
+        scanner.reset(buffer, 1, buffer.length());
+        list.clear();
+        scanner.nextPointList(9, list);
+        assertEquals(1, list.size());
+        assertSame(GoPoint.get(2, 2), list.get(0));
+        checkInvalidPoint("A0", 19);
+        checkInvalidPoint("A20", 19);
+        checkInvalidPoint("K1", 9);
+        checkInvalidPoint("A", 19);
+        checkInvalidPoint("1A", 19);
+        checkInvalidPoint("A1000000000000", 19);
+    }
+
+    public void testSkipWord() throws GtpResponseFormatError
+    {
+        String text = "xx VAR b A1 black B2 w";
+        GtpResponseScanner scanner = new GtpResponseScanner();
+        scanner.reset(text, 3, text.length());
+        assertFalse(scanner.skipWord("va"));
+        assertFalse(scanner.skipWord("VARS"));
+        assertTrue(scanner.skipWord("var"));
+        assertTrue(scanner.skipWord("B"));
+        assertEquals(GoPoint.get(0, 0), scanner.nextPoint(19));
+        assertFalse(scanner.skipWord("b"));
+        assertEquals("black", scanner.next());
+        assertFalse(scanner.skipWord("w"));
+        assertEquals(GoPoint.get(1, 1), scanner.nextPoint(19));
+        assertTrue(scanner.skipWord("w"));
+        assertFalse(scanner.skipWord("w"));
+        assertFalse(scanner.hasNext());
+    }
+
+    private static void checkInvalidDouble(String text)
+    {
+        try
+        {
+            new GtpResponseScanner(text).nextDouble();
+            fail();
+        }
+        catch (GtpResponseFormatError e)
+        {
+        }
+    }
+
+    private static void checkInvalidInt(String text)
+    {
+        try
+        {
+            new GtpResponseScanner(text).nextInt();
+            fail();
+        }
+        catch (GtpResponseFormatError e)
+        {
+        }
+    }
+
+    private static void checkInvalidPoint(String text, int boardSize)
+    {
+        try
+        {
+            new GtpResponseScanner(text).nextPoint(boardSize);
+            fail();
+        }
+        catch (GtpResponseFormatError e)
+        {
+        }
+    }
+}
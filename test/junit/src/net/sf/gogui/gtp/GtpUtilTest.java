@@ -31,6 +31,41 @@ public final class GtpUtilTest
         assertTrue(GtpUtil.isCommand("  command arg # comment"));
     }
 
+    public void testParseDoubleBoard() throws GtpResponseFormatError
+    {
+        String s = "\n0.5 1 extra\n\n-2 3e1\n";
+        double[][] board = GtpUtil.parseDoubleBoard(s, 2);
+        assertEquals(0.5, board[0][1], 0);
+        assertEquals(1.0, board[1][1], 0);
+        assertEquals(-2.0, board[0][0], 0);
+        assertEquals(30.0, board[1][0], 0);
+        try
+        {
+            GtpUtil.parseDoubleBoard("1 2\n3\n", 2);
+            fail();
+        }
+        catch (GtpResponseFormatError e)
+        {
+        }
+    }
+
+    public void testParsePointList() throws GtpResponseFormatError
+    {
+        PointList points = GtpUtil.parsePointList(" a1\nB2  pass ", 9);
+        assertEquals(3, points.size());
+        assertSame(GoPoint.get(0, 0), points.get(0));
+        assertSame(GoPoint.get(1, 1), points.get(1));
+        assertNull(points.get(2));
+        try
+        {
+            GtpUtil.parsePointList("A1 K10", 9);
+            fail();
+        }
+        catch (GtpResponseFormatError e)
+        {
+        }
+    }
+
     public void testParsePointString() throws GtpError
     {
         String s = " A1 b2\n textC3 C3 PASS text\tpass";
@@ -41,6 +76,10 @@ public final class GtpUtilTest
         assertSame(GoPoint.get(2, 2), points.get(2));
         assertSame(null, points.get(3));
         assertSame(null, points.get(4));
+        points = GtpUtil.parsePointString("A1, (T19) A20 J5 A10b", 9);
+        assertEquals(2, points.size());
+        assertSame(GoPoint.get(0, 0), points.get(0));
+        assertSame(GoPoint.get(8, 4), points.get(1));
     }
 
     public void getTimeSettingsCommand()
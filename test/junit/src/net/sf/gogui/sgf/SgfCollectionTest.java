@@ -0,0 +1,133 @@
+// SgfCollectionTest.java
+
+package net.sf.gogui.sgf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.GameTree;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.Move;
+
+public final class SgfCollectionTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfCollectionTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_file = File.createTempFile("gogui", ".sgf");
+        m_indexFile = File.createTempFile("gogui", ".idx");
+        m_indexFile.delete();
+    }
+
+    public void tearDown()
+    {
+        m_file.delete();
+        m_indexFile.delete();
+    }
+
+    public void testCollection() throws Exception
+    {
+        write("Header text\n"
+              + "(;GM[1]SZ[9]PB[Black 1]PW[White 1]RE[B+R]DT[2001-01-01]"
+              + ";B[ee](;W[cc])(;W[gg]C[text with \\] and (]))\n"
+              + "(;CA[UTF-8]PB[\u00e4]PLAYERWHITE[White 2];B[aa];W[bb])\n"
+              + "(;SZ[x];B[dd]", "UTF-8");
+        SgfCollection collection = new SgfCollection(m_file);
+        checkCollection(collection);
+    }
+
+    public void testIndexFile() throws Exception
+    {
+        write("(;PB[a];B[aa])(;PB[b];B[bb])", "ISO-8859-1");
+        SgfCollection collection = new SgfCollection(m_file, m_indexFile);
+        assertTrue(m_indexFile.exists());
+        assertEquals(2, collection.getNumberGames());
+        long lastModified = m_indexFile.lastModified();
+        collection = new SgfCollection(m_file, m_indexFile);
+        assertEquals(lastModified, m_indexFile.lastModified());
+        assertEquals("b", collection.getPlayer(1, BLACK));
+        assertEquals(Move.get(BLACK, 1, 17),
+                     collection.read(1).getTree().getRoot().getChildConst()
+                     .getMove());
+        // Index must be rebuilt after the file changed
+        write("(;PB[c];B[cc])", "ISO-8859-1");
+        collection = new SgfCollection(m_file, m_indexFile);
+        assertEquals(1, collection.getNumberGames());
+        assertEquals("c", collection.getPlayer(0, BLACK));
+    }
+
+    /** Test a charset, in which the second byte of a character can be the
+        byte of '\\' or ']'.
+        The charset must be used for scanning the values after the CA
+        property, but not for the next game. */
+    public void testShiftJis() throws Exception
+    {
+        String text = "\u8868\u30bd\u30be";
+        write("(;CA[Shift_JIS]PB[" + text + "];B[aa]C[" + text + ")])"
+              + "(;PB[\uff71])", "Shift_JIS");
+        SgfCollection collection = new SgfCollection(m_file);
+        assertEquals(2, collection.getNumberGames());
+        assertEquals(text, collection.getPlayer(0, BLACK));
+        assertEquals("\u00b1", collection.getPlayer(1, BLACK));
+        ConstNode node = collection.read(0).getTree().getRoot()
+            .getChildConst();
+        assertEquals(text + ")", node.getComment());
+    }
+
+    private File m_file;
+
+    private File m_indexFile;
+
+    private void checkCollection(SgfCollection collection) throws Exception
+    {
+        assertEquals(3, collection.getNumberGames());
+        assertEquals("Black 1", collection.getPlayer(0, BLACK));
+        assertEquals("White 1", collection.getPlayer(0, WHITE));
+        assertEquals("B+R", collection.getResult(0));
+        assertEquals("2001-01-01", collection.getDate(0));
+        assertEquals(9, collection.getBoardSize(0));
+        assertEquals("\u00e4", collection.getPlayer(1, BLACK));
+        assertEquals("White 2", collection.getPlayer(1, WHITE));
+        assertNull(collection.getResult(1));
+        assertEquals(19, collection.getBoardSize(1));
+        assertEquals(-1, collection.getBoardSize(2));
+        SgfReader reader = collection.read(0);
+        assertNull(reader.getWarnings());
+        GameTree tree = reader.getTree();
+        assertEquals(9, tree.getBoardSize());
+        ConstNode node = tree.getRoot().getChildConst();
+        assertEquals(2, node.getNumberChildren());
+        assertEquals("text with ] and (",
+                     node.getChildConst(1).getComment());
+        tree = collection.read(1).getTree();
+        assertEquals("\u00e4", tree.getGameInfo(tree.getRoot())
+                     .get(net.sf.gogui.game.StringInfoColor.NAME, BLACK));
+        try
+        {
+            collection.read(2);
+            fail();
+        }
+        catch (SgfError e)
+        {
+        }
+    }
+
+    private void write(String text, String charset) throws Exception
+    {
+        OutputStream out = new FileOutputStream(m_file);
+        out.write(text.getBytes(charset));
+        out.close();
+    }
+}
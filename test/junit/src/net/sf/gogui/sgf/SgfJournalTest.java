@@ -0,0 +1,181 @@
+// SgfJournalTest.java
+
+package net.sf.gogui.sgf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.Node;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
+public final class SgfJournalTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfJournalTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_file = File.createTempFile("gogui", ".sgf");
+        m_tree = new GameTree();
+        // The journal is compacted if it gets larger than the file
+        StringBuilder comment = new StringBuilder();
+        for (int i = 0; i < 100; ++i)
+            comment.append("first ");
+        m_tree.getRoot().append(createNode(BLACK, 3, 3,
+                                           comment.toString()));
+    }
+
+    public void tearDown()
+    {
+        m_file.delete();
+        SgfJournal.getJournalFile(m_file).delete();
+    }
+
+    public void testCompact() throws Exception
+    {
+        SgfJournal journal = new SgfJournal(m_file, m_tree, null, null);
+        long length = m_file.length();
+        Node node = m_tree.getRoot().getChild();
+        // Enough nodes to make the journal larger than the file
+        for (int i = 0; i < 40; ++i)
+        {
+            Node child = createNode(i % 2 == 0 ? WHITE : BLACK, i % 19,
+                                    i / 19, "comment " + i);
+            node.append(child);
+            journal.nodeAdded(child);
+            node = child;
+        }
+        journal.close();
+        assertTrue(m_file.length() > length);
+        assertTrue(SgfJournal.getJournalFile(m_file).length()
+                   < m_file.length());
+        checkReplay();
+    }
+
+    /** Test that a journal is ignored, if the SGF file was changed. */
+    public void testModifiedFile() throws Exception
+    {
+        SgfJournal journal = new SgfJournal(m_file, m_tree, null, null);
+        Node child = createNode(WHITE, 4, 4, null);
+        m_tree.getRoot().getChild().append(child);
+        journal.nodeAdded(child);
+        journal.close();
+        RandomAccessFile file = new RandomAccessFile(m_file, "rw");
+        file.seek(file.length());
+        file.write('\n');
+        file.close();
+        GameTree tree = SgfJournal.replay(m_file);
+        assertEquals(0, tree.getRoot().getChild().getNumberChildren());
+    }
+
+    public void testReplay() throws Exception
+    {
+        SgfJournal journal = new SgfJournal(m_file, m_tree, "GoGui", "1");
+        Node first = m_tree.getRoot().getChild();
+        Node child1 = createNode(WHITE, 4, 4, "child1");
+        Node child2 = createNode(WHITE, 5, 5, "child2");
+        child2.append(createNode(BLACK, 6, 6, null));
+        first.append(child1);
+        journal.nodeAdded(child1);
+        first.append(child2);
+        journal.nodeAdded(child2);
+        child1.append(createNode(BLACK, 7, 7, "under child1"));
+        journal.nodeAdded(child1.getChild());
+        first.makeFirstChild(child2);
+        journal.nodeMadeFirstChild(child2);
+        first.setComment("changed [comment]");
+        first.addStone(BLACK, GoPoint.get(0, 0));
+        journal.nodeChanged(first);
+        child2.getChild().setComment("changed after new node");
+        journal.nodeChanged(child2.getChild());
+        Node removed = createNode(BLACK, 8, 8, null);
+        child1.append(removed);
+        journal.nodeAdded(removed);
+        child1.removeChild(removed);
+        journal.nodeRemoved(removed);
+        journal.close();
+        checkReplay();
+    }
+
+    /** Test that the nodes of a removed subtree are unknown to the
+        journal. */
+    public void testRemovedSubtree() throws Exception
+    {
+        SgfJournal journal = new SgfJournal(m_file, m_tree, null, null);
+        Node child = createNode(WHITE, 4, 4, null);
+        Node grandChild = createNode(BLACK, 5, 5, null);
+        child.append(grandChild);
+        m_tree.getRoot().getChild().append(child);
+        journal.nodeAdded(child);
+        child.getFather().removeChild(child);
+        journal.nodeRemoved(child);
+        try
+        {
+            journal.nodeChanged(grandChild);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        journal.close();
+        checkReplay();
+    }
+
+    /** Test that an incomplete last record is ignored. */
+    public void testTruncatedJournal() throws Exception
+    {
+        SgfJournal journal = new SgfJournal(m_file, m_tree, null, null);
+        Node node = m_tree.getRoot().getChild();
+        Node child = createNode(WHITE, 4, 4, null);
+        node.append(child);
+        journal.nodeAdded(child);
+        String expected = writeToString(m_tree);
+        child.setComment("lost");
+        journal.nodeChanged(child);
+        journal.close();
+        File journalFile = SgfJournal.getJournalFile(m_file);
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        file.setLength(file.length() - 2);
+        file.close();
+        assertEquals(expected, writeToString(SgfJournal.replay(m_file)));
+    }
+
+    private File m_file;
+
+    private GameTree m_tree;
+
+    private void checkReplay() throws Exception
+    {
+        assertEquals(writeToString(m_tree),
+                     writeToString(SgfJournal.replay(m_file)));
+    }
+
+    private static Node createNode(GoColor c, int x, int y, String comment)
+    {
+        Node node = new Node(Move.get(c, GoPoint.get(x, y)));
+        node.setComment(comment);
+        return node;
+    }
+
+    private static String writeToString(ConstGameTree tree)
+        throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SgfWriter(out, tree, null, null);
+        return out.toString(SgfWriter.ENCODING);
+    }
+}
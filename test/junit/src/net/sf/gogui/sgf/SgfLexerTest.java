@@ -0,0 +1,102 @@
+// SgfLexerTest.java
+
+package net.sf.gogui.sgf;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+public final class SgfLexerTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfLexerTest.class);
+    }
+
+    public void testDecodeValue() throws Exception
+    {
+        SgfLexer lexer = createLexer("[a\\]b\\\\c\\\nd\r\ne\n\rf\n\ng]",
+                                     "UTF-8");
+        assertEquals('[', lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals("a]b\\cd\ne\nf\n\ng", lexer.decodeValue());
+        lexer = createLexer("[\u00e4\u00f6]", "UTF-8");
+        assertEquals('[', lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals("\u00e4\u00f6", lexer.decodeValue());
+    }
+
+    public void testNext() throws Exception
+    {
+        SgfLexer lexer = createLexer(" (;b[aa] \n Comment[x\\]] c[])",
+                                     "ISO-8859-1");
+        assertEquals('(', lexer.next());
+        assertEquals(';', lexer.next());
+        assertEquals(SgfLexer.TT_PROPERTY, lexer.next());
+        assertSame("B", lexer.getProperty());
+        assertEquals('[', lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals(2, lexer.getValueEnd() - lexer.getValueStart());
+        assertEquals('a', lexer.getByte(lexer.getValueStart()));
+        assertEquals(SgfLexer.TT_PROPERTY, lexer.next());
+        assertSame("COMMENT", lexer.getProperty());
+        assertEquals('[', lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals("x]", lexer.decodeValue());
+        int position = lexer.getPosition();
+        assertEquals(SgfLexer.TT_PROPERTY, lexer.next());
+        lexer.pushBack(position);
+        assertEquals(SgfLexer.TT_PROPERTY, lexer.next());
+        assertSame("C", lexer.getProperty());
+        assertEquals('[', lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals("", lexer.decodeValue());
+        assertEquals(')', lexer.next());
+        assertEquals(SgfLexer.TT_EOF, lexer.next());
+    }
+
+    /** Test values in a charset that is not ASCII compatible.
+        In Shift_JIS, the second byte of the characters in the value can be
+        the byte of '\\' or ']'. */
+    public void testShiftJis() throws Exception
+    {
+        String text = "\u8868\u793a\u30bd\u80fd\u30be";
+        byte[] bytes = text.getBytes("Shift_JIS");
+        assertEquals(0x5c, bytes[1]);
+        assertEquals(0x5d, bytes[9]);
+        SgfLexer lexer = createLexer("C[" + text + "\\]\\\\]B[aa]",
+                                     "Shift_JIS");
+        assertEquals(SgfLexer.TT_PROPERTY, lexer.next());
+        assertEquals('[', lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals(text + "]\\", lexer.decodeValue());
+        assertEquals(SgfLexer.TT_PROPERTY, lexer.next());
+        assertSame("B", lexer.getProperty());
+        assertEquals('[', lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals("aa", lexer.decodeValue());
+        assertEquals(SgfLexer.TT_EOF, lexer.next());
+    }
+
+    public void testValueIncomplete() throws Exception
+    {
+        SgfLexer lexer = createLexer("(;C[abc\\]", "ISO-8859-1");
+        assertEquals('(', lexer.next());
+        assertEquals(';', lexer.next());
+        assertEquals(SgfLexer.TT_PROPERTY, lexer.next());
+        assertEquals('[', lexer.next());
+        assertFalse(lexer.readValue());
+    }
+
+    private static SgfLexer createLexer(String s, String charset)
+        throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(s.getBytes(charset));
+        return new SgfLexer(buffer, Charset.forName(charset));
+    }
+}
@@ -0,0 +1,139 @@
+// SgfParserTest.java
+
+package net.sf.gogui.sgf;
+
+import java.io.ByteArrayInputStream;
+
+public final class SgfParserTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfParserTest.class);
+    }
+
+    public void testCharset() throws Exception
+    {
+        assertEquals("G N C[\u00e4] CA[UTF-8] ; N B[aa] C[\u00f6] ; g ",
+                     parse("(;C[\u00e4]CA[UTF-8];B[aa]C[\u00f6])", "UTF-8"));
+        // Second bytes of the characters in Shift_JIS are '\\' and ']'.
+        // The charset of the first game is not used for the second game
+        String text = "\u8868\u30bd\u30be";
+        assertEquals("G N CA[Shift_JIS] C[" + text + "] ; N B[aa] ; g "
+                     + "G N C[\u00b1] ; g ",
+                     parse("(;CA[Shift_JIS]C[" + text + "];B[aa])"
+                           + "(;C[\uff71])", "Shift_JIS"));
+    }
+
+    public void testCollection() throws Exception
+    {
+        assertEquals("G N B[aa] ; g G N W[bb] ; g ",
+                     parse("(;B[aa])\n(;W[bb])", "ISO-8859-1"));
+    }
+
+    public void testEvents() throws Exception
+    {
+        assertEquals("G N GM[1] ; N B[aa] ; ( N W[bb] ; ) ( N W[cc] ; "
+                     + "N AB[dd][ee] ; ) g ",
+                     parse("(;GM[1];B[aa](;W[bb])(;W[cc];AB[dd][ee]))",
+                           "ISO-8859-1"));
+        assertEquals("G N B[aa] C[a]b] ; g ",
+                     parse("(;BLACK[aa]c[a\\]b])", "ISO-8859-1"));
+    }
+
+    public void testWarnings() throws Exception
+    {
+        assertEquals("warning[Extra text before SGF tree] G N "
+                     + "warning[Property \"C\" has no value] ; "
+                     + "warning[Game tree not closed] g ",
+                     parse("x(;C", "ISO-8859-1"));
+        try
+        {
+            parse("(;B[aa]1)", "ISO-8859-1");
+            fail();
+        }
+        catch (SgfError e)
+        {
+        }
+        try
+        {
+            parse("(;B[aa", "ISO-8859-1");
+            fail();
+        }
+        catch (SgfError e)
+        {
+        }
+    }
+
+    /** Records the events in a string. */
+    private static class Recorder
+        implements SgfHandler
+    {
+        public void endGame()
+        {
+            m_buffer.append("g ");
+        }
+
+        public void endNode()
+        {
+            m_buffer.append("; ");
+        }
+
+        public void endVariation()
+        {
+            m_buffer.append(") ");
+        }
+
+        public void property(String name, SgfValues values)
+        {
+            assertSame(name, name.intern());
+            m_buffer.append(name);
+            for (int i = 0; i < values.size(); ++i)
+                m_buffer.append("[" + values.get(i) + "]");
+            m_buffer.append(' ');
+        }
+
+        public void startGame()
+        {
+            m_buffer.append("G ");
+        }
+
+        public void startNode()
+        {
+            m_buffer.append("N ");
+        }
+
+        public void startVariation()
+        {
+            m_buffer.append("( ");
+        }
+
+        public void warning(String message)
+        {
+            m_buffer.append("warning[" + message + "] ");
+        }
+
+        public String toString()
+        {
+            return m_buffer.toString();
+        }
+
+        private final StringBuilder m_buffer = new StringBuilder();
+    }
+
+    private static String parse(String text, String charset)
+        throws Exception
+    {
+        ByteArrayInputStream in =
+            new ByteArrayInputStream(text.getBytes(charset));
+        SgfParser parser = new SgfParser(in, null, 0);
+        Recorder recorder = new Recorder();
+        parser.parse(recorder);
+        return recorder.toString();
+    }
+}
@@ -8,6 +8,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
+import net.sf.gogui.game.CompactGameTree;
 import net.sf.gogui.game.ConstGameInfo;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.ConstNode;
@@ -17,6 +18,7 @@ import net.sf.gogui.game.MarkType;
 import net.sf.gogui.game.Node;
 import net.sf.gogui.game.NodeUtil;
 import net.sf.gogui.game.ConstSgfProperties;
+import net.sf.gogui.game.SgfProperties;
 import net.sf.gogui.game.TimeSettings;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
@@ -39,11 +41,92 @@ public final class SgfReaderTest
         return new junit.framework.TestSuite(SgfReaderTest.class);
     }
 
+    /** Test that the CA property is respected for streams that are not
+        files and for text values that were read before the CA property. */
+    public void testCharset() throws Exception
+    {
+        String text = "(;FF[4]C[\u00e4\u00f6]CA[UTF-8]GN[\u00fc];"
+            + "B[aa]C[\u00df])";
+        InputStream in = new ByteArrayInputStream(text.getBytes("UTF-8"));
+        SgfReader reader = new SgfReader(in, null, null, 0);
+        assertNull(reader.getWarnings());
+        Node root = reader.getTree().getRoot();
+        assertEquals("\u00e4\u00f6", root.getComment());
+        assertEquals("\u00df", root.getChild().getComment());
+        text = "(;CA[UNKNOWN-CHARSET]C[\u00e4])";
+        in = new ByteArrayInputStream(text.getBytes("ISO-8859-1"));
+        reader = new SgfReader(in, null, null, 0);
+        assertNotNull(reader.getWarnings());
+        assertEquals("\u00e4", reader.getTree().getRoot().getComment());
+    }
+
+    /** Test reading into a compact tree.
+        The compact tree must contain the same information as the tree read
+        with the default constructor. */
+    public void testCompact() throws Exception
+    {
+        GameTree tree = getReader("ff4_ex.1.sgf").getTree();
+        InputStream in = getClass().getResourceAsStream("ff4_ex.1.sgf");
+        SgfReader reader = new SgfReader(in, null, null, 0, true);
+        assertNull(reader.getTree());
+        CompactGameTree compact = reader.getCompactTree();
+        assertEquals(tree.getBoardSize(), compact.getBoardSize());
+        assertEquals(NodeUtil.subtreeSize(tree.getRoot()),
+                     compact.getNumberNodes());
+        ConstNode node1 = tree.getRoot();
+        ConstNode node2 = compact.getRootConst();
+        while (node1 != null)
+        {
+            assertNotNull(node2);
+            assertEquals(node1.getMove(), node2.getMove());
+            assertEquals(node1.getComment(), node2.getComment());
+            assertEquals(node1.getPlayer(), node2.getPlayer());
+            assertEquals(node1.getNumberChildren(),
+                         node2.getNumberChildren());
+            assertEquals(node1.getLabelsUnmodifiable(),
+                         node2.getLabelsUnmodifiable());
+            for (MarkType type : MarkType.values())
+                assertEquals(node1.getMarkedConst(type),
+                             node2.getMarkedConst(type));
+            assertEquals(node1.getGameInfoConst(), node2.getGameInfoConst());
+            node1 = NodeUtil.nextNode(node1);
+            node2 = NodeUtil.nextNode(node2);
+        }
+        assertNull(node2);
+    }
+
+    /** Test that the fix for a missing PL property in the root is applied
+        to compact trees. */
+    public void testCompactApplyFixes() throws Exception
+    {
+        String text = "(;AB[aa];W[bb])";
+        InputStream in = new ByteArrayInputStream(text.getBytes());
+        SgfReader reader = new SgfReader(in, null, null, 0, true);
+        CompactGameTree tree = reader.getCompactTree();
+        assertEquals(WHITE, tree.getRootConst().getPlayer());
+        assertEquals(Move.get(WHITE, 1, 17),
+                     tree.getRootConst().getChildConst().getMove());
+    }
+
     public void testDuplicateProperty() throws Exception
     {
         readSgfFileString("(;C[foo]C[bar])", false, true);
     }
 
+    /** Test reading a memory-mapped file into a compact tree. */
+    public void testFile() throws Exception
+    {
+        GameTree tree = getReader("ff4_ex.1.sgf").getTree();
+        File file = new File(getClass().getResource("ff4_ex.1.sgf").getFile());
+        SgfReader reader = new SgfReader(file, null, true);
+        assertNull(reader.getTree());
+        assertEquals(NodeUtil.subtreeSize(tree.getRoot()),
+                     reader.getCompactTree().getNumberNodes());
+        reader = new SgfReader(file, null, false);
+        assertEquals(NodeUtil.subtreeSize(tree.getRoot()),
+                     NodeUtil.subtreeSize(reader.getTree().getRoot()));
+    }
+
     public void testFF4Example() throws Exception
     {
         SgfReader reader = getReader("ff4_ex.1.sgf");
@@ -110,6 +193,30 @@ public final class SgfReaderTest
         assertEquals("foo", getSgfPropertyValue(tree.getRootConst(), "XY"));
     }
 
+    /** Test text values that are decoded on demand.
+        Comments containing only whitespaces must still be deleted and
+        copies of the properties must decode to the same values. */
+    public void testLazyText() throws Exception
+    {
+        String text = "(;CA[UTF-8]C[ \\\n\t];C[ \\] \u00e4 ]"
+            + "XY[a\\\\][\u00f6];C[\u3000])";
+        InputStream in = new ByteArrayInputStream(text.getBytes("UTF-8"));
+        SgfReader reader = new SgfReader(in, null, null, 0);
+        ConstNode node = reader.getTree().getRootConst();
+        assertFalse(node.hasComment());
+        assertNull(node.getComment());
+        node = node.getChildConst();
+        assertTrue(node.hasComment());
+        assertEquals(" ] \u00e4 ", node.getComment());
+        checkSgfProperty(node, "XY", "a\\", "\u00f6");
+        SgfProperties props = new SgfProperties(node.getSgfPropertiesConst());
+        assertEquals(2, props.getNumberValues("XY"));
+        assertEquals("\u00f6", props.getValue("XY", 1));
+        // Ideographic space is a whitespace, but not an ASCII character
+        node = node.getChildConst();
+        assertFalse(node.hasComment());
+    }
+
     public void testRead() throws Exception
     {
         readSgfFile("verbose-property-names.sgf", false, false);
@@ -118,6 +225,24 @@ public final class SgfReaderTest
     /** Test that spaces in size property value are ignored.
         I don't think they are allowed by the SGF standard, but there is
         no reason to create an error in this case. */
+    /** Test a charset, in which the second byte of a character can be the
+        byte of '\\' or ']'. */
+    public void testShiftJis() throws Exception
+    {
+        String comment = "\u8868\u793a\u30bd\u80fd\u30be";
+        String text = "(;CA[Shift_JIS]C[" + comment + "];B[aa]C["
+            + comment + "])";
+        InputStream in =
+            new ByteArrayInputStream(text.getBytes("Shift_JIS"));
+        SgfReader reader = new SgfReader(in, null, null, 0);
+        ConstNode root = reader.getTree().getRootConst();
+        assertEquals(comment, root.getComment());
+        ConstNode node = root.getChildConst();
+        assertEquals(Move.get(BLACK, 0, 18), node.getMove());
+        assertEquals(comment, node.getComment());
+        assertFalse(node.hasChildren());
+    }
+
     public void testSizeWithSpaces() throws Exception
     {
         ConstGameTree tree = readSgfFileString("(;FF[4]SZ[ 13 ])");
@@ -4,11 +4,16 @@ package net.sf.gogui.sgf;
 
 import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.GameInfo;
 import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.Node;
 import net.sf.gogui.game.TimeSettings;
+import static net.sf.gogui.go.GoColor.BLACK;
+import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Komi;
+import net.sf.gogui.go.Move;
 
 public final class SgfWriterTest
     extends junit.framework.TestCase
@@ -23,6 +28,28 @@ public final class SgfWriterTest
         return new junit.framework.TestSuite(SgfWriterTest.class);
     }
 
+    public void testChannel() throws Exception
+    {
+        GameTree tree = new GameTree();
+        tree.getRoot().setComment("\u00e4");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SgfWriter(Channels.newChannel(out), tree, null, null);
+        assertEquals(writeToString(tree), out.toString(SgfWriter.ENCODING));
+    }
+
+    /** Test escaping and encoding of values. */
+    public void testEscape() throws Exception
+    {
+        GameTree tree = new GameTree();
+        Node node = new Node(Move.get(BLACK, GoPoint.get(0, 18)));
+        node.setComment("a]\\b\tc \ud834\udd1e");
+        node.setLabel(GoPoint.get(1, 17), "x:y");
+        tree.getRoot().append(node);
+        String s = writeToString(tree);
+        assertTrue(s.indexOf(";B[aa]C[a\\]\\\\b c \ud834\udd1e]") >= 0);
+        assertTrue(s.indexOf("LB[bb:x\\:y]") >= 0);
+    }
+
     /** Test that komi property is written. */
     public void testKomi() throws Exception
     {
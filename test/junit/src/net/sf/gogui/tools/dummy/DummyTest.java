@@ -0,0 +1,45 @@
+// DummyTest.java
+
+package net.sf.gogui.tools.dummy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+public final class DummyTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(DummyTest.class);
+    }
+
+    /** Test that gogui-dummy-next_failure applies to the next command.
+        With concurrent threads enabled, commands that can run concurrently
+        do not use the state for the next command in handleCommand(), so
+        the failure applies to the next serial command. */
+    public void testNextFailure() throws Exception
+    {
+        String input =
+            "1 gogui-dummy-next_failure boom\n2 echo hi\n3 name\n"
+            + "4 boardsize 9\n5 echo hi\n";
+        assertEquals("=1 \n\n?2 boom\n\n=3 gogui-dummy\n\n=4 \n\n"
+                     + "=5 hi\n\n", run(input, 0));
+        assertEquals("=1 \n\n=2 hi\n\n=3 gogui-dummy\n\n?4 boom\n\n"
+                     + "=5 hi\n\n", run(input, 2));
+    }
+
+    private static String run(String input, int concurrentThreads)
+        throws Exception
+    {
+        Dummy dummy = new Dummy(null, false, 0, -1);
+        dummy.setConcurrentThreads(concurrentThreads);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dummy.mainLoop(new ByteArrayInputStream(input.getBytes()), out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,58 @@
+// FileCheckTest.java
+
+package net.sf.gogui.tools.statistics;
+
+import java.util.ArrayList;
+import net.sf.gogui.util.ErrorMessage;
+
+public final class FileCheckTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(FileCheckTest.class);
+    }
+
+    public void testValid() throws Exception
+    {
+        check("game-1.sgf");
+    }
+
+    /** Test that a move outside the board size fails as with SgfReader. */
+    public void testInvalidMove() throws Exception
+    {
+        checkError("invalidmove.sgf",
+                   "Coordinates \"rs\" outside board size 9");
+    }
+
+    /** Test that a game other than Go fails as with SgfReader. */
+    public void testNotGo() throws Exception
+    {
+        checkError("notgo.sgf", "Not a Go game");
+    }
+
+    private void check(String name) throws ErrorMessage
+    {
+        ArrayList<String> sgfFiles = new ArrayList<String>();
+        sgfFiles.add(getClass().getResource(name).getFile());
+        new FileCheck(sgfFiles, 9, false);
+    }
+
+    private void checkError(String name, String message) throws Exception
+    {
+        try
+        {
+            check(name);
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().endsWith(message));
+        }
+    }
+}
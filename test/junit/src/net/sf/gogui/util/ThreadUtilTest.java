@@ -0,0 +1,53 @@
+// ThreadUtilTest.java
+
+package net.sf.gogui.util;
+
+public final class ThreadUtilTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ThreadUtilTest.class);
+    }
+
+    public void tearDown()
+    {
+        ThreadUtil.setVirtual(false);
+    }
+
+    public void testPlatform() throws Exception
+    {
+        assertTrue(ThreadUtil.setVirtual(false));
+        assertFalse(ThreadUtil.isVirtual());
+        checkNewThread();
+    }
+
+    /** Test virtual threads if supported by the Java runtime. */
+    public void testVirtual() throws Exception
+    {
+        boolean isSupported = (ThreadUtil.getVirtualThreadFactory() != null);
+        assertEquals(isSupported, ThreadUtil.setVirtual(true));
+        assertEquals(isSupported, ThreadUtil.isVirtual());
+        checkNewThread();
+    }
+
+    private void checkNewThread() throws Exception
+    {
+        final boolean[] hasRun = new boolean[1];
+        Thread thread = ThreadUtil.newThread(new Runnable() {
+                public void run()
+                {
+                    hasRun[0] = true;
+                }
+            });
+        assertFalse(hasRun[0]);
+        thread.start();
+        thread.join();
+        assertTrue(hasRun[0]);
+    }
+}